@@ -2,6 +2,7 @@ package com.github.anicmv;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @author anicmv
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @description 主程序入口
  */
 @SpringBootApplication
+@EnableScheduling
 public class AniboxS3Application {
 
     public static void main(String[] args) {
@@ -0,0 +1,62 @@
+package com.github.anicmv.cache;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * @author anicmv
+ * 本地缓存中的一个对象，正文保存在 path 指向的文件中。
+ * validatedAt 记录最近一次与后端 ETag 核对的时间。
+ */
+public final class CachedObject {
+
+    private final String key;
+    private final Path path;
+    private final long length;
+    private final String eTag;
+    private final String contentType;
+    private final Instant lastModified;
+    private volatile long validatedAtNanos;
+
+    CachedObject(String key, Path path, long length, String eTag, String contentType, Instant lastModified) {
+        this.key = key;
+        this.path = path;
+        this.length = length;
+        this.eTag = eTag;
+        this.contentType = contentType;
+        this.lastModified = lastModified;
+        this.validatedAtNanos = System.nanoTime();
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public String eTag() {
+        return eTag;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public Instant lastModified() {
+        return lastModified;
+    }
+
+    long validatedAtNanos() {
+        return validatedAtNanos;
+    }
+
+    void markValidated() {
+        validatedAtNanos = System.nanoTime();
+    }
+}
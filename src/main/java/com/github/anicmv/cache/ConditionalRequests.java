@@ -0,0 +1,98 @@
+package com.github.anicmv.cache;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * @author anicmv
+ * 条件请求（RFC 9110 第13节）判断工具。
+ * If-None-Match 存在时按弱比较判断且忽略 If-Modified-Since；否则按秒级精度比较 If-Modified-Since。
+ */
+public final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    public static boolean isNotModified(HttpServletRequest request, String eTag, Instant lastModified) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if (eTag == null) {
+                return false;
+            }
+            String opaque = opaqueTag(eTag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if ("*".equals(trimmed) || opaqueTag(trimmed).equals(opaque)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (lastModified == null) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified.getEpochSecond() <= ifModifiedSince / 1000;
+    }
+
+    public static <T> ResponseEntity<T> notModified(String eTag, Instant lastModified) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.NOT_MODIFIED);
+        if (eTag != null) {
+            builder.eTag(eTag);
+        }
+        if (lastModified != null) {
+            builder.lastModified(lastModified);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 把对象的 ETag 转为弱 ETag，用于描述该对象的 JSON 表示
+     */
+    public static String weak(String eTag) {
+        return eTag == null ? null : "W/\"" + opaqueTag(eTag) + "\"";
+    }
+
+    /**
+     * 根据若干组成部分计算弱 ETag，用于由多个对象组成的响应（列表页、多副本信息）
+     */
+    public static String weakOf(Iterable<String> parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String opaqueTag(String eTag) {
+        String tag = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        return tag;
+    }
+}
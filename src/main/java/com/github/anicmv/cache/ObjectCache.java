@@ -0,0 +1,238 @@
+package com.github.anicmv.cache;
+
+import com.github.anicmv.config.S3StorageProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author anicmv
+ * 按字节数限制容量的本地磁盘热对象缓存。
+ * 淘汰顺序为LRU，准入采用TinyLFU：缓存已满时，只有当新对象的近期访问频率高于将被淘汰的对象时才会写入，
+ * 因此一次性的读取不会把热点对象挤出缓存。
+ * 被淘汰或失效的文件不会立即删除，而是在宽限期后清理，保证正在通过 sendfile 发送的文件不被提前删掉。
+ */
+@Slf4j
+@Component
+public class ObjectCache {
+
+    private static final long AVERAGE_OBJECT_SIZE = 64 * 1024;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final LinkedHashMap<String, CachedObject> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Queue<RetiredFile> retired = new ConcurrentLinkedQueue<>();
+    private final AtomicLong fileSequence = new AtomicLong();
+    private FrequencySketch sketch;
+    private long currentBytes;
+    private Path directory;
+
+    private record RetiredFile(Path path, long retiredAtNanos) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        S3StorageProperties.LocalCache config = storageProperties.getLocalCache();
+        if (!config.isEnabled()) {
+            return;
+        }
+        directory = Path.of(config.getDirectory()).toAbsolutePath();
+        Files.createDirectories(directory);
+        // 索引只保存在内存中，上次运行遗留的文件无法确认是否仍然有效，直接清理
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory)) {
+            for (Path path : stale) {
+                Files.deleteIfExists(path);
+            }
+        }
+        long maxBytes = config.getMaxSize().toBytes();
+        sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxBytes / AVERAGE_OBJECT_SIZE));
+
+        Gauge.builder("storage.cache.bytes", this, ObjectCache::currentBytes)
+                .description("Bytes held by the local object cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.cache.entries", this, ObjectCache::size)
+                .description("Objects held by the local object cache")
+                .register(meterRegistry);
+        log.info("本地对象缓存已启用 - 目录: {}, 容量: {}MB", directory, maxBytes / 1024 / 1024);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * 查找缓存并记录一次访问，未命中时返回 null
+     */
+    public CachedObject get(String key) {
+        CachedObject cached;
+        synchronized (this) {
+            sketch.increment(key);
+            cached = entries.get(key);
+        }
+        meterRegistry.counter("storage.cache.requests", "result", cached != null ? "hit" : "miss").increment();
+        return cached;
+    }
+
+    public boolean needsRevalidation(CachedObject cached) {
+        long age = System.nanoTime() - cached.validatedAtNanos();
+        return age >= storageProperties.getLocalCache().getRevalidateAfter().toNanos();
+    }
+
+    public void markValidated(CachedObject cached) {
+        cached.markValidated();
+    }
+
+    /**
+     * 对象大小已知且不超过单对象上限时才值得写入缓存
+     */
+    public boolean isCacheable(Long length) {
+        return isEnabled() && length != null && length > 0
+                && length <= storageProperties.getLocalCache().getMaxObjectSize().toBytes();
+    }
+
+    public Path createTempFile() throws IOException {
+        return directory.resolve(Long.toHexString(fileSequence.incrementAndGet()) + ".tmp");
+    }
+
+    /**
+     * 尝试将已完整写入的临时文件放入缓存，未通过准入时删除临时文件
+     *
+     * @return 是否写入缓存
+     */
+    public boolean admit(String key, Path tempFile, long length, String eTag, String contentType, Instant lastModified) {
+        long maxBytes = storageProperties.getLocalCache().getMaxSize().toBytes();
+        List<CachedObject> victims = new ArrayList<>();
+        boolean admitted;
+        synchronized (this) {
+            admitted = selectVictims(key, length, maxBytes, victims);
+            if (admitted) {
+                Path path = directory.resolve(Long.toHexString(fileSequence.incrementAndGet()) + ".obj");
+                try {
+                    Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    log.warn("写入缓存文件失败: {}", e.getMessage());
+                    admitted = false;
+                    victims.clear();
+                }
+                if (admitted) {
+                    victims.forEach(victim -> remove(victim.key()));
+                    CachedObject previous = entries.put(key, new CachedObject(key, path, length, eTag, contentType, lastModified));
+                    if (previous != null) {
+                        currentBytes -= previous.length();
+                        retire(previous);
+                    }
+                    currentBytes += length;
+                }
+            }
+        }
+
+        if (!victims.isEmpty()) {
+            meterRegistry.counter("storage.cache.evictions").increment(victims.size());
+        }
+        meterRegistry.counter("storage.cache.admissions", "result", admitted ? "admitted" : "rejected").increment();
+        if (!admitted) {
+            discard(tempFile);
+        }
+        return admitted;
+    }
+
+    /**
+     * 按LRU顺序挑选需要淘汰的对象；任一候选淘汰对象的频率不低于新对象时拒绝准入
+     */
+    private boolean selectVictims(String key, long length, long maxBytes, List<CachedObject> victims) {
+        if (length > maxBytes) {
+            return false;
+        }
+        CachedObject existing = entries.get(key);
+        long needed = currentBytes - (existing != null ? existing.length() : 0) + length - maxBytes;
+        if (needed <= 0) {
+            return true;
+        }
+        int candidateFrequency = sketch.frequency(key);
+        Iterator<CachedObject> lru = entries.values().iterator();
+        while (needed > 0 && lru.hasNext()) {
+            CachedObject victim = lru.next();
+            if (victim.key().equals(key)) {
+                continue;
+            }
+            if (sketch.frequency(victim.key()) >= candidateFrequency) {
+                victims.clear();
+                return false;
+            }
+            victims.add(victim);
+            needed -= victim.length();
+        }
+        return needed <= 0;
+    }
+
+    /**
+     * 对象在后端被修改、删除或重命名后调用
+     */
+    public void invalidate(String key) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            remove(key);
+        }
+    }
+
+    private void remove(String key) {
+        CachedObject removed = entries.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.length();
+            retire(removed);
+        }
+    }
+
+    private void retire(CachedObject cached) {
+        retired.add(new RetiredFile(cached.path(), System.nanoTime()));
+    }
+
+    public void discard(Path tempFile) {
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.debug("删除缓存临时文件失败: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.SECONDS)
+    public void purgeRetired() {
+        long grace = storageProperties.getLocalCache().getRetireGrace().toNanos();
+        long now = System.nanoTime();
+        RetiredFile file;
+        while ((file = retired.peek()) != null && now - file.retiredAtNanos() >= grace) {
+            retired.poll();
+            discard(file.path());
+        }
+    }
+
+    public synchronized long currentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
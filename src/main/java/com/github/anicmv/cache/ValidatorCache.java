@@ -0,0 +1,99 @@
+package com.github.anicmv.cache;
+
+import com.github.anicmv.config.S3StorageProperties;
+import jakarta.annotation.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author anicmv
+ * 条件请求校验值缓存：记录最近从后端得到的对象 ETag / Last-Modified 以及列表页的弱 ETag，
+ * 使携带 If-None-Match / If-Modified-Since 的请求在有效期内无需访问后端即可返回 304。
+ * 本实例的上传、删除、重命名会立即使对应条目失效，其他写入方造成的不一致最长持续 validator-ttl。
+ */
+@Component
+public class ValidatorCache {
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    private final Map<String, Validator> objects = new ConcurrentHashMap<>();
+    private final Map<ListQuery, Validator> lists = new ConcurrentHashMap<>();
+
+    public record Validator(String eTag, Instant lastModified, long storedAtNanos) {
+    }
+
+    /**
+     * 不带前缀的列表包含所有对象，前缀统一记为空串，失效时按前缀匹配
+     */
+    private record ListQuery(String prefix, int limit, String token) {
+        ListQuery {
+            prefix = prefix == null ? "" : prefix;
+        }
+    }
+
+    public Validator get(String key) {
+        return fresh(objects, key);
+    }
+
+    public void put(String key, String eTag, Instant lastModified) {
+        store(objects, key, eTag, lastModified);
+    }
+
+    public Validator getList(String prefix, int limit, String token) {
+        return fresh(lists, new ListQuery(prefix, limit, token));
+    }
+
+    public void putList(String prefix, int limit, String token, String eTag, Instant lastModified) {
+        store(lists, new ListQuery(prefix, limit, token), eTag, lastModified);
+    }
+
+    /**
+     * 使对象以及包含该对象的列表页失效
+     */
+    public void invalidate(String key) {
+        objects.remove(key);
+        lists.keySet().removeIf(query -> key.startsWith(query.prefix()));
+    }
+
+    private <K> Validator fresh(Map<K, Validator> map, K key) {
+        S3StorageProperties.Conditional config = storageProperties.getConditional();
+        if (!config.isValidatorCacheEnabled()) {
+            return null;
+        }
+        Validator validator = map.get(key);
+        if (validator == null) {
+            return null;
+        }
+        if (System.nanoTime() - validator.storedAtNanos() >= config.getValidatorTtl().toNanos()) {
+            map.remove(key, validator);
+            return null;
+        }
+        return validator;
+    }
+
+    private <K> void store(Map<K, Validator> map, K key, String eTag, Instant lastModified) {
+        S3StorageProperties.Conditional config = storageProperties.getConditional();
+        if (!config.isValidatorCacheEnabled() || eTag == null) {
+            return;
+        }
+        // 超出上限时只更新已有条目，过期条目由定时任务清理
+        if (map.size() >= config.getMaxValidators() && !map.containsKey(key)) {
+            return;
+        }
+        map.put(key, new Validator(eTag, lastModified, System.nanoTime()));
+    }
+
+    @Scheduled(fixedDelay = 30, timeUnit = TimeUnit.SECONDS)
+    public void purgeExpired() {
+        long ttl = storageProperties.getConditional().getValidatorTtl().toNanos();
+        long now = System.nanoTime();
+        objects.values().removeIf(validator -> now - validator.storedAtNanos() >= ttl);
+        lists.values().removeIf(validator -> now - validator.storedAtNanos() >= ttl);
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.anicmv.checksum;
+
+import com.github.anicmv.enums.PayloadChecksumType;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * @author anicmv
+ * 一次上传内容的校验值（Base64 编码），未计算的算法为 null。
+ */
+public record PayloadChecksums(String crc32c, String sha256, String md5) {
+
+    public static final String META_CRC32C = "crc32c";
+    public static final String META_SHA256 = "sha256";
+
+    public static final String VERIFIED = "verified";
+    public static final String UNVERIFIED = "unverified";
+    public static final String MISMATCH = "mismatch";
+    public static final String ETAG_MISMATCH = "etag_mismatch";
+
+    /**
+     * 按后端使用的算法设置请求头，值已给出时SDK不会再计算
+     */
+    public PutObjectRequest.Builder applyTo(PutObjectRequest.Builder request, PayloadChecksumType type) {
+        switch (type) {
+            case CRC32C -> request.checksumCRC32C(crc32c);
+            case SHA256 -> request.checksumSHA256(sha256);
+            case MD5 -> request.contentMD5(md5);
+            default -> {
+            }
+        }
+        return request.metadata(metadata());
+    }
+
+    /**
+     * 写入对象元数据的校验值，之后的核对无需重新读取对象内容
+     */
+    public Map<String, String> metadata() {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(META_CRC32C, crc32c);
+        if (sha256 != null) {
+            metadata.put(META_SHA256, sha256);
+        }
+        return metadata;
+    }
+
+    /**
+     * 核对后端返回的校验值
+     *
+     * @param type 后端使用的算法，只有 MD5 后端的 ETag 才与内容的 MD5 比较
+     * @return 后端返回了可比较的值时为 {@link #VERIFIED}，否则为 {@link #UNVERIFIED}；不一致时为 {@link #MISMATCH}；
+     * 只有 ETag 与 MD5 不一致时为 {@link #ETAG_MISMATCH}，加密或兼容实现的 ETag 不一定是 MD5，不能据此判定内容损坏
+     */
+    public String verify(PutObjectResponse response, PayloadChecksumType type) {
+        boolean compared = false;
+        if (response.checksumCRC32C() != null) {
+            if (!response.checksumCRC32C().equals(crc32c)) {
+                return MISMATCH;
+            }
+            compared = true;
+        }
+        if (sha256 != null && response.checksumSHA256() != null) {
+            if (!response.checksumSHA256().equals(sha256)) {
+                return MISMATCH;
+            }
+            compared = true;
+        }
+        // 单次 PUT 的 ETag 通常是内容的 MD5；分段上传的 ETag 带有 -N 后缀，不可比较
+        String eTag = response.eTag() == null ? null : response.eTag().replace("\"", "");
+        if (type == PayloadChecksumType.MD5 && md5 != null && eTag != null && eTag.length() == 32) {
+            String expected = HexFormat.of().formatHex(Base64.getDecoder().decode(md5));
+            if (!expected.equalsIgnoreCase(eTag)) {
+                return compared ? VERIFIED : ETAG_MISMATCH;
+            }
+            compared = true;
+        }
+        return compared ? VERIFIED : UNVERIFIED;
+    }
+}
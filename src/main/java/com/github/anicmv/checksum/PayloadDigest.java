@@ -0,0 +1,58 @@
+package com.github.anicmv.checksum;
+
+import com.github.anicmv.enums.PayloadChecksumType;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.zip.CRC32C;
+
+/**
+ * @author anicmv
+ * 在读取上传内容的同时增量计算校验值，每个上传只计算一次，结果由所有后端共享。
+ * CRC32C 总是计算，用于写入元数据和校验后端的返回值；SHA-256 与 MD5 只在有后端需要时计算。
+ * 非线程安全，只由读取请求体的线程调用。
+ */
+public class PayloadDigest {
+
+    private final CRC32C crc32c = new CRC32C();
+    private final MessageDigest sha256;
+    private final MessageDigest md5;
+
+    public PayloadDigest(Collection<PayloadChecksumType> types) {
+        this.sha256 = types.contains(PayloadChecksumType.SHA256) ? messageDigest("SHA-256") : null;
+        this.md5 = types.contains(PayloadChecksumType.MD5) ? messageDigest("MD5") : null;
+    }
+
+    /**
+     * 计入 position 到 limit 之间的内容，不改变传入缓冲区的位置
+     */
+    public void update(ByteBuffer data) {
+        crc32c.update(data.duplicate());
+        if (sha256 != null) {
+            sha256.update(data.duplicate());
+        }
+        if (md5 != null) {
+            md5.update(data.duplicate());
+        }
+    }
+
+    public PayloadChecksums finish() {
+        Base64.Encoder encoder = Base64.getEncoder();
+        byte[] crc = ByteBuffer.allocate(Integer.BYTES).putInt((int) crc32c.getValue()).array();
+        return new PayloadChecksums(
+                encoder.encodeToString(crc),
+                sha256 != null ? encoder.encodeToString(sha256.digest()) : null,
+                md5 != null ? encoder.encodeToString(md5.digest()) : null);
+    }
+
+    private static MessageDigest messageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支持 " + algorithm, e);
+        }
+    }
+}
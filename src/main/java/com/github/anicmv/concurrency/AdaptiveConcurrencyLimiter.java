@@ -0,0 +1,123 @@
+package com.github.anicmv.concurrency;
+
+import com.github.anicmv.config.S3StorageProperties;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author anicmv
+ * 梯度式自适应并发限制：以长期EWMA延迟为基线，每次请求完成后按 基线/本次延迟 的比值调整并发上限。
+ * 延迟高于基线（排队开始）时上限按比例收缩，延迟回到基线附近时每次增长约 sqrt(limit)，请求失败时按 backoffRatio 乘性减小。
+ * 并发数达到上限时 {@link #tryAcquire()} 立即返回 null，由调用方快速失败，而不是让请求在线程池或后端排队。
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final S3StorageProperties.Concurrency config;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRttNanos = -1;
+    private long samples = 0;
+
+    public AdaptiveConcurrencyLimiter(S3StorageProperties.Concurrency config) {
+        this.config = config;
+        this.estimatedLimit = config.getInitialLimit();
+        this.limit = config.getInitialLimit();
+    }
+
+    /**
+     * 已取得的并发许可，完成后必须调用 {@link #release(boolean)} 或 {@link #cancel()}，重复调用会被忽略
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * @param success 请求是否成功；失败的请求不计入延迟样本，直接收缩上限
+         */
+        public void release(boolean success) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            inFlight.decrementAndGet();
+            if (success) {
+                onSample(System.nanoTime() - startNanos, inFlightAtStart);
+            } else {
+                onDropped();
+            }
+        }
+
+        /**
+         * 归还未使用的许可，不影响上限
+         */
+        public void cancel() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return 并发许可；已达到上限时返回 null
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        samples++;
+        if (longRttNanos < 0) {
+            longRttNanos = rttNanos;
+        } else {
+            double alpha = 2.0 / (Math.min(samples, config.getLongWindow()) + 1);
+            longRttNanos += alpha * (rttNanos - longRttNanos);
+        }
+        // 基线本身被持续的高延迟拉高时，逐步回落，避免把排队延迟当作常态
+        if (longRttNanos / rttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // 并发远低于上限时延迟不能说明上限是否合适，不增长
+        if (inFlightAtStart < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, config.getRttTolerance() * longRttNanos / rttNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = estimatedLimit * (1 - config.getSmoothing()) + newLimit * config.getSmoothing();
+        publish();
+    }
+
+    private synchronized void onDropped() {
+        estimatedLimit *= config.getBackoffRatio();
+        publish();
+    }
+
+    private void publish() {
+        estimatedLimit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), estimatedLimit));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.anicmv.concurrency;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.FileValidationException;
+import com.github.anicmv.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author anicmv
+ * 自适应并发限制的统一入口：上传接口一个限制器（scope=upload），每个存储后端一个限制器（scope=服务名）。
+ * 上限、并发数注册为 storage.concurrency.limit / storage.concurrency.inflight 指标，被拒绝的请求计入 storage.concurrency.rejected。
+ */
+@Slf4j
+@Component
+public class ConcurrencyLimiters {
+
+    public static final String UPLOAD_SCOPE = "upload";
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * 取得上传接口的并发许可，未启用时返回 null
+     *
+     * @throws ServiceOverloadedException 已达到并发上限
+     */
+    public AdaptiveConcurrencyLimiter.Permit acquireUpload() {
+        if (!storageProperties.getConcurrency().isEnabled()) {
+            return null;
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = limiter(UPLOAD_SCOPE).tryAcquire();
+        if (permit == null) {
+            rejected(UPLOAD_SCOPE);
+            throw new ServiceOverloadedException("上传请求过多，请稍后重试");
+        }
+        return permit;
+    }
+
+    /**
+     * 一次性取得所有目标后端的并发许可，任一后端已满时释放已取得的许可
+     *
+     * @return 服务名到许可的映射，未启用时为空
+     * @throws ServiceOverloadedException 有后端已达到并发上限
+     */
+    public Map<String, AdaptiveConcurrencyLimiter.Permit> acquireBackends(Collection<String> serviceNames) {
+        Map<String, AdaptiveConcurrencyLimiter.Permit> permits = new LinkedHashMap<>();
+        if (!storageProperties.getConcurrency().isEnabled()) {
+            return permits;
+        }
+        for (String serviceName : serviceNames) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter(serviceName).tryAcquire();
+            if (permit == null) {
+                // 未开始的请求不代表后端失败，归还许可时不影响上限
+                permits.values().forEach(AdaptiveConcurrencyLimiter.Permit::cancel);
+                rejected(serviceName);
+                throw new ServiceOverloadedException("存储服务繁忙，请稍后重试: " + serviceName);
+            }
+            permits.put(serviceName, permit);
+        }
+        return permits;
+    }
+
+    public static void release(AdaptiveConcurrencyLimiter.Permit permit, boolean success) {
+        if (permit != null) {
+            permit.release(success);
+        }
+    }
+
+    /**
+     * 请求以异常结束时归还许可：过载拒绝与客户端错误不代表后端变慢或失败，不计入样本
+     */
+    public static void release(AdaptiveConcurrencyLimiter.Permit permit, RuntimeException error) {
+        if (permit == null) {
+            return;
+        }
+        if (error instanceof ServiceOverloadedException || error instanceof FileValidationException) {
+            permit.cancel();
+        } else {
+            permit.release(false);
+        }
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(String scope) {
+        return limiters.computeIfAbsent(scope, name -> {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(storageProperties.getConcurrency());
+            Gauge.builder("storage.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("scope", name)
+                    .register(meterRegistry);
+            Gauge.builder("storage.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .description("Requests currently holding a concurrency permit")
+                    .tag("scope", name)
+                    .register(meterRegistry);
+            return limiter;
+        });
+    }
+
+    private void rejected(String scope) {
+        meterRegistry.counter("storage.concurrency.rejected", "scope", scope).increment();
+        log.warn("并发已达上限，拒绝请求 - scope: {}", scope);
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.anicmv.config;
+
+import com.github.anicmv.exception.ServiceOverloadedException;
+import com.github.anicmv.tracing.ContextPropagatingTaskDecorator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+
+/**
+ * @author anicmv
+ * 存储扇出线程池配置，并将活跃线程数与队列深度注册为指标，便于监控饱和度。
+ * 任务会继承提交线程的 MDC 与追踪上下文。
+ * 上传扇出、对冲读取与后台任务各用一个有界线程池，队列排满时抛出 {@link ServiceOverloadedException}。
+ */
+@Configuration
+public class ExecutorConfig {
+
+    public static final String STORAGE_EXECUTOR = "storageTaskExecutor";
+    public static final String IMAGE_OPTIMIZER_EXECUTOR = "imageOptimizerExecutor";
+    public static final String SCAN_EXECUTOR = "bucketScanExecutor";
+    public static final String READ_EXECUTOR = "hedgedReadExecutor";
+    public static final String BACKGROUND_EXECUTOR = "backgroundTaskExecutor";
+
+    @Bean(name = STORAGE_EXECUTOR)
+    public ThreadPoolTaskExecutor storageTaskExecutor(S3StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        S3StorageProperties.Executor config = storageProperties.getExecutor();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(config.getCoreSize());
+        executor.setMaxPoolSize(Math.max(config.getCoreSize(), config.getMaxSize()));
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix("s3-fanout-");
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.setRejectedExecutionHandler(overloaded("存储扇出队列已满"));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+
+        Gauge.builder("storage.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Active threads in the storage fan-out executor")
+                .register(meterRegistry);
+        Gauge.builder("storage.executor.queue.size", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Tasks waiting in the storage fan-out executor queue")
+                .register(meterRegistry);
+        Gauge.builder("storage.executor.pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+                .description("Current thread count of the storage fan-out executor")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * 对冲读取不排队：排在其他任务之后的对冲请求已经失去意义，线程用尽时调用方不再对冲
+     */
+    @Bean(name = READ_EXECUTOR)
+    public ThreadPoolTaskExecutor hedgedReadExecutor(S3StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        int threads = Math.max(1, storageProperties.getExecutor().getReadThreads());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("s3-read-");
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.setRejectedExecutionHandler(overloaded("读取线程已用尽"));
+
+        Gauge.builder("storage.read.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Active threads in the hedged read executor")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * 反熵修复、统计扫描与直传复制等后台任务，不占用上传扇出与读取的线程
+     */
+    @Bean(name = BACKGROUND_EXECUTOR)
+    public ThreadPoolTaskExecutor backgroundTaskExecutor(S3StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        S3StorageProperties.Executor config = storageProperties.getExecutor();
+        int threads = Math.max(1, config.getBackgroundThreads());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(config.getBackgroundQueueCapacity());
+        executor.setThreadNamePrefix("s3-background-");
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.setRejectedExecutionHandler(overloaded("后台任务队列已满"));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+
+        Gauge.builder("storage.background.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Active threads in the background task executor")
+                .register(meterRegistry);
+        Gauge.builder("storage.background.executor.queue.size", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Tasks waiting in the background task executor queue")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * 图片优化是纯CPU计算，线程数与队列都有上限，排不上队的上传直接跳过优化
+     */
+    @Bean(name = IMAGE_OPTIMIZER_EXECUTOR)
+    public ThreadPoolTaskExecutor imageOptimizerExecutor(S3StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        S3StorageProperties.ImageOptimization config = storageProperties.getImageOptimization();
+        int threads = config.getThreads() > 0
+                ? config.getThreads()
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix("image-optimize-");
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+
+        Gauge.builder("storage.image.optimize.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Active threads in the image optimizer executor")
+                .register(meterRegistry);
+        Gauge.builder("storage.image.optimize.queue.size", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Tasks waiting in the image optimizer executor queue")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * 整桶扫描的列表任务，与上传扇出分开，长时间的扫描不占用上传线程；每个后端的并发另由扫描器限制
+     */
+    @Bean(name = SCAN_EXECUTOR)
+    public ThreadPoolTaskExecutor bucketScanExecutor(S3StorageProperties storageProperties) {
+        S3StorageProperties.BucketScan config = storageProperties.getBucketScan();
+        int threads = Math.max(1, config.getConcurrencyPerBackend() * Math.max(1, storageProperties.getServices().size()));
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("bucket-scan-");
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        return executor;
+    }
+
+    static RejectedExecutionHandler overloaded(String message) {
+        return (task, pool) -> {
+            throw new ServiceOverloadedException(message);
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.anicmv.config;
+
+import com.github.anicmv.layout.DateKeyLayout;
+import com.github.anicmv.layout.HashShardedKeyLayout;
+import com.github.anicmv.layout.KeyLayoutStrategy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author anicmv
+ * 存储键布局配置。storage.s3.key-layout.type 可选:
+ * DATE（yyyyMMdd + 文件名）、HASH_SHARDED（_s/分片号/yyyyMMdd + 文件名）。
+ */
+@Slf4j
+@Configuration
+public class KeyLayoutConfig {
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Bean
+    public KeyLayoutStrategy keyLayoutStrategy() {
+        S3StorageProperties.KeyLayout config = storageProperties.getKeyLayout();
+        KeyLayoutStrategy strategy = switch (config.getType()) {
+            case HASH_SHARDED -> new HashShardedKeyLayout(config.getShardCount(), config.isLegacyFallback());
+            case DATE -> new DateKeyLayout();
+        };
+        log.info("存储键布局 - type: {}, 分片数: {}, 兼容旧键: {}",
+                config.getType(), config.getShardCount(), config.isLegacyFallback());
+        return strategy;
+    }
+}
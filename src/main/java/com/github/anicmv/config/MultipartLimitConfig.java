@@ -0,0 +1,38 @@
+package com.github.anicmv.config;
+
+import com.github.anicmv.service.FileValidationService;
+import jakarta.servlet.MultipartConfigElement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @author anicmv
+ * 容器的 multipart 上限取 spring.servlet.multipart 与 storage.validation 中较小的值。
+ * 分段超过上限时容器在接收过程中即中止解析，而不是先把整个请求体写入临时目录再由 {@link FileValidationService} 拒绝。
+ */
+@Slf4j
+@Configuration
+public class MultipartLimitConfig {
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties multipartProperties,
+                                                         FileValidationService fileValidationService) {
+        long maxFileSize = min(multipartProperties.getMaxFileSize(), fileValidationService.getMaxFileSize());
+        long maxRequestSize = min(multipartProperties.getMaxRequestSize(), fileValidationService.getMaxRequestSize(true));
+        log.info("multipart 上限 - 单个文件: {} bytes, 请求: {} bytes", maxFileSize, maxRequestSize);
+
+        MultipartProperties limited = new MultipartProperties();
+        limited.setLocation(multipartProperties.getLocation());
+        limited.setFileSizeThreshold(multipartProperties.getFileSizeThreshold());
+        limited.setMaxFileSize(DataSize.ofBytes(maxFileSize));
+        limited.setMaxRequestSize(DataSize.ofBytes(maxRequestSize));
+        return limited.createMultipartConfig();
+    }
+
+    private static long min(DataSize configured, long validationLimit) {
+        return configured == null || configured.toBytes() < 0 ? validationLimit : Math.min(configured.toBytes(), validationLimit);
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.anicmv.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author anicmv
+ * 上传与修改接口的按客户端限流配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "storage.rate-limit")
+public class RateLimitProperties {
+
+    // 是否启用限流
+    private boolean enabled = true;
+    // 每个客户端每秒允许的请求数
+    private double requestsPerSecond = 5;
+    // 请求数桶容量，即允许的突发请求数
+    private int requestBurst = 20;
+    // 每个客户端每秒允许上传的字节数
+    private DataSize bytesPerSecond = DataSize.ofMegabytes(20);
+    // 字节桶容量，即允许的突发上传量
+    private DataSize byteBurst = DataSize.ofMegabytes(100);
+    // 请求携带该请求头且Key已登记时按API Key限流，否则按客户端IP限流；为空时始终按IP
+    private String apiKeyHeader = "X-Api-Key";
+    // 已登记的API Key：客户端名称 -> Key
+    private Map<String, String> apiKeys = new LinkedHashMap<>();
+    // 同时跟踪的客户端上限，超出后淘汰最久未出现的客户端
+    private int maxClients = 100_000;
+    // 清理空闲客户端的间隔
+    private Duration evictionInterval = Duration.ofSeconds(60);
+}
@@ -1,15 +1,25 @@
 package com.github.anicmv.config;
 
-
+import com.github.anicmv.health.BackendHealthInterceptor;
+import com.github.anicmv.health.BackendHealthTracker;
+import com.github.anicmv.metrics.S3MetricsInterceptor;
+import com.github.anicmv.metrics.StorageMetrics;
+import com.github.anicmv.retry.BudgetedRetryStrategy;
+import com.github.anicmv.retry.RetryBudget;
+import com.github.anicmv.tracing.S3TracingInterceptor;
+import io.opentelemetry.api.trace.Tracer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.auth.aws.signer.AwsV4FamilyHttpSigner;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.auth.scheme.S3AuthSchemeProvider;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.net.URI;
@@ -32,6 +42,15 @@ public class S3ClientManager {
     @Resource
     private S3StorageProperties storageProperties;
 
+    @Resource
+    private StorageMetrics storageMetrics;
+
+    @Resource
+    private Tracer tracer;
+
+    @Resource
+    private BackendHealthTracker healthTracker;
+
     private final Map<String, S3Client> clients = new ConcurrentHashMap<>();
     private final Map<String, S3Presigner> preSigners = new ConcurrentHashMap<>();
 
@@ -39,11 +58,11 @@ public class S3ClientManager {
     public void initializeClients() {
         storageProperties.getServices().forEach((name, config) -> {
             if (config.isEnabled()) {
-                S3Client client = createS3Client(config);
+                S3Client client = createS3Client(name, config);
                 clients.put(name, client);
 
-                // 如果需要预签名URL，创建presigner
-                if (config.isUsePresignedUrl()) {
+                // 如果需要预签名URL或启用了直传，创建presigner
+                if (config.isUsePresignedUrl() || storageProperties.getDirectUpload().isEnabled()) {
                     S3Presigner preSigner = createS3Presigner(config);
                     preSigners.put(name, preSigner);
                 }
@@ -51,7 +70,7 @@ public class S3ClientManager {
         });
     }
 
-    private S3Client createS3Client(S3StorageProperties.S3ServiceConfig config) {
+    private S3Client createS3Client(String serviceName, S3StorageProperties.S3ServiceConfig config) {
         AwsBasicCredentials credentials = AwsBasicCredentials.create(
                 config.getAccessKey(),
                 config.getSecretKey()
@@ -61,24 +80,55 @@ public class S3ClientManager {
                 .pathStyleAccessEnabled(true)
                 .build();
 
+        S3StorageProperties.RetryPolicy retryPolicy = config.getRetry() != null
+                ? config.getRetry()
+                : storageProperties.getRetry();
+        RetryBudget retryBudget = new RetryBudget(retryPolicy.getBudgetCapacity());
+        storageMetrics.registerRetryBudget(serviceName, retryBudget);
+
         return S3Client.builder()
                 .region(Region.of(config.getRegion()))
                 .credentialsProvider(StaticCredentialsProvider.create(credentials))
                 .endpointOverride(URI.create(config.getEndpoint()))
                 .serviceConfiguration(s3Config)
+                .authSchemeProvider(payloadSigning(storageProperties.getChecksum().isPayloadSigning()))
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .retryStrategy(new BudgetedRetryStrategy(serviceName, retryPolicy, retryBudget, storageMetrics))
+                        .apiCallAttemptTimeout(retryPolicy.getAttemptTimeout())
+                        .apiCallTimeout(retryPolicy.getCallTimeout())
+                        .addExecutionInterceptor(new S3MetricsInterceptor(serviceName, storageMetrics))
+                        .addExecutionInterceptor(new S3TracingInterceptor(serviceName, tracer))
+                        .addExecutionInterceptor(new BackendHealthInterceptor(serviceName, healthTracker))
+                        .build())
                 .build();
     }
 
+    /**
+     * 在默认认证方案上固定是否签名请求体
+     */
+    private static S3AuthSchemeProvider payloadSigning(boolean enabled) {
+        S3AuthSchemeProvider defaultProvider = S3AuthSchemeProvider.defaultProvider();
+        return params -> defaultProvider.resolveAuthScheme(params).stream()
+                .map(option -> option.toBuilder()
+                        .putSignerProperty(AwsV4FamilyHttpSigner.PAYLOAD_SIGNING_ENABLED, enabled)
+                        .build())
+                .toList();
+    }
+
     private S3Presigner createS3Presigner(S3StorageProperties.S3ServiceConfig config) {
         AwsBasicCredentials credentials = AwsBasicCredentials.create(
                 config.getAccessKey(),
                 config.getSecretKey()
         );
 
+        // 与客户端一致使用路径风格，否则 MinIO 等服务的预签名地址无法访问
         return S3Presigner.builder()
                 .region(Region.of(config.getRegion()))
                 .credentialsProvider(StaticCredentialsProvider.create(credentials))
                 .endpointOverride(URI.create(config.getEndpoint()))
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(true)
+                        .build())
                 .build();
     }
 
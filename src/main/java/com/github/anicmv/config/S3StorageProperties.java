@@ -1,10 +1,15 @@
 package com.github.anicmv.config;
 
+import com.github.anicmv.enums.KeyLayoutType;
+import com.github.anicmv.enums.PayloadChecksumType;
 import com.github.anicmv.enums.UploadStrategy;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +26,27 @@ public class S3StorageProperties {
     private UploadStrategy uploadStrategy = UploadStrategy.FIRST;
     private List<String> specificTargets;
     private Map<String, S3ServiceConfig> services;
+    private Executor executor = new Executor();
+    private Tracing tracing = new Tracing();
+    private HealthCheck health = new HealthCheck();
+    private HedgedRead hedgedRead = new HedgedRead();
+    private LocalCache localCache = new LocalCache();
+    private Conditional conditional = new Conditional();
+    private RetryPolicy retry = new RetryPolicy();
+    private KeyLayout keyLayout = new KeyLayout();
+    private IdGenerator idGenerator = new IdGenerator();
+    private Concurrency concurrency = new Concurrency();
+    private StreamUpload streamUpload = new StreamUpload();
+    private UploadMemory uploadMemory = new UploadMemory();
+    private BufferPool bufferPool = new BufferPool();
+    private Checksum checksum = new Checksum();
+    private ImageOptimization imageOptimization = new ImageOptimization();
+    private Reconcile reconcile = new Reconcile();
+    private BucketStats bucketStats = new BucketStats();
+    private BucketScan bucketScan = new BucketScan();
+    private Idempotency idempotency = new Idempotency();
+    private ResumableUpload resumableUpload = new ResumableUpload();
+    private DirectUpload directUpload = new DirectUpload();
 
     @Data
     public static class S3ServiceConfig {
@@ -36,5 +62,388 @@ public class S3StorageProperties {
         private boolean usePresignedUrl = false;
         // 预签名URL过期时间（秒）
         private int presignedUrlExpiry = 3600;
+        // 该服务的重试与超时策略，未配置时使用全局 retry 配置
+        private RetryPolicy retry;
+        // 该服务上传时发送的校验值，未配置时使用全局 checksum.algorithm
+        private PayloadChecksumType checksumAlgorithm;
+    }
+
+    /**
+     * 线程池配置：上传扇出、对冲读取与后台任务各用一个线程池，后台任务不占用请求路径的线程
+     */
+    @Data
+    public static class Executor {
+        // 扇出线程池核心线程数
+        private int coreSize = 10;
+        // 扇出线程池最大线程数
+        private int maxSize = 10;
+        // 扇出任务队列容量，排满后新的扇出直接返回 503，而不是无限排队
+        private int queueCapacity = 500;
+        // 对冲读取线程数上限，不排队：线程用尽时不再对冲，只等待已发出的请求
+        private int readThreads = 64;
+        // 后台任务（反熵修复、统计扫描、直传复制）线程数
+        private int backgroundThreads = 4;
+        // 后台任务队列容量
+        private int backgroundQueueCapacity = 1000;
+    }
+
+    /**
+     * 链路追踪配置
+     */
+    @Data
+    public static class Tracing {
+        // none（仅生成traceId，不导出Span）、file（写入本地JSON Lines文件）、otlp（推送到OTLP/HTTP采集器）
+        private String exporter = "none";
+        // exporter 为 file 时的输出文件
+        private String filePath = "logs/spans.jsonl";
+        // exporter 为 otlp 时的采集器地址
+        private String otlpEndpoint = "http://localhost:4318/v1/traces";
+        // 采样率，取值 [0, 1]
+        private double sampleRatio = 1.0;
+    }
+
+    /**
+     * 后端健康探测与摘除配置
+     */
+    @Data
+    public static class HealthCheck {
+        // 是否启用后台探测
+        private boolean enabled = true;
+        // 探测间隔
+        private Duration probeInterval = Duration.ofSeconds(5);
+        // 单次探测超时
+        private Duration probeTimeout = Duration.ofSeconds(2);
+        // EWMA平滑系数，越大越偏向最近的样本
+        private double ewmaAlpha = 0.3;
+        // 连续失败多少次后摘除
+        private int failureThreshold = 3;
+        // 摘除后多久进入半开试探
+        private Duration ejectDuration = Duration.ofSeconds(30);
+        // 半开状态下连续成功多少次后恢复
+        private int halfOpenSuccesses = 2;
+        // 计算读取（HEAD/GET）延迟分位数时保留的最近成功样本数
+        private int latencyWindow = 128;
+    }
+
+    /**
+     * 对冲读取配置：先请求最优副本，超过其观测分位延迟仍未返回时再请求下一个副本
+     */
+    @Data
+    public static class HedgedRead {
+        // 是否启用对冲读取，关闭时元数据查询回退为全部后端扇出
+        private boolean enabled = true;
+        // 触发对冲的延迟分位数
+        private double percentile = 0.95;
+        // 对冲等待时间下限，避免样本过少时过早对冲
+        private Duration minDelay = Duration.ofMillis(10);
+        // 尚无延迟样本时的对冲等待时间
+        private Duration defaultDelay = Duration.ofMillis(200);
+    }
+
+    /**
+     * 本地磁盘热对象缓存配置
+     */
+    @Data
+    public static class LocalCache {
+        // 是否启用，默认关闭
+        private boolean enabled = false;
+        // 缓存文件目录，启动时会清空
+        private String directory = "cache/objects";
+        // 缓存总容量
+        private DataSize maxSize = DataSize.ofMegabytes(512);
+        // 单个对象上限，超过的对象不缓存
+        private DataSize maxObjectSize = DataSize.ofMegabytes(16);
+        // 命中后超过该时长未核对ETag时，先向后端HEAD核对再返回
+        private Duration revalidateAfter = Duration.ofSeconds(30);
+        // 被淘汰的文件延迟删除的时间，避免正在发送的文件被删除
+        private Duration retireGrace = Duration.ofSeconds(60);
+    }
+
+    /**
+     * 条件请求配置
+     */
+    @Data
+    public static class Conditional {
+        // 是否缓存校验值，使 304 判断无需访问后端
+        private boolean validatorCacheEnabled = true;
+        // 校验值有效期，也是其他写入方修改对象后本实例可能返回过期 304 的最长时间
+        private Duration validatorTtl = Duration.ofSeconds(10);
+        // 最多缓存的校验值条目数
+        private int maxValidators = 100_000;
+    }
+
+    /**
+     * 后端重试与超时策略：指数退避加全抖动，重试受令牌桶预算限制
+     */
+    @Data
+    public static class RetryPolicy {
+        // 最大尝试次数（含首次）
+        private int maxAttempts = 3;
+        // 退避基准时间，第 n 次重试在 [0, base * 2^n) 内随机等待
+        private Duration baseDelay = Duration.ofMillis(100);
+        // 被限流时的退避基准时间
+        private Duration throttlingBaseDelay = Duration.ofMillis(500);
+        // 单次退避上限
+        private Duration maxDelay = Duration.ofSeconds(5);
+        // 单次尝试超时
+        private Duration attemptTimeout = Duration.ofSeconds(30);
+        // 整个调用（含全部重试和退避）超时
+        private Duration callTimeout = Duration.ofSeconds(90);
+        // 重试预算令牌桶容量
+        private int budgetCapacity = 500;
+        // 每次重试消耗的令牌
+        private int retryCost = 5;
+        // 因单次尝试超时而重试时消耗的令牌
+        private int timeoutCost = 10;
+        // 每次成功返还的令牌
+        private int successRefund = 1;
+    }
+
+    /**
+     * 存储键布局配置
+     */
+    @Data
+    public static class KeyLayout {
+        // 布局方式，默认沿用日期前缀
+        private KeyLayoutType type = KeyLayoutType.DATE;
+        // HASH_SHARDED 的分片数，决定分片号的十六进制位数
+        private int shardCount = 16;
+        // 是否兼容读取、删除和列出日期前缀布局下的旧键
+        private boolean legacyFallback = true;
+    }
+
+    /**
+     * 文件ID生成配置
+     */
+    @Data
+    public static class IdGenerator {
+        // 节点号（0-1023），多实例部署时每个实例必须不同
+        private int nodeId = 0;
+    }
+
+    /**
+     * 自适应并发限制配置，上传接口与每个后端各自独立调整上限
+     */
+    @Data
+    public static class Concurrency {
+        // 是否启用
+        private boolean enabled = true;
+        // 初始并发上限
+        private int initialLimit = 20;
+        // 并发上限下限
+        private int minLimit = 4;
+        // 并发上限上限
+        private int maxLimit = 200;
+        // 延迟容忍倍数，延迟超过基线的该倍数后开始收缩
+        private double rttTolerance = 1.5;
+        // 每次调整的平滑系数
+        private double smoothing = 0.2;
+        // 延迟基线EWMA的样本窗口
+        private int longWindow = 600;
+        // 请求失败时上限乘以该系数
+        private double backoffRatio = 0.9;
+    }
+
+    /**
+     * 原始请求体流式上传配置
+     */
+    @Data
+    public static class StreamUpload {
+        // 从请求体读取并分发给各后端的数据块大小，第一个数据块用于校验文件头
+        private DataSize chunkSize = DataSize.ofKilobytes(64);
+        // 每个后端最多缓冲的数据块数，单次上传占用的内存不超过 chunkSize * queueChunks * 后端数
+        private int queueChunks = 16;
+        // 读写任一端超过该时长没有进展时，认为该后端上传失败
+        private Duration stallTimeout = Duration.ofSeconds(30);
+    }
+
+    /**
+     * 上传内存预算配置
+     */
+    @Data
+    public static class UploadMemory {
+        // 是否启用
+        private boolean enabled = true;
+        // 所有上传请求同时占用的内存上限
+        private DataSize maxBytes = DataSize.ofMegabytes(256);
+        // 预算不足时的最长等待时间，超时返回 503
+        private Duration acquireTimeout = Duration.ofSeconds(2);
+    }
+
+    /**
+     * 直接内存缓冲池配置
+     */
+    @Data
+    public static class BufferPool {
+        // 缓冲区大小分级，流式上传的数据块与 multipart 文件缓存各用一级
+        private List<DataSize> sizeClasses = List.of(DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+        // 池中直接内存的上限，超过后临时分配堆缓冲区
+        private DataSize maxPooledBytes = DataSize.ofMegabytes(128);
+        // 记录未归还缓冲区的借出位置，用于测试中检查泄漏
+        private boolean leakDetection = false;
+    }
+
+    /**
+     * 上传完整性校验配置
+     */
+    @Data
+    public static class Checksum {
+        // 随 PUT 发送的校验值，在读取上传内容时计算一次，所有后端共用
+        private PayloadChecksumType algorithm = PayloadChecksumType.CRC32C;
+        // 是否对请求体做 SigV4 签名；关闭时使用 UNSIGNED-PAYLOAD，完整性由校验值保证，避免重复计算 SHA-256
+        private boolean payloadSigning = false;
+        // 流式上传无法预先给出校验值，开启时由SDK在请求末尾附带 CRC32C trailer
+        private boolean streamTrailer = true;
+    }
+
+    /**
+     * 上传前的无损图片优化配置
+     */
+    @Data
+    public static class ImageOptimization {
+        // 是否启用
+        private boolean enabled = false;
+        // 超过该大小的文件不做优化
+        private DataSize maxInputSize = DataSize.ofMegabytes(20);
+        // PNG 解压后像素数据的上限，防止解压炸弹
+        private DataSize maxDecodedSize = DataSize.ofMegabytes(64);
+        // 是否保留 ICC 颜色配置
+        private boolean keepIccProfile = true;
+        // PNG 重新压缩的 zlib 级别（0-9）
+        private int pngCompressionLevel = 9;
+        // 优化线程数，0 表示CPU核数的一半
+        private int threads = 0;
+        // 等待优化的最大任务数，超过后直接上传原文件
+        private int queueCapacity = 32;
+        // 单个文件的优化超时，超时后上传原文件
+        private Duration timeout = Duration.ofSeconds(5);
+    }
+
+    /**
+     * 后台反熵修复配置
+     */
+    @Data
+    public static class Reconcile {
+        // 是否启用
+        private boolean enabled = false;
+        // 两轮之间的间隔
+        private Duration interval = Duration.ofMinutes(10);
+        // 校验最近多少天的日期前缀
+        private int lookbackDays = 7;
+        // 干净的日期超过该时长后重新列出校验，用于发现后端被带外修改
+        private Duration fullSweepInterval = Duration.ofHours(24);
+        // Merkle 树每个节点的子节点数
+        private int treeFanout = 16;
+        // Merkle 树深度，叶子数为 treeFanout^treeDepth
+        private int treeDepth = 3;
+        // 是否比较 ETag；各后端 ETag 算法不同（例如服务端加密）时关闭，只比较大小
+        private boolean compareEtag = true;
+        // 同时进行的列表请求数
+        private int listParallelism = 4;
+        // 每轮最多修复的对象数
+        private int maxRepairsPerRun = 1000;
+        // 删除部分失败的墓碑保留时长
+        private Duration tombstoneTtl = Duration.ofDays(7);
+        // 只记录差异，不修复
+        private boolean dryRun = false;
+        // 脏前缀与墓碑的状态文件，为空时不保存
+        private String stateFile = "./data/reconcile-state.json";
+        // 状态文件写入间隔，墓碑在记录时立即写入
+        private Duration checkpointInterval = Duration.ofMinutes(1);
+    }
+
+    /**
+     * 桶统计配置
+     */
+    @Data
+    public static class BucketStats {
+        // 检查点文件，为空时不保存
+        private String checkpointFile = "./data/bucket-stats.json";
+        // 检查点写入间隔
+        private Duration checkpointInterval = Duration.ofMinutes(1);
+        // 是否定期全量扫描修正
+        private boolean scanEnabled = true;
+        // 全量扫描间隔
+        private Duration scanInterval = Duration.ofHours(24);
+        // 启动后首次扫描的延迟
+        private Duration initialScanDelay = Duration.ofSeconds(30);
+        // 已从检查点恢复时，启动后是否仍立即扫描
+        private boolean scanOnStartup = false;
+    }
+
+    /**
+     * 整桶并行扫描配置
+     */
+    @Data
+    public static class BucketScan {
+        // 每个后端同时进行的列表请求数
+        private int concurrencyPerBackend = 4;
+        // 每次列表请求返回的最大键数
+        private int pageSize = 1000;
+        // 等待消费者处理的最大页数，超过后列表任务阻塞
+        private int queuePages = 16;
+        // 按天而不是按月切分区间，适合单日对象很多的桶
+        private boolean partitionByDay = false;
+        // 键不以日期开头时，从该日期开始切分
+        private LocalDate earliestDate = LocalDate.of(2025, 1, 1);
+        // 扫描检查点目录
+        private String checkpointDirectory = "./data/scan";
+    }
+
+    /**
+     * 上传幂等键配置
+     */
+    @Data
+    public static class Idempotency {
+        // 是否启用
+        private boolean enabled = true;
+        // 携带幂等键的请求头
+        private String header = "Idempotency-Key";
+        // 成功响应的保存时长
+        private Duration ttl = Duration.ofHours(24);
+        // 最多记录的幂等键数
+        private int maxEntries = 100_000;
+        // 重复请求等待第一次请求完成的最长时间，超时返回 409
+        private Duration waitTimeout = Duration.ofSeconds(30);
+        // 过期条目清理间隔
+        private Duration purgeInterval = Duration.ofMinutes(1);
+    }
+
+    /**
+     * 断点续传配置
+     */
+    @Data
+    public static class ResumableUpload {
+        // 分块大小，即各后端分段上传的段大小，不能小于 S3 要求的 5MB；文件超过 10000 块时自动放大
+        private DataSize chunkSize = DataSize.ofMegabytes(8);
+        // 单个会话允许的最大总长度
+        private DataSize maxLength = DataSize.ofGigabytes(1);
+        // 会话在最后一次写入后保留的时长，过期后中止各后端的分段上传
+        private Duration ttl = Duration.ofHours(24);
+        // 会话状态保存目录
+        private String sessionDirectory = "./data/uploads";
+        // 过期会话清理间隔
+        private Duration sweepInterval = Duration.ofMinutes(10);
+    }
+
+    /**
+     * 预签名直传配置
+     */
+    @Data
+    public static class DirectUpload {
+        // 是否启用；启用后为每个后端创建预签名器，桶需要允许客户端来源的 CORS PUT
+        private boolean enabled = false;
+        // 预签名 PUT 地址的有效期
+        private Duration urlExpiry = Duration.ofMinutes(15);
+        // 地址过期后仍接受完成回调的时长，覆盖在有效期内开始的慢速上传
+        private Duration completionGrace = Duration.ofHours(1);
+        // 最多同时等待完成回调的直传数
+        private int maxPending = 10_000;
+        // 过期直传清理间隔，未完成回调的对象会被删除
+        private Duration sweepInterval = Duration.ofMinutes(10);
+        // 等待完成回调的直传记录保存目录
+        private String pendingDirectory = "./data/direct-uploads";
+        // 客户端上传的暂存前缀，校验通过后才复制到正式键；可在桶上为它配置过期的生命周期规则兜底清理
+        private String stagingPrefix = "_staging/direct/";
     }
 }
@@ -0,0 +1,72 @@
+package com.github.anicmv.config;
+
+import com.github.anicmv.tracing.FileSpanExporter;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * @author anicmv
+ * 链路追踪配置。storage.s3.tracing.exporter 可选:
+ * none（仅生成traceId，不导出Span）、file（写入本地JSON Lines文件）、otlp（推送到OTLP/HTTP采集器）。
+ */
+@Slf4j
+@Configuration
+public class TracingConfig {
+
+    public static final String INSTRUMENTATION_NAME = "com.github.anicmv.anibox-s3";
+
+    @Value("${spring.application.name:anibox-s3}")
+    private String serviceName;
+
+    @Bean(destroyMethod = "close")
+    public OpenTelemetrySdk openTelemetry(S3StorageProperties storageProperties) throws IOException {
+        S3StorageProperties.Tracing config = storageProperties.getTracing();
+        String exporter = config.getExporter();
+        double sampleRatio = config.getSampleRatio();
+        Resource resource = Resource.getDefault().merge(
+                Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), serviceName)));
+
+        SdkTracerProviderBuilder tracerProvider = SdkTracerProvider.builder()
+                .setResource(resource)
+                .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(sampleRatio)));
+
+        switch (exporter.toLowerCase()) {
+            case "file" -> tracerProvider.addSpanProcessor(
+                    BatchSpanProcessor.builder(new FileSpanExporter(Path.of(config.getFilePath()))).build());
+            case "otlp" -> tracerProvider.addSpanProcessor(
+                    BatchSpanProcessor.builder(OtlpHttpSpanExporter.builder().setEndpoint(config.getOtlpEndpoint()).build()).build());
+            default -> {
+                // 不导出Span，traceId 仍会生成并写入MDC
+            }
+        }
+        log.info("链路追踪初始化完成 - exporter: {}, 采样率: {}", exporter, sampleRatio);
+
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider.build())
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
+
+    @Bean
+    public Tracer tracer(OpenTelemetry openTelemetry) {
+        return openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+}
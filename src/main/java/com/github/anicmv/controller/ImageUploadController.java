@@ -3,18 +3,27 @@ package com.github.anicmv.controller;
 import com.github.anicmv.dto.delete.DeleteResponse;
 import com.github.anicmv.dto.file.FileInfoResponse;
 import com.github.anicmv.dto.file.FileListResponse;
+import com.github.anicmv.dto.health.HealthResponse;
 import com.github.anicmv.dto.rename.RenameRequest;
 import com.github.anicmv.dto.response.R;
+import com.github.anicmv.dto.upload.DirectUploadResponse;
 import com.github.anicmv.dto.upload.UploadResponse;
+import com.github.anicmv.dto.upload.UploadSessionResponse;
+import com.github.anicmv.service.DirectUploadService;
 import com.github.anicmv.service.FileValidationService;
 import com.github.anicmv.service.ImageUploadService;
+import com.github.anicmv.service.ObjectContentService;
+import com.github.anicmv.service.ResumableUploadService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -31,6 +40,15 @@ public class ImageUploadController {
     @Resource
     private FileValidationService fileValidationService;
 
+    @Resource
+    private ObjectContentService objectContentService;
+
+    @Resource
+    private ResumableUploadService resumableUploadService;
+
+    @Resource
+    private DirectUploadService directUploadService;
+
     @PostMapping(value = "/upload",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE)
@@ -40,9 +58,88 @@ public class ImageUploadController {
         return uploadService.uploadImage(file, request);
     }
 
+    /**
+     * 原始请求体上传，需要 Content-Length 和 Content-Type，请求体不落临时文件
+     */
+    @PutMapping("/objects/{name}")
+    public ResponseEntity<R<UploadResponse>> uploadObject(
+            @PathVariable String name,
+            HttpServletRequest request) throws IOException {
+        return uploadService.uploadStream(name, request);
+    }
+
+    /**
+     * 创建断点续传会话，需要 Upload-Length 请求头，返回 Location 和分块大小
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<R<UploadSessionResponse>> createUploadSession(
+            @RequestParam String name,
+            @RequestParam String contentType,
+            HttpServletRequest request) {
+        return resumableUploadService.create(name, contentType, request);
+    }
+
+    /**
+     * 查询断点续传会话已接收的字节数（Upload-Offset），同时响应 HEAD
+     */
+    @GetMapping("/uploads/{id}")
+    public ResponseEntity<R<UploadSessionResponse>> getUploadSession(@PathVariable String id) {
+        return resumableUploadService.status(id);
+    }
+
+    /**
+     * 从 Upload-Offset 处写入一个分块
+     */
+    @PatchMapping("/uploads/{id}")
+    public ResponseEntity<R<UploadSessionResponse>> patchUploadSession(
+            @PathVariable String id,
+            HttpServletRequest request) throws IOException {
+        return resumableUploadService.patch(id, request);
+    }
+
+    /**
+     * 全部分块接收后在各后端合并
+     */
+    @PostMapping("/uploads/{id}/complete")
+    public ResponseEntity<R<UploadResponse>> completeUploadSession(@PathVariable String id) {
+        return resumableUploadService.complete(id);
+    }
+
+    /**
+     * 取消断点续传会话，中止各后端的分段上传
+     */
+    @DeleteMapping("/uploads/{id}")
+    public ResponseEntity<R<Void>> cancelUploadSession(@PathVariable String id) {
+        return resumableUploadService.cancel(id);
+    }
+
+    /**
+     * 签发直传存储桶的预签名 PUT 地址，上传时必须携带返回的请求头
+     */
+    @PostMapping("/direct-uploads")
+    public ResponseEntity<R<DirectUploadResponse>> createDirectUpload(
+            @RequestParam String name,
+            @RequestParam String contentType,
+            @RequestParam long size,
+            HttpServletRequest request) {
+        return directUploadService.create(name, contentType, size, request);
+    }
+
+    /**
+     * 直传完成回调：核对对象后登记，并复制到其余后端
+     */
+    @PostMapping("/direct-uploads/{id}/complete")
+    public ResponseEntity<R<UploadResponse>> completeDirectUpload(@PathVariable String id) {
+        return directUploadService.complete(id);
+    }
+
     @GetMapping("/health")
-    public ResponseEntity<R<String>> health() {
-        return ResponseEntity.ok(R.success("服务运行正常", "OK"));
+    public ResponseEntity<R<HealthResponse>> health() {
+        HealthResponse health = uploadService.getHealth();
+        if ("DOWN".equals(health.getStatus())) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(R.success("没有可用的存储服务", health));
+        }
+        return ResponseEntity.ok(R.success("服务运行正常", health));
     }
 
     @GetMapping("/info")
@@ -68,22 +165,39 @@ public class ImageUploadController {
     }
 
     /**
-     * 查询图片信息
+     * 查询图片信息，consistency=all 时查询全部后端，否则对冲读取最快的副本。支持 If-None-Match / If-Modified-Since
      */
     @GetMapping("/{fileName}")
-    public ResponseEntity<R<FileInfoResponse>> getFileInfo(@PathVariable String fileName, @RequestParam String prefix) {
-        return uploadService.getFileInfo(fileName, prefix);
+    public ResponseEntity<R<FileInfoResponse>> getFileInfo(
+            @PathVariable String fileName,
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "any") String consistency,
+            HttpServletRequest request) {
+        return uploadService.getFileInfo(fileName, prefix, consistency, request);
+    }
+
+    /**
+     * 读取图片内容，从最优副本流式返回，支持 Range 请求
+     */
+    @GetMapping("/{fileName}/content")
+    public void getContent(
+            @PathVariable String fileName,
+            @RequestParam String prefix,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        objectContentService.streamContent(fileName, prefix, request, response);
     }
 
     /**
-     * 列出图片
+     * 列出图片，响应带弱 ETag，支持 If-None-Match
      */
     @GetMapping("/list")
     public ResponseEntity<R<FileListResponse>> listFiles(
             @RequestParam String prefix,
             @RequestParam(defaultValue = "20") int limit,
-            @RequestParam(required = false) String token) {
-        return uploadService.listFiles(prefix, limit, token);
+            @RequestParam(required = false) String token,
+            HttpServletRequest request) {
+        return uploadService.listFiles(prefix, limit, token, request);
     }
 
     /**
@@ -111,8 +225,9 @@ public class ImageUploadController {
 
 
     @GetMapping("/bucket-stats")
-    public ResponseEntity<R<Object>> getBucketStatistics(@RequestParam String bucketName) {
-        Object stats = uploadService.getBucketStatistics(bucketName);
+    public ResponseEntity<R<Object>> getBucketStatistics(@RequestParam String bucketName,
+                                                        @RequestParam(required = false) String date) {
+        Object stats = uploadService.getBucketStatistics(bucketName, date);
         return ResponseEntity.ok(R.success("桶统计信息", stats));
     }
 
@@ -0,0 +1,29 @@
+package com.github.anicmv.direct;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.persist.JsonFileStore;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author anicmv
+ * 等待完成回调的直传的持久化：每个直传一个 JSON 文件，先写临时文件再原子替换。
+ * 重启后恢复，客户端仍可完成回调，过期的直传仍会被清理；写入失败只记录日志，暂存对象由暂存前缀的生命周期规则兜底清理。
+ * 并发的完成回调与过期清理通过 {@link #remove} 的返回值保证只有一个继续执行。
+ */
+@Component
+public class DirectUploadStore extends JsonFileStore<PendingDirectUpload> {
+
+    public DirectUploadStore() {
+        super(PendingDirectUpload.class, "直传记录");
+    }
+
+    @Override
+    protected String directory(S3StorageProperties storageProperties) {
+        return storageProperties.getDirectUpload().getPendingDirectory();
+    }
+
+    @Override
+    protected String idOf(PendingDirectUpload upload) {
+        return upload.id();
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.anicmv.direct;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * @author anicmv
+ * 已签发、等待完成回调的直传。客户端上传到 stagingKey，校验通过后复制到 storageKey；
+ * replicas 为完成后需要复制到的其余后端
+ */
+public record PendingDirectUpload(String id, String originalFilename, String fileName, String logicalKey,
+                                  String storageKey, String stagingKey, String contentType, long length,
+                                  String serviceName, List<String> replicas, Instant expiresAt) {
+
+    public boolean expired(Instant now) {
+        return expiresAt.isBefore(now);
+    }
+}
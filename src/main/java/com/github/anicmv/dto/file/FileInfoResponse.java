@@ -23,7 +23,8 @@ public class FileInfoResponse {
     private String contentType;
     private LocalDateTime uploadTime;
     private List<FileListResponse.ServiceFileInfo> serviceInfos;
-    private boolean existsInAllServices;
+    // 仅在查询了全部后端（consistency=all）时返回
+    private Boolean existsInAllServices;
 }
 
 
@@ -1,9 +1,12 @@
 package com.github.anicmv.dto.file;
 
+import java.time.Instant;
 import java.util.List;
 
 /**
  * @author anicmv
+ * eTag 为根据本页对象计算的弱 ETag，lastModified 为本页对象中最新的修改时间
  */
-public record FileListResult(List<FileListResponse.FileItem> files, int totalCount, boolean hasMore, String nextToken) {
+public record FileListResult(List<FileListResponse.FileItem> files, int totalCount, boolean hasMore, String nextToken,
+                             String eTag, Instant lastModified) {
 }
\ No newline at end of file
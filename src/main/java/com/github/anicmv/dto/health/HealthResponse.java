@@ -0,0 +1,24 @@
+package com.github.anicmv.dto.health;
+
+import com.github.anicmv.health.BackendHealthSnapshot;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author anicmv
+ * 健康检查响应：UP 表示全部后端可路由，DEGRADED 表示部分被摘除，DOWN 表示没有可路由的后端
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HealthResponse {
+    private String status;
+    private int healthyCount;
+    private int totalCount;
+    private List<BackendHealthSnapshot> backends;
+}
@@ -0,0 +1,28 @@
+package com.github.anicmv.dto.upload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * @author anicmv
+ * @description 直传存储桶的预签名地址
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectUploadResponse {
+    private String uploadId;
+    private String fileName;
+    private String serviceName;
+    private String method;
+    private String url;
+    // 客户端上传时必须原样携带的请求头，参与签名
+    private Map<String, String> headers;
+    private Instant expiresAt;
+}
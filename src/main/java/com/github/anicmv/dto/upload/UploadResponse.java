@@ -42,5 +42,7 @@ public class UploadResponse {
         private int successCount;
         private int failureCount;
         private long uploadTimeMs;
+        // 图片优化节省的字节数
+        private long bytesSaved;
     }
 }
\ No newline at end of file
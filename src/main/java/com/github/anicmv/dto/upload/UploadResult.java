@@ -10,7 +10,7 @@ import java.util.stream.Collectors;
  * @date 2025/8/9 15:56
  * @description 上传结果
  */
-public record UploadResult(String fileName, List<ServiceUploadResult> results, long uploadTimeMs) {
+public record UploadResult(String fileName, List<ServiceUploadResult> results, long uploadTimeMs, long bytesSaved) {
 
     public boolean allSuccessfulUpload() {
         return results.stream().allMatch(ServiceUploadResult::success);
@@ -0,0 +1,26 @@
+package com.github.anicmv.dto.upload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * @author anicmv
+ * @description 断点续传会话状态
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionResponse {
+    private String uploadId;
+    private String fileName;
+    private long length;
+    private long offset;
+    // 除最后一块外，每次 PATCH 必须正好发送该字节数
+    private long chunkSize;
+    private Instant expiresAt;
+}
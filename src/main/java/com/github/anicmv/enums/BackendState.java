@@ -0,0 +1,14 @@
+package com.github.anicmv.enums;
+
+/**
+ * @author anicmv
+ * 存储后端的健康状态，用于路由时的摘除与恢复。
+ */
+public enum BackendState {
+    // 正常参与路由
+    HEALTHY,
+    // 连续失败后被摘除，不参与路由
+    EJECTED,
+    // 摘除期满后的试探状态，仅接受探测请求，探测成功足够次数后恢复
+    HALF_OPEN
+}
@@ -0,0 +1,12 @@
+package com.github.anicmv.enums;
+
+/**
+ * @author anicmv
+ * 对象存储键的布局方式。
+ */
+public enum KeyLayoutType {
+    // 日期前缀：yyyyMMdd + 文件名，同一天的对象落在同一个字典序区间
+    DATE,
+    // 哈希分片：_s/分片号/yyyyMMdd + 文件名，把同一天的写入分散到多个前缀
+    HASH_SHARDED
+}
@@ -0,0 +1,16 @@
+package com.github.anicmv.enums;
+
+/**
+ * @author anicmv
+ * 上传时随请求发送给后端的完整性校验值。
+ */
+public enum PayloadChecksumType {
+    // 不发送校验值
+    NONE,
+    // x-amz-checksum-crc32c，计算开销最小
+    CRC32C,
+    // x-amz-checksum-sha256
+    SHA256,
+    // Content-MD5，兼容不支持 x-amz-checksum-* 的后端
+    MD5
+}
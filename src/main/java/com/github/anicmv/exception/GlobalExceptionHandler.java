@@ -3,6 +3,7 @@ package com.github.anicmv.exception;
 import com.github.anicmv.dto.response.R;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -42,6 +43,48 @@ public class GlobalExceptionHandler {
                 .body(R.error("存储服务暂时不可用，请稍后重试", e.getErrorCode()));
     }
 
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<R<Void>> handleServiceOverloadedException(
+            ServiceOverloadedException e, HttpServletRequest request) {
+
+        log.warn("请求被并发限制拒绝: {} - URI: {}", e.getMessage(), request.getRequestURI());
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(R.error("服务繁忙，请稍后重试", e.getErrorCode()));
+    }
+
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<R<Void>> handleIdempotencyConflictException(
+            IdempotencyConflictException e, HttpServletRequest request) {
+
+        log.warn("幂等键冲突: {} - URI: {}", e.getMessage(), request.getRequestURI());
+
+        if (IdempotencyConflictException.IN_PROGRESS.equals(e.getErrorCode())) {
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(R.error(e.getMessage(), e.getErrorCode()));
+        }
+        return ResponseEntity
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(R.error(e.getMessage(), e.getErrorCode()));
+    }
+
+    @ExceptionHandler(UploadSessionException.class)
+    public ResponseEntity<R<Void>> handleUploadSessionException(
+            UploadSessionException e, HttpServletRequest request) {
+
+        log.warn("断点续传请求与会话状态不符: {} - URI: {}", e.getMessage(), request.getRequestURI());
+
+        HttpStatus status = UploadSessionException.NOT_FOUND.equals(e.getErrorCode())
+                ? HttpStatus.NOT_FOUND : HttpStatus.CONFLICT;
+        return ResponseEntity
+                .status(status)
+                .body(R.error(e.getMessage(), e.getErrorCode()));
+    }
+
     @ExceptionHandler(StorageConfigurationException.class)
     public ResponseEntity<R<Void>> handleStorageConfigurationException(
             StorageConfigurationException e, HttpServletRequest request) {
@@ -0,0 +1,21 @@
+package com.github.anicmv.exception;
+
+/**
+ * @author anicmv
+ * Exception class for requests whose Idempotency-Key cannot be honoured.
+ * This exception is thrown when the key was already used for a different request
+ * ("IDEMPOTENCY_KEY_REUSED") or when the first attempt with the same key is still
+ * running after the wait timeout ("IDEMPOTENCY_IN_PROGRESS"). It extends
+ * {@link ImageUploadException}.
+ *
+ * @see ImageUploadException
+ */
+public class IdempotencyConflictException extends ImageUploadException {
+
+    public static final String KEY_REUSED = "IDEMPOTENCY_KEY_REUSED";
+    public static final String IN_PROGRESS = "IDEMPOTENCY_IN_PROGRESS";
+
+    public IdempotencyConflictException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+}
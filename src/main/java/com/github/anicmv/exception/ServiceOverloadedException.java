@@ -0,0 +1,16 @@
+package com.github.anicmv.exception;
+
+/**
+ * @author anicmv
+ * Exception class for requests shed by the adaptive concurrency limiter.
+ * This exception is thrown before any backend work starts when the number of
+ * in-flight requests has reached the current limit. It extends {@link ImageUploadException}
+ * and includes the error code "SERVICE_OVERLOADED".
+ *
+ * @see ImageUploadException
+ */
+public class ServiceOverloadedException extends ImageUploadException {
+    public ServiceOverloadedException(String message) {
+        super(message, "SERVICE_OVERLOADED");
+    }
+}
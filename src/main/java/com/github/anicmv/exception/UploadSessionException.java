@@ -0,0 +1,24 @@
+package com.github.anicmv.exception;
+
+/**
+ * @author anicmv
+ * Exception class for resumable upload requests that do not match the session state.
+ * This exception is thrown when the session does not exist or has expired
+ * ("UPLOAD_SESSION_NOT_FOUND"), when the Upload-Offset does not match the bytes
+ * already received ("UPLOAD_OFFSET_MISMATCH"), when another request is writing the
+ * same session ("UPLOAD_SESSION_LOCKED"), or when the session is finalized before all
+ * bytes were received ("UPLOAD_INCOMPLETE"). It extends {@link ImageUploadException}.
+ *
+ * @see ImageUploadException
+ */
+public class UploadSessionException extends ImageUploadException {
+
+    public static final String NOT_FOUND = "UPLOAD_SESSION_NOT_FOUND";
+    public static final String OFFSET_MISMATCH = "UPLOAD_OFFSET_MISMATCH";
+    public static final String LOCKED = "UPLOAD_SESSION_LOCKED";
+    public static final String INCOMPLETE = "UPLOAD_INCOMPLETE";
+
+    public UploadSessionException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.anicmv.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.config.RateLimitProperties;
+import com.github.anicmv.dto.response.R;
+import com.github.anicmv.ratelimit.ClientRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author anicmv
+ * 上传与修改接口（POST/PUT/PATCH/DELETE）的按客户端限流，在读取请求体和解析 multipart 之前执行。
+ * 客户端按 {@link ClientRateLimiter#clientKey} 识别（API Key 或客户端IP），
+ * 字节数按 Content-Length 计算；没有 Content-Length 的请求体（chunked）按实际读取的字节数在请求结束后计入，
+ * 原始请求体按读取量，multipart 按解析出的各部分大小。超限时返回 429 和 Retry-After。
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LIMITED_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    @Resource
+    private RateLimitProperties properties;
+
+    @Resource
+    private ClientRateLimiter rateLimiter;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !properties.isEnabled() || !LIMITED_METHODS.contains(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        String clientKey = rateLimiter.clientKey(request);
+        long contentLength = request.getContentLengthLong();
+        ClientRateLimiter.Decision decision = rateLimiter.tryAcquire(clientKey, Math.max(0, contentLength));
+        if (decision.allowed()) {
+            if (contentLength >= 0) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            MeteredRequest metered = new MeteredRequest(request);
+            try {
+                filterChain.doFilter(metered, response);
+            } finally {
+                rateLimiter.charge(clientKey, metered.bytesRead());
+            }
+            return;
+        }
+
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(decision.retryAfterNanos() + 999_999_999));
+        meterRegistry.counter("storage.ratelimit.rejected", "bucket", decision.bucket()).increment();
+        log.warn("请求被限流 - 客户端: {}, 原因: {}, Retry-After: {}s, URI: {}",
+                clientKey, decision.bucket(), retryAfterSeconds, request.getRequestURI());
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), R.error("请求过于频繁，请稍后重试", "RATE_LIMITED"));
+    }
+
+    /**
+     * 统计实际读取的请求体字节数。multipart 由容器直接解析底层请求，读取量按解析出的各部分大小计算
+     */
+    static final class MeteredRequest extends HttpServletRequestWrapper {
+
+        private final AtomicLong bytesRead = new AtomicLong();
+        private ServletInputStream inputStream;
+        private boolean partsCounted;
+
+        MeteredRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        long bytesRead() {
+            return bytesRead.get();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new CountingInputStream(super.getInputStream(), bytesRead);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public Collection<Part> getParts() throws IOException, ServletException {
+            Collection<Part> parts = super.getParts();
+            if (!partsCounted) {
+                partsCounted = true;
+                parts.forEach(part -> bytesRead.addAndGet(part.getSize()));
+            }
+            return parts;
+        }
+    }
+
+    private static final class CountingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+        private final AtomicLong bytesRead;
+
+        CountingInputStream(ServletInputStream delegate, AtomicLong bytesRead) {
+            this.delegate = delegate;
+            this.bytesRead = bytesRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                bytesRead.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int n = delegate.read(b, off, len);
+            if (n > 0) {
+                bytesRead.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
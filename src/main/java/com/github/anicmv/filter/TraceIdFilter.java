@@ -0,0 +1,110 @@
+package com.github.anicmv.filter;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceId;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.sdk.trace.IdGenerator;
+import jakarta.annotation.Resource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * @author anicmv
+ * 为每个请求分配或沿用traceId：优先解析W3C traceparent，其次沿用 X-Trace-Id，否则新建。
+ * traceId 写入MDC（日志格式中的 %X{traceId}）并通过 X-Trace-Id 响应头返回，同时开启请求的SERVER Span。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TraceIdFilter extends OncePerRequestFilter {
+
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+    public static final String MDC_TRACE_ID = "traceId";
+
+    private static final TextMapGetter<HttpServletRequest> REQUEST_GETTER = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(HttpServletRequest request) {
+            return Collections.list(request.getHeaderNames());
+        }
+
+        @Override
+        public String get(HttpServletRequest request, String key) {
+            return request == null ? null : request.getHeader(key);
+        }
+    };
+
+    @Resource
+    private OpenTelemetry openTelemetry;
+
+    @Resource
+    private Tracer tracer;
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        Span span = tracer.spanBuilder("HTTP " + request.getMethod())
+                .setParent(extractParent(request))
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute("http.request.method", request.getMethod())
+                .setAttribute("url.path", request.getRequestURI())
+                .startSpan();
+
+        String traceId = span.getSpanContext().getTraceId();
+        MDC.put(MDC_TRACE_ID, traceId);
+        response.setHeader(TRACE_ID_HEADER, traceId);
+
+        try (Scope ignored = span.makeCurrent()) {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.setAttribute("http.response.status_code", response.getStatus());
+            if (response.getStatus() >= 500) {
+                span.setStatus(StatusCode.ERROR);
+            }
+            span.end();
+            MDC.remove(MDC_TRACE_ID);
+        }
+    }
+
+    private Context extractParent(HttpServletRequest request) {
+        Context extracted = openTelemetry.getPropagators().getTextMapPropagator()
+                .extract(Context.root(), request, REQUEST_GETTER);
+        if (Span.fromContext(extracted).getSpanContext().isValid()) {
+            return extracted;
+        }
+
+        String traceId = request.getHeader(TRACE_ID_HEADER);
+        if (traceId != null) {
+            traceId = traceId.trim().toLowerCase(Locale.ROOT);
+            if (TraceId.isValid(traceId)) {
+                SpanContext remote = SpanContext.createFromRemoteParent(traceId,
+                        IdGenerator.random().generateSpanId(), TraceFlags.getSampled(), TraceState.getDefault());
+                return Context.root().with(Span.wrap(remote));
+            }
+        }
+        return Context.root();
+    }
+}
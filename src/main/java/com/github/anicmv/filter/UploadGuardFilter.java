@@ -0,0 +1,97 @@
+package com.github.anicmv.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.dto.response.R;
+import com.github.anicmv.service.FileValidationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * @author anicmv
+ * 上传请求的预检，在请求体被读取和 multipart 解析之前执行：
+ * Content-Length 超过 storage.validation 的限制时返回 413，原始请求体上传缺少 Content-Length 返回 411、类型不允许返回 415，
+ * multipart 请求缺少 boundary 返回 400。拒绝时带 Connection: close，容器不再接收剩余的请求体。
+ * 没有 Content-Length 的分块 multipart 请求由 {@link com.github.anicmv.config.MultipartLimitConfig} 设置的容器上限在传输过程中中止。
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class UploadGuardFilter extends OncePerRequestFilter {
+
+    private static final String RAW_UPLOAD_PATH = "/objects/";
+
+    @Resource
+    private FileValidationService fileValidationService;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) && !"PUT".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        String contentType = request.getContentType();
+        boolean multipart = contentType != null
+                && contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.MULTIPART_FORM_DATA_VALUE);
+        boolean rawUpload = "PUT".equals(request.getMethod()) && request.getServletPath().startsWith(RAW_UPLOAD_PATH);
+        long contentLength = request.getContentLengthLong();
+
+        if ((multipart || rawUpload) && contentLength > fileValidationService.getMaxRequestSize(multipart)) {
+            reject(request, response, HttpStatus.PAYLOAD_TOO_LARGE, "FILE_SIZE_EXCEEDED",
+                    String.format("上传文件大小超出限制，最大 %.2f MB", fileValidationService.getMaxFileSize() / 1024.0 / 1024.0));
+            return;
+        }
+        if (multipart && !contentType.toLowerCase(Locale.ROOT).contains("boundary=")) {
+            reject(request, response, HttpStatus.BAD_REQUEST, "MULTIPART_ERROR", "文件上传格式错误");
+            return;
+        }
+        if (rawUpload) {
+            if (contentLength < 0) {
+                reject(request, response, HttpStatus.LENGTH_REQUIRED, "FILE_VALIDATION_ERROR", "缺少 Content-Length");
+                return;
+            }
+            if (!fileValidationService.isAllowedContentType(contentType)) {
+                reject(request, response, HttpStatus.UNSUPPORTED_MEDIA_TYPE, "FILE_VALIDATION_ERROR",
+                        "不支持的文件类型: " + contentType);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                        String errorCode, String message) throws IOException {
+        meterRegistry.counter("storage.upload.rejected", "status", String.valueOf(status.value())).increment();
+        log.warn("上传请求预检未通过: {} - Content-Length: {}, Content-Type: {}, URI: {}",
+                message, request.getContentLengthLong(), request.getContentType(), request.getRequestURI());
+
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), R.error(message, errorCode));
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.anicmv.health;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.enums.BackendState;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+
+/**
+ * @author anicmv
+ * 单个存储后端的健康状态机，记录EWMA延迟与错误率。
+ * HEALTHY --连续失败达到阈值--> EJECTED --摘除期满--> HALF_OPEN --探测连续成功--> HEALTHY，
+ * HALF_OPEN 期间任意一次失败会重新摘除。
+ */
+@Slf4j
+public class BackendHealth {
+
+    private final String serviceName;
+    private final S3StorageProperties.HealthCheck config;
+
+    private BackendState state = BackendState.HEALTHY;
+    private double ewmaLatencyMs = -1;
+    private double ewmaErrorRate = 0;
+    private int consecutiveFailures = 0;
+    private int halfOpenSuccesses = 0;
+    private long ejectedAtMillis = 0;
+    private long lastCheckedAtMillis = 0;
+    private String lastError;
+
+    // 只记录 HEAD/GET，用于对冲读取的延迟阈值；PUT、COPY、LIST 的耗时与读取无关。直方图自带锁，不占用状态机的锁
+    private final LatencyHistogram readLatency;
+
+    public BackendHealth(String serviceName, S3StorageProperties.HealthCheck config) {
+        this.serviceName = serviceName;
+        this.config = config;
+        this.readLatency = new LatencyHistogram(config.getLatencyWindow());
+    }
+
+    public synchronized void recordSuccess(long latencyNanos) {
+        updateEwma(latencyNanos, 0);
+        consecutiveFailures = 0;
+        if (state == BackendState.HALF_OPEN && ++halfOpenSuccesses >= config.getHalfOpenSuccesses()) {
+            transition(BackendState.HEALTHY);
+        }
+    }
+
+    public synchronized void recordFailure(long latencyNanos, String error) {
+        updateEwma(latencyNanos, 1);
+        lastError = error;
+        consecutiveFailures++;
+        if (state == BackendState.HALF_OPEN
+                || (state == BackendState.HEALTHY && consecutiveFailures >= config.getFailureThreshold())) {
+            ejectedAtMillis = System.currentTimeMillis();
+            transition(BackendState.EJECTED);
+        }
+    }
+
+    /**
+     * 摘除期满时进入半开状态，返回当前是否需要（或允许）探测
+     */
+    public synchronized boolean prepareProbe() {
+        if (state == BackendState.EJECTED
+                && System.currentTimeMillis() - ejectedAtMillis >= config.getEjectDuration().toMillis()) {
+            halfOpenSuccesses = 0;
+            transition(BackendState.HALF_OPEN);
+        }
+        return state != BackendState.EJECTED;
+    }
+
+    public synchronized boolean isRoutable() {
+        return state == BackendState.HEALTHY;
+    }
+
+    /**
+     * 路由评分，越小越好：EWMA延迟按错误率加权惩罚，尚无样本的后端视为0延迟以便尽快获得样本
+     */
+    public synchronized double score() {
+        double latency = ewmaLatencyMs < 0 ? 0 : ewmaLatencyMs;
+        return latency * (1 + 10 * ewmaErrorRate);
+    }
+
+    /**
+     * 记录一次成功读取（HEAD/GET 首字节）的延迟
+     */
+    public void recordReadLatency(long latencyNanos) {
+        readLatency.record(latencyNanos);
+    }
+
+    /**
+     * 最近成功读取延迟的分位数（纳秒），没有样本时返回 -1
+     */
+    public long readLatencyPercentileNanos(double percentile) {
+        return readLatency.percentileNanos(percentile);
+    }
+
+    public synchronized BackendHealthSnapshot snapshot() {
+        return new BackendHealthSnapshot(serviceName, state,
+                ewmaLatencyMs < 0 ? null : ewmaLatencyMs, ewmaErrorRate, consecutiveFailures, lastError,
+                lastCheckedAtMillis == 0 ? null : Instant.ofEpochMilli(lastCheckedAtMillis));
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    private void updateEwma(long latencyNanos, int error) {
+        double alpha = config.getEwmaAlpha();
+        double latencyMs = latencyNanos / 1_000_000.0;
+        ewmaLatencyMs = ewmaLatencyMs < 0 ? latencyMs : alpha * latencyMs + (1 - alpha) * ewmaLatencyMs;
+        ewmaErrorRate = alpha * error + (1 - alpha) * ewmaErrorRate;
+        lastCheckedAtMillis = System.currentTimeMillis();
+    }
+
+    private void transition(BackendState next) {
+        if (state != next) {
+            log.warn("存储后端状态变更: {} {} -> {}, 连续失败: {}, 最近错误: {}",
+                    serviceName, state, next, consecutiveFailures, lastError);
+            state = next;
+        }
+    }
+}
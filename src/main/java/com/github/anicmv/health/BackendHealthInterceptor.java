@@ -0,0 +1,79 @@
+package com.github.anicmv.health;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+import java.util.Set;
+
+/**
+ * @author anicmv
+ * 将每次S3调用的耗时与结果反馈给 {@link BackendHealthTracker}。
+ * 4xx 说明后端能正常应答，按成功计；5xx、超时和连接错误按失败计；被主动取消的调用不计入。
+ * HEAD/GET 的耗时（GET 为收到响应头的时间）另外记入读取延迟，作为对冲读取的阈值。
+ */
+public class BackendHealthInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> START_NANOS = new ExecutionAttribute<>("AniboxHealthStartNanos");
+    private static final Set<String> READ_OPERATIONS = Set.of("HeadObject", "GetObject");
+
+    private final String serviceName;
+    private final BackendHealthTracker healthTracker;
+
+    public BackendHealthInterceptor(String serviceName, BackendHealthTracker healthTracker) {
+        this.serviceName = serviceName;
+        this.healthTracker = healthTracker;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        Long start = executionAttributes.getAttribute(START_NANOS);
+        if (start != null) {
+            recordSuccess(System.nanoTime() - start, executionAttributes);
+        }
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Long start = executionAttributes.getAttribute(START_NANOS);
+        if (start == null) {
+            return;
+        }
+        Throwable exception = context.exception();
+        if (isCancellation(exception)) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (exception instanceof AwsServiceException serviceException && serviceException.statusCode() < 500) {
+            recordSuccess(elapsed, executionAttributes);
+        } else {
+            healthTracker.get(serviceName).recordFailure(elapsed, exception.getMessage());
+        }
+    }
+
+    private void recordSuccess(long elapsedNanos, ExecutionAttributes executionAttributes) {
+        BackendHealth health = healthTracker.get(serviceName);
+        health.recordSuccess(elapsedNanos);
+        if (READ_OPERATIONS.contains(executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME))) {
+            health.recordReadLatency(elapsedNanos);
+        }
+    }
+
+    private static boolean isCancellation(Throwable exception) {
+        for (Throwable t = exception; t != null; t = t.getCause()) {
+            if (t instanceof AbortedException || t instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
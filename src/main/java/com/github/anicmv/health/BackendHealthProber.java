@@ -0,0 +1,87 @@
+package com.github.anicmv.health;
+
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author anicmv
+ * 后台健康探测：定期对每个启用的后端执行 HeadBucket。
+ * 探测结果与业务请求一样经由 {@link BackendHealthInterceptor} 记录，
+ * 因此这里只负责产生流量以及驱动摘除期满的后端进入半开状态。
+ */
+@Slf4j
+@Component
+public class BackendHealthProber {
+
+    @Resource
+    private S3ClientManager clientManager;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private BackendHealthTracker healthTracker;
+
+    private final ExecutorService probeExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "s3-health-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Scheduled(initialDelayString = "${storage.s3.health.probe-interval:5s}",
+            fixedDelayString = "${storage.s3.health.probe-interval:5s}")
+    public void probeAll() {
+        S3StorageProperties.HealthCheck config = storageProperties.getHealth();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        List<CompletableFuture<Void>> probes = new ArrayList<>();
+        for (Map.Entry<String, S3Client> entry : clientManager.getAllEnabledClients().entrySet()) {
+            String serviceName = entry.getKey();
+            if (!healthTracker.get(serviceName).prepareProbe()) {
+                continue;
+            }
+            probes.add(CompletableFuture.runAsync(() -> probe(serviceName, entry.getValue(), config), probeExecutor));
+        }
+
+        try {
+            CompletableFuture.allOf(probes.toArray(new CompletableFuture[0]))
+                    .get(config.getProbeTimeout().toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("健康探测未全部按时完成: {}", e.getMessage());
+        }
+    }
+
+    private void probe(String serviceName, S3Client client, S3StorageProperties.HealthCheck config) {
+        S3StorageProperties.S3ServiceConfig serviceConfig = storageProperties.getServices().get(serviceName);
+        try {
+            client.headBucket(request -> request
+                    .bucket(serviceConfig.getBucket())
+                    .overrideConfiguration(o -> o.apiCallTimeout(config.getProbeTimeout())));
+        } catch (Exception e) {
+            log.debug("健康探测失败: {} - {}", serviceName, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+    }
+}
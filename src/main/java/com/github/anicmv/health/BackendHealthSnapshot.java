@@ -0,0 +1,14 @@
+package com.github.anicmv.health;
+
+import com.github.anicmv.enums.BackendState;
+
+import java.time.Instant;
+
+/**
+ * @author anicmv
+ * 某一时刻的后端健康快照，用于 /health 展示
+ */
+public record BackendHealthSnapshot(String serviceName, BackendState state, Double ewmaLatencyMs,
+                                    double errorRate, int consecutiveFailures, String lastError,
+                                    Instant lastCheckedAt) {
+}
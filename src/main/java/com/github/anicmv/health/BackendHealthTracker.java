@@ -0,0 +1,58 @@
+package com.github.anicmv.health;
+
+import com.github.anicmv.config.S3StorageProperties;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author anicmv
+ * 汇总所有存储后端的健康状态，提供路由所需的可用性判断与按评分排序。
+ * 状态由每个 S3Client 上的 {@link BackendHealthInterceptor} 被动更新，
+ * 空闲或已摘除的后端由 {@link BackendHealthProber} 主动探测。
+ */
+@Component
+public class BackendHealthTracker {
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    private final Map<String, BackendHealth> backends = new ConcurrentHashMap<>();
+
+    public BackendHealth get(String serviceName) {
+        return backends.computeIfAbsent(serviceName,
+                name -> new BackendHealth(name, storageProperties.getHealth()));
+    }
+
+    public boolean isRoutable(String serviceName) {
+        return get(serviceName).isRoutable();
+    }
+
+    /**
+     * 在候选服务中筛选可路由的后端，并按评分从优到劣排序
+     */
+    public List<String> rankHealthy(Iterable<String> serviceNames) {
+        List<BackendHealth> candidates = new ArrayList<>();
+        for (String serviceName : serviceNames) {
+            BackendHealth health = get(serviceName);
+            if (health.isRoutable()) {
+                candidates.add(health);
+            }
+        }
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble(BackendHealth::score))
+                .map(BackendHealth::getServiceName)
+                .toList();
+    }
+
+    public List<BackendHealthSnapshot> snapshots(Iterable<String> serviceNames) {
+        List<BackendHealthSnapshot> snapshots = new ArrayList<>();
+        serviceNames.forEach(name -> snapshots.add(get(name).snapshot()));
+        return snapshots;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.anicmv.health;
+
+/**
+ * @author anicmv
+ * 最近 N 个延迟样本的对数分桶直方图，相邻桶的边界相差约 19%（2 的 1/4 次方），覆盖 100 微秒到约 100 秒。
+ * 新样本覆盖最旧的样本时同时从对应的桶中减去，分位数只需按桶累加，不复制也不排序样本。
+ * 返回值为所在桶的上界，误差不超过一个桶宽。
+ */
+public class LatencyHistogram {
+
+    private static final long MIN_NANOS = 100_000;
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    private static final int BUCKET_COUNT = 20 * BUCKETS_PER_DOUBLING + 1;
+
+    private final byte[] window;
+    private final int[] counts = new int[BUCKET_COUNT];
+    private int size = 0;
+    private int cursor = 0;
+
+    public LatencyHistogram(int windowSize) {
+        this.window = new byte[Math.max(1, windowSize)];
+    }
+
+    public synchronized void record(long latencyNanos) {
+        int bucket = bucketOf(latencyNanos);
+        if (size == window.length) {
+            counts[window[cursor] & 0xFF]--;
+        } else {
+            size++;
+        }
+        window[cursor] = (byte) bucket;
+        counts[bucket]++;
+        cursor = (cursor + 1) % window.length;
+    }
+
+    /**
+     * @return 分位数（纳秒），没有样本时返回 -1
+     */
+    public synchronized long percentileNanos(double percentile) {
+        if (size == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * size));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(BUCKET_COUNT - 1);
+    }
+
+    static int bucketOf(long latencyNanos) {
+        if (latencyNanos <= MIN_NANOS) {
+            return 0;
+        }
+        double doublings = Math.log((double) latencyNanos / MIN_NANOS) / Math.log(2);
+        return (int) Math.min(BUCKET_COUNT - 1, Math.ceil(doublings * BUCKETS_PER_DOUBLING));
+    }
+
+    static long upperBound(int bucket) {
+        return (long) (MIN_NANOS * Math.pow(2, (double) bucket / BUCKETS_PER_DOUBLING));
+    }
+}
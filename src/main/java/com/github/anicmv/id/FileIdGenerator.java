@@ -0,0 +1,74 @@
+package com.github.anicmv.id;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.StorageConfigurationException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author anicmv
+ * 无锁、按毫秒单调递增的文件ID生成器（Snowflake 布局）：41位毫秒时间戳 | 10位节点号 | 12位序号。
+ * 时间戳与序号保存在同一个 AtomicLong 中，通过CAS推进；同一毫秒内序号用尽或时钟回拨时借用下一毫秒，保证严格递增。
+ * ID 编码为13位定长 Crockford Base32，字典序即生成顺序，不同节点靠节点号区分，不会冲突。
+ */
+@Component
+public class FileIdGenerator {
+
+    // 2025-01-01T00:00:00Z
+    private static final long EPOCH_MILLIS = 1735689600000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    // 高位为相对 EPOCH_MILLIS 的毫秒数，低 SEQUENCE_BITS 位为该毫秒内的序号
+    private final AtomicLong lastState = new AtomicLong();
+
+    private long nodeBits;
+
+    @PostConstruct
+    public void init() {
+        int nodeId = storageProperties.getIdGenerator().getNodeId();
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new StorageConfigurationException("节点号必须在 0 到 " + MAX_NODE_ID + " 之间: " + nodeId);
+        }
+        nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    public long nextId() {
+        long state;
+        while (true) {
+            long previous = lastState.get();
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            state = now > (previous >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : previous + 1;
+            if (lastState.compareAndSet(previous, state)) {
+                break;
+            }
+        }
+        long timestamp = state >>> SEQUENCE_BITS;
+        long sequence = state & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+
+    /**
+     * 生成文件名，扩展名为空时只返回ID
+     */
+    public String nextFileName(String extension) {
+        char[] chars = new char[ENCODED_LENGTH + extension.length()];
+        long id = nextId();
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        extension.getChars(0, extension.length(), chars, ENCODED_LENGTH);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.anicmv.idempotency;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.dto.response.R;
+import com.github.anicmv.exception.FileValidationException;
+import com.github.anicmv.exception.IdempotencyConflictException;
+import com.github.anicmv.ratelimit.ClientRateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * @author anicmv
+ * 幂等键存储：携带相同 Idempotency-Key 的重复请求不会再次写入后端。
+ * 已登记 API Key 的客户端各自拥有独立的键空间，未认证的请求按键与请求内容匹配。
+ * 第一次请求执行期间到达的重复请求等待它完成；成功的响应保存 ttl 时长，之后的重复请求直接重放。
+ * 失败的请求不保存，等待中的重复请求会重新执行。
+ * 条目数达到上限且没有过期条目可清理时，新的键不再记录，请求照常执行。
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private ClientRateLimiter clientRateLimiter;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 需要幂等保护的操作
+     */
+    @FunctionalInterface
+    public interface Action<T, E extends Exception> {
+        ResponseEntity<R<T>> run() throws E;
+    }
+
+    /**
+     * fingerprint 描述请求内容，同一个键用于不同的请求时拒绝而不是重放
+     */
+    private static final class Entry {
+        final String fingerprint;
+        final CompletableFuture<ResponseEntity<?>> result = new CompletableFuture<>();
+        volatile long expiresAtNanos;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        boolean expired(long nowNanos) {
+            // 执行中的条目不会过期，expiresAtNanos 在 result 完成之前写入
+            return result.isDone() && nowNanos - expiresAtNanos > 0;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("storage.idempotency.entries", entries, Map::size)
+                .description("记录中的幂等键数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 请求未携带幂等键或功能关闭时直接执行 action
+     */
+    public <T, E extends Exception> ResponseEntity<R<T>> execute(HttpServletRequest request, String fingerprint,
+                                                                 Action<T, E> action) throws E {
+        return execute(request, () -> fingerprint, action);
+    }
+
+    /**
+     * fingerprint 只在请求携带幂等键时计算，用于需要读取请求内容的指纹（例如内容摘要）
+     */
+    public <T, E extends Exception> ResponseEntity<R<T>> execute(HttpServletRequest request,
+                                                                 Supplier<String> fingerprintSupplier,
+                                                                 Action<T, E> action) throws E {
+        S3StorageProperties.Idempotency config = storageProperties.getIdempotency();
+        String key = config.isEnabled() ? request.getHeader(config.getHeader()) : null;
+        if (key == null || key.isBlank()) {
+            return action.run();
+        }
+        String fingerprint = fingerprintSupplier.get();
+        key = key.trim();
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new FileValidationException(config.getHeader() + " 长度不能超过 " + MAX_KEY_LENGTH);
+        }
+        // 携带已登记 API Key 的请求按客户端隔离，同一个键用于不同请求时拒绝；
+        // 其他请求没有可信的身份（IP 会随网络变化，请求头可以伪造），键与请求内容一起作为范围，只重放内容相同的请求
+        String client = clientRateLimiter.apiKeyName(request);
+        String scopedKey = client != null ? "key:" + client + "|" + key : "anon|" + fingerprint + "|" + key;
+
+        while (true) {
+            Entry entry = entries.get(scopedKey);
+            if (entry != null && entry.expired(System.nanoTime())) {
+                entries.remove(scopedKey, entry);
+                continue;
+            }
+            if (entry == null) {
+                if (entries.size() >= config.getMaxEntries()) {
+                    purgeExpired();
+                    if (entries.size() >= config.getMaxEntries()) {
+                        log.warn("幂等键数量已达上限 {}，本次请求不做幂等记录", config.getMaxEntries());
+                        record("untracked");
+                        return action.run();
+                    }
+                }
+                Entry created = new Entry(fingerprint);
+                entry = entries.putIfAbsent(scopedKey, created);
+                if (entry == null) {
+                    record("executed");
+                    return runAndStore(scopedKey, created, action);
+                }
+            }
+            if (!Objects.equals(entry.fingerprint, fingerprint)) {
+                record("conflict");
+                throw new IdempotencyConflictException("幂等键已用于其他请求", IdempotencyConflictException.KEY_REUSED);
+            }
+            ResponseEntity<?> stored = await(entry, config);
+            if (stored != null) {
+                record("replayed");
+                return replay(stored);
+            }
+            // 第一次请求失败，条目已移除，由当前请求重新执行
+        }
+    }
+
+    private <T, E extends Exception> ResponseEntity<R<T>> runAndStore(String scopedKey, Entry entry,
+                                                                      Action<T, E> action) throws E {
+        ResponseEntity<R<T>> response;
+        try {
+            response = action.run();
+        } catch (Exception | Error e) {
+            entries.remove(scopedKey, entry);
+            entry.result.complete(null);
+            throw e;
+        }
+        if (response.getStatusCode().is2xxSuccessful()) {
+            entry.expiresAtNanos = System.nanoTime() + storageProperties.getIdempotency().getTtl().toNanos();
+            entry.result.complete(response);
+        } else {
+            entries.remove(scopedKey, entry);
+            entry.result.complete(null);
+        }
+        return response;
+    }
+
+    private ResponseEntity<?> await(Entry entry, S3StorageProperties.Idempotency config) {
+        try {
+            return entry.result.get(config.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            record("in_progress");
+            throw new IdempotencyConflictException("相同幂等键的请求仍在处理中",
+                    IdempotencyConflictException.IN_PROGRESS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("等待相同幂等键的请求时被中断",
+                    IdempotencyConflictException.IN_PROGRESS);
+        } catch (ExecutionException e) {
+            // result 只会正常完成
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ResponseEntity<R<T>> replay(ResponseEntity<?> stored) {
+        return (ResponseEntity<R<T>>) ResponseEntity.status(stored.getStatusCode())
+                .headers(stored.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.getBody());
+    }
+
+    @Scheduled(fixedDelayString = "${storage.s3.idempotency.purge-interval:1m}")
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expired(now));
+        log.debug("清理过期幂等键 - 清理前: {}, 清理后: {}", before, entries.size());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("storage.idempotency", "result", result).increment();
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.anicmv.layout;
+
+import java.util.List;
+
+/**
+ * @author anicmv
+ * 日期前缀布局，存储键与逻辑键相同。
+ */
+public class DateKeyLayout implements KeyLayoutStrategy {
+
+    @Override
+    public String storageKey(String logicalKey) {
+        return logicalKey;
+    }
+
+    @Override
+    public List<String> candidateKeys(String logicalKey) {
+        return List.of(logicalKey);
+    }
+
+    @Override
+    public List<String> listPrefixes(String logicalPrefix) {
+        return List.of(logicalPrefix);
+    }
+
+    @Override
+    public String logicalKey(String storageKey) {
+        return storageKey;
+    }
+}
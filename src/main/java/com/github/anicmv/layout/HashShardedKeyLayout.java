@@ -0,0 +1,91 @@
+package com.github.anicmv.layout;
+
+import com.github.anicmv.exception.StorageConfigurationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * @author anicmv
+ * 哈希分片布局：存储键为 _s/分片号/逻辑键，分片号取逻辑键CRC32对分片数取模后的十六进制。
+ * S3/R2 按键前缀分配请求速率，同一天的上传因此分散到 shardCount 个前缀上，而不是集中在一个日期区间。
+ * 分片目录统一放在 _s/ 下，旧布局中首段恰好是十六进制的键（例如 ab/foo.png）不会被误认为分片键。
+ * 启用 legacyFallback 时，读取和删除会在当前布局未命中后再尝试日期前缀布局的旧键，列表也会一并列出旧键。
+ */
+public class HashShardedKeyLayout implements KeyLayoutStrategy {
+
+    static final String SHARD_ROOT = "_s/";
+    private static final char SEPARATOR = '/';
+
+    private final int shardCount;
+    private final int width;
+    private final boolean legacyFallback;
+
+    public HashShardedKeyLayout(int shardCount, boolean legacyFallback) {
+        if (shardCount < 2 || shardCount > 4096) {
+            throw new StorageConfigurationException("分片数必须在 2 到 4096 之间: " + shardCount);
+        }
+        this.shardCount = shardCount;
+        this.width = Integer.toHexString(shardCount - 1).length();
+        this.legacyFallback = legacyFallback;
+    }
+
+    @Override
+    public String storageKey(String logicalKey) {
+        return SHARD_ROOT + shardOf(logicalKey) + SEPARATOR + logicalKey;
+    }
+
+    @Override
+    public List<String> candidateKeys(String logicalKey) {
+        return legacyFallback ? List.of(storageKey(logicalKey), logicalKey) : List.of(storageKey(logicalKey));
+    }
+
+    @Override
+    public List<String> listPrefixes(String logicalPrefix) {
+        List<String> prefixes = new ArrayList<>(shardCount + 1);
+        for (int shard = 0; shard < shardCount; shard++) {
+            prefixes.add(SHARD_ROOT + format(shard) + SEPARATOR + logicalPrefix);
+        }
+        if (legacyFallback) {
+            prefixes.add(logicalPrefix);
+        }
+        return prefixes;
+    }
+
+    @Override
+    public String logicalKey(String storageKey) {
+        int end = SHARD_ROOT.length() + width;
+        if (storageKey.startsWith(SHARD_ROOT) && storageKey.length() > end && storageKey.charAt(end) == SEPARATOR
+                && isShard(storageKey.substring(SHARD_ROOT.length(), end))) {
+            return storageKey.substring(end + 1);
+        }
+        return storageKey;
+    }
+
+    @Override
+    public String reservedPrefix() {
+        return SHARD_ROOT;
+    }
+
+    String shardOf(String logicalKey) {
+        CRC32 crc = new CRC32();
+        crc.update(logicalKey.getBytes(StandardCharsets.UTF_8));
+        return format((int) (crc.getValue() % shardCount));
+    }
+
+    private String format(int shard) {
+        String hex = Integer.toHexString(shard);
+        return "0".repeat(width - hex.length()) + hex;
+    }
+
+    private boolean isShard(String segment) {
+        for (int i = 0; i < width; i++) {
+            if (Character.digit(segment.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return Integer.parseInt(segment, 16) < shardCount;
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.anicmv.layout;
+
+import java.util.List;
+
+/**
+ * @author anicmv
+ * 逻辑键（日期前缀 + 文件名，即接口中的 prefix + fileName）与实际存储键之间的映射。
+ * 缓存、校验值等都以逻辑键为准，只有访问S3时才转换为存储键。
+ */
+public interface KeyLayoutStrategy {
+
+    /**
+     * 新写入对象使用的存储键
+     */
+    String storageKey(String logicalKey);
+
+    /**
+     * 读取、删除时依次尝试的存储键，第一个为当前布局下的存储键，其余为兼容旧布局的存储键
+     */
+    List<String> candidateKeys(String logicalKey);
+
+    /**
+     * 按逻辑前缀列出对象时需要分别列出的存储前缀
+     */
+    List<String> listPrefixes(String logicalPrefix);
+
+    /**
+     * 存储键对应的逻辑键
+     */
+    String logicalKey(String storageKey);
+
+    /**
+     * 当前布局专用的存储键前缀，兼容旧布局的列表会跳过这一前缀下的键；没有时返回 null
+     */
+    default String reservedPrefix() {
+        return null;
+    }
+}
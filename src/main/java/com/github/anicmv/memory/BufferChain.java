@@ -0,0 +1,122 @@
+package com.github.anicmv.memory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * @author anicmv
+ * 由若干池化缓冲区组成的完整文件内容，所有后端的上传共享同一份数据。
+ * {@link #newInputStream()} 每次返回从头读取的独立流，SDK重试时可以重新读取。
+ */
+public final class BufferChain implements AutoCloseable {
+
+    private final List<PooledBuffer> buffers;
+    private final long length;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private BufferChain(List<PooledBuffer> buffers, long length) {
+        this.buffers = buffers;
+        this.length = length;
+    }
+
+    /**
+     * 从输入流读取 length 字节，不关闭输入流；每填满一个缓冲区把它的只读视图交给 observer（例如计算校验值）
+     */
+    public static BufferChain readFrom(InputStream in, long length, BufferPool pool,
+                                       Consumer<ByteBuffer> observer) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+        List<PooledBuffer> buffers = new ArrayList<>();
+        try {
+            long remaining = length;
+            while (remaining > 0) {
+                PooledBuffer buffer = pool.acquire((int) Math.min(remaining, pool.maxBufferSize()));
+                buffers.add(buffer);
+                int expected = buffer.buffer().remaining();
+                if (buffer.fillFrom(channel) < expected) {
+                    throw new EOFException("文件内容长度不足");
+                }
+                observer.accept(buffer.view());
+                remaining -= expected;
+            }
+        } catch (IOException | RuntimeException e) {
+            buffers.forEach(PooledBuffer::release);
+            throw e;
+        }
+        return new BufferChain(buffers, length);
+    }
+
+    /**
+     * 包装已在内存中的数据，不复制也不占用缓冲池
+     */
+    public static BufferChain wrap(byte[] data) {
+        return new BufferChain(List.of(PooledBuffer.unpooled(ByteBuffer.wrap(data))), data.length);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public InputStream newInputStream() {
+        return new ChainInputStream();
+    }
+
+    /**
+     * 归还全部缓冲区，重复调用不会重复归还
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            buffers.forEach(PooledBuffer::release);
+        }
+    }
+
+    private class ChainInputStream extends InputStream {
+
+        private int index = -1;
+        private ByteBuffer current;
+
+        @Override
+        public int read() {
+            if (!advance()) {
+                return -1;
+            }
+            return current.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int n = Math.min(len, current.remaining());
+            current.get(target, offset, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : current.remaining();
+        }
+
+        private boolean advance() {
+            while (current == null || !current.hasRemaining()) {
+                if (++index >= buffers.size()) {
+                    return false;
+                }
+                current = buffers.get(index).view();
+            }
+            return true;
+        }
+    }
+}
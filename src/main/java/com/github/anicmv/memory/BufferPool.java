@@ -0,0 +1,153 @@
+package com.github.anicmv.memory;
+
+import com.github.anicmv.config.S3StorageProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author anicmv
+ * 上传路径共享的直接内存缓冲池，按大小分级（默认 64KB 用于流式上传的数据块，1MB 用于缓存 multipart 文件）。
+ * 直接内存总量不超过 maxPooledBytes，达到上限后临时分配堆缓冲区，不再扩大池。
+ * 启用 leakDetection 时记录每个未归还缓冲区的借出位置，测试结束时通过 {@link #outstanding()} 与 {@link #leakReport()} 检查泄漏。
+ */
+@Slf4j
+@Component
+public class BufferPool {
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private int[] sizeClasses;
+    private List<Queue<ByteBuffer>> freeLists;
+    private long maxPooledBytes;
+    private boolean leakDetection;
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong leasedBytes = new AtomicLong();
+    private final AtomicLong outstanding = new AtomicLong();
+    private final Map<PooledBuffer, Throwable> leases = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        S3StorageProperties.BufferPool config = storageProperties.getBufferPool();
+        sizeClasses = config.getSizeClasses().stream()
+                .mapToInt(size -> (int) size.toBytes())
+                .filter(size -> size > 0)
+                .sorted()
+                .distinct()
+                .toArray();
+        if (sizeClasses.length == 0) {
+            sizeClasses = new int[]{(int) DataSize.ofKilobytes(64).toBytes()};
+        }
+        freeLists = new ArrayList<>(sizeClasses.length);
+        for (int i = 0; i < sizeClasses.length; i++) {
+            freeLists.add(new ConcurrentLinkedQueue<>());
+        }
+        maxPooledBytes = config.getMaxPooledBytes().toBytes();
+        leakDetection = config.isLeakDetection();
+
+        Gauge.builder("storage.buffer.pool.allocated", allocatedBytes, AtomicLong::get)
+                .description("Direct memory allocated by the buffer pool")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.buffer.pool.leased", leasedBytes, AtomicLong::get)
+                .description("Pooled bytes currently lent out")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 借出容量不小于 size 的缓冲区；size 大于最大分级时按最大分级借出，调用方需分块使用
+     */
+    public PooledBuffer acquire(int size) {
+        int index = classIndex(size);
+        int capacity = sizeClasses[index];
+        ByteBuffer buffer = freeLists.get(index).poll();
+        if (buffer == null) {
+            if (allocatedBytes.addAndGet(capacity) <= maxPooledBytes) {
+                buffer = ByteBuffer.allocateDirect(capacity);
+            } else {
+                allocatedBytes.addAndGet(-capacity);
+                meterRegistry.counter("storage.buffer.pool.fallback").increment();
+                return track(new PooledBuffer(this, ByteBuffer.allocate(Math.min(size, capacity))));
+            }
+        }
+        buffer.clear().limit(Math.min(size, capacity));
+        leasedBytes.addAndGet(capacity);
+        return track(new PooledBuffer(this, buffer));
+    }
+
+    /**
+     * 最大分级的大小，即单个缓冲区的最大容量
+     */
+    public int maxBufferSize() {
+        return sizeClasses[sizeClasses.length - 1];
+    }
+
+    /**
+     * 尚未归还的缓冲区数量
+     */
+    public long outstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * 未归还缓冲区的借出位置，仅在启用 leakDetection 时有内容
+     */
+    public List<Throwable> leakReport() {
+        return new ArrayList<>(leases.values());
+    }
+
+    void recycle(PooledBuffer pooled) {
+        untrack(pooled);
+        ByteBuffer buffer = pooled.buffer();
+        if (!buffer.isDirect()) {
+            // 达到上限时分配的堆缓冲区不回收
+            return;
+        }
+        int index = classIndex(buffer.capacity());
+        leasedBytes.addAndGet(-buffer.capacity());
+        freeLists.get(index).offer(buffer);
+    }
+
+    private PooledBuffer track(PooledBuffer pooled) {
+        outstanding.incrementAndGet();
+        if (leakDetection) {
+            leases.put(pooled, new Throwable("buffer acquired here"));
+        }
+        return pooled;
+    }
+
+    private void untrack(PooledBuffer pooled) {
+        outstanding.decrementAndGet();
+        if (leakDetection) {
+            leases.remove(pooled);
+        }
+    }
+
+    private int classIndex(int size) {
+        for (int i = 0; i < sizeClasses.length; i++) {
+            if (size <= sizeClasses[i]) {
+                return i;
+            }
+        }
+        return sizeClasses.length - 1;
+    }
+}
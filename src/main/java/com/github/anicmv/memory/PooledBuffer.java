@@ -0,0 +1,88 @@
+package com.github.anicmv.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author anicmv
+ * 从 {@link BufferPool} 借出的缓冲区，引用计数归零时归还。
+ * 多个读者共享同一缓冲区时，每个读者先 {@link #retain()}，读完后 {@link #release()}，各自通过 {@link #view()} 读取互不影响。
+ */
+public final class PooledBuffer {
+
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 不属于任何池的缓冲区，引用计数不生效，可用作哨兵
+     */
+    public static PooledBuffer unpooled(ByteBuffer buffer) {
+        return new PooledBuffer(null, buffer);
+    }
+
+    /**
+     * 从通道读取直到缓冲区写满或读到末尾，然后切换为读模式
+     *
+     * @return 读取的字节数
+     */
+    public int fillFrom(ReadableByteChannel channel) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        buffer.flip();
+        return total;
+    }
+
+    /**
+     * 写入用的缓冲区本身，写完后调用 {@link ByteBuffer#flip()}
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * 从当前 position 到 limit 的只读视图，每次调用返回独立的位置
+     */
+    public ByteBuffer view() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    public PooledBuffer retain() {
+        if (pool == null) {
+            return this;
+        }
+        if (refCount.getAndIncrement() <= 0) {
+            throw new IllegalStateException("缓冲区已归还");
+        }
+        return this;
+    }
+
+    public void release() {
+        if (pool == null) {
+            return;
+        }
+        int remaining = refCount.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("缓冲区重复归还");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.anicmv.memory;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author anicmv
+ * 全部上传请求共享的内存预算。请求在读取文件内容前按声明的大小预留，处理完成后归还；
+ * 预算不足时最多等待 acquireTimeout，仍不足则拒绝（503），避免突发的大文件上传耗尽堆内存。
+ * 以1KB为单位的公平信号量实现，先到的大请求不会被后到的小请求一直插队。
+ * 当前占用、峰值和容量注册为 storage.upload.memory.used / peak / capacity 指标。
+ */
+@Slf4j
+@Component
+public class UploadMemoryBudget {
+
+    private static final long UNIT = 1024;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Semaphore permits;
+    private int capacityUnits;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+
+    /**
+     * 一次预留，close 归还且只归还一次
+     */
+    public final class Reservation implements AutoCloseable {
+        private final int units;
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(int units, long bytes) {
+            this.units = units;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (units > 0 && released.compareAndSet(false, true)) {
+                usedBytes.addAndGet(-bytes);
+                permits.release(units);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        long maxBytes = storageProperties.getUploadMemory().getMaxBytes().toBytes();
+        capacityUnits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxBytes / UNIT));
+        permits = new Semaphore(capacityUnits, true);
+
+        Gauge.builder("storage.upload.memory.used", usedBytes, AtomicLong::get)
+                .description("Bytes currently reserved by in-flight uploads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.upload.memory.peak", peakBytes, AtomicLong::get)
+                .description("Highest number of bytes reserved at once since startup")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.upload.memory.capacity", this, budget -> (double) budget.capacityUnits * UNIT)
+                .description("Upload memory budget")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 预留 bytes 字节，超过总预算的请求按总预算预留（独占）
+     *
+     * @throws ServiceOverloadedException 等待超时
+     */
+    public Reservation reserve(long bytes) {
+        S3StorageProperties.UploadMemory config = storageProperties.getUploadMemory();
+        if (!config.isEnabled() || bytes <= 0) {
+            return new Reservation(0, 0);
+        }
+        int units = (int) Math.min(capacityUnits, (bytes + UNIT - 1) / UNIT);
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(units, config.getAcquireTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("等待上传内存预算被中断");
+        }
+        if (!acquired) {
+            meterRegistry.counter("storage.upload.memory.rejected").increment();
+            log.warn("上传内存预算不足 - 请求: {} bytes, 已占用: {} bytes", bytes, usedBytes.get());
+            throw new ServiceOverloadedException("上传请求过多，请稍后重试");
+        }
+        return granted(units);
+    }
+
+    /**
+     * 不等待的预留，用于可以放弃的附加工作（例如图片优化）
+     *
+     * @return 预算不足时返回 null
+     */
+    public Reservation tryReserve(long bytes) {
+        if (!storageProperties.getUploadMemory().isEnabled() || bytes <= 0) {
+            return new Reservation(0, 0);
+        }
+        long units = (bytes + UNIT - 1) / UNIT;
+        if (units > capacityUnits || !permits.tryAcquire((int) units)) {
+            return null;
+        }
+        return granted((int) units);
+    }
+
+    private Reservation granted(int units) {
+        long reserved = (long) units * UNIT;
+        peakBytes.accumulateAndGet(usedBytes.addAndGet(reserved), Math::max);
+        return new Reservation(units, reserved);
+    }
+}
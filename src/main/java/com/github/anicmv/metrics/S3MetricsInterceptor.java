@@ -0,0 +1,68 @@
+package com.github.anicmv.metrics;
+
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * @author anicmv
+ * 挂载在每个 S3Client 上的拦截器，按服务记录每次API调用（含SDK内部重试）的耗时、结果和上传字节数。
+ */
+public class S3MetricsInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> START_NANOS = new ExecutionAttribute<>("AniboxMetricsStartNanos");
+
+    private final String serviceName;
+    private final StorageMetrics storageMetrics;
+
+    public S3MetricsInterceptor(String serviceName, StorageMetrics storageMetrics) {
+        this.serviceName = serviceName;
+        this.storageMetrics = storageMetrics;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        record(executionAttributes, StorageMetrics.OUTCOME_SUCCESS);
+        storageMetrics.recordUploadedBytes(serviceName, uploadedBytes(context.request()));
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        record(executionAttributes, StorageMetrics.outcomeOf(context.exception()));
+        // 单次尝试超时由重试策略记录，这里只记录整个调用超时
+        if (context.exception() instanceof ApiCallTimeoutException) {
+            storageMetrics.recordTimeout(serviceName, StorageMetrics.TIMEOUT_CALL);
+        }
+    }
+
+    private void record(ExecutionAttributes executionAttributes, String outcome) {
+        Long start = executionAttributes.getAttribute(START_NANOS);
+        if (start == null) {
+            return;
+        }
+        String operation = StorageMetrics.operationTag(
+                executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME));
+        storageMetrics.recordOperation(serviceName, operation, outcome, System.nanoTime() - start);
+    }
+
+    private static long uploadedBytes(SdkRequest request) {
+        Long length = null;
+        if (request instanceof PutObjectRequest putObjectRequest) {
+            length = putObjectRequest.contentLength();
+        } else if (request instanceof UploadPartRequest uploadPartRequest) {
+            length = uploadPartRequest.contentLength();
+        }
+        return length != null ? length : 0L;
+    }
+}
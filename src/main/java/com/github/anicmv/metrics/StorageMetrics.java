@@ -0,0 +1,140 @@
+package com.github.anicmv.metrics;
+
+import com.github.anicmv.retry.RetryBudget;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author anicmv
+ * 存储后端指标的统一入口。
+ * 所有后端操作都记录到 storage.s3.requests 计时器（按 service/operation/outcome 打标签，发布百分位直方图），
+ * 上传字节数记录到 storage.s3.uploaded.bytes 计数器（按 service 打标签），
+ * SDK重试记录到 storage.s3.retries（按 service/reason/result 打标签），超时记录到 storage.s3.timeouts（按 service/scope 打标签）。
+ */
+@Component
+public class StorageMetrics {
+
+    public static final String REQUESTS = "storage.s3.requests";
+    public static final String UPLOADED_BYTES = "storage.s3.uploaded.bytes";
+    public static final String RETRIES = "storage.s3.retries";
+    public static final String TIMEOUTS = "storage.s3.timeouts";
+    public static final String RETRY_BUDGET = "storage.s3.retry.budget";
+    public static final String CHECKSUMS = "storage.s3.upload.checksums";
+
+    public static final String OUTCOME_SUCCESS = "SUCCESS";
+    public static final String OUTCOME_CLIENT_ERROR = "CLIENT_ERROR";
+    public static final String OUTCOME_SERVER_ERROR = "SERVER_ERROR";
+    public static final String OUTCOME_ERROR = "ERROR";
+
+    public static final String RETRY_ATTEMPTED = "attempted";
+    public static final String RETRY_BUDGET_EXHAUSTED = "budget_exhausted";
+
+    public static final String TIMEOUT_ATTEMPT = "attempt";
+    public static final String TIMEOUT_CALL = "call";
+
+    private static final Map<String, String> OPERATION_NAMES = Map.of(
+            "PutObject", "put",
+            "GetObject", "get",
+            "HeadObject", "head",
+            "ListObjectsV2", "list",
+            "DeleteObject", "delete",
+            "CopyObject", "copy",
+            "CreateBucket", "createBucket"
+    );
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    public void recordOperation(String serviceName, String operation, String outcome, long durationNanos) {
+        Timer.builder(REQUESTS)
+                .description("S3 backend operation latency")
+                .tag("service", serviceName)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUploadedBytes(String serviceName, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        Counter.builder(UPLOADED_BYTES)
+                .description("Bytes uploaded to S3 backend")
+                .baseUnit("bytes")
+                .tag("service", serviceName)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    public void recordRetry(String serviceName, String reason, String result) {
+        Counter.builder(RETRIES)
+                .description("S3 backend retries, including ones refused by the retry budget")
+                .tag("service", serviceName)
+                .tag("reason", reason)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordTimeout(String serviceName, String scope) {
+        Counter.builder(TIMEOUTS)
+                .description("S3 backend API call and attempt timeouts")
+                .tag("service", serviceName)
+                .tag("scope", scope)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordChecksum(String serviceName, String result) {
+        Counter.builder(CHECKSUMS)
+                .description("Upload checksum verification against backend responses")
+                .tag("service", serviceName)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void registerRetryBudget(String serviceName, RetryBudget budget) {
+        Gauge.builder(RETRY_BUDGET, budget, RetryBudget::available)
+                .description("Retry tokens left in the backend retry budget")
+                .tag("service", serviceName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 将SDK操作名转换为指标标签，例如 PutObject -> put，HeadBucket -> headBucket
+     */
+    public static String operationTag(String sdkOperationName) {
+        if (sdkOperationName == null || sdkOperationName.isEmpty()) {
+            return "unknown";
+        }
+        String mapped = OPERATION_NAMES.get(sdkOperationName);
+        if (mapped != null) {
+            return mapped;
+        }
+        return Character.toLowerCase(sdkOperationName.charAt(0)) + sdkOperationName.substring(1);
+    }
+
+    public static String outcomeOf(Throwable throwable) {
+        if (throwable instanceof AwsServiceException serviceException) {
+            int status = serviceException.statusCode();
+            if (status >= 400 && status < 500) {
+                return OUTCOME_CLIENT_ERROR;
+            }
+            if (status >= 500) {
+                return OUTCOME_SERVER_ERROR;
+            }
+        }
+        return OUTCOME_ERROR;
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.anicmv.optimize;
+
+import com.github.anicmv.config.ExecutorConfig;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.memory.BufferChain;
+import com.github.anicmv.memory.UploadMemoryBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author anicmv
+ * 上传前的无损图片优化：JPEG 去掉元数据段，PNG 去掉辅助块并重新压缩。
+ * 在有界的专用线程池中执行，线程池已满、上传内存预算不足、超时或出错时都直接上传原文件，不影响上传本身。
+ * 结果按 storage.image.optimize（result 标签）计数，节省的字节数计入 storage.image.optimize.saved。
+ */
+@Slf4j
+@Component
+public class ImageOptimizer {
+
+    private static final String RESULT_OPTIMIZED = "optimized";
+    private static final String RESULT_UNCHANGED = "unchanged";
+    private static final String RESULT_SKIPPED = "skipped";
+    private static final String RESULT_FAILED = "failed";
+    // 足以识别格式并读取 PNG 的 IHDR
+    private static final int HEADER_BYTES = 33;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private UploadMemoryBudget uploadMemoryBudget;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource(name = ExecutorConfig.IMAGE_OPTIMIZER_EXECUTOR)
+    private Executor optimizerExecutor;
+
+    /**
+     * @return 比原文件小的优化结果；不支持的格式、优化未变小或无法优化时返回 null
+     */
+    public byte[] optimize(BufferChain content) {
+        S3StorageProperties.ImageOptimization config = storageProperties.getImageOptimization();
+        if (!config.isEnabled() || content.length() > config.getMaxInputSize().toBytes()) {
+            return null;
+        }
+
+        UploadMemoryBudget.Reservation reservation = null;
+        boolean handedOff = false;
+        try {
+            byte[] header;
+            try (InputStream in = content.newInputStream()) {
+                header = in.readNBytes(HEADER_BYTES);
+            }
+            boolean png = PngRecompressor.isPng(header);
+            if (!png && !JpegMetadataStripper.isJpeg(header)) {
+                return null;
+            }
+            // 预算不足时不等待，直接跳过优化
+            reservation = uploadMemoryBudget.tryReserve(workingSet(content.length(), png ? PngRecompressor.decodedSize(header) : 0, png));
+            if (reservation == null) {
+                return record(RESULT_SKIPPED, null, 0);
+            }
+            byte[] original;
+            try (InputStream in = content.newInputStream()) {
+                original = in.readAllBytes();
+            }
+            FutureTask<byte[]> task = new FutureTask<>(() -> png
+                    ? PngRecompressor.optimize(original, config.isKeepIccProfile(),
+                    config.getPngCompressionLevel(), config.getMaxDecodedSize().toBytes())
+                    : JpegMetadataStripper.strip(original, config.isKeepIccProfile()));
+            // 任务超时后仍可能在运行，预算由任务结束时归还，而不是在调用方放弃等待时归还
+            UploadMemoryBudget.Reservation held = reservation;
+            optimizerExecutor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    held.close();
+                }
+            });
+            handedOff = true;
+
+            byte[] optimized = awaitBounded(task, config);
+            if (optimized == null || optimized.length >= original.length) {
+                return record(RESULT_UNCHANGED, null, 0);
+            }
+            return record(RESULT_OPTIMIZED, optimized, original.length - optimized.length);
+        } catch (TaskRejectedException e) {
+            return record(RESULT_SKIPPED, null, 0);
+        } catch (TimeoutException e) {
+            log.warn("图片优化超时，上传原文件 - 大小: {} bytes", content.length());
+            return record(RESULT_FAILED, null, 0);
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            log.warn("图片优化失败，上传原文件 - 大小: {} bytes", content.length(), e);
+            return record(RESULT_FAILED, null, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return record(RESULT_FAILED, null, 0);
+        } finally {
+            if (reservation != null && !handedOff) {
+                reservation.close();
+            }
+        }
+    }
+
+    /**
+     * 优化期间同时存在的数据：原文件副本、输出与它的 toByteArray 副本；
+     * PNG 另有拼接的 IDAT、解压后的像素数据与重新压缩的结果。调用方上传优化结果时另行预留。
+     */
+    static long workingSet(long length, long decodedSize, boolean png) {
+        return png ? length * 5 + Math.max(0, decodedSize) : length * 3;
+    }
+
+    /**
+     * FutureTask 在超时取消时中断执行线程，PNG 的解压与压缩循环检查中断后提前结束
+     */
+    private byte[] awaitBounded(FutureTask<byte[]> task, S3StorageProperties.ImageOptimization config)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        try {
+            return task.get(config.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            task.cancel(true);
+            throw e;
+        }
+    }
+
+    private byte[] record(String result, byte[] optimized, long savedBytes) {
+        meterRegistry.counter("storage.image.optimize", "result", result).increment();
+        if (savedBytes > 0) {
+            meterRegistry.counter("storage.image.optimize.saved").increment(savedBytes);
+        }
+        return optimized;
+    }
+}
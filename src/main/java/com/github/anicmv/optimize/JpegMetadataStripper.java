@@ -0,0 +1,160 @@
+package com.github.anicmv.optimize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author anicmv
+ * 逐段复制 JPEG，去掉不影响显示的元数据段，压缩数据原样保留（无损）。
+ * 去掉：XMP、Photoshop/IPTC（APP13）、MPF 与 JFXX 缩略图、其他 APPn 段、注释（COM）以及 EOI 之后的附加数据。
+ * 保留：JFIF（APP0）、Adobe 颜色变换（APP14）、ICC 配置（可配置）；EXIF 中方向不为 1 时保留 EXIF，避免图片被旋转显示。
+ */
+final class JpegMetadataStripper {
+
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int APP0 = 0xE0;
+    private static final int APP1 = 0xE1;
+    private static final int APP2 = 0xE2;
+    private static final int APP14 = 0xEE;
+    private static final int APP15 = 0xEF;
+    private static final int COM = 0xFE;
+
+    private static final byte[] JFIF = "JFIF\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] EXIF = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] ICC_PROFILE = "ICC_PROFILE\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private JpegMetadataStripper() {
+    }
+
+    static boolean isJpeg(byte[] data) {
+        return data.length > 3 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == SOI && (data[2] & 0xFF) == 0xFF;
+    }
+
+    /**
+     * @return 去掉元数据后的内容；结构无法识别时返回 null，调用方保留原文件
+     */
+    static byte[] strip(byte[] data, boolean keepIccProfile) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        out.write(0xFF);
+        out.write(SOI);
+        int pos = 2;
+        while (pos + 1 < data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // 填充字节
+                pos++;
+                continue;
+            }
+            if (marker == EOI) {
+                out.write(0xFF);
+                out.write(EOI);
+                return out.toByteArray();
+            }
+            if (pos + 3 >= data.length) {
+                return null;
+            }
+            int length = ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+            int end = pos + 2 + length;
+            if (length < 2 || end > data.length) {
+                return null;
+            }
+            if (keep(marker, data, pos + 4, end, keepIccProfile)) {
+                out.write(data, pos, end - pos);
+            }
+            pos = end;
+            if (marker == SOS) {
+                int scanEnd = scanEnd(data, pos);
+                out.write(data, pos, scanEnd - pos);
+                pos = scanEnd;
+            }
+        }
+        return null;
+    }
+
+    private static boolean keep(int marker, byte[] data, int from, int to, boolean keepIccProfile) {
+        if (marker == APP0) {
+            return startsWith(data, from, to, JFIF);
+        }
+        if (marker == APP1) {
+            return startsWith(data, from, to, EXIF) && orientation(data, from + EXIF.length, to) != 1;
+        }
+        if (marker == APP2) {
+            return keepIccProfile && startsWith(data, from, to, ICC_PROFILE);
+        }
+        if (marker == APP14) {
+            return true;
+        }
+        return !(marker > APP0 && marker <= APP15) && marker != COM;
+    }
+
+    /**
+     * 压缩数据以下一个非 RST 标记结束；0xFF00 是转义的 0xFF
+     */
+    private static int scanEnd(byte[] data, int pos) {
+        while (pos + 1 < data.length) {
+            if ((data[pos] & 0xFF) == 0xFF) {
+                int next = data[pos + 1] & 0xFF;
+                if (next != 0x00 && !(next >= 0xD0 && next <= 0xD7) && next != 0xFF) {
+                    return pos;
+                }
+            }
+            pos++;
+        }
+        return data.length;
+    }
+
+    /**
+     * 读取 EXIF IFD0 中的方向标签，没有或无法解析时为 1
+     */
+    private static int orientation(byte[] data, int tiff, int end) {
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean littleEndian = data[tiff] == 'I' && data[tiff + 1] == 'I';
+        long ifd = tiff + readInt(data, tiff + 4, littleEndian);
+        if (ifd + 2 > end || ifd < tiff) {
+            return 1;
+        }
+        int entries = readShort(data, (int) ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readShort(data, entry, littleEndian) == ORIENTATION_TAG) {
+                return readShort(data, entry + 8, littleEndian);
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int pos, boolean littleEndian) {
+        int a = data[pos] & 0xFF;
+        int b = data[pos + 1] & 0xFF;
+        return littleEndian ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static long readInt(byte[] data, int pos, boolean littleEndian) {
+        long high = readShort(data, littleEndian ? pos + 2 : pos, littleEndian);
+        long low = readShort(data, littleEndian ? pos : pos + 2, littleEndian);
+        return (high << 16) | low;
+    }
+
+    private static boolean startsWith(byte[] data, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
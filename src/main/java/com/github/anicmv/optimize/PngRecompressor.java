@@ -0,0 +1,203 @@
+package com.github.anicmv.optimize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author anicmv
+ * 无损优化 PNG：去掉文本、时间与 EXIF 等辅助块，并以更高的压缩级别重新压缩 IDAT。
+ * 像素数据（含每行的过滤类型）原样保留，只替换 zlib 流。动画 PNG 的帧数据在辅助块中，不做处理。
+ */
+final class PngRecompressor {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+
+    // 影响显示效果的辅助块，其余辅助块（tEXt、zTXt、iTXt、tIME、eXIf 等）去掉
+    private static final Set<String> RENDERING_CHUNKS = Set.of(
+            "tRNS", "gAMA", "cHRM", "sRGB", "sBIT", "pHYs", "bKGD", "cICP", "mDCv", "cLLi");
+
+    private PngRecompressor() {
+    }
+
+    static boolean isPng(byte[] data) {
+        if (data.length < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (data[i] != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按 IHDR 估算解压后的像素数据大小（含每行的过滤字节），无法识别时为 -1
+     */
+    static long decodedSize(byte[] data) {
+        if (data.length < 33 || !"IHDR".equals(type(data, 12))) {
+            return -1;
+        }
+        ByteBuffer ihdr = ByteBuffer.wrap(data, 16, 13);
+        long width = Integer.toUnsignedLong(ihdr.getInt());
+        long height = Integer.toUnsignedLong(ihdr.getInt());
+        int bitDepth = ihdr.get() & 0xFF;
+        int colorType = ihdr.get() & 0xFF;
+        int channels = switch (colorType) {
+            case 0, 3 -> 1;
+            case 2 -> 3;
+            case 4 -> 2;
+            case 6 -> 4;
+            default -> 0;
+        };
+        if (channels == 0 || width == 0 || height == 0) {
+            return -1;
+        }
+        long rowBytes = (width * channels * bitDepth + 7) / 8;
+        // 隔行扫描的 7 遍各自带有过滤字节和行尾补齐，按每行最多多出 14 字节估算上界
+        return height * (rowBytes + 1) + 14 * height;
+    }
+
+    /**
+     * @return 优化后的内容；结构无法识别、解压后超过 maxDecodedBytes 或是动画 PNG 时返回 null
+     */
+    static byte[] optimize(byte[] data, boolean keepIccProfile, int level, long maxDecodedBytes) {
+        long decodedSize = decodedSize(data);
+        if (decodedSize < 0 || decodedSize > maxDecodedBytes) {
+            return null;
+        }
+
+        ExposedOutputStream idat = new ExposedOutputStream(data.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        out.write(data, 0, SIGNATURE.length);
+        boolean sawIdat = false;
+        int pos = SIGNATURE.length;
+        while (pos + 12 <= data.length) {
+            int length = ByteBuffer.wrap(data, pos, 4).getInt();
+            if (length < 0 || pos + 12L + length > data.length) {
+                return null;
+            }
+            String type = type(data, pos + 4);
+            if ("acTL".equals(type)) {
+                return null;
+            }
+            if ("IDAT".equals(type)) {
+                sawIdat = true;
+                idat.write(data, pos + 8, length);
+            } else if (keepChunk(type, keepIccProfile)) {
+                if ("IEND".equals(type)) {
+                    // 影响显示的辅助块都位于 IDAT 之前，重新压缩的 IDAT 紧接在它们之后写出
+                    if (!sawIdat) {
+                        return null;
+                    }
+                    byte[] compressed = recompress(idat, level, decodedSize);
+                    if (compressed == null) {
+                        return null;
+                    }
+                    writeIdat(out, compressed);
+                    writeChunk(out, "IEND", new byte[0], 0, 0);
+                    return out.toByteArray();
+                }
+                out.write(data, pos, length + 12);
+            }
+            pos += length + 12;
+        }
+        return null;
+    }
+
+    private static boolean keepChunk(String type, boolean keepIccProfile) {
+        if (Character.isUpperCase(type.charAt(0))) {
+            // 关键块
+            return true;
+        }
+        if ("iCCP".equals(type)) {
+            return keepIccProfile;
+        }
+        return RENDERING_CHUNKS.contains(type);
+    }
+
+    /**
+     * 解压与压缩直接读取输出流的内部数组，不再各复制一份；执行线程被中断（超时取消）时放弃并返回 null
+     */
+    private static byte[] recompress(ExposedOutputStream zlib, int level, long maxDecodedBytes) {
+        Inflater inflater = new Inflater();
+        Deflater deflater = new Deflater(level);
+        try {
+            inflater.setInput(zlib.buffer(), 0, zlib.size());
+            ExposedOutputStream raw = new ExposedOutputStream((int) Math.min(maxDecodedBytes, Integer.MAX_VALUE - 8));
+            byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+            while (!inflater.finished()) {
+                if (Thread.interrupted()) {
+                    return null;
+                }
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                raw.write(buffer, 0, n);
+                if (raw.size() > maxDecodedBytes) {
+                    return null;
+                }
+            }
+
+            deflater.setInput(raw.buffer(), 0, raw.size());
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(zlib.size());
+            while (!deflater.finished()) {
+                if (Thread.interrupted()) {
+                    return null;
+                }
+                int n = deflater.deflate(buffer);
+                compressed.write(buffer, 0, n);
+            }
+            return compressed.toByteArray();
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+            deflater.end();
+        }
+    }
+
+    private static void writeIdat(ByteArrayOutputStream out, byte[] compressed) {
+        for (int offset = 0; offset < compressed.length; offset += IDAT_CHUNK_SIZE) {
+            writeChunk(out, "IDAT", compressed, offset, Math.min(IDAT_CHUNK_SIZE, compressed.length - offset));
+        }
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data, int offset, int length) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.ISO_8859_1);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.writeBytes(ByteBuffer.allocate(4).putInt(length).array());
+        out.writeBytes(typeBytes);
+        out.write(data, offset, length);
+        out.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    private static String type(byte[] data, int pos) {
+        return new String(data, pos, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 可直接访问内部数组的输出流，有效数据为 buffer() 的前 size() 字节
+     */
+    private static final class ExposedOutputStream extends ByteArrayOutputStream {
+
+        ExposedOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
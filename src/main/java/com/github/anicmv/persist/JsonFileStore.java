@@ -0,0 +1,131 @@
+package com.github.anicmv.persist;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.config.S3StorageProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * @author anicmv
+ * 以 32 位十六进制 id 为键、每条记录一个 JSON 文件的内存表：先写临时文件再原子替换，启动时从目录恢复。
+ * 读写文件失败只记录日志，内存中的记录仍然有效。
+ *
+ * @param <T> 记录类型，需要能被 Jackson 序列化
+ */
+@Slf4j
+public abstract class JsonFileStore<T> {
+
+    private static final String SUFFIX = ".json";
+    private static final Pattern RECORD_ID = Pattern.compile("[0-9a-f]{32}");
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    private final Map<String, T> records = new ConcurrentHashMap<>();
+    private final Class<T> type;
+    private final String description;
+
+    /**
+     * @param description 记录的名称，用于日志
+     */
+    protected JsonFileStore(Class<T> type, String description) {
+        this.type = type;
+        this.description = description;
+    }
+
+    /**
+     * @return 保存记录文件的目录
+     */
+    protected abstract String directory(S3StorageProperties storageProperties);
+
+    protected abstract String idOf(T record);
+
+    @PostConstruct
+    public void init() {
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    T record = objectMapper.readValue(file.toFile(), type);
+                    records.put(idOf(record), record);
+                } catch (IOException e) {
+                    log.warn("读取{}失败，忽略 - 文件: {}", description, file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("读取{}目录失败 - 目录: {}", description, directory, e);
+        }
+        log.info("已恢复{} {} 个 - 目录: {}", description, records.size(), directory);
+    }
+
+    public static boolean isValidId(String id) {
+        return id != null && RECORD_ID.matcher(id).matches();
+    }
+
+    public T get(String id) {
+        return isValidId(id) ? records.get(id) : null;
+    }
+
+    public Collection<T> all() {
+        return records.values();
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    public void save(T record) {
+        String id = idOf(record);
+        records.put(id, record);
+        Path directory = directory();
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, id, ".tmp");
+            objectMapper.writeValue(temp.toFile(), record);
+            Files.move(temp, directory.resolve(id + SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入{}失败 - id: {}", description, id, e);
+        }
+    }
+
+    /**
+     * 只有记录仍是 record 时才移除，并发的移除只有一个成功
+     *
+     * @return 是否由本次调用移除
+     */
+    public boolean remove(T record) {
+        String id = idOf(record);
+        if (!records.remove(id, record)) {
+            return false;
+        }
+        try {
+            Files.deleteIfExists(directory().resolve(id + SUFFIX));
+        } catch (IOException e) {
+            log.warn("删除{}文件失败 - id: {}", description, id, e);
+        }
+        return true;
+    }
+
+    private Path directory() {
+        return Paths.get(directory(storageProperties));
+    }
+}
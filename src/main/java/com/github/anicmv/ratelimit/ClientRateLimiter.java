@@ -0,0 +1,151 @@
+package com.github.anicmv.ratelimit;
+
+import com.github.anicmv.config.RateLimitProperties;
+import com.github.anicmv.service.FileValidationService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author anicmv
+ * 按客户端（已登记的API Key或连接的远端地址）限流，每个客户端一个请求数令牌桶和一个字节数令牌桶。
+ * 两个桶都已装满的客户端与从未出现过的客户端没有区别，定期清理即可，不影响限流结果，内存只随活跃客户端数增长。
+ * 客户端数达到上限时淘汰最久未出现的客户端，新客户端不会因为表满而被拒绝。
+ */
+@Slf4j
+@Component
+public class ClientRateLimiter {
+
+    @Resource
+    private RateLimitProperties properties;
+
+    @Resource
+    private FileValidationService fileValidationService;
+
+    // 按访问顺序排列，超过上限时移除最久未访问的客户端
+    private final LinkedHashMap<String, ClientBuckets> clients = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClientBuckets> eldest) {
+            return size() > properties.getMaxClients();
+        }
+    };
+    // API Key -> 客户端名称
+    private Map<String, String> apiKeyNames = Map.of();
+
+    private record ClientBuckets(TokenBucket requests, TokenBucket bytes) {
+        boolean idle(long nowNanos) {
+            return requests.isFull(nowNanos) && bytes.isFull(nowNanos);
+        }
+    }
+
+    /**
+     * 拒绝原因与需要等待的时间
+     */
+    public record Decision(String bucket, long retryAfterNanos) {
+        public static final Decision ALLOWED = new Decision(null, 0);
+
+        public boolean allowed() {
+            return retryAfterNanos == 0;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        Map<String, String> names = new HashMap<>();
+        properties.getApiKeys().forEach((name, key) -> names.put(key, name));
+        apiKeyNames = Map.copyOf(names);
+    }
+
+    /**
+     * 客户端标识：请求携带已登记的 API Key 时按对应的客户端名称，否则按客户端IP。
+     * 未登记的 Key 可以随意伪造，不作为标识。
+     */
+    public String clientKey(HttpServletRequest request) {
+        String name = apiKeyName(request);
+        return name != null ? "key:" + name : "ip:" + fileValidationService.getClientIp(request);
+    }
+
+    /**
+     * 请求携带的已登记 API Key 对应的客户端名称，没有携带或未登记时返回 null
+     */
+    public String apiKeyName(HttpServletRequest request) {
+        String header = properties.getApiKeyHeader();
+        if (header == null || header.isEmpty()) {
+            return null;
+        }
+        String apiKey = request.getHeader(header);
+        return apiKey == null || apiKey.isBlank() ? null : apiKeyNames.get(apiKey.trim());
+    }
+
+    /**
+     * @param bytes 请求体字节数，未知时传 0，读取后再用 {@link #charge} 计入
+     */
+    public Decision tryAcquire(String clientKey, long bytes) {
+        long now = System.nanoTime();
+        ClientBuckets buckets = buckets(clientKey, now);
+
+        long wait = buckets.requests().tryAcquire(1, now);
+        if (wait > 0) {
+            return new Decision("requests", wait);
+        }
+        if (bytes > 0) {
+            wait = buckets.bytes().tryAcquire(bytes, now);
+            if (wait > 0) {
+                // 请求没有放行，退还已取得的请求令牌
+                buckets.requests().refund(1);
+                return new Decision("bytes", wait);
+            }
+        }
+        return Decision.ALLOWED;
+    }
+
+    /**
+     * 请求体大小事先未知（没有 Content-Length）时，按实际读取的字节数事后计入字节桶，
+     * 超出的部分作为欠账，由该客户端之后的请求等待偿还
+     */
+    public void charge(String clientKey, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        buckets(clientKey, now).bytes().charge(bytes, now);
+    }
+
+    @Scheduled(fixedDelayString = "${storage.rate-limit.eviction-interval:60s}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        int before;
+        int after;
+        synchronized (clients) {
+            before = clients.size();
+            clients.values().removeIf(buckets -> buckets.idle(now));
+            after = clients.size();
+        }
+        log.debug("清理空闲限流客户端 - 清理前: {}, 清理后: {}", before, after);
+    }
+
+    public int size() {
+        synchronized (clients) {
+            return clients.size();
+        }
+    }
+
+    private ClientBuckets buckets(String clientKey, long now) {
+        synchronized (clients) {
+            return clients.computeIfAbsent(clientKey, k -> newBuckets(now));
+        }
+    }
+
+    private ClientBuckets newBuckets(long now) {
+        return new ClientBuckets(
+                new TokenBucket(properties.getRequestsPerSecond(), properties.getRequestBurst(), now),
+                new TokenBucket(properties.getBytesPerSecond().toBytes(), properties.getByteBurst().toBytes(), now));
+    }
+}
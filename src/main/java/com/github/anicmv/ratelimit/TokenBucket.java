@@ -0,0 +1,64 @@
+package com.github.anicmv.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author anicmv
+ * 无锁令牌桶，以GCRA（理论到达时间）实现：只保存一个 AtomicLong，即桶重新装满的时刻。
+ * 取令牌时把该时刻向后推 tokens * 每个令牌的纳秒数，推后的时刻不超过 now + 容量对应的时长即放行。
+ * 单次请求超过桶容量时，只要桶是满的就放行，超出部分作为欠账由之后的请求等待偿还。
+ */
+public class TokenBucket {
+
+    private final double nanosPerToken;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double tokensPerSecond, long capacity, long nowNanos) {
+        this.nanosPerToken = 1_000_000_000d / tokensPerSecond;
+        this.capacityNanos = (long) (capacity * nanosPerToken);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * @return 0 表示已取得令牌，否则为需要等待的纳秒数
+     */
+    public long tryAcquire(long tokens, long nowNanos) {
+        long cost = (long) Math.ceil(tokens * nanosPerToken);
+        while (true) {
+            long current = fullAt.get();
+            long base = Math.max(current, nowNanos);
+            long next = base + cost;
+            if (next - nowNanos > capacityNanos && current > nowNanos) {
+                // 容量不足；单次超过容量的请求要等到桶满
+                return cost > capacityNanos ? current - nowNanos : next - capacityNanos - nowNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 不论余量直接扣除令牌，不足的部分作为欠账，用于事后才知道大小的请求
+     */
+    public void charge(long tokens, long nowNanos) {
+        long cost = (long) Math.ceil(tokens * nanosPerToken);
+        fullAt.accumulateAndGet(nowNanos, (current, now) -> Math.max(current, now) + cost);
+    }
+
+    /**
+     * 退还已取得但没有用上的令牌；桶已装满时退还不再有效果
+     */
+    public void refund(long tokens) {
+        long cost = (long) Math.ceil(tokens * nanosPerToken);
+        fullAt.addAndGet(-cost);
+    }
+
+    /**
+     * 桶已装满，丢弃该桶与保留它的效果相同
+     */
+    public boolean isFull(long nowNanos) {
+        return fullAt.get() <= nowNanos;
+    }
+}
@@ -0,0 +1,543 @@
+package com.github.anicmv.reconcile;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.cache.ObjectCache;
+import com.github.anicmv.cache.ValidatorCache;
+import com.github.anicmv.config.ExecutorConfig;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.enums.UploadStrategy;
+import com.github.anicmv.exception.ServiceOverloadedException;
+import com.github.anicmv.health.BackendHealthTracker;
+import com.github.anicmv.layout.KeyLayoutStrategy;
+import com.github.anicmv.stats.BucketStatistics;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author anicmv
+ * 后台反熵修复：按日期前缀比较各副本后端的 Merkle 树，只对摘要不同的叶子逐键比较并修复。
+ * 扇出部分失败的写入、删除和重命名会把对应日期标记为脏；干净且已校验过的日期在 fullSweepInterval 内不再列出，
+ * 因此没有故障时几乎不产生列表请求，后端被带外修改的情况由定期的全量校验发现。
+ * 修复规则：对象缺失时从最新的副本复制；内容不一致时以最后修改时间最新的副本为准；
+ * 删除部分失败的对象记录墓碑，墓碑之前写入的剩余副本会被删除，而不是复制回来。
+ * 修复写入以列出时的状态为条件（If-None-Match / If-Match），期间被并发写入的副本不会被旧内容覆盖。
+ * 脏前缀与墓碑写入状态文件，重启后继续修复。有副本后端因不健康被跳过时，该轮不算校验通过。
+ */
+@Slf4j
+@Component
+public class AntiEntropyReconciler {
+
+    private static final DateTimeFormatter DATE_PREFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final int DATE_PREFIX_LENGTH = 8;
+    private static final int PRECONDITION_FAILED = 412;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private S3ClientManager clientManager;
+
+    @Resource
+    private BackendHealthTracker healthTracker;
+
+    @Resource
+    private KeyLayoutStrategy keyLayout;
+
+    @Resource
+    private ObjectCache objectCache;
+
+    @Resource
+    private ValidatorCache validatorCache;
+
+    @Resource
+    private BucketStatistics bucketStatistics;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource(name = ExecutorConfig.BACKGROUND_EXECUTOR)
+    private Executor executorService;
+
+    @Resource(name = ExecutorConfig.SCAN_EXECUTOR)
+    private Executor listExecutor;
+
+    private final Set<String> dirtyPrefixes = ConcurrentHashMap.newKeySet();
+    private final Map<String, Instant> tombstones = new ConcurrentHashMap<>();
+    private final Map<String, Instant> lastVerified = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    /**
+     * 状态文件内容
+     */
+    private record State(Instant savedAt, Set<String> dirtyPrefixes, Map<String, Instant> tombstones) {
+    }
+
+    @PostConstruct
+    public void restore() {
+        Path file = stateFile();
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try {
+            State state = objectMapper.readValue(file.toFile(), new TypeReference<>() {
+            });
+            if (state.dirtyPrefixes() != null) {
+                dirtyPrefixes.addAll(state.dirtyPrefixes());
+            }
+            if (state.tombstones() != null) {
+                tombstones.putAll(state.tombstones());
+            }
+            log.info("已恢复反熵状态 - 文件: {}, 脏前缀: {}, 墓碑: {}", file, dirtyPrefixes.size(), tombstones.size());
+        } catch (IOException e) {
+            log.warn("读取反熵状态失败，等待定期全量校验 - 文件: {}", file, e);
+        }
+    }
+
+    /**
+     * 扇出写入部分失败后调用，下一轮会校验该对象所在的日期前缀
+     */
+    public void markDirty(String logicalKey) {
+        String prefix = datePrefix(logicalKey);
+        if (prefix != null && dirtyPrefixes.add(prefix)) {
+            changed.set(true);
+        }
+    }
+
+    /**
+     * 删除部分失败后调用，剩余的副本会被删除而不是复制回其他后端。
+     * 墓碑丢失会让已删除的对象被复制回来，因此立即写入状态文件
+     */
+    public void recordPartialDelete(String logicalKey) {
+        tombstones.put(logicalKey, Instant.now());
+        markDirty(logicalKey);
+        changed.set(true);
+        checkpoint();
+    }
+
+    @Scheduled(initialDelayString = "${storage.s3.reconcile.checkpoint-interval:1m}",
+            fixedDelayString = "${storage.s3.reconcile.checkpoint-interval:1m}")
+    @PreDestroy
+    public synchronized void checkpoint() {
+        Path file = stateFile();
+        if (file == null || !changed.getAndSet(false)) {
+            return;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "reconcile-state", ".tmp");
+            objectMapper.writeValue(temp.toFile(),
+                    new State(Instant.now(), new TreeSet<>(dirtyPrefixes), new TreeMap<>(tombstones)));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            changed.set(true);
+            log.warn("写入反熵状态失败 - 文件: {}", file, e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${storage.s3.reconcile.interval:10m}",
+            fixedDelayString = "${storage.s3.reconcile.interval:10m}")
+    public void scheduledRun() {
+        if (!storageProperties.getReconcile().isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        // 在后台线程池中运行，避免长时间占用调度线程；同一时间只有一轮
+        try {
+            executorService.execute(() -> {
+                try {
+                    reconcileAll();
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (ServiceOverloadedException e) {
+            running.set(false);
+            log.warn("后台任务队列已满，本轮反熵修复跳过");
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    private void reconcileAll() {
+        S3StorageProperties.Reconcile config = storageProperties.getReconcile();
+        Collection<String> expected = replicaTargets();
+        Map<String, S3Client> replicas = replicaClients(expected);
+        if (replicas.size() < 2) {
+            log.debug("可比较的副本后端少于两个，跳过反熵修复");
+            return;
+        }
+        // 被跳过的后端上可能缺少对象，本轮修复的前缀仍保持为脏，等它恢复后再校验
+        boolean partial = replicas.size() < expected.size();
+        if (partial) {
+            log.info("有副本后端不可用，本轮校验结果不记为通过 - 参与: {}, 应有: {}", replicas.keySet(), expected);
+        }
+
+        Instant now = Instant.now();
+        if (tombstones.values().removeIf(deletedAt -> deletedAt.isBefore(now.minus(config.getTombstoneTtl())))) {
+            changed.set(true);
+        }
+        AtomicInteger repairBudget = new AtomicInteger(config.getMaxRepairsPerRun());
+        for (String prefix : prefixesToVerify(config, now)) {
+            // 先移除脏标记，校验期间新产生的脏标记会保留到下一轮
+            dirtyPrefixes.remove(prefix);
+            try {
+                if (reconcile(prefix, replicas, config, repairBudget) && !partial) {
+                    lastVerified.put(prefix, now);
+                } else {
+                    dirtyPrefixes.add(prefix);
+                }
+            } catch (RuntimeException e) {
+                dirtyPrefixes.add(prefix);
+                log.warn("反熵校验失败 - 前缀: {}", prefix, e);
+            }
+        }
+        changed.set(true);
+        checkpoint();
+    }
+
+    /**
+     * 回溯窗口内从未校验过、被标记为脏或距上次校验超过 fullSweepInterval 的日期，以及窗口外的脏日期
+     */
+    private List<String> prefixesToVerify(S3StorageProperties.Reconcile config, Instant now) {
+        Set<String> prefixes = new TreeSet<>(dirtyPrefixes);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < config.getLookbackDays(); i++) {
+            String prefix = today.minusDays(i).format(DATE_PREFIX);
+            Instant verified = lastVerified.get(prefix);
+            if (verified == null || verified.isBefore(now.minus(config.getFullSweepInterval()))) {
+                prefixes.add(prefix);
+            }
+        }
+        return new ArrayList<>(prefixes);
+    }
+
+    /**
+     * @return 该前缀在各副本间是否已一致
+     */
+    private boolean reconcile(String prefix, Map<String, S3Client> replicas,
+                              S3StorageProperties.Reconcile config, AtomicInteger repairBudget) {
+        Map<String, Collection<MerkleTree.Entry>> listings = listAll(prefix, replicas, config);
+        Map<String, MerkleTree> trees = new LinkedHashMap<>();
+        listings.forEach((serviceName, entries) -> trees.put(serviceName,
+                MerkleTree.build(entries, config.getTreeFanout(), config.getTreeDepth(), config.isCompareEtag())));
+
+        List<Integer> differing = MerkleTree.differingLeaves(trees.values());
+        if (differing.isEmpty()) {
+            meterRegistry.counter("storage.reconcile.prefixes", "result", "clean").increment();
+            return true;
+        }
+        meterRegistry.counter("storage.reconcile.prefixes", "result", "drift").increment();
+        log.info("发现副本不一致 - 前缀: {}, 不一致的叶子: {}/{}", prefix, differing.size(),
+                (int) Math.pow(config.getTreeFanout(), config.getTreeDepth()));
+
+        boolean consistent = true;
+        for (int leaf : differing) {
+            Set<String> keys = new TreeSet<>();
+            trees.values().forEach(tree -> keys.addAll(tree.leaf(leaf).keySet()));
+            for (String logicalKey : keys) {
+                Map<String, MerkleTree.Entry> copies = new LinkedHashMap<>();
+                trees.forEach((serviceName, tree) -> {
+                    MerkleTree.Entry entry = tree.leaf(leaf).get(logicalKey);
+                    if (entry != null) {
+                        copies.put(serviceName, entry);
+                    }
+                });
+                if (copies.size() == trees.size() && sameContent(copies.values(), config.isCompareEtag())) {
+                    continue;
+                }
+                if (repairBudget.getAndDecrement() <= 0) {
+                    log.warn("本轮修复数量已达上限，剩余差异留到下一轮 - 前缀: {}", prefix);
+                    return false;
+                }
+                consistent &= repair(logicalKey, copies, replicas, config.isDryRun());
+            }
+        }
+        return consistent && !config.isDryRun();
+    }
+
+    private Map<String, Collection<MerkleTree.Entry>> listAll(String prefix, Map<String, S3Client> replicas,
+                                                              S3StorageProperties.Reconcile config) {
+        // 每个后端的每个存储前缀（分片）一个列表任务，在整桶扫描的线程池中执行，同时进行的任务数受 listParallelism 限制
+        Semaphore window = new Semaphore(config.getListParallelism());
+        Map<String, List<CompletableFuture<List<MerkleTree.Entry>>>> futures = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, S3Client> replica : replicas.entrySet()) {
+                String bucket = storageProperties.getServices().get(replica.getKey()).getBucket();
+                for (String storagePrefix : keyLayout.listPrefixes(prefix)) {
+                    window.acquire();
+                    CompletableFuture<List<MerkleTree.Entry>> future;
+                    try {
+                        future = CompletableFuture.supplyAsync(
+                                () -> list(replica.getKey(), replica.getValue(), bucket, storagePrefix), listExecutor);
+                    } catch (RuntimeException e) {
+                        window.release();
+                        throw e;
+                    }
+                    future.whenComplete((entries, error) -> window.release());
+                    futures.computeIfAbsent(replica.getKey(), k -> new ArrayList<>()).add(future);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("反熵列表被中断", e);
+        }
+
+        Map<String, Collection<MerkleTree.Entry>> listings = new LinkedHashMap<>();
+        futures.forEach((serviceName, serviceFutures) -> {
+            // 同一逻辑键在新旧布局下都存在时，以最后修改的为准
+            Map<String, MerkleTree.Entry> merged = new HashMap<>();
+            for (CompletableFuture<List<MerkleTree.Entry>> future : serviceFutures) {
+                for (MerkleTree.Entry entry : future.join()) {
+                    merged.merge(entry.logicalKey(), entry,
+                            (a, b) -> a.lastModified().isAfter(b.lastModified()) ? a : b);
+                }
+            }
+            listings.put(serviceName, merged.values());
+        });
+        return listings;
+    }
+
+    private List<MerkleTree.Entry> list(String serviceName, S3Client client, String bucket, String storagePrefix) {
+        List<MerkleTree.Entry> entries = new ArrayList<>();
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(storagePrefix)
+                .build();
+        try {
+            for (ListObjectsV2Response page : client.listObjectsV2Paginator(request)) {
+                meterRegistry.counter("storage.reconcile.list.calls", "service", serviceName).increment();
+                for (S3Object object : page.contents()) {
+                    String eTag = object.eTag() == null ? null : object.eTag().replace("\"", "");
+                    entries.add(new MerkleTree.Entry(keyLayout.logicalKey(object.key()), object.key(),
+                            eTag, object.size(), object.lastModified()));
+                }
+            }
+        } catch (NoSuchBucketException e) {
+            // 桶尚未创建，视为没有对象
+            return entries;
+        }
+        return entries;
+    }
+
+    private static boolean sameContent(Collection<MerkleTree.Entry> copies, boolean compareETag) {
+        MerkleTree.Entry first = copies.iterator().next();
+        for (MerkleTree.Entry copy : copies) {
+            if (copy.size() != first.size() || (compareETag && !Objects.equals(copy.eTag(), first.eTag()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 修复是否全部成功
+     */
+    private boolean repair(String logicalKey, Map<String, MerkleTree.Entry> copies,
+                           Map<String, S3Client> replicas, boolean dryRun) {
+        Instant deletedAt = tombstones.get(logicalKey);
+        Map.Entry<String, MerkleTree.Entry> newest = copies.entrySet().stream()
+                .max(Comparator.comparing(e -> e.getValue().lastModified()))
+                .orElseThrow();
+        boolean deleted = deletedAt != null && newest.getValue().lastModified().isBefore(deletedAt);
+
+        boolean success = true;
+        for (Map.Entry<String, S3Client> replica : replicas.entrySet()) {
+            String serviceName = replica.getKey();
+            MerkleTree.Entry copy = copies.get(serviceName);
+            String action;
+            if (deleted) {
+                if (copy == null) {
+                    continue;
+                }
+                action = "delete";
+            } else {
+                if (serviceName.equals(newest.getKey()) || (copy != null && sameContent(
+                        List.of(copy, newest.getValue()), storageProperties.getReconcile().isCompareEtag()))) {
+                    continue;
+                }
+                action = "copy";
+            }
+            if (dryRun) {
+                log.info("[dry-run] 反熵修复 - 操作: {}, 服务: {}, key: {}", action, serviceName, logicalKey);
+                continue;
+            }
+            try {
+                if (deleted) {
+                    if (!deleteCopy(serviceName, replica.getValue(), copy, deletedAt)) {
+                        success = false;
+                        conflict(action, serviceName, logicalKey);
+                        continue;
+                    }
+                    bucketStatistics.recordDelete(serviceName, logicalKey, copy.size());
+                } else {
+                    copyBetween(newest.getKey(), newest.getValue(), serviceName, replica.getValue(), copy);
+                    if (copy != null) {
+                        bucketStatistics.recordDelete(serviceName, logicalKey, copy.size());
+                    }
+                    bucketStatistics.recordPut(serviceName, logicalKey, newest.getValue().size());
+                }
+                meterRegistry.counter("storage.reconcile.repairs", "action", action, "result", "success").increment();
+                log.info("反熵修复完成 - 操作: {}, 服务: {}, key: {}", action, serviceName, logicalKey);
+            } catch (S3Exception e) {
+                success = false;
+                if (e.statusCode() == PRECONDITION_FAILED) {
+                    conflict(action, serviceName, logicalKey);
+                } else {
+                    meterRegistry.counter("storage.reconcile.repairs", "action", action, "result", "failure").increment();
+                    log.warn("反熵修复失败 - 操作: {}, 服务: {}, key: {}", action, serviceName, logicalKey, e);
+                }
+            } catch (Exception e) {
+                success = false;
+                meterRegistry.counter("storage.reconcile.repairs", "action", action, "result", "failure").increment();
+                log.warn("反熵修复失败 - 操作: {}, 服务: {}, key: {}", action, serviceName, logicalKey, e);
+            }
+        }
+        if (!dryRun) {
+            objectCache.invalidate(logicalKey);
+            validatorCache.invalidate(logicalKey);
+        }
+        return success;
+    }
+
+    /**
+     * 列出之后对象可能被重新上传，删除前再确认它仍早于墓碑
+     *
+     * @return false 表示副本已被更新，未删除
+     */
+    private boolean deleteCopy(String serviceName, S3Client client, MerkleTree.Entry copy, Instant deletedAt) {
+        String bucket = storageProperties.getServices().get(serviceName).getBucket();
+        try {
+            HeadObjectResponse head = client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(copy.storageKey())
+                    .build());
+            if (!head.lastModified().isBefore(deletedAt)) {
+                return false;
+            }
+        } catch (NoSuchKeyException e) {
+            return true;
+        }
+        client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucket)
+                .key(copy.storageKey())
+                .build());
+        return true;
+    }
+
+    private void conflict(String action, String serviceName, String logicalKey) {
+        meterRegistry.counter("storage.reconcile.repairs", "action", action, "result", "conflict").increment();
+        log.info("副本在校验期间被修改，留到下一轮 - 操作: {}, 服务: {}, key: {}", action, serviceName, logicalKey);
+    }
+
+    /**
+     * 后端之间不能 CopyObject，从源后端读取后流式写入目标后端，保留内容类型和元数据。
+     * 读取以列出时的源 ETag 为条件，写入以列出时的目标状态为条件：目标键上原本没有对象时 If-None-Match: *，
+     * 否则 If-Match 目标的 ETag；任一方在列出之后被修改都会返回 412，不会用旧内容覆盖新写入
+     */
+    private void copyBetween(String sourceName, MerkleTree.Entry source, String targetName, S3Client target,
+                             MerkleTree.Entry existing) {
+        S3Client sourceClient = clientManager.getClient(sourceName);
+        GetObjectRequest.Builder get = GetObjectRequest.builder()
+                .bucket(storageProperties.getServices().get(sourceName).getBucket())
+                .key(source.storageKey());
+        if (source.eTag() != null) {
+            get.ifMatch(quoted(source.eTag()));
+        }
+        try (ResponseInputStream<GetObjectResponse> in = sourceClient.getObject(get.build())) {
+            GetObjectResponse response = in.response();
+            String targetKey = keyLayout.storageKey(source.logicalKey());
+            PutObjectRequest.Builder put = PutObjectRequest.builder()
+                    .bucket(storageProperties.getServices().get(targetName).getBucket())
+                    .key(targetKey)
+                    .contentType(response.contentType())
+                    .contentLength(response.contentLength())
+                    .metadata(response.metadata());
+            // 目标的现有副本在旧布局的键下时，当前布局的键上原本没有对象
+            if (existing == null || !existing.storageKey().equals(targetKey)) {
+                put.ifNoneMatch("*");
+            } else if (existing.eTag() != null) {
+                put.ifMatch(quoted(existing.eTag()));
+            }
+            target.putObject(put.build(), RequestBody.fromInputStream(in, response.contentLength()));
+        } catch (IOException e) {
+            throw new IllegalStateException("关闭源对象流失败", e);
+        }
+    }
+
+    private static String quoted(String eTag) {
+        return "\"" + eTag + "\"";
+    }
+
+    /**
+     * 应当持有副本的后端：ALL 策略为全部启用的后端，SPECIFIC 策略为指定的后端；
+     * FIRST 策略下对象本来就只有一份，不做比较。
+     */
+    private Collection<String> replicaTargets() {
+        if (storageProperties.getUploadStrategy() == UploadStrategy.ALL) {
+            return clientManager.getAllEnabledClients().keySet();
+        }
+        if (storageProperties.getUploadStrategy() == UploadStrategy.SPECIFIC) {
+            return storageProperties.getSpecificTargets();
+        }
+        return List.of();
+    }
+
+    /**
+     * 参与本轮比较的副本后端，未通过健康检查的后端本轮跳过
+     */
+    private Map<String, S3Client> replicaClients(Collection<String> targets) {
+        Map<String, S3Client> allClients = clientManager.getAllEnabledClients();
+        Map<String, S3Client> replicas = new LinkedHashMap<>();
+        for (String target : targets) {
+            S3Client client = allClients.get(target);
+            if (client != null && healthTracker.isRoutable(target)) {
+                replicas.put(target, client);
+            }
+        }
+        return replicas;
+    }
+
+    private Path stateFile() {
+        String file = storageProperties.getReconcile().getStateFile();
+        return file == null || file.isBlank() ? null : Path.of(file);
+    }
+
+    private static String datePrefix(String logicalKey) {
+        if (logicalKey == null || logicalKey.length() < DATE_PREFIX_LENGTH) {
+            return null;
+        }
+        String prefix = logicalKey.substring(0, DATE_PREFIX_LENGTH);
+        return prefix.chars().allMatch(Character::isDigit) ? prefix : null;
+    }
+}
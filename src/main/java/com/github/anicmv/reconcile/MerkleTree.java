@@ -0,0 +1,144 @@
+package com.github.anicmv.reconcile;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * @author anicmv
+ * 一个后端在某个日期前缀下全部对象的 Merkle 树。
+ * 逻辑键按 CRC32C 分到 fanout^depth 个叶子，叶子摘要覆盖其中按键排序的 键+ETag+大小，上层节点摘要覆盖子节点摘要。
+ * 各后端的树结构相同，比较时从根开始，只进入摘要不同的子树。
+ */
+public final class MerkleTree {
+
+    /**
+     * 后端中的一个对象，storageKey 为它在该后端实际的存储键
+     */
+    public record Entry(String logicalKey, String storageKey, String eTag, long size, Instant lastModified) {
+    }
+
+    private final int fanout;
+    // levels[0] 为根，levels[depth] 为叶子
+    private final byte[][][] levels;
+    private final List<SortedMap<String, Entry>> leaves;
+
+    private MerkleTree(int fanout, byte[][][] levels, List<SortedMap<String, Entry>> leaves) {
+        this.fanout = fanout;
+        this.levels = levels;
+        this.leaves = leaves;
+    }
+
+    /**
+     * @param compareETag 为 false 时只比较键和大小，用于 ETag 算法不一致的后端之间
+     */
+    public static MerkleTree build(Collection<Entry> entries, int fanout, int depth, boolean compareETag) {
+        int leafCount = (int) Math.pow(fanout, depth);
+        List<SortedMap<String, Entry>> leaves = new ArrayList<>(leafCount);
+        for (int i = 0; i < leafCount; i++) {
+            leaves.add(new TreeMap<>());
+        }
+        for (Entry entry : entries) {
+            leaves.get(leafIndex(entry.logicalKey(), leafCount)).put(entry.logicalKey(), entry);
+        }
+
+        byte[][][] levels = new byte[depth + 1][][];
+        MessageDigest digest = sha256();
+        levels[depth] = new byte[leafCount][];
+        for (int i = 0; i < leafCount; i++) {
+            for (Entry entry : leaves.get(i).values()) {
+                digest.update(entry.logicalKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                if (compareETag && entry.eTag() != null) {
+                    digest.update(entry.eTag().getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+                digest.update(Long.toString(entry.size()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            levels[depth][i] = digest.digest();
+        }
+        for (int level = depth - 1; level >= 0; level--) {
+            byte[][] children = levels[level + 1];
+            byte[][] nodes = new byte[children.length / fanout][];
+            for (int i = 0; i < nodes.length; i++) {
+                for (int c = 0; c < fanout; c++) {
+                    digest.update(children[i * fanout + c]);
+                }
+                nodes[i] = digest.digest();
+            }
+            levels[level] = nodes;
+        }
+        return new MerkleTree(fanout, levels, leaves);
+    }
+
+    public byte[] root() {
+        return levels[0][0];
+    }
+
+    /**
+     * 从根开始逐层比较，返回至少一棵树与其他树不同的叶子
+     */
+    public static List<Integer> differingLeaves(Collection<MerkleTree> trees) {
+        List<MerkleTree> list = new ArrayList<>(trees);
+        MerkleTree first = list.get(0);
+        int depth = first.levels.length - 1;
+        List<Integer> frontier = List.of(0);
+        for (int level = 0; level <= depth; level++) {
+            List<Integer> differing = new ArrayList<>();
+            for (int node : frontier) {
+                if (!sameNode(list, level, node)) {
+                    differing.add(node);
+                }
+            }
+            if (level == depth || differing.isEmpty()) {
+                return differing;
+            }
+            List<Integer> next = new ArrayList<>(differing.size() * first.fanout);
+            for (int node : differing) {
+                for (int c = 0; c < first.fanout; c++) {
+                    next.add(node * first.fanout + c);
+                }
+            }
+            frontier = next;
+        }
+        return List.of();
+    }
+
+    public Map<String, Entry> leaf(int index) {
+        return leaves.get(index);
+    }
+
+    private static boolean sameNode(List<MerkleTree> trees, int level, int node) {
+        byte[] expected = trees.get(0).levels[level][node];
+        for (int i = 1; i < trees.size(); i++) {
+            if (!Arrays.equals(expected, trees.get(i).levels[level][node])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int leafIndex(String logicalKey, int leafCount) {
+        CRC32C crc = new CRC32C();
+        crc.update(logicalKey.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % leafCount);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支持 SHA-256", e);
+        }
+    }
+}
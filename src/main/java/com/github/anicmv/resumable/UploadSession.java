@@ -0,0 +1,78 @@
+package com.github.anicmv.resumable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author anicmv
+ * 断点续传会话：每个目标后端对应一个 S3 分段上传，第 n 个分块（从 0 开始）写入各后端的第 n+1 段。
+ * 除最后一块外每块固定为 chunkSize 字节，offset 总是 chunkSize 的整数倍或等于 length。
+ * 会话状态序列化为 JSON 保存，重启后从文件恢复。
+ */
+@Getter
+@Setter
+public class UploadSession {
+
+    private String id;
+    private String originalFilename;
+    private String fileName;
+    private String logicalKey;
+    private String storageKey;
+    private String contentType;
+    private long length;
+    private long chunkSize;
+    private long offset;
+    private Instant createdAt;
+    private Instant expiresAt;
+    private Map<String, BackendUpload> backends = new LinkedHashMap<>();
+
+    /**
+     * 同一会话的分块按顺序写入，并发的请求直接拒绝
+     */
+    @JsonIgnore
+    private final transient ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 单个后端上的分段上传，etags 按段号顺序保存
+     */
+    @Getter
+    @Setter
+    public static class BackendUpload {
+        private String uploadId;
+        private List<String> etags = new ArrayList<>();
+        private boolean completed;
+    }
+
+    @JsonIgnore
+    public boolean isComplete() {
+        return offset == length;
+    }
+
+    /**
+     * 下一个分块应有的字节数
+     */
+    @JsonIgnore
+    public long nextChunkLength() {
+        return Math.min(chunkSize, length - offset);
+    }
+
+    /**
+     * 下一个分块对应的 S3 段号
+     */
+    @JsonIgnore
+    public int nextPartNumber() {
+        return (int) (offset / chunkSize) + 1;
+    }
+
+    public boolean expired(Instant now) {
+        return expiresAt.isBefore(now);
+    }
+}
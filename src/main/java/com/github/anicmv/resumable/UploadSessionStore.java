@@ -0,0 +1,29 @@
+package com.github.anicmv.resumable;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.persist.JsonFileStore;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author anicmv
+ * 断点续传会话的持久化：每个会话一个 JSON 文件，先写临时文件再原子替换。
+ * 写入失败只记录日志，重启后恢复的 offset 可能落后，客户端按 HEAD 返回的 offset 重传之后的分块即可，
+ * 重传的分块以相同段号覆盖，不影响结果。
+ */
+@Component
+public class UploadSessionStore extends JsonFileStore<UploadSession> {
+
+    public UploadSessionStore() {
+        super(UploadSession.class, "断点续传会话");
+    }
+
+    @Override
+    protected String directory(S3StorageProperties storageProperties) {
+        return storageProperties.getResumableUpload().getSessionDirectory();
+    }
+
+    @Override
+    protected String idOf(UploadSession session) {
+        return session.getId();
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.anicmv.retry;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.metrics.StorageMetrics;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.NonRetryableException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.retries.StandardRetryStrategy;
+import software.amazon.awssdk.retries.api.*;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * @author anicmv
+ * 在SDK标准重试策略（指数退避+全抖动）外层加上按服务配置的重试预算。
+ * SDK自带的令牌桶容量不可配置，因此关闭其熔断，由 {@link RetryBudget} 统一控制，并按服务记录重试与超时次数。
+ * 被取消或中断的调用（对冲读取的落选请求）以及请求体无法重放的调用（流式上传）不重试，也不消耗预算。
+ */
+public class BudgetedRetryStrategy implements RetryStrategy {
+
+    private final String serviceName;
+    private final S3StorageProperties.RetryPolicy policy;
+    private final RetryBudget budget;
+    private final StorageMetrics storageMetrics;
+    private final StandardRetryStrategy delegate;
+
+    public BudgetedRetryStrategy(String serviceName, S3StorageProperties.RetryPolicy policy,
+                                 RetryBudget budget, StorageMetrics storageMetrics) {
+        this(serviceName, policy, budget, storageMetrics, StandardRetryStrategy.builder()
+                .maxAttempts(policy.getMaxAttempts())
+                .backoffStrategy(BackoffStrategy.exponentialDelay(policy.getBaseDelay(), policy.getMaxDelay()))
+                .throttlingBackoffStrategy(BackoffStrategy.exponentialDelay(policy.getThrottlingBaseDelay(), policy.getMaxDelay()))
+                .circuitBreakerEnabled(false)
+                .retryOnException(BudgetedRetryStrategy::isRetryable)
+                .treatAsThrottling(BudgetedRetryStrategy::isThrottling)
+                .build());
+    }
+
+    private BudgetedRetryStrategy(String serviceName, S3StorageProperties.RetryPolicy policy, RetryBudget budget,
+                                  StorageMetrics storageMetrics, StandardRetryStrategy delegate) {
+        this.serviceName = serviceName;
+        this.policy = policy;
+        this.budget = budget;
+        this.storageMetrics = storageMetrics;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public AcquireInitialTokenResponse acquireInitialToken(AcquireInitialTokenRequest request) {
+        return delegate.acquireInitialToken(request);
+    }
+
+    @Override
+    public RefreshRetryTokenResponse refreshRetryToken(RefreshRetryTokenRequest request) {
+        Throwable failure = request.failure();
+        String reason = reasonOf(failure);
+        if (failure instanceof ApiCallAttemptTimeoutException) {
+            storageMetrics.recordTimeout(serviceName, StorageMetrics.TIMEOUT_ATTEMPT);
+        }
+        if (!isRetryable(failure)) {
+            return delegate.refreshRetryToken(request);
+        }
+
+        int cost = failure instanceof ApiCallAttemptTimeoutException ? policy.getTimeoutCost() : policy.getRetryCost();
+        if (!budget.tryAcquire(cost)) {
+            storageMetrics.recordRetry(serviceName, reason, StorageMetrics.RETRY_BUDGET_EXHAUSTED);
+            throw new TokenAcquisitionFailedException("Retry budget exhausted for " + serviceName, request.token(), failure);
+        }
+        try {
+            RefreshRetryTokenResponse response = delegate.refreshRetryToken(request);
+            storageMetrics.recordRetry(serviceName, reason, StorageMetrics.RETRY_ATTEMPTED);
+            return response;
+        } catch (RuntimeException e) {
+            // 已达到最大尝试次数，没有真正重试，返还令牌
+            budget.release(cost);
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordSuccessResponse recordSuccess(RecordSuccessRequest request) {
+        budget.release(policy.getSuccessRefund());
+        return delegate.recordSuccess(request);
+    }
+
+    @Override
+    public int maxAttempts() {
+        return delegate.maxAttempts();
+    }
+
+    /**
+     * 已完整配置，不接受SDK按服务默认值再次改写
+     */
+    @Override
+    public boolean useClientDefaults() {
+        return false;
+    }
+
+    /**
+     * SDK 可能通过 toBuilder() 调整后重新构建，构建结果仍包装同一个预算
+     */
+    @Override
+    public BudgetedBuilder toBuilder() {
+        return new BudgetedBuilder(this, delegate.toBuilder());
+    }
+
+    public static final class BudgetedBuilder implements Builder<BudgetedBuilder, BudgetedRetryStrategy> {
+
+        private final BudgetedRetryStrategy source;
+        private final StandardRetryStrategy.Builder delegate;
+
+        private BudgetedBuilder(BudgetedRetryStrategy source, StandardRetryStrategy.Builder delegate) {
+            this.source = source;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public BudgetedBuilder retryOnException(Predicate<Throwable> shouldRetry) {
+            delegate.retryOnException(shouldRetry);
+            return this;
+        }
+
+        @Override
+        public BudgetedBuilder maxAttempts(int maxAttempts) {
+            delegate.maxAttempts(maxAttempts);
+            return this;
+        }
+
+        @Override
+        public BudgetedBuilder backoffStrategy(BackoffStrategy backoffStrategy) {
+            delegate.backoffStrategy(backoffStrategy);
+            return this;
+        }
+
+        @Override
+        public BudgetedBuilder throttlingBackoffStrategy(BackoffStrategy throttlingBackoffStrategy) {
+            delegate.throttlingBackoffStrategy(throttlingBackoffStrategy);
+            return this;
+        }
+
+        @Override
+        public BudgetedBuilder treatAsThrottling(Predicate<Throwable> treatAsThrottling) {
+            delegate.treatAsThrottling(treatAsThrottling);
+            return this;
+        }
+
+        @Override
+        public BudgetedRetryStrategy build() {
+            return new BudgetedRetryStrategy(source.serviceName, source.policy, source.budget,
+                    source.storageMetrics, delegate.build());
+        }
+    }
+
+    static boolean isRetryable(Throwable failure) {
+        if (failure instanceof SdkServiceException serviceException) {
+            return serviceException.isThrottlingException() || serviceException.statusCode() >= 500;
+        }
+        if (failure instanceof Error) {
+            return false;
+        }
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof NonRetryableException || t instanceof AbortedException
+                    || t instanceof InterruptedException
+                    || (t instanceof InterruptedIOException && !(t instanceof SocketTimeoutException))) {
+                return false;
+            }
+        }
+        // 其余客户端异常（连接失败、读超时、单次尝试超时等）
+        return true;
+    }
+
+    private static boolean isThrottling(Throwable failure) {
+        return failure instanceof SdkServiceException serviceException && serviceException.isThrottlingException();
+    }
+
+    private static String reasonOf(Throwable failure) {
+        if (failure instanceof ApiCallAttemptTimeoutException) {
+            return "timeout";
+        }
+        if (isThrottling(failure)) {
+            return "throttling";
+        }
+        if (failure instanceof SdkServiceException) {
+            return "server_error";
+        }
+        return "io";
+    }
+}
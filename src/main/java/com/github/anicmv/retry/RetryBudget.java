@@ -0,0 +1,39 @@
+package com.github.anicmv.retry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author anicmv
+ * 单个后端的重试预算（令牌桶）。每次重试消耗令牌，每次成功返还令牌；
+ * 后端持续失败时令牌很快耗尽，之后的失败不再重试，避免在后端降级时放大请求量形成重试风暴。
+ */
+public class RetryBudget {
+
+    private final int capacity;
+    private final AtomicInteger tokens;
+
+    public RetryBudget(int capacity) {
+        this.capacity = capacity;
+        this.tokens = new AtomicInteger(capacity);
+    }
+
+    public boolean tryAcquire(int cost) {
+        while (true) {
+            int current = tokens.get();
+            if (current < cost) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - cost)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(int amount) {
+        tokens.accumulateAndGet(amount, (current, delta) -> Math.min(capacity, current + delta));
+    }
+
+    public int available() {
+        return tokens.get();
+    }
+}
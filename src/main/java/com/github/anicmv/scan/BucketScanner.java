@@ -0,0 +1,309 @@
+package com.github.anicmv.scan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.config.ExecutorConfig;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.StorageConfigurationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * @author anicmv
+ * 并行的整桶扫描，供清单、统计重建、清理等需要遍历整个桶的任务使用。
+ * 键空间按 "/" 分隔的前缀（例如哈希分片目录）发现，每个前缀再按日期边界（yyyyMM 或 yyyyMMdd，与对象键的日期前缀一致）切成首尾相接的区间，
+ * 各区间并行列出，每个后端同时进行的列表请求数有上限。
+ * 指定 jobName 时进度写入检查点（包括已列出但尚未切分的子前缀），中断后再次以相同 jobName 扫描会从断点继续。
+ */
+@Slf4j
+@Component
+public class BucketScanner {
+
+    private static final String DELIMITER = "/";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private S3ClientManager clientManager;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource(name = ExecutorConfig.SCAN_EXECUTOR)
+    private Executor scanExecutor;
+
+    private final Map<String, Semaphore> backendPermits = new ConcurrentHashMap<>();
+
+    /**
+     * 开始扫描一个后端的整个桶
+     *
+     * @param jobName 检查点名称，为 null 时不记录进度
+     */
+    public ScanStream scan(String serviceName, String jobName) {
+        S3Client client = clientManager.getClient(serviceName);
+        S3StorageProperties.S3ServiceConfig serviceConfig = storageProperties.getServices().get(serviceName);
+        if (client == null || serviceConfig == null) {
+            throw new StorageConfigurationException("存储服务不存在或未启用: " + serviceName);
+        }
+        S3StorageProperties.BucketScan config = storageProperties.getBucketScan();
+        Path checkpoint = jobName == null ? null
+                : Path.of(config.getCheckpointDirectory(), jobName + "-" + serviceName + ".json");
+        ScanProgress progress = ScanProgress.load(checkpoint, objectMapper);
+        Semaphore permits = backendPermits.computeIfAbsent(serviceName,
+                k -> new Semaphore(config.getConcurrencyPerBackend()));
+
+        Job job = new Job(serviceName, client, serviceConfig.getBucket(), config, progress, permits);
+        ScanStream stream = new ScanStream(job.queue, progress, job::cancel);
+        if (progress.isEmpty()) {
+            job.discover("");
+        } else {
+            progress.pending().forEach(range -> job.list(range.range(), range.lastKey()));
+            progress.undiscovered().forEach(job::discover);
+            job.finishIfIdle();
+        }
+        return stream;
+    }
+
+    /**
+     * 一次扫描中的全部列表任务
+     */
+    private class Job {
+        private final String serviceName;
+        private final S3Client client;
+        private final String bucket;
+        private final S3StorageProperties.BucketScan config;
+        private final ScanProgress progress;
+        private final Semaphore permits;
+        private final BlockingQueue<Object> queue;
+        private final Set<String> knownPrefixes = ConcurrentHashMap.newKeySet();
+        // 已提交但尚未结束的任务数，归零且没有新任务时扫描结束
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private Job(String serviceName, S3Client client, String bucket, S3StorageProperties.BucketScan config,
+                    ScanProgress progress, Semaphore permits) {
+            this.serviceName = serviceName;
+            this.client = client;
+            this.bucket = bucket;
+            this.config = config;
+            this.progress = progress;
+            this.permits = permits;
+            this.queue = new ArrayBlockingQueue<>(config.getQueuePages());
+            knownPrefixes.addAll(progress.prefixes());
+        }
+
+        /**
+         * 列出前缀下的第一个键，按它的日期到今天为止切分区间
+         */
+        private void discover(String prefix) {
+            if (!knownPrefixes.add(prefix)) {
+                return;
+            }
+            // 在调用方（列出父区间的任务）交付 RangeDone 之前记入进度，父区间完成时子前缀已在检查点中
+            progress.discovering(prefix);
+            submit(() -> {
+                ListObjectsV2Response first = withPermit(() -> client.listObjectsV2(ListObjectsV2Request.builder()
+                        .bucket(bucket)
+                        .prefix(prefix)
+                        .maxKeys(1)
+                        .build()));
+                if (first == null || first.contents().isEmpty() && first.commonPrefixes().isEmpty()) {
+                    progress.discovered(prefix);
+                    return;
+                }
+                String firstKey = first.contents().isEmpty()
+                        ? first.commonPrefixes().get(0).prefix()
+                        : first.contents().get(0).key();
+                List<KeyRange> ranges = partition(prefix, firstKey);
+                ranges.forEach(progress::register);
+                progress.discovered(prefix);
+                ranges.forEach(range -> list(range, null));
+            });
+        }
+
+        private List<KeyRange> partition(String prefix, String firstKey) {
+            boolean byDay = config.isPartitionByDay();
+            DateTimeFormatter format = byDay ? DAY_FORMAT : MONTH_FORMAT;
+            LocalDate start = parseDate(firstKey.substring(prefix.length()), byDay);
+            LocalDate end = LocalDate.now().plusDays(1);
+            List<String> boundaries = new ArrayList<>();
+            for (LocalDate date = byDay ? start.plusDays(1) : start.withDayOfMonth(1).plusMonths(1);
+                 !date.isAfter(end);
+                 date = byDay ? date.plusDays(1) : date.plusMonths(1)) {
+                boundaries.add(prefix + date.format(format));
+            }
+
+            List<KeyRange> ranges = new ArrayList<>(boundaries.size() + 1);
+            String lower = null;
+            for (String upper : boundaries) {
+                ranges.add(new KeyRange(prefix + "|" + (lower == null ? "" : lower), prefix, lower, upper));
+                lower = upper;
+            }
+            ranges.add(new KeyRange(prefix + "|" + (lower == null ? "" : lower), prefix, lower, null));
+            return ranges;
+        }
+
+        /**
+         * 列出一个区间，遇到的 "/" 前缀作为新的子键空间继续发现
+         */
+        private void list(KeyRange range, String resumeAfter) {
+            submit(() -> {
+                String startAfter = resumeAfter != null ? resumeAfter : range.startAfter();
+                String token = null;
+                boolean more = true;
+                while (more && !cancelled.get()) {
+                    ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
+                            .bucket(bucket)
+                            .prefix(range.prefix())
+                            .delimiter(DELIMITER)
+                            .maxKeys(config.getPageSize());
+                    if (token != null) {
+                        request.continuationToken(token);
+                    } else if (startAfter != null) {
+                        request.startAfter(startAfter);
+                    }
+                    ListObjectsV2Response page = withPermit(() -> client.listObjectsV2(request.build()));
+                    if (page == null) {
+                        break;
+                    }
+                    meterRegistry.counter("storage.scan.list.calls", "service", serviceName).increment();
+
+                    for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+                        if (range.below(commonPrefix.prefix())) {
+                            discover(commonPrefix.prefix());
+                        }
+                    }
+                    List<S3Object> objects = new ArrayList<>(page.contents().size());
+                    for (S3Object object : page.contents()) {
+                        if (!range.below(object.key())) {
+                            more = false;
+                            break;
+                        }
+                        objects.add(object);
+                    }
+                    if (!objects.isEmpty()) {
+                        put(new ScanStream.Page(range.id(), objects.get(objects.size() - 1).key(), objects));
+                    }
+                    token = page.nextContinuationToken();
+                    more &= Boolean.TRUE.equals(page.isTruncated()) && token != null;
+                }
+                if (!cancelled.get()) {
+                    put(new ScanStream.RangeDone(range.id()));
+                }
+            });
+        }
+
+        private void submit(Runnable task) {
+            pending.incrementAndGet();
+            scanExecutor.execute(() -> {
+                try {
+                    if (!cancelled.get()) {
+                        task.run();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("扫描区间失败 - 服务: {}", serviceName, e);
+                    fail(e);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        finishIfIdle();
+                    }
+                }
+            });
+        }
+
+        private void finishIfIdle() {
+            if (pending.get() == 0 && !cancelled.get() && ended.compareAndSet(false, true)) {
+                put(ScanStream.END);
+            }
+        }
+
+        private <T> T withPermit(Supplier<T> call) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待列表许可被中断", e);
+            }
+            try {
+                return call.get();
+            } catch (NoSuchBucketException e) {
+                return null;
+            } finally {
+                permits.release();
+            }
+        }
+
+        /**
+         * 队列满时阻塞（背压），扫描被取消后丢弃
+         */
+        private void put(Object item) {
+            try {
+                while (!cancelled.get()) {
+                    if (queue.offer(item, 1, TimeUnit.SECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            }
+        }
+
+        private void fail(RuntimeException error) {
+            cancel();
+            queue.offer(new ScanStream.Failed(error));
+        }
+
+        private void cancel() {
+            cancelled.set(true);
+            queue.clear();
+        }
+
+        private LocalDate parseDate(String suffix, boolean byDay) {
+            try {
+                if (suffix.length() >= 8 && byDay) {
+                    return LocalDate.parse(suffix.substring(0, 8), DAY_FORMAT);
+                }
+                if (suffix.length() >= 6) {
+                    return LocalDate.parse(suffix.substring(0, 6) + "01", DAY_FORMAT);
+                }
+            } catch (DateTimeParseException e) {
+                // 不是日期开头的键，从配置的最早日期开始切分
+            }
+            return config.getEarliestDate();
+        }
+    }
+}
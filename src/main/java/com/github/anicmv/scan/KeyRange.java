@@ -0,0 +1,13 @@
+package com.github.anicmv.scan;
+
+/**
+ * @author anicmv
+ * 扫描的一个键区间：prefix 下大于 startAfter 且小于 endBefore 的键，null 表示不限。
+ * 同一 prefix 的各区间首尾相接、互不重叠。
+ */
+public record KeyRange(String id, String prefix, String startAfter, String endBefore) {
+
+    public boolean below(String key) {
+        return endBefore == null || key.compareTo(endBefore) < 0;
+    }
+}
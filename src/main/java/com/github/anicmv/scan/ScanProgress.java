@@ -0,0 +1,136 @@
+package com.github.anicmv.scan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * @author anicmv
+ * 一次扫描的进度：每个区间已交给消费者的最后一个键，以及是否已扫完。
+ * 进度只在消费者取走数据后推进，恢复时从该位置继续，最多重复交付崩溃前正在处理的一批。
+ * 列表中遇到的子前缀在发现它的区间完成之前先记为待发现，切分出的区间登记后才移除，恢复时重新发现，不会因中断而漏掉。
+ */
+@Slf4j
+class ScanProgress {
+
+    record RangeCheckpoint(KeyRange range, String lastKey, boolean done) {
+    }
+
+    record Checkpoint(List<RangeCheckpoint> ranges, Set<String> undiscovered) {
+    }
+
+    private final Map<String, RangeCheckpoint> ranges = new ConcurrentHashMap<>();
+    private final Set<String> undiscovered = ConcurrentHashMap.newKeySet();
+    private final Path file;
+    private final ObjectMapper objectMapper;
+
+    ScanProgress(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 读取上次未完成的进度，没有时返回空进度
+     */
+    static ScanProgress load(Path file, ObjectMapper objectMapper) {
+        ScanProgress progress = new ScanProgress(file, objectMapper);
+        if (file != null && Files.exists(file)) {
+            try {
+                Checkpoint checkpoint = objectMapper.readValue(file.toFile(), Checkpoint.class);
+                checkpoint.ranges().forEach(range -> progress.ranges.put(range.range().id(), range));
+                if (checkpoint.undiscovered() != null) {
+                    progress.undiscovered.addAll(checkpoint.undiscovered());
+                }
+                log.info("从检查点恢复扫描 - 文件: {}, 区间数: {}, 待发现前缀: {}",
+                        file, progress.ranges.size(), progress.undiscovered.size());
+            } catch (IOException e) {
+                log.warn("读取扫描检查点失败，重新扫描 - 文件: {}", file, e);
+            }
+        }
+        return progress;
+    }
+
+    boolean isEmpty() {
+        return ranges.isEmpty() && undiscovered.isEmpty();
+    }
+
+    List<RangeCheckpoint> pending() {
+        return ranges.values().stream().filter(range -> !range.done()).toList();
+    }
+
+    Set<String> prefixes() {
+        return ranges.values().stream().map(range -> range.range().prefix()).collect(Collectors.toSet());
+    }
+
+    Set<String> undiscovered() {
+        return Set.copyOf(undiscovered);
+    }
+
+    /**
+     * 子前缀已被列出但尚未切分区间
+     */
+    void discovering(String prefix) {
+        undiscovered.add(prefix);
+    }
+
+    /**
+     * 子前缀的区间已登记（或前缀下没有对象）
+     */
+    void discovered(String prefix) {
+        undiscovered.remove(prefix);
+    }
+
+    void register(KeyRange range) {
+        ranges.putIfAbsent(range.id(), new RangeCheckpoint(range, null, false));
+    }
+
+    void advance(String rangeId, String lastKey) {
+        ranges.computeIfPresent(rangeId, (id, range) -> new RangeCheckpoint(range.range(), lastKey, false));
+    }
+
+    void complete(String rangeId) {
+        ranges.computeIfPresent(rangeId, (id, range) -> new RangeCheckpoint(range.range(), range.lastKey(), true));
+    }
+
+    void persist() {
+        if (file == null) {
+            return;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            // 先复制待发现前缀再复制区间：前缀在两次复制之间完成切分时，恢复后会重复发现而不是丢失
+            Set<String> pendingPrefixes = new TreeSet<>(undiscovered);
+            objectMapper.writeValue(temp.toFile(), new Checkpoint(new ArrayList<>(ranges.values()), pendingPrefixes));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入扫描检查点失败 - 文件: {}", file, e);
+        }
+    }
+
+    /**
+     * 扫描完成，删除检查点，下次从头开始
+     */
+    void finish() {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除扫描检查点失败 - 文件: {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.anicmv.scan;
+
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * @author anicmv
+ * 扫描结果流，每个元素是一页对象。各区间的列表任务把页放入有界队列，消费者取得慢时列表任务随之阻塞（背压）。
+ * 页在区间之间无序，同一区间内按键递增。使用完毕或提前放弃时必须 close，以停止仍在进行的列表任务。
+ */
+public class ScanStream implements Iterator<List<S3Object>>, AutoCloseable {
+
+    record Page(String rangeId, String lastKey, List<S3Object> objects) {
+    }
+
+    record RangeDone(String rangeId) {
+    }
+
+    record Failed(RuntimeException error) {
+    }
+
+    static final Object END = new Object();
+
+    private static final int PERSIST_EVERY_PAGES = 50;
+
+    private final BlockingQueue<Object> queue;
+    private final ScanProgress progress;
+    private final Runnable onClose;
+    private Page next;
+    // 已交给消费者、尚未确认处理完的页
+    private Page delivered;
+    private boolean finished;
+    private int pagesSincePersist;
+
+    ScanStream(BlockingQueue<Object> queue, ScanProgress progress, Runnable onClose) {
+        this.queue = queue;
+        this.progress = progress;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && delivered != null) {
+            // 消费者再次请求数据，说明上一页已处理完，此时才推进进度
+            progress.advance(delivered.rangeId(), delivered.lastKey());
+            delivered = null;
+        }
+        while (next == null && !finished) {
+            Object item = take();
+            if (item instanceof Page page) {
+                next = page;
+            } else if (item instanceof RangeDone done) {
+                progress.complete(done.rangeId());
+            } else if (item instanceof Failed failed) {
+                progress.persist();
+                close();
+                throw failed.error();
+            } else if (item == END) {
+                finished = true;
+                progress.finish();
+                close();
+            }
+            if (++pagesSincePersist >= PERSIST_EVERY_PAGES) {
+                pagesSincePersist = 0;
+                progress.persist();
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public List<S3Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        delivered = next;
+        next = null;
+        return delivered.objects();
+    }
+
+    /**
+     * 逐个对象的顺序流，关闭流即关闭扫描
+     */
+    public Stream<S3Object> objects() {
+        Spliterator<List<S3Object>> pages = Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL);
+        return StreamSupport.stream(pages, false)
+                .flatMap(List::stream)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (!finished) {
+            progress.persist();
+        }
+        onClose.run();
+    }
+
+    private Object take() {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("等待扫描结果被中断", e);
+        }
+    }
+}
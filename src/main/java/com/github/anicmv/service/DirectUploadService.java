@@ -0,0 +1,384 @@
+package com.github.anicmv.service;
+
+import com.github.anicmv.config.ExecutorConfig;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.direct.DirectUploadStore;
+import com.github.anicmv.direct.PendingDirectUpload;
+import com.github.anicmv.dto.response.R;
+import com.github.anicmv.dto.result.ServiceUploadResult;
+import com.github.anicmv.dto.upload.DirectUploadResponse;
+import com.github.anicmv.dto.upload.UploadResponse;
+import com.github.anicmv.dto.upload.UploadResult;
+import com.github.anicmv.exception.FileValidationException;
+import com.github.anicmv.exception.ServiceOverloadedException;
+import com.github.anicmv.exception.StorageConfigurationException;
+import com.github.anicmv.exception.StorageServiceException;
+import com.github.anicmv.exception.UploadSessionException;
+import com.github.anicmv.health.BackendHealthTracker;
+import com.github.anicmv.layout.KeyLayoutStrategy;
+import com.github.anicmv.reconcile.AntiEntropyReconciler;
+import com.github.anicmv.stats.BucketStatistics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * @author anicmv
+ * 预签名直传：客户端拿到最优后端的预签名 PUT 地址后直接上传到存储桶的暂存键，文件内容不经过本服务。
+ * Content-Type 和 Content-Length 参与签名，客户端无法上传与申请时不同的大小或类型。
+ * 上传完成后客户端调用 complete，服务端 HEAD 核对暂存对象、读取文件头校验类型，
+ * 通过后以 HEAD 得到的 ETag 为条件 CopyObject 到正式键并删除暂存对象：地址在有效期内仍可再次 PUT，
+ * 但只有校验过的那一版会成为正式对象。之后在后台以正式对象的 ETag 为条件复制到其余目标后端，复制失败的交给反熵修复。
+ * 超过有效期仍未完成回调的直传视为放弃，暂存对象会被删除。
+ */
+@Slf4j
+@Service
+public class DirectUploadService {
+
+    private static final int FILE_HEADER_BYTES = 16;
+    private static final int PRECONDITION_FAILED = 412;
+
+    @Resource
+    private ImageUploadService imageUploadService;
+
+    @Resource
+    private S3ClientManager clientManager;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private FileValidationService fileValidationService;
+
+    @Resource
+    private BackendHealthTracker healthTracker;
+
+    @Resource
+    private KeyLayoutStrategy keyLayout;
+
+    @Resource
+    private BucketStatistics bucketStatistics;
+
+    @Resource
+    private AntiEntropyReconciler antiEntropyReconciler;
+
+    @Resource
+    private DirectUploadStore pending;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource(name = ExecutorConfig.BACKGROUND_EXECUTOR)
+    private Executor executorService;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("storage.direct.pending", pending, DirectUploadStore::size)
+                .description("等待完成回调的直传数")
+                .register(meterRegistry);
+    }
+
+    public ResponseEntity<R<DirectUploadResponse>> create(String originalFilename, String contentType, long length,
+                                                          HttpServletRequest request) {
+        S3StorageProperties.DirectUpload config = requireEnabled();
+        log.info("签发直传地址 - 文件名: {}, 大小: {} bytes, 客户端IP: {}",
+                originalFilename, length, fileValidationService.getClientIp(request));
+        fileValidationService.validateRawUpload(originalFilename, contentType, length);
+        if (pending.size() >= config.getMaxPending()) {
+            sweepExpired();
+            if (pending.size() >= config.getMaxPending()) {
+                record("create", "rejected");
+                throw new ServiceOverloadedException("等待完成的直传过多，请稍后重试");
+            }
+        }
+
+        // 直传只写入评分最优的目标后端，其余目标后端（包括当前被摘除的）在完成回调后复制
+        Map<String, S3Client> targetClients = imageUploadService.getTargetClients();
+        List<String> ranked = healthTracker.rankHealthy(targetClients.keySet());
+        if (ranked.isEmpty()) {
+            throw new StorageConfigurationException("没有可用的存储服务");
+        }
+        String serviceName = ranked.get(0);
+        List<String> replicas = targetClients.keySet().stream()
+                .filter(name -> !name.equals(serviceName))
+                .toList();
+        S3Presigner preSigner = clientManager.getPreSigner(serviceName);
+        if (preSigner == null) {
+            throw new StorageConfigurationException("存储服务未配置预签名: " + serviceName);
+        }
+        String bucketName = storageProperties.getServices().get(serviceName).getBucket();
+        imageUploadService.ensureBucketExists(serviceName, targetClients.get(serviceName), bucketName);
+
+        String id = UUID.randomUUID().toString().replace("-", "");
+        String fileName = imageUploadService.generateFileName(originalFilename);
+        String logicalKey = imageUploadService.generateDatePathPrefix() + fileName;
+        String stagingKey = config.getStagingPrefix() + id;
+
+        PresignedPutObjectRequest presigned = preSigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(config.getUrlExpiry())
+                .putObjectRequest(PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(stagingKey)
+                        .contentType(contentType)
+                        .contentLength(length)
+                        .build())
+                .build());
+
+        PendingDirectUpload upload = new PendingDirectUpload(id, originalFilename, fileName, logicalKey,
+                keyLayout.storageKey(logicalKey), stagingKey, contentType, length, serviceName,
+                replicas, presigned.expiration().plus(config.getCompletionGrace()));
+        pending.save(upload);
+        record("create", "success");
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            // Host 由客户端根据地址自动设置
+            if (!"host".equalsIgnoreCase(name)) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return ResponseEntity.ok(R.success("直传地址已签发", DirectUploadResponse.builder()
+                .uploadId(upload.id())
+                .fileName(fileName)
+                .serviceName(serviceName)
+                .method(presigned.httpRequest().method().name())
+                .url(presigned.url().toString())
+                .headers(headers)
+                .expiresAt(presigned.expiration())
+                .build()));
+    }
+
+    /**
+     * 核对暂存对象，通过后复制到正式键并登记；校验不通过时删除暂存对象
+     */
+    public ResponseEntity<R<UploadResponse>> complete(String id) {
+        requireEnabled();
+        PendingDirectUpload upload = pending.get(id);
+        if (upload == null || upload.expired(Instant.now())) {
+            throw new UploadSessionException("直传不存在或已过期", UploadSessionException.NOT_FOUND);
+        }
+        long startTime = System.currentTimeMillis();
+        S3Client client = clientManager.getClient(upload.serviceName());
+        if (client == null) {
+            throw new StorageConfigurationException("存储服务不可用: " + upload.serviceName());
+        }
+        S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(upload.serviceName());
+
+        HeadObjectResponse head;
+        try {
+            head = client.headObject(HeadObjectRequest.builder()
+                    .bucket(config.getBucket())
+                    .key(upload.stagingKey())
+                    .build());
+        } catch (NoSuchKeyException e) {
+            record("complete", "missing");
+            throw new UploadSessionException("对象尚未上传", UploadSessionException.INCOMPLETE);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                record("complete", "missing");
+                throw new UploadSessionException("对象尚未上传", UploadSessionException.INCOMPLETE);
+            }
+            throw new StorageServiceException("查询直传对象失败: " + e.getMessage(), e);
+        }
+        // 并发的完成回调只有一个继续执行
+        if (!pending.remove(upload)) {
+            throw new UploadSessionException("直传不存在或已过期", UploadSessionException.NOT_FOUND);
+        }
+
+        String eTag;
+        try {
+            verify(upload, client, config, head);
+            eTag = promote(upload, client, config, head.eTag());
+        } catch (FileValidationException e) {
+            record("complete", "invalid");
+            log.warn("直传对象校验失败，删除 - 服务: {}, key: {}, 原因: {}", upload.serviceName(), upload.stagingKey(), e.getMessage());
+            deleteQuietly(upload, client, config);
+            throw e;
+        } catch (S3Exception e) {
+            // 暂存对象在 HEAD 之后被再次上传，或后端暂时不可用：保留直传以便客户端重试
+            pending.save(upload);
+            if (e.statusCode() == PRECONDITION_FAILED) {
+                record("complete", "changed");
+                throw new UploadSessionException("对象在校验期间被修改，请重新完成", UploadSessionException.INCOMPLETE);
+            }
+            throw new StorageServiceException("读取直传对象失败: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            pending.save(upload);
+            throw new StorageServiceException("读取直传对象失败: " + e.getMessage(), e);
+        }
+        deleteQuietly(upload, client, config);
+
+        imageUploadService.invalidateCaches(upload.logicalKey());
+        bucketStatistics.recordPut(upload.serviceName(), upload.logicalKey(), upload.length());
+        record("complete", "success");
+        replicate(upload, eTag);
+
+        String url = imageUploadService.generateAccessUrl(upload.serviceName(), config, upload.storageKey(), client);
+        UploadResult result = new UploadResult(upload.fileName(),
+                List.of(new ServiceUploadResult(upload.serviceName(), true, url, "上传成功")),
+                System.currentTimeMillis() - startTime, 0);
+        return imageUploadService.uploadResponse(upload.originalFilename(), result);
+    }
+
+    /**
+     * 大小与类型已参与签名，这里再核对一次；文件头只读取前几个字节
+     */
+    private void verify(PendingDirectUpload upload, S3Client client, S3StorageProperties.S3ServiceConfig config,
+                        HeadObjectResponse head) {
+        if (head.contentLength() == null || head.contentLength() != upload.length()) {
+            throw new FileValidationException("对象大小与申请时不符");
+        }
+        if (head.contentType() != null && !head.contentType().equalsIgnoreCase(upload.contentType())) {
+            throw new FileValidationException("对象类型与申请时不符");
+        }
+        ResponseBytes<GetObjectResponse> header = client.getObjectAsBytes(GetObjectRequest.builder()
+                .bucket(config.getBucket())
+                .key(upload.stagingKey())
+                .ifMatch(head.eTag())
+                .range("bytes=0-" + (FILE_HEADER_BYTES - 1))
+                .build());
+        fileValidationService.validateHeader(header.asByteArray(), upload.contentType());
+    }
+
+    /**
+     * 把校验过的暂存对象复制到正式键，以 HEAD 时的 ETag 为条件，之后再次 PUT 的内容不会被复制
+     *
+     * @return 正式对象的 ETag
+     */
+    private String promote(PendingDirectUpload upload, S3Client client, S3StorageProperties.S3ServiceConfig config,
+                           String eTag) {
+        CopyObjectResponse response = client.copyObject(CopyObjectRequest.builder()
+                .sourceBucket(config.getBucket())
+                .sourceKey(upload.stagingKey())
+                .copySourceIfMatch(eTag)
+                .destinationBucket(config.getBucket())
+                .destinationKey(upload.storageKey())
+                .build());
+        return response.copyObjectResult() != null && response.copyObjectResult().eTag() != null
+                ? response.copyObjectResult().eTag()
+                : eTag;
+    }
+
+    /**
+     * 在后台把对象复制到其余目标后端，不可用的后端不复制，与复制失败的一样标记给反熵修复
+     */
+    private void replicate(PendingDirectUpload upload, String eTag) {
+        for (String replica : upload.replicas()) {
+            if (!healthTracker.isRoutable(replica)) {
+                log.warn("目标后端不可用，直传对象复制交给反熵修复 - 目标: {}, key: {}", replica, upload.storageKey());
+                record("replicate", "skipped");
+                antiEntropyReconciler.markDirty(upload.logicalKey());
+                continue;
+            }
+            try {
+                CompletableFuture.runAsync(() -> copyToReplica(upload, replica, eTag), executorService)
+                        .exceptionally(e -> {
+                            log.error("直传对象复制失败，等待反熵修复 - 目标: {}, key: {}", replica, upload.storageKey(), e);
+                            record("replicate", "failure");
+                            antiEntropyReconciler.markDirty(upload.logicalKey());
+                            return null;
+                        });
+            } catch (ServiceOverloadedException e) {
+                log.warn("后台任务队列已满，直传对象复制交给反熵修复 - 目标: {}, key: {}", replica, upload.storageKey());
+                record("replicate", "rejected");
+                antiEntropyReconciler.markDirty(upload.logicalKey());
+            }
+        }
+    }
+
+    /**
+     * 后端之间不能 CopyObject，从源后端的正式对象读取后流式写入目标后端；
+     * 读取以登记时的 ETag 为条件，正式对象之后被改写时复制失败，交给反熵修复
+     */
+    private void copyToReplica(PendingDirectUpload upload, String replica, String eTag) {
+        S3Client source = clientManager.getClient(upload.serviceName());
+        S3Client target = clientManager.getClient(replica);
+        if (source == null || target == null) {
+            throw new StorageConfigurationException("存储服务不可用");
+        }
+        String targetBucket = storageProperties.getServices().get(replica).getBucket();
+        imageUploadService.ensureBucketExists(replica, target, targetBucket);
+        try (ResponseInputStream<GetObjectResponse> in = source.getObject(GetObjectRequest.builder()
+                .bucket(storageProperties.getServices().get(upload.serviceName()).getBucket())
+                .key(upload.storageKey())
+                .ifMatch(eTag)
+                .build())) {
+            target.putObject(PutObjectRequest.builder()
+                            .bucket(targetBucket)
+                            .key(upload.storageKey())
+                            .contentType(upload.contentType())
+                            .contentLength(upload.length())
+                            .build(),
+                    RequestBody.fromInputStream(in, upload.length()));
+        } catch (IOException e) {
+            throw new IllegalStateException("关闭源对象流失败", e);
+        }
+        bucketStatistics.recordPut(replica, upload.logicalKey(), upload.length());
+        record("replicate", "success");
+        log.info("直传对象已复制 - {} -> {}, key: {}", upload.serviceName(), replica, upload.storageKey());
+    }
+
+    /**
+     * 清理过期的直传：签发后没有完成回调的暂存对象未经校验，存在时删除
+     */
+    @Scheduled(initialDelayString = "${storage.s3.direct-upload.sweep-interval:10m}",
+            fixedDelayString = "${storage.s3.direct-upload.sweep-interval:10m}")
+    public void sweepExpired() {
+        Instant now = Instant.now();
+        for (PendingDirectUpload upload : pending.all()) {
+            if (!upload.expired(now) || !pending.remove(upload)) {
+                continue;
+            }
+            S3Client client = clientManager.getClient(upload.serviceName());
+            if (client != null) {
+                deleteQuietly(upload, client, storageProperties.getServices().get(upload.serviceName()));
+            }
+            record("expire", "success");
+            log.info("直传已过期 - id: {}, 服务: {}, key: {}", upload.id(), upload.serviceName(), upload.stagingKey());
+        }
+    }
+
+    private void deleteQuietly(PendingDirectUpload upload, S3Client client, S3StorageProperties.S3ServiceConfig config) {
+        try {
+            client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(config.getBucket())
+                    .key(upload.stagingKey())
+                    .build());
+        } catch (Exception e) {
+            log.warn("删除直传暂存对象失败 - 服务: {}, key: {}", upload.serviceName(), upload.stagingKey(), e);
+        }
+    }
+
+    private S3StorageProperties.DirectUpload requireEnabled() {
+        S3StorageProperties.DirectUpload config = storageProperties.getDirectUpload();
+        if (!config.isEnabled()) {
+            throw new StorageConfigurationException("未启用预签名直传");
+        }
+        return config;
+    }
+
+    private void record(String operation, String result) {
+        meterRegistry.counter("storage.direct", "operation", operation, "result", result).increment();
+    }
+}
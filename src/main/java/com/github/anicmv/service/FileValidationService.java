@@ -39,6 +39,9 @@ public class FileValidationService {
     @Value("${storage.validation.enable-content-validation:true}") // 是否启用文件内容验证
     private boolean enableContentValidation;
 
+    @Value("${storage.validation.multipart-overhead:16384}") // multipart 边界与分段头允许的额外字节数
+    private long multipartOverhead;
+
     private Set<String> allowedContentTypeSet;
     private Set<String> allowedExtensionSet;
 
@@ -50,20 +53,32 @@ public class FileValidationService {
                 maxFileSize / 1024 / 1024, minFileSize / 1024, enableContentValidation);
     }
 
+    /**
+     * 客户端IP取连接的远端地址。部署在反向代理之后时由 server.forward-headers-strategy 处理 X-Forwarded-For，
+     * 只有来自 server.tomcat.remoteip.internal-proxies 的连接才会采用其中的地址，客户端自带的请求头无法伪造IP。
+     */
     public String getClientIp(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
+        return request.getRemoteAddr();
+    }
 
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
 
-        return request.getRemoteAddr();
+    /**
+     * 单个文件允许的最大字节数
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
     }
 
+    /**
+     * 上传请求体允许的最大字节数，multipart 请求需要为边界和分段头留出余量
+     */
+    public long getMaxRequestSize(boolean multipart) {
+        return multipart ? maxFileSize + multipartOverhead : maxFileSize;
+    }
+
+    public boolean isAllowedContentType(String contentType) {
+        return contentType != null && allowedContentTypeSet.contains(contentType.trim().toLowerCase());
+    }
 
     public void validateFile(MultipartFile file) {
         if (file == null) {
@@ -71,10 +86,10 @@ public class FileValidationService {
         }
 
         validateFileNotEmpty(file);
-        validateFileSize(file);
-        validateContentType(file);
-        validateFileName(file);
-        validateFileExtension(file);
+        validateFileSize(file.getSize());
+        validateContentType(file.getContentType());
+        validateFileName(file.getOriginalFilename());
+        validateFileExtension(file.getOriginalFilename());
 
         // 文件内容验证（可选）
         if (enableContentValidation) {
@@ -82,15 +97,64 @@ public class FileValidationService {
         }
     }
 
+    /**
+     * 校验原始请求体上传的元数据（文件名、Content-Type、Content-Length），不读取请求体
+     */
+    public void validateRawUpload(String fileName, String contentType, long contentLength) {
+        if (contentLength < 0) {
+            throw new FileValidationException("缺少 Content-Length");
+        }
+        if (contentLength == 0) {
+            throw new FileValidationException("上传的文件为空");
+        }
+        validateFileSize(contentLength);
+        validateContentType(contentType);
+        validateFileName(fileName);
+        validateFileExtension(fileName);
+    }
+
+    /**
+     * 校验断点续传会话的元数据，总长度受续传配置的上限约束，而不是单文件大小上限
+     */
+    public void validateResumableUpload(String fileName, String contentType, long length, long maxLength) {
+        if (length <= 0) {
+            throw new FileValidationException("缺少 Upload-Length");
+        }
+        if (length < minFileSize) {
+            throw new FileValidationException(
+                    String.format("文件大小不能小于 %d bytes (%.2f KB)", minFileSize, minFileSize / 1024.0));
+        }
+        if (length > maxLength) {
+            throw new FileValidationException(
+                    String.format("文件大小不能超过 %d bytes (%.2f MB)", maxLength, maxLength / 1024.0 / 1024.0));
+        }
+        validateContentType(contentType);
+        validateFileName(fileName);
+        validateFileExtension(fileName);
+    }
+
+    /**
+     * 校验请求体开头的字节与声明的类型是否一致，未启用内容验证时跳过
+     */
+    public void validateHeader(byte[] header, String contentType) {
+        if (!enableContentValidation) {
+            return;
+        }
+        if (header.length < 4) {
+            throw new FileValidationException("文件内容异常，无法读取文件头");
+        }
+        if (!isValidImageHeader(Arrays.copyOf(header, Math.max(16, header.length)), contentType)) {
+            throw new FileValidationException("文件内容与声明的类型不匹配");
+        }
+    }
+
     private void validateFileNotEmpty(MultipartFile file) {
         if (file.isEmpty()) {
             throw new FileValidationException("上传的文件为空");
         }
     }
 
-    private void validateFileSize(MultipartFile file) {
-        long size = file.getSize();
-
+    private void validateFileSize(long size) {
         if (size < minFileSize) {
             throw new FileValidationException(
                     String.format("文件大小不能小于 %d bytes (%.2f KB)",
@@ -106,9 +170,7 @@ public class FileValidationService {
         }
     }
 
-    private void validateContentType(MultipartFile file) {
-        String contentType = file.getContentType();
-
+    private void validateContentType(String contentType) {
         if (contentType == null || contentType.trim().isEmpty()) {
             throw new FileValidationException("无法确定文件类型");
         }
@@ -121,9 +183,7 @@ public class FileValidationService {
         }
     }
 
-    private void validateFileName(MultipartFile file) {
-        String fileName = file.getOriginalFilename();
-
+    private void validateFileName(String fileName) {
         if (fileName == null || fileName.trim().isEmpty()) {
             throw new FileValidationException("文件名不能为空");
         }
@@ -144,8 +204,7 @@ public class FileValidationService {
         }
     }
 
-    private void validateFileExtension(MultipartFile file) {
-        String fileName = file.getOriginalFilename();
+    private void validateFileExtension(String fileName) {
         if (fileName == null) {
             return;
         }
@@ -0,0 +1,203 @@
+package com.github.anicmv.service;
+
+import com.github.anicmv.config.ExecutorConfig;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.ServiceOverloadedException;
+import com.github.anicmv.exception.StorageConfigurationException;
+import com.github.anicmv.exception.StorageServiceException;
+import com.github.anicmv.health.BackendHealthTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * @author anicmv
+ * 对冲读取：先向当前评分最优的副本发起请求，若在该副本观测到的分位延迟内没有返回，
+ * 再向下一个副本发起请求，取最先得到的可用结果并取消其余请求。
+ * 读取的尾延迟因此跟随最快的副本，而不是最慢的副本。
+ * 读取使用不排队的独立线程池：线程用尽时不再对冲，只等待已发出的请求。
+ */
+@Slf4j
+@Service
+public class HedgedReadService {
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private BackendHealthTracker healthTracker;
+
+    @Resource(name = ExecutorConfig.READ_EXECUTOR)
+    private ThreadPoolTaskExecutor executor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 在单个副本上执行的读取操作
+     */
+    @FunctionalInterface
+    public interface ReadCall<T> {
+        T call(String serviceName) throws Exception;
+    }
+
+    /**
+     * @param operation  操作名称，用于日志和指标
+     * @param candidates 可读取的服务
+     * @param call       在单个服务上执行的读取
+     * @param accept     结果是否可直接采用；不可采用（例如对象在该副本上不存在）时会立即尝试下一个副本
+     * @param discard    未被采用的结果的释放逻辑，例如关闭响应流
+     * @return 第一个可采用的结果；都不可采用时返回最后一个正常返回的结果
+     */
+    public <T> T read(String operation, Collection<String> candidates, ReadCall<T> call,
+                      Predicate<T> accept, Consumer<T> discard) {
+        List<String> order = orderCandidates(candidates);
+        if (order.isEmpty()) {
+            throw new StorageConfigurationException("没有可用的存储服务");
+        }
+
+        HedgeState<T> state = new HedgeState<>();
+        ExecutorCompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<T>, String> inFlight = new HashMap<>();
+        T fallback = null;
+        Exception lastError = null;
+        int next = 0;
+        String lastLaunched = null;
+        boolean hedging = true;
+
+        try {
+            while (!inFlight.isEmpty() || next < order.size()) {
+                if (inFlight.isEmpty()) {
+                    lastLaunched = order.get(next++);
+                    inFlight.put(launch(completionService, state, lastLaunched, call, discard), lastLaunched);
+                    continue;
+                }
+
+                Future<T> done;
+                if (hedging && next < order.size()) {
+                    done = completionService.poll(hedgeDelayNanos(lastLaunched), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        String hedge = order.get(next);
+                        try {
+                            inFlight.put(launch(completionService, state, hedge, call, discard), hedge);
+                        } catch (ServiceOverloadedException e) {
+                            // 读取线程已用尽，本次不再对冲，等待已发出的请求；失败后仍按顺序尝试剩余副本
+                            log.debug("{} 读取线程已用尽，放弃对冲到 {}", operation, hedge);
+                            meterRegistry.counter("storage.read.hedge.rejected", "operation", operation).increment();
+                            hedging = false;
+                            continue;
+                        }
+                        log.debug("{} 在 {} 上超过对冲阈值，对冲到 {}", operation, lastLaunched, hedge);
+                        meterRegistry.counter("storage.read.hedged", "operation", operation).increment();
+                        lastLaunched = hedge;
+                        next++;
+                        continue;
+                    }
+                } else {
+                    done = completionService.take();
+                }
+
+                String serviceName = inFlight.remove(done);
+                try {
+                    T result = done.get();
+                    if (accept.test(result)) {
+                        state.winner = result;
+                        return result;
+                    }
+                    fallback = result;
+                } catch (ExecutionException e) {
+                    lastError = e.getCause() instanceof Exception cause ? cause : e;
+                    log.debug("{} 在 {} 上失败: {}", operation, serviceName, lastError.getMessage());
+                }
+            }
+
+            if (fallback != null) {
+                state.winner = fallback;
+                return fallback;
+            }
+            throw new StorageServiceException(operation + " 在所有副本上均失败", lastError);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageServiceException(operation + " 被中断", e);
+        } finally {
+            finish(state, inFlight.keySet(), discard);
+        }
+    }
+
+    /**
+     * 健康的副本按评分排在前面，被摘除的副本作为最后的兜底
+     */
+    private List<String> orderCandidates(Collection<String> candidates) {
+        List<String> order = new ArrayList<>(healthTracker.rankHealthy(candidates));
+        for (String candidate : candidates) {
+            if (!order.contains(candidate)) {
+                order.add(candidate);
+            }
+        }
+        return order;
+    }
+
+    private long hedgeDelayNanos(String serviceName) {
+        S3StorageProperties.HedgedRead config = storageProperties.getHedgedRead();
+        long observed = healthTracker.get(serviceName).readLatencyPercentileNanos(config.getPercentile());
+        long delay = observed < 0 ? config.getDefaultDelay().toNanos() : observed;
+        return Math.max(delay, config.getMinDelay().toNanos());
+    }
+
+    private <T> Future<T> launch(ExecutorCompletionService<T> completionService, HedgeState<T> state,
+                                 String serviceName, ReadCall<T> call, Consumer<T> discard) {
+        return completionService.submit(() -> {
+            T result = call.call(serviceName);
+            synchronized (state) {
+                if (state.finished) {
+                    discardQuietly(discard, result);
+                    return null;
+                }
+                state.produced.add(result);
+            }
+            return result;
+        });
+    }
+
+    private <T> void finish(HedgeState<T> state, Collection<Future<T>> pending, Consumer<T> discard) {
+        List<T> losers = new ArrayList<>();
+        synchronized (state) {
+            state.finished = true;
+            for (T produced : state.produced) {
+                if (produced != state.winner) {
+                    losers.add(produced);
+                }
+            }
+        }
+        pending.forEach(future -> future.cancel(true));
+        losers.forEach(result -> discardQuietly(discard, result));
+    }
+
+    private static <T> void discardQuietly(Consumer<T> discard, T result) {
+        if (discard == null || result == null) {
+            return;
+        }
+        try {
+            discard.accept(result);
+        } catch (Exception e) {
+            log.debug("释放对冲读取结果失败: {}", e.getMessage());
+        }
+    }
+
+    private static final class HedgeState<T> {
+        private final List<T> produced = new ArrayList<>();
+        private boolean finished;
+        private volatile T winner;
+    }
+}
@@ -1,10 +1,19 @@
 package com.github.anicmv.service;
 
+import com.github.anicmv.cache.ConditionalRequests;
+import com.github.anicmv.checksum.PayloadChecksums;
+import com.github.anicmv.checksum.PayloadDigest;
+import com.github.anicmv.cache.ObjectCache;
+import com.github.anicmv.cache.ValidatorCache;
+import com.github.anicmv.concurrency.AdaptiveConcurrencyLimiter;
+import com.github.anicmv.concurrency.ConcurrencyLimiters;
+import com.github.anicmv.config.ExecutorConfig;
 import com.github.anicmv.config.S3ClientManager;
 import com.github.anicmv.config.S3StorageProperties;
 import com.github.anicmv.dto.delete.DeleteResponse;
 import com.github.anicmv.dto.delete.DeleteResult;
 import com.github.anicmv.dto.file.*;
+import com.github.anicmv.dto.health.HealthResponse;
 import com.github.anicmv.dto.rename.RenameResult;
 import com.github.anicmv.dto.response.R;
 import com.github.anicmv.dto.result.ServiceDeleteResult;
@@ -14,13 +23,32 @@ import com.github.anicmv.dto.result.ServiceUploadResult;
 import com.github.anicmv.dto.upload.UploadResponse;
 import com.github.anicmv.dto.upload.UploadResult;
 import com.github.anicmv.exception.FileValidationException;
+import com.github.anicmv.exception.ServiceOverloadedException;
 import com.github.anicmv.exception.StorageConfigurationException;
 import com.github.anicmv.exception.StorageServiceException;
+import com.github.anicmv.enums.BackendState;
+import com.github.anicmv.enums.PayloadChecksumType;
+import com.github.anicmv.health.BackendHealthSnapshot;
+import com.github.anicmv.health.BackendHealthTracker;
+import com.github.anicmv.id.FileIdGenerator;
+import com.github.anicmv.layout.KeyLayoutStrategy;
+import com.github.anicmv.idempotency.IdempotencyStore;
+import com.github.anicmv.memory.BufferChain;
+import com.github.anicmv.memory.BufferPool;
+import com.github.anicmv.memory.PooledBuffer;
+import com.github.anicmv.memory.UploadMemoryBudget;
+import com.github.anicmv.metrics.StorageMetrics;
+import com.github.anicmv.optimize.ImageOptimizer;
+import com.github.anicmv.reconcile.AntiEntropyReconciler;
+import com.github.anicmv.stats.BucketStatistics;
+import com.github.anicmv.streaming.ChunkPipe;
+import com.github.anicmv.tracing.StorageTracer;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -29,6 +57,15 @@ import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -37,8 +74,9 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -59,27 +97,112 @@ public class ImageUploadService {
     @Resource
     private FileValidationService fileValidationService;
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
+    @Resource
+    private StorageMetrics storageMetrics;
+
+    @Resource
+    private StorageTracer storageTracer;
+
+    @Resource
+    private BackendHealthTracker healthTracker;
+
+    @Resource
+    private HedgedReadService hedgedReadService;
+
+    @Resource
+    private ObjectCache objectCache;
+
+    @Resource
+    private ValidatorCache validatorCache;
+
+    @Resource
+    private KeyLayoutStrategy keyLayout;
+
+    @Resource
+    private FileIdGenerator fileIdGenerator;
+
+    @Resource
+    private ConcurrencyLimiters concurrencyLimiters;
+
+    @Resource
+    private UploadMemoryBudget uploadMemoryBudget;
+
+    @Resource
+    private BufferPool bufferPool;
+
+    @Resource
+    private ImageOptimizer imageOptimizer;
+
+    @Resource
+    private AntiEntropyReconciler antiEntropyReconciler;
+
+    @Resource
+    private BucketStatistics bucketStatistics;
+
+    @Resource
+    private IdempotencyStore idempotencyStore;
+
+    @Resource(name = ExecutorConfig.STORAGE_EXECUTOR)
+    private Executor executorService;
+
+    private static final String CONSISTENCY_ALL = "all";
+    private static final int FILE_HEADER_BYTES = 16;
+    // 追加在保留前缀之后，StartAfter 取它即可越过保留前缀下的全部键
+    private static final String RESERVED_UPPER_BOUND = Character.toString(Character.MAX_CODE_POINT);
+    private static final DateTimeFormatter DATE_PATH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
 
     // 缓存已创建的桶，避免重复检查
     private final Map<String, Set<String>> createdBuckets = new ConcurrentHashMap<>();
 
     public ResponseEntity<R<UploadResponse>> uploadImage(MultipartFile file, HttpServletRequest request) {
+        // 携带幂等键的重复请求直接重放第一次的响应，不再写入后端；
+        // 未认证的请求按指纹区分，指纹包含内容摘要，同名同大小的不同文件不会拿到别人的响应
+        return idempotencyStore.execute(request, () -> String.join("|", String.valueOf(file.getOriginalFilename()),
+                String.valueOf(file.getSize()), String.valueOf(file.getContentType()), contentDigest(file)),
+                () -> doUploadImage(file, request));
+    }
+
+    /**
+     * 上传文件内容的 SHA-256，multipart 文件已由容器缓存，再读一遍不经过网络
+     */
+    private static String contentDigest(MultipartFile file) {
+        try (DigestInputStream in = new DigestInputStream(file.getInputStream(), MessageDigest.getInstance("SHA-256"))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return "sha256:" + HexFormat.of().formatHex(in.getMessageDigest().digest());
+        } catch (IOException e) {
+            log.error("读取上传文件失败 - 文件名: {}", file.getOriginalFilename(), e);
+            throw new FileValidationException("文件读取失败，请检查文件是否完整");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ResponseEntity<R<UploadResponse>> doUploadImage(MultipartFile file, HttpServletRequest request) {
         // 打印ip
         String clientIp = fileValidationService.getClientIp(request);
         log.info("开始处理文件上传请求 - 文件名: {}, 大小: {} bytes, 客户端IP: {}",
                 file.getOriginalFilename(), file.getSize(), clientIp);
         // 文件验证
-        fileValidationService.validateFile(file);
+        storageTracer.inSpan("upload.validate", () -> fileValidationService.validateFile(file));
         String fileName = generateFileName(file.getOriginalFilename());
-        // 上传
-        UploadResult uploadResult = upload(file, fileName);
+        // 逻辑 key 在上传开始时确定一次，跨零点的上传在各后端与反熵标记中使用同一个日期目录
+        String logicalKey = generateDatePathPrefix() + fileName;
+        // 上传，超过自适应并发上限时直接拒绝
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiters.acquireUpload();
+        UploadResult uploadResult;
+        try {
+            uploadResult = upload(file, fileName, logicalKey);
+        } catch (RuntimeException e) {
+            ConcurrencyLimiters.release(permit, e);
+            throw e;
+        }
+        ConcurrencyLimiters.release(permit, uploadResult.allSuccessfulUpload());
         // 响应
         return uploadResponse(file.getOriginalFilename(), uploadResult);
     }
 
 
-    private UploadResult upload(MultipartFile file, String fileName) {
+    private UploadResult upload(MultipartFile file, String fileName, String logicalKey) {
 
         Map<String, S3Client> targetClients = getTargetClients();
 
@@ -87,22 +210,64 @@ public class ImageUploadService {
             throw new StorageConfigurationException("没有可用的存储服务");
         }
 
+        // 文件内容只读取一次，放入池化缓冲区供所有后端共享，占用的内存计入上传内存预算；校验值在读取时一并计算
+        Set<PayloadChecksumType> checksumTypes = checksumTypes(targetClients.keySet());
+        PayloadDigest digest = new PayloadDigest(checksumTypes);
+        try (UploadMemoryBudget.Reservation ignored = uploadMemoryBudget.reserve(file.getSize());
+             BufferChain content = spool(file, digest)) {
+            byte[] optimized = storageTracer.inSpan("upload.optimize", () -> imageOptimizer.optimize(content));
+            if (optimized == null) {
+                return upload(targetClients, file.getContentType(), content, digest.finish(), fileName, logicalKey, 0);
+            }
+            // 优化后的内容更小，改为上传它，校验值按新内容重新计算；它在上传期间与原文件同时占用内存，预算不足时上传原文件
+            try (UploadMemoryBudget.Reservation optimizedReservation = uploadMemoryBudget.tryReserve(optimized.length)) {
+                if (optimizedReservation == null) {
+                    return upload(targetClients, file.getContentType(), content, digest.finish(), fileName, logicalKey, 0);
+                }
+                PayloadDigest optimizedDigest = new PayloadDigest(checksumTypes);
+                optimizedDigest.update(ByteBuffer.wrap(optimized));
+                try (BufferChain optimizedContent = BufferChain.wrap(optimized)) {
+                    return upload(targetClients, file.getContentType(), optimizedContent, optimizedDigest.finish(),
+                            fileName, logicalKey, content.length() - optimized.length);
+                }
+            }
+        }
+    }
 
+    private BufferChain spool(MultipartFile file, PayloadDigest digest) {
+        try {
+            return storageTracer.inSpan("upload.spool", () -> {
+                try (InputStream in = file.getInputStream()) {
+                    return BufferChain.readFrom(in, file.getSize(), bufferPool, digest::update);
+                }
+            });
+        } catch (IOException e) {
+            log.error("读取上传文件失败 - 文件名: {}", file.getOriginalFilename(), e);
+            throw new FileValidationException("文件读取失败，请检查文件是否完整");
+        }
+    }
+
+    private UploadResult upload(Map<String, S3Client> targetClients, String contentType, BufferChain content,
+                                PayloadChecksums checksums, String fileName, String logicalKey, long bytesSaved) {
         long startTime = System.currentTimeMillis();
+        Map<String, AdaptiveConcurrencyLimiter.Permit> permits = concurrencyLimiters.acquireBackends(targetClients.keySet());
         List<CompletableFuture<ServiceUploadResult>> futures = new ArrayList<>();
 
         for (Map.Entry<String, S3Client> entry : targetClients.entrySet()) {
             String serviceName = entry.getKey();
             S3Client client = entry.getValue();
 
-            CompletableFuture<ServiceUploadResult> future = CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<ServiceUploadResult> future = fanOut(() -> {
                 try {
-                    return uploadToService(serviceName, client, file, fileName);
+                    ServiceUploadResult result = uploadToService(serviceName, client, contentType, content, checksums, logicalKey);
+                    ConcurrencyLimiters.release(permits.get(serviceName), true);
+                    return result;
                 } catch (Exception e) {
+                    ConcurrencyLimiters.release(permits.get(serviceName), false);
                     log.error("Failed to upload to service: {}", serviceName, e);
                     return new ServiceUploadResult(serviceName, false, null, e.getMessage());
                 }
-            }, executorService);
+            }, permits.get(serviceName), message -> new ServiceUploadResult(serviceName, false, null, message));
 
             futures.add(future);
         }
@@ -118,12 +283,209 @@ public class ImageUploadService {
                         .collect(Collectors.toList())
         ).join();
 
+        markDirtyOnPartialFailure(logicalKey, results);
+        long uploadTime = System.currentTimeMillis() - startTime;
+        return new UploadResult(fileName, results, uploadTime, bytesSaved);
+    }
+
+
+    /**
+     * 原始请求体上传：不经过 multipart 解析，也不落临时文件。
+     * 先读取第一个数据块校验文件头，再把请求体按块同时推送给所有目标后端的 PutObject。
+     */
+    public ResponseEntity<R<UploadResponse>> uploadStream(String originalFilename, HttpServletRequest request) throws IOException {
+        // 在读取请求体之前检查幂等键，重放时请求体不会被读取
+        String fingerprint = String.join("|", String.valueOf(originalFilename),
+                String.valueOf(request.getContentLengthLong()), String.valueOf(request.getContentType()));
+        return idempotencyStore.execute(request, fingerprint, () -> doUploadStream(originalFilename, request));
+    }
+
+    private ResponseEntity<R<UploadResponse>> doUploadStream(String originalFilename, HttpServletRequest request) throws IOException {
+        String clientIp = fileValidationService.getClientIp(request);
+        long contentLength = request.getContentLengthLong();
+        String contentType = request.getContentType();
+        log.info("开始处理流式上传请求 - 文件名: {}, 大小: {} bytes, 客户端IP: {}", originalFilename, contentLength, clientIp);
+        fileValidationService.validateRawUpload(originalFilename, contentType, contentLength);
+
+        S3StorageProperties.StreamUpload config = storageProperties.getStreamUpload();
+        int chunkSize = (int) config.getChunkSize().toBytes();
+        // 各后端的队列共享同一批数据块，同时存在的数据块不超过 queueChunks + 2 个
+        long bufferedBytes = Math.min(contentLength, (long) chunkSize * (config.getQueueChunks() + 2));
+        UploadResult uploadResult;
+        try (UploadMemoryBudget.Reservation ignored = uploadMemoryBudget.reserve(bufferedBytes)) {
+            ReadableByteChannel in = Channels.newChannel(request.getInputStream());
+            PooledBuffer first = bufferPool.acquire((int) Math.min(chunkSize, contentLength));
+            try {
+                if (first.fillFrom(in) < Math.min(chunkSize, contentLength)) {
+                    throw new FileValidationException("请求体长度与 Content-Length 不符");
+                }
+                ByteBuffer view = first.view();
+                byte[] header = new byte[Math.min(FILE_HEADER_BYTES, view.remaining())];
+                view.get(header);
+                fileValidationService.validateHeader(header, contentType);
+
+                String fileName = generateFileName(originalFilename);
+                String logicalKey = generateDatePathPrefix() + fileName;
+                AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiters.acquireUpload();
+                try {
+                    uploadResult = uploadStreamed(in, first, contentType, contentLength, fileName, logicalKey);
+                } catch (RuntimeException e) {
+                    ConcurrencyLimiters.release(permit, e);
+                    throw e;
+                }
+                ConcurrencyLimiters.release(permit, uploadResult.allSuccessfulUpload());
+            } finally {
+                first.release();
+            }
+        }
+        return uploadResponse(originalFilename, uploadResult);
+    }
+
+    private UploadResult uploadStreamed(ReadableByteChannel in, PooledBuffer first, String contentType,
+                                        long contentLength, String fileName, String logicalKey) {
+        Map<String, S3Client> targetClients = getTargetClients();
+
+        if (targetClients.isEmpty()) {
+            throw new StorageConfigurationException("没有可用的存储服务");
+        }
+
+        S3StorageProperties.StreamUpload config = storageProperties.getStreamUpload();
+        long stallTimeoutNanos = config.getStallTimeout().toNanos();
+        long startTime = System.currentTimeMillis();
+        Map<String, AdaptiveConcurrencyLimiter.Permit> permits = concurrencyLimiters.acquireBackends(targetClients.keySet());
+        Map<String, ChunkPipe> pipes = new LinkedHashMap<>();
+        List<CompletableFuture<ServiceUploadResult>> futures = new ArrayList<>();
+        // 校验值由请求线程边读边算，最后一块发出前写入，各后端上传完成时用它核对返回值
+        PayloadDigest digest = new PayloadDigest(List.of(PayloadChecksumType.CRC32C));
+        CompletableFuture<PayloadChecksums> checksums = new CompletableFuture<>();
+
+        for (Map.Entry<String, S3Client> entry : targetClients.entrySet()) {
+            String serviceName = entry.getKey();
+            S3Client client = entry.getValue();
+            ChunkPipe pipe = new ChunkPipe(config.getQueueChunks(), stallTimeoutNanos);
+
+            CompletableFuture<ServiceUploadResult> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        ServiceUploadResult result = streamToService(serviceName, client, pipe, checksums, contentType, contentLength, logicalKey);
+                        ConcurrencyLimiters.release(permits.get(serviceName), true);
+                        return result;
+                    } catch (Exception e) {
+                        pipe.cancel();
+                        ConcurrencyLimiters.release(permits.get(serviceName), false);
+                        log.error("Failed to stream upload to service: {}", serviceName, e);
+                        return new ServiceUploadResult(serviceName, false, null, e.getMessage());
+                    }
+                }, executorService);
+            } catch (RuntimeException e) {
+                // 线程池拒绝：尚未启动的后端直接归还许可，已启动的后端中止后等待它们结束
+                permits.forEach((name, permit) -> {
+                    if (!pipes.containsKey(name)) {
+                        permit.cancel();
+                    }
+                });
+                abortAndAwait(pipes.values(), futures);
+                throw e;
+            }
+            pipes.put(serviceName, pipe);
+            futures.add(future);
+        }
+
+        // 请求线程负责读取请求体并分发，所有后端都已失败时提前停止
+        // 每个数据块发布后归还请求线程持有的引用，由各管道在读完后归还自己的引用
+        String readError = null;
+        try {
+            long remaining = contentLength - first.remaining();
+            digest.update(first.view());
+            completeOnLastChunk(checksums, digest, remaining);
+            boolean alive = publish(pipes.values(), first);
+            while (alive && remaining > 0) {
+                PooledBuffer chunk = bufferPool.acquire((int) Math.min(config.getChunkSize().toBytes(), remaining));
+                try {
+                    int expected = chunk.remaining();
+                    if (chunk.fillFrom(in) < expected) {
+                        throw new IOException("请求体提前结束");
+                    }
+                    remaining -= expected;
+                    digest.update(chunk.view());
+                    completeOnLastChunk(checksums, digest, remaining);
+                    alive = publish(pipes.values(), chunk);
+                } finally {
+                    chunk.release();
+                }
+            }
+            for (ChunkPipe pipe : pipes.values()) {
+                pipe.complete();
+            }
+        } catch (IOException e) {
+            readError = e.getMessage();
+            pipes.values().forEach(ChunkPipe::abort);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            readError = "上传被中断";
+            pipes.values().forEach(ChunkPipe::abort);
+        } catch (RuntimeException | Error e) {
+            // 例如缓冲池耗尽：各后端不能停在等待数据上，中止并等它们归还缓冲与许可后再抛出
+            abortAndAwait(pipes.values(), futures);
+            throw e;
+        }
+
+        List<ServiceUploadResult> results = futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+        if (readError != null) {
+            log.warn("读取上传请求体失败 - 文件名: {}, 原因: {}", fileName, readError);
+            throw new FileValidationException("请求体读取失败: " + readError);
+        }
+
+        markDirtyOnPartialFailure(logicalKey, results);
         long uploadTime = System.currentTimeMillis() - startTime;
-        return new UploadResult(fileName, results, uploadTime);
+        return new UploadResult(fileName, results, uploadTime, 0);
+    }
+
+    /**
+     * 校验值在最后一块发布之前写入：后端要读到最后一块才会响应，此时一定能取到校验值
+     */
+    private static void completeOnLastChunk(CompletableFuture<PayloadChecksums> checksums, PayloadDigest digest,
+                                            long remaining) {
+        if (remaining == 0) {
+            checksums.complete(digest.finish());
+        }
     }
 
+    private static void abortAndAwait(Collection<ChunkPipe> pipes, List<CompletableFuture<ServiceUploadResult>> futures) {
+        pipes.forEach(ChunkPipe::abort);
+        for (CompletableFuture<ServiceUploadResult> future : futures) {
+            try {
+                future.join();
+            } catch (RuntimeException e) {
+                log.debug("等待已中止的流式上传结束时出错", e);
+            }
+        }
+    }
+
+    /**
+     * 部分后端写入失败时各副本已不一致，交给反熵修复补齐
+     */
+    private void markDirtyOnPartialFailure(String logicalKey, List<ServiceUploadResult> results) {
+        if (results.stream().anyMatch(r -> !r.success())) {
+            antiEntropyReconciler.markDirty(logicalKey);
+        }
+    }
+
+    /**
+     * @return 是否还有后端在接收数据
+     */
+    private static boolean publish(Collection<ChunkPipe> pipes, PooledBuffer chunk) throws InterruptedException {
+        boolean anyAlive = false;
+        for (ChunkPipe pipe : pipes) {
+            anyAlive |= pipe.offer(chunk);
+        }
+        return anyAlive;
+    }
 
-    private ResponseEntity<R<UploadResponse>> uploadResponse(String fileName, UploadResult result) {
+    ResponseEntity<R<UploadResponse>> uploadResponse(String fileName, UploadResult result) {
         // 检查上传结果
         if (!result.allSuccessfulUpload()) {
             String errorMessage = "有存储服务上传失败";
@@ -142,53 +504,63 @@ public class ImageUploadService {
     }
 
 
-    private String generateFileName(String originalFilename) {
+    String generateFileName(String originalFilename) {
         String extension = "";
         if (originalFilename != null && originalFilename.contains(".")) {
             extension = originalFilename.substring(originalFilename.lastIndexOf("."));
         }
-
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String uuid = UUID.randomUUID().toString().substring(0, 8);
-        return String.format("%s_%s%s", timestamp, uuid, extension);
+        return fileIdGenerator.nextFileName(extension);
     }
 
-    private Map<String, S3Client> getTargetClients() {
+    /**
+     * 按上传策略选择目标服务，已被健康检查摘除的后端不参与路由。
+     * FIRST 选择当前评分最优（EWMA延迟与错误率）的健康后端；ALL/SPECIFIC 跳过被摘除的后端，由后台对账补齐副本。
+     */
+    Map<String, S3Client> getTargetClients() {
         Map<String, S3Client> allClients = clientManager.getAllEnabledClients();
 
         switch (storageProperties.getUploadStrategy()) {
             case FIRST:
-                return allClients.entrySet().stream()
+                return healthTracker.rankHealthy(allClients.keySet()).stream()
                         .findFirst()
-                        .map(entry -> Map.of(entry.getKey(), entry.getValue()))
+                        .map(name -> Map.of(name, allClients.get(name)))
                         .orElse(Collections.emptyMap());
 
             case ALL:
-                return allClients;
+                return routableClients(allClients, allClients.keySet());
 
             case SPECIFIC:
-                Map<String, S3Client> specificClients = new HashMap<>();
-                for (String target : storageProperties.getSpecificTargets()) {
-                    S3Client client = allClients.get(target);
-                    if (client != null) {
-                        specificClients.put(target, client);
-                    }
-                }
-                return specificClients;
+                return routableClients(allClients, storageProperties.getSpecificTargets());
 
             default:
                 return Collections.emptyMap();
         }
     }
 
+    private Map<String, S3Client> routableClients(Map<String, S3Client> allClients, Collection<String> targets) {
+        Map<String, S3Client> routable = new LinkedHashMap<>();
+        for (String target : targets) {
+            S3Client client = allClients.get(target);
+            if (client == null) {
+                continue;
+            }
+            if (healthTracker.isRoutable(target)) {
+                routable.put(target, client);
+            } else {
+                log.warn("存储服务已被摘除，跳过: {}", target);
+            }
+        }
+        return routable;
+    }
+
 
 
 
     /**
      * 修改生成访问URL的方法，使用动态桶名
      */
-    private String generateAccessUrl(String serviceName, S3StorageProperties.S3ServiceConfig config,
-                                     String key, S3Client client) {
+    String generateAccessUrl(String serviceName, S3StorageProperties.S3ServiceConfig config,
+                             String key, S3Client client) {
         String bucketName = config.getBucket();
         // 如果配置了公开URL模式，使用模式生成URL
         if (config.getPublicUrlPattern() != null && !config.getPublicUrlPattern().isEmpty()) {
@@ -213,6 +585,7 @@ public class ImageUploadService {
      */
     private String generatePresignedUrl(S3StorageProperties.S3ServiceConfig config,
                                         String key, String serviceName, String bucketName) {
+        long presignStart = System.nanoTime();
         try {
             S3Presigner preSigner = clientManager.getPreSigner(serviceName);
             if (preSigner == null) {
@@ -230,10 +603,14 @@ public class ImageUploadService {
                     .build();
 
             PresignedGetObjectRequest presignedRequest = preSigner.presignGetObject(presignRequest);
+            storageMetrics.recordOperation(serviceName, "presign", StorageMetrics.OUTCOME_SUCCESS,
+                    System.nanoTime() - presignStart);
 
             return presignedRequest.url().toString();
 
         } catch (Exception e) {
+            storageMetrics.recordOperation(serviceName, "presign", StorageMetrics.OUTCOME_ERROR,
+                    System.nanoTime() - presignStart);
             log.error("Failed to generate presigned URL for service: {}", serviceName, e);
             return String.format("%s/%s/%s", config.getEndpoint(), bucketName, key);
         }
@@ -242,19 +619,38 @@ public class ImageUploadService {
     /**
      * 获取当前日期桶的文件列表（修改listFiles方法）
      */
-    public ResponseEntity<R<FileListResponse>> listFiles(String prefix, int maxKeys, String continuationToken) {
+    public ResponseEntity<R<FileListResponse>> listFiles(String prefix, int maxKeys, String continuationToken,
+                                                         HttpServletRequest request) {
+        // 删除对象不会改变列表页中最大的 lastModified，列表只按 ETag 判断，不处理 If-Modified-Since
+        String presignWindow = presignWindow();
+        ValidatorCache.Validator cached = validatorCache.getList(prefix, maxKeys, continuationToken);
+        if (cached != null) {
+            String cachedETag = conditionalETag(cached.eTag(), presignWindow);
+            if (ConditionalRequests.isNotModified(request, cachedETag, null)) {
+                return ConditionalRequests.notModified(cachedETag, null);
+            }
+        }
+
         Map<String, S3Client> targetClients = clientManager.getAllEnabledClients();
 
         if (targetClients.isEmpty()) {
             throw new StorageConfigurationException("没有可用的存储服务");
         }
 
-        Map.Entry<String, S3Client> firstService = targetClients.entrySet().iterator().next();
-        String serviceName = firstService.getKey();
-        S3Client client = firstService.getValue();
-        FileListResult fileListResult = listFilesFromService(serviceName, client, prefix, maxKeys, continuationToken);
+        String serviceName = healthTracker.rankHealthy(targetClients.keySet()).stream()
+                .findFirst()
+                .orElseThrow(() -> new StorageServiceException("没有健康的存储服务"));
+        S3Client client = targetClients.get(serviceName);
+        FileListResult fileListResult = keyLayout.listPrefixes(prefix != null ? prefix : "").size() > 1
+                ? listShardedFromService(serviceName, client, prefix, maxKeys, continuationToken)
+                : listFilesFromService(serviceName, client, prefix, maxKeys, continuationToken);
+        validatorCache.putList(prefix, maxKeys, continuationToken, fileListResult.eTag(), fileListResult.lastModified());
+        String eTag = conditionalETag(fileListResult.eTag(), presignWindow);
+        if (ConditionalRequests.isNotModified(request, eTag, null)) {
+            return ConditionalRequests.notModified(eTag, null);
+        }
         FileListResponse response = convertToFileListResponse(fileListResult);
-        return ResponseEntity.ok(R.success("文件列表查询成功", response));
+        return ResponseEntity.ok().eTag(eTag).body(R.success("文件列表查询成功", response));
     }
 
 
@@ -282,17 +678,8 @@ public class ImageUploadService {
 
             ListObjectsV2Response response = client.listObjectsV2(requestBuilder.build());
 
-            List<FileListResponse.FileItem> files = response.contents().stream()
-                    .map(obj -> {
-                        String fileName = obj.key().substring(fullPrefix.length());
-                        String url = generateAccessUrl(serviceName, config, obj.key(), client);
-
-                        return new FileListResponse.FileItem(fileName, obj.size(),
-                                obj.lastModified(), List.of(url));
-                    })
-                    .collect(Collectors.toList());
-
-            return new FileListResult(files, files.size(),
+            return toFileListResult(serviceName, config, client, response.contents(),
+                    obj -> obj.key().substring(fullPrefix.length()),
                     response.isTruncated(), response.nextContinuationToken());
 
         } catch (Exception e) {
@@ -301,13 +688,156 @@ public class ImageUploadService {
         }
     }
 
+    /**
+     * 分片布局下按日期列出：并行列出每个分片（以及旧布局）下的该前缀，按逻辑键归并后取前 maxKeys 个。
+     * 翻页令牌为本页最后一个逻辑键，下一页各分片从该键之后开始列出（StartAfter）。
+     */
+    private FileListResult listShardedFromService(String serviceName, S3Client client,
+                                                  String prefix, int maxKeys, String startAfter) {
+        S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
+        String bucketName = config.getBucket();
+        String fullPrefix = prefix != null ? prefix : "";
+        boolean hasToken = startAfter != null && !startAfter.isEmpty();
+
+        try {
+            ensureBucketExists(serviceName, client, bucketName);
+
+            String reserved = keyLayout.reservedPrefix();
+            List<CompletableFuture<ListObjectsV2Response>> futures = new ArrayList<>();
+            // 与 futures 一一对应：是否为旧布局前缀的列表，旧布局列表跳过分片目录下的键
+            List<Boolean> legacy = new ArrayList<>();
+            for (String listPrefix : keyLayout.listPrefixes(fullPrefix)) {
+                // 存储前缀 = 分片部分 + 逻辑前缀，翻页位置同样加上分片部分
+                String shardPart = listPrefix.substring(0, listPrefix.length() - fullPrefix.length());
+                String from = hasToken ? shardPart + startAfter : null;
+                boolean coversReserved = shardPart.isEmpty() && reserved != null
+                        && (fullPrefix.startsWith(reserved) || reserved.startsWith(fullPrefix));
+                if (!coversReserved) {
+                    futures.add(listAsync(client, bucketName, listPrefix, maxKeys, from));
+                    legacy.add(shardPart.isEmpty());
+                    continue;
+                }
+                if (fullPrefix.startsWith(reserved)) {
+                    // 逻辑前缀整个落在分片目录内，旧布局下没有对应的键
+                    continue;
+                }
+                // 旧布局前缀包含分片目录：分别列出分片目录之前和之后的部分，分片键不会占满旧键的页
+                futures.add(listAsync(client, bucketName, listPrefix, maxKeys, from));
+                legacy.add(true);
+                String afterReserved = reserved + RESERVED_UPPER_BOUND;
+                futures.add(listAsync(client, bucketName, listPrefix, maxKeys,
+                        from != null && from.compareTo(afterReserved) > 0 ? from : afterReserved));
+                legacy.add(true);
+            }
+
+            // 按逻辑键去重，分片键优先
+            TreeMap<String, S3Object> merged = new TreeMap<>();
+            boolean truncated = false;
+            for (int i = 0; i < futures.size(); i++) {
+                ListObjectsV2Response response = futures.get(i).join();
+                boolean reachedReserved = false;
+                for (S3Object object : response.contents()) {
+                    if (legacy.get(i) && reserved != null && object.key().startsWith(reserved)) {
+                        // 分片目录之前的旧键已全部列出，之后的部分由另一个列表负责
+                        reachedReserved = true;
+                        break;
+                    }
+                    String logicalKey = keyLayout.logicalKey(object.key());
+                    if (!hasToken || logicalKey.compareTo(startAfter) > 0) {
+                        merged.putIfAbsent(logicalKey, object);
+                    }
+                }
+                truncated |= !reachedReserved && Boolean.TRUE.equals(response.isTruncated());
+            }
+
+            List<S3Object> page = merged.values().stream().limit(maxKeys).collect(Collectors.toList());
+            boolean hasMore = truncated || merged.size() > maxKeys;
+            String nextToken = hasMore && !page.isEmpty()
+                    ? keyLayout.logicalKey(page.get(page.size() - 1).key())
+                    : null;
+
+            return toFileListResult(serviceName, config, client, page,
+                    obj -> keyLayout.logicalKey(obj.key()).substring(fullPrefix.length()),
+                    hasMore, nextToken);
+
+        } catch (Exception e) {
+            log.error("List sharded files from {}/{} failed", serviceName, bucketName, e);
+            throw new StorageServiceException("文件列表获取失败", e);
+        }
+    }
+
+    /**
+     * 提交一个后端的扇出任务。扇出队列已满时不等待，该后端直接记为失败并归还许可，已提交的后端照常执行，
+     * 调用方仍会等待它们结束后再释放共享的上传内容
+     */
+    private <T> CompletableFuture<T> fanOut(Supplier<T> task, AdaptiveConcurrencyLimiter.Permit permit,
+                                            Function<String, T> rejected) {
+        try {
+            return CompletableFuture.supplyAsync(task, executorService);
+        } catch (ServiceOverloadedException e) {
+            ConcurrencyLimiters.release(permit, e);
+            return CompletableFuture.completedFuture(rejected.apply(e.getMessage()));
+        }
+    }
+
+    private CompletableFuture<ListObjectsV2Response> listAsync(S3Client client, String bucketName, String prefix,
+                                                               int maxKeys, String startAfter) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .maxKeys(maxKeys)
+                .startAfter(startAfter)
+                .build();
+        return CompletableFuture.supplyAsync(() -> client.listObjectsV2(request), executorService);
+    }
+
+    private FileListResult toFileListResult(String serviceName, S3StorageProperties.S3ServiceConfig config, S3Client client,
+                                            List<S3Object> objects, Function<S3Object, String> fileNameOf,
+                                            boolean hasMore, String nextToken) {
+        List<FileListResponse.FileItem> files = objects.stream()
+                .map(obj -> {
+                    String fileName = fileNameOf.apply(obj);
+                    String url = generateAccessUrl(serviceName, config, obj.key(), client);
+
+                    return new FileListResponse.FileItem(fileName, obj.size(),
+                            obj.lastModified(), List.of(url));
+                })
+                .collect(Collectors.toList());
+
+        List<String> validatorParts = new ArrayList<>();
+        Instant lastModified = null;
+        for (S3Object object : objects) {
+            validatorParts.add(object.key());
+            validatorParts.add(object.eTag());
+            validatorParts.add(String.valueOf(object.size()));
+            if (object.lastModified() != null && (lastModified == null || object.lastModified().isAfter(lastModified))) {
+                lastModified = object.lastModified();
+            }
+        }
+        validatorParts.add(nextToken);
+
+        return new FileListResult(files, files.size(), hasMore, nextToken,
+                ConditionalRequests.weakOf(validatorParts), lastModified);
+    }
+
 
     /**
      * 获取桶创建统计信息
+     *
+     * @param date 可选的日期前缀（yyyyMMdd），给出时另外返回各后端在该日期下的统计
      */
-    public Map<String, Object> getBucketStatistics(String bucketName) {
+    public Map<String, Object> getBucketStatistics(String bucketName, String date) {
         Map<String, Object> stats = new HashMap<>();
         stats.put("currentDateBucket", bucketName);
+        // 增量维护的计数器，直接汇总，不访问后端
+        Map<String, BucketStatistics.Snapshot> totals = bucketStatistics.totals();
+        stats.put("objectsByService", totals);
+        stats.put("totalObjects", totals.values().stream().mapToLong(BucketStatistics.Snapshot::objects).sum());
+        stats.put("totalBytes", totals.values().stream().mapToLong(BucketStatistics.Snapshot::bytes).sum());
+        if (date != null && !date.isBlank()) {
+            stats.put("dateByService", bucketStatistics.byService(StringUtils.trimTrailingCharacter(date.trim(), '/')));
+        }
+        stats.put("lastScan", bucketStatistics.lastScan());
         stats.put("createdBucketsCount", createdBuckets.values().stream()
                 .mapToInt(Set::size).sum());
         stats.put("createdBucketsByService", createdBuckets.entrySet().stream()
@@ -421,7 +951,7 @@ public class ImageUploadService {
     /**
      * 确保桶存在，如果不存在则创建
      */
-    private void ensureBucketExists(String serviceName, S3Client client, String bucketName) {
+    void ensureBucketExists(String serviceName, S3Client client, String bucketName) {
 
         // 检查缓存
         Set<String> serviceBuckets = createdBuckets.computeIfAbsent(serviceName, k -> ConcurrentHashMap.newKeySet());
@@ -463,43 +993,40 @@ public class ImageUploadService {
     /**
      * 生成日期格式的桶名
      */
-    private String generateDatePathPrefix() {
-        LocalDate now = LocalDate.now();
-        return now.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+    String generateDatePathPrefix() {
+        return LocalDate.now().format(DATE_PATH_FORMATTER);
     }
 
     private ServiceUploadResult uploadToService(String serviceName, S3Client client,
-                                                MultipartFile file, String fileName) {
+                                                String contentType, BufferChain content,
+                                                PayloadChecksums checksums, String logicalKey) {
         S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
 
         String bucketName = config.getBucket();
-        // 生成日期格式的桶名
-        String datePathPrefix = generateDatePathPrefix();
-
-
         // 确保桶存在
         ensureBucketExists(serviceName, client, bucketName);
 
-        String key = datePathPrefix + fileName;
+        String key = keyLayout.storageKey(logicalKey);
 
         try {
-            long fileSize = file.getSize();
+            long fileSize = content.length();
             log.info("开始上传文件到 {} - 大小: {}MB", serviceName, fileSize / 1024.0 / 1024.0);
 
-            // 将 MultipartFile 的内容读取到字节数组
-            byte[] fileBytes = file.getBytes();
-
-            PutObjectRequest request = PutObjectRequest.builder()
+            PutObjectRequest.Builder request = PutObjectRequest.builder()
                     .bucket(bucketName)
                     .key(key)
-                    .contentType(file.getContentType())
-                    .contentLength(fileSize)
-                    .build();
+                    .contentType(contentType)
+                    .contentLength(fileSize);
+            checksums.applyTo(request, checksumType(serviceName));
 
-            RequestBody requestBody = RequestBody.fromBytes(fileBytes);
+            // 每次重试都从头读取共享的缓冲区，不复制文件内容
+            RequestBody requestBody = RequestBody.fromContentProvider(content::newInputStream, fileSize, contentType);
 
             long startTime = System.currentTimeMillis();
-            client.putObject(request, requestBody);
+            PutObjectResponse response = client.putObject(request.build(), requestBody);
+            verifyChecksums(serviceName, client, bucketName, key, checksums, response);
+            invalidateCaches(logicalKey);
+            bucketStatistics.recordPut(serviceName, logicalKey, fileSize);
             long uploadTime = System.currentTimeMillis() - startTime;
             log.info("文件上传成功到 {}/{} - 耗时: {}秒", serviceName, bucketName, uploadTime / 1000.0);
             // 生成访问 URL
@@ -514,6 +1041,77 @@ public class ImageUploadService {
     }
 
 
+    private PayloadChecksumType checksumType(String serviceName) {
+        PayloadChecksumType type = storageProperties.getServices().get(serviceName).getChecksumAlgorithm();
+        return type != null ? type : storageProperties.getChecksum().getAlgorithm();
+    }
+
+    private Set<PayloadChecksumType> checksumTypes(Collection<String> serviceNames) {
+        Set<PayloadChecksumType> types = EnumSet.noneOf(PayloadChecksumType.class);
+        serviceNames.forEach(serviceName -> types.add(checksumType(serviceName)));
+        return types;
+    }
+
+    /**
+     * 核对后端返回的校验值，不一致时删除已写入的对象并视为该后端上传失败。
+     * 只有 ETag 不一致时只记录，不删除对象：后端已按 Content-MD5 校验过请求体，ETag 可能因加密等原因不是 MD5。
+     */
+    private void verifyChecksums(String serviceName, S3Client client, String bucketName, String key,
+                                 PayloadChecksums checksums, PutObjectResponse response) {
+        if (checksums == null) {
+            return;
+        }
+        String result = checksums.verify(response, checksumType(serviceName));
+        storageMetrics.recordChecksum(serviceName, result);
+        if (PayloadChecksums.ETAG_MISMATCH.equals(result)) {
+            log.warn("后端返回的 ETag 与内容 MD5 不一致，保留对象 - 服务: {}, key: {}", serviceName, key);
+            return;
+        }
+        if (PayloadChecksums.MISMATCH.equals(result)) {
+            log.error("后端返回的校验值与上传内容不一致 - 服务: {}, key: {}", serviceName, key);
+            try {
+                client.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(key).build());
+            } catch (Exception e) {
+                log.warn("删除校验失败的对象失败 - 服务: {}, key: {}", serviceName, key, e);
+            }
+            throw new StorageServiceException("上传到 " + serviceName + " 的内容校验失败");
+        }
+    }
+
+    private ServiceUploadResult streamToService(String serviceName, S3Client client, ChunkPipe pipe,
+                                                CompletableFuture<PayloadChecksums> checksums,
+                                                String contentType, long contentLength, String logicalKey) {
+        S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
+
+        String bucketName = config.getBucket();
+        ensureBucketExists(serviceName, client, bucketName);
+
+        String key = keyLayout.storageKey(logicalKey);
+
+        PutObjectRequest.Builder request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength);
+        if (storageProperties.getChecksum().isStreamTrailer()
+                && checksumType(serviceName) != PayloadChecksumType.NONE) {
+            request.checksumAlgorithm(ChecksumAlgorithm.CRC32C);
+        }
+
+        long startTime = System.currentTimeMillis();
+        PutObjectResponse response = client.putObject(request.build(),
+                RequestBody.fromContentProvider(pipe::open, contentLength, contentType));
+        // 后端读完请求体才会响应，校验值在最后一块放入管道之前已写入
+        verifyChecksums(serviceName, client, bucketName, key, checksums.getNow(null), response);
+        invalidateCaches(logicalKey);
+        bucketStatistics.recordPut(serviceName, logicalKey, contentLength);
+        log.info("文件流式上传成功到 {}/{} - 耗时: {}秒", serviceName, bucketName, (System.currentTimeMillis() - startTime) / 1000.0);
+
+        String url = generateAccessUrl(serviceName, config, key, client);
+        return new ServiceUploadResult(serviceName, true, url, "上传成功");
+    }
+
+
     // 获取存储信息（脱敏后的）
     public Map<String, Object> getStorageInfo(String prefix) {
         Map<String, Object> info = new HashMap<>();
@@ -536,6 +1134,21 @@ public class ImageUploadService {
         return info;
     }
 
+    /**
+     * 获取各存储后端的实时健康状态
+     */
+    public HealthResponse getHealth() {
+        List<BackendHealthSnapshot> backends = healthTracker.snapshots(clientManager.getAllEnabledClients().keySet());
+        int healthy = (int) backends.stream().filter(b -> b.state() == BackendState.HEALTHY).count();
+        String status = healthy == 0 ? "DOWN" : healthy == backends.size() ? "UP" : "DEGRADED";
+        return HealthResponse.builder()
+                .status(status)
+                .healthyCount(healthy)
+                .totalCount(backends.size())
+                .backends(backends)
+                .build();
+    }
+
     /**
      * 获取服务兼容性信息
      */
@@ -571,6 +1184,7 @@ public class ImageUploadService {
                 .successCount(result.getSuccessCount())
                 .failureCount(result.getFailureCount())
                 .uploadTimeMs(result.uploadTimeMs())
+                .bytesSaved(result.bytesSaved())
                 .build();
 
         return UploadResponse.builder()
@@ -596,20 +1210,24 @@ public class ImageUploadService {
             throw new StorageConfigurationException("没有可用的存储服务");
         }
 
+        Map<String, AdaptiveConcurrencyLimiter.Permit> permits = concurrencyLimiters.acquireBackends(targetClients.keySet());
         List<CompletableFuture<ServiceDeleteResult>> futures = new ArrayList<>();
 
         for (Map.Entry<String, S3Client> entry : targetClients.entrySet()) {
             String serviceName = entry.getKey();
             S3Client client = entry.getValue();
 
-            CompletableFuture<ServiceDeleteResult> future = CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<ServiceDeleteResult> future = fanOut(() -> {
                 try {
-                    return deleteFromService(serviceName, client, fileName, prefix);
+                    ServiceDeleteResult result = deleteFromService(serviceName, client, fileName, prefix);
+                    ConcurrencyLimiters.release(permits.get(serviceName), result.success());
+                    return result;
                 } catch (Exception e) {
+                    ConcurrencyLimiters.release(permits.get(serviceName), false);
                     log.error("Failed to delete from service: {}", serviceName, e);
                     return new ServiceDeleteResult(serviceName, false, e.getMessage());
                 }
-            }, executorService);
+            }, permits.get(serviceName), message -> new ServiceDeleteResult(serviceName, false, message));
 
             futures.add(future);
         }
@@ -629,6 +1247,7 @@ public class ImageUploadService {
                     fileName, deleteResult.getSuccessCount(), deleteResult.getTotalServices());
             return ResponseEntity.ok(R.success("文件删除成功", response));
         } else {
+            antiEntropyReconciler.recordPartialDelete(prefix + fileName);
             log.warn("文件部分删除失败 - 文件名: {}, 成功服务数: {}/{}",
                     fileName, deleteResult.getSuccessCount(), deleteResult.getTotalServices());
             return ResponseEntity.ok(R.success("文件部分删除成功", response));
@@ -636,30 +1255,64 @@ public class ImageUploadService {
     }
 
     /**
-     * 查询文件信息
+     * 查询文件信息。
+     * 默认使用对冲读取，只返回最先应答的副本的信息；consistency=all 时查询所有后端并返回各副本的存在情况。
      */
-    public ResponseEntity<R<FileInfoResponse>> getFileInfo(String fileName, String prefix) {
-        log.info("查询文件信息 - 文件名: {}", fileName);
+    public ResponseEntity<R<FileInfoResponse>> getFileInfo(String fileName, String prefix, String consistency,
+                                                           HttpServletRequest request) {
+        log.info("查询文件信息 - 文件名: {}, 一致性: {}", fileName, consistency);
+        String key = prefix + fileName;
+        boolean consistencyAll = CONSISTENCY_ALL.equalsIgnoreCase(consistency);
+        // 响应含预签名地址时 ETag 随地址的有效期窗口变化，且不按 If-Modified-Since 返回 304
+        String presignWindow = presignWindow();
+        if (!consistencyAll) {
+            ValidatorCache.Validator cached = validatorCache.get(key);
+            if (cached != null) {
+                String cachedETag = conditionalETag(ConditionalRequests.weak(cached.eTag()), presignWindow);
+                Instant cachedLastModified = presignWindow == null ? cached.lastModified() : null;
+                if (ConditionalRequests.isNotModified(request, cachedETag, cachedLastModified)) {
+                    return ConditionalRequests.notModified(cachedETag, cachedLastModified);
+                }
+            }
+        }
+
         Map<String, S3Client> targetClients = clientManager.getAllEnabledClients();
 
         if (targetClients.isEmpty()) {
             throw new StorageConfigurationException("没有可用的存储服务");
         }
 
+        if (!consistencyAll && storageProperties.getHedgedRead().isEnabled()) {
+            ServiceFileInfoResult result = hedgedReadService.read("head", targetClients.keySet(),
+                    serviceName -> getFileInfoFromService(serviceName, targetClients.get(serviceName), fileName, prefix),
+                    ServiceFileInfoResult::exists, null);
+            if (!result.exists()) {
+                return ResponseEntity.notFound().build();
+            }
+            validatorCache.put(key, result.etag(), result.lastModified());
+            String eTag = conditionalETag(ConditionalRequests.weak(result.etag()), presignWindow);
+            Instant lastModified = presignWindow == null ? result.lastModified() : null;
+            if (ConditionalRequests.isNotModified(request, eTag, lastModified)) {
+                return ConditionalRequests.notModified(eTag, lastModified);
+            }
+            FileInfoResponse response = convertToFileInfoResponse(new FileInfoResult(fileName, List.of(result)), false);
+            return fileInfoResponse(response, eTag, lastModified);
+        }
+
         List<CompletableFuture<ServiceFileInfoResult>> futures = new ArrayList<>();
 
         for (Map.Entry<String, S3Client> entry : targetClients.entrySet()) {
             String serviceName = entry.getKey();
             S3Client client = entry.getValue();
 
-            CompletableFuture<ServiceFileInfoResult> future = CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<ServiceFileInfoResult> future = fanOut(() -> {
                 try {
                     return getFileInfoFromService(serviceName, client, fileName, prefix);
                 } catch (Exception e) {
                     log.debug("File not found in service: {} - {}", serviceName, fileName);
                     return new ServiceFileInfoResult(serviceName, false, null, null, null, null, null);
                 }
-            }, executorService);
+            }, null, message -> new ServiceFileInfoResult(serviceName, false, null, null, null, null, null));
 
             futures.add(future);
         }
@@ -677,13 +1330,62 @@ public class ImageUploadService {
             return ResponseEntity.notFound().build();
         }
 
-        FileInfoResponse response = convertToFileInfoResponse(fileInfoResult);
+        // 全部副本的存在情况也是响应内容的一部分，ETag 由各副本的状态共同计算
+        List<String> validatorParts = new ArrayList<>();
+        Instant lastModified = null;
+        for (ServiceFileInfoResult result : results) {
+            validatorParts.add(result.serviceName());
+            validatorParts.add(String.valueOf(result.exists()));
+            validatorParts.add(result.etag());
+            if (result.lastModified() != null && (lastModified == null || result.lastModified().isAfter(lastModified))) {
+                lastModified = result.lastModified();
+            }
+        }
+        String eTag = conditionalETag(ConditionalRequests.weakOf(validatorParts), presignWindow);
+        if (presignWindow != null) {
+            lastModified = null;
+        }
+        if (ConditionalRequests.isNotModified(request, eTag, lastModified)) {
+            return ConditionalRequests.notModified(eTag, lastModified);
+        }
+
+        FileInfoResponse response = convertToFileInfoResponse(fileInfoResult, true);
+
+        return fileInfoResponse(response, eTag, lastModified);
+    }
+
+    /**
+     * 启用预签名地址的后端按半个有效期划分时间窗，返回当前窗口的标识；没有后端使用预签名地址时返回 null。
+     * 混入 ETag 后，客户端缓存的响应最迟在其中的地址还剩一半有效期时不再命中 304
+     */
+    private String presignWindow() {
+        long now = System.currentTimeMillis();
+        List<String> windows = new ArrayList<>();
+        for (String serviceName : clientManager.getAllEnabledClients().keySet()) {
+            S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
+            boolean publicUrl = config.getPublicUrlPattern() != null && !config.getPublicUrlPattern().isEmpty();
+            if (config.isUsePresignedUrl() && !publicUrl) {
+                long halfExpiryMillis = Math.max(1000, config.getPresignedUrlExpiry() * 1000L / 2);
+                windows.add(serviceName + ":" + now / halfExpiryMillis);
+            }
+        }
+        return windows.isEmpty() ? null : String.join(",", windows);
+    }
+
+    private static String conditionalETag(String eTag, String presignWindow) {
+        return presignWindow == null || eTag == null ? eTag : ConditionalRequests.weakOf(List.of(eTag, presignWindow));
+    }
 
-        return ResponseEntity.ok(R.success("文件信息查询成功", response));
+    private ResponseEntity<R<FileInfoResponse>> fileInfoResponse(FileInfoResponse response, String eTag, Instant lastModified) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().eTag(eTag);
+        if (lastModified != null) {
+            builder.lastModified(lastModified);
+        }
+        return builder.body(R.success("文件信息查询成功", response));
     }
 
 
-    private FileInfoResponse convertToFileInfoResponse(FileInfoResult result) {
+    private FileInfoResponse convertToFileInfoResponse(FileInfoResult result, boolean allServicesQueried) {
         List<FileListResponse.ServiceFileInfo> serviceInfos = result.results().stream()
                 .map(serviceResult -> FileListResponse.ServiceFileInfo.builder()
                         .serviceName(serviceResult.serviceName())
@@ -709,7 +1411,7 @@ public class ImageUploadService {
                 .uploadTime(firstExisting != null && firstExisting.lastModified() != null ?
                         LocalDateTime.ofInstant(firstExisting.lastModified(), java.time.ZoneId.systemDefault()) : null)
                 .serviceInfos(serviceInfos)
-                .existsInAllServices(result.existsInAllServices())
+                .existsInAllServices(allServicesQueried ? result.existsInAllServices() : null)
                 .build();
     }
 
@@ -744,7 +1446,7 @@ public class ImageUploadService {
         deleteImage(fileName, request, prefix);
 
         // 上传新文件，使用相同的文件名
-        UploadResult uploadResult = upload(newFile, fileName);
+        UploadResult uploadResult = upload(newFile, fileName, generateDatePathPrefix() + fileName);
         if (!uploadResult.allSuccessfulUpload()) {
             throw new StorageConfigurationException("文件替换失败");
         }
@@ -769,20 +1471,24 @@ public class ImageUploadService {
             throw new StorageConfigurationException("没有可用的存储服务");
         }
 
+        Map<String, AdaptiveConcurrencyLimiter.Permit> permits = concurrencyLimiters.acquireBackends(targetClients.keySet());
         List<CompletableFuture<ServiceRenameResult>> futures = new ArrayList<>();
 
         for (Map.Entry<String, S3Client> entry : targetClients.entrySet()) {
             String serviceName = entry.getKey();
             S3Client client = entry.getValue();
 
-            CompletableFuture<ServiceRenameResult> future = CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<ServiceRenameResult> future = fanOut(() -> {
                 try {
-                    return renameInService(serviceName, client, oldFileName, newFileName, prefix);
+                    ServiceRenameResult result = renameInService(serviceName, client, oldFileName, newFileName, prefix);
+                    ConcurrencyLimiters.release(permits.get(serviceName), result.success());
+                    return result;
                 } catch (Exception e) {
+                    ConcurrencyLimiters.release(permits.get(serviceName), false);
                     log.error("Failed to rename in service: {}", serviceName, e);
                     return new ServiceRenameResult(serviceName, false, null, e.getMessage());
                 }
-            }, executorService);
+            }, permits.get(serviceName), message -> new ServiceRenameResult(serviceName, false, null, message));
 
             futures.add(future);
         }
@@ -796,6 +1502,8 @@ public class ImageUploadService {
         ).join();
         RenameResult result = new RenameResult(oldFileName, newFileName, results);
         if (!result.isCompletelyRenamed()) {
+            antiEntropyReconciler.markDirty(prefix + oldFileName);
+            antiEntropyReconciler.markDirty(prefix + newFileName);
             throw new StorageServiceException("文件重命名失败");
         }
 
@@ -824,18 +1532,35 @@ public class ImageUploadService {
         return ResponseEntity.ok(R.success("文件重命名成功", response));
     }
 
+    /**
+     * 对象在后端被写入、删除或重命名后，使本地内容缓存和条件请求校验值失效
+     */
+    void invalidateCaches(String key) {
+        objectCache.invalidate(key);
+        validatorCache.invalidate(key);
+    }
+
     // 私有辅助方法
     private ServiceDeleteResult deleteFromService(String serviceName, S3Client client, String fileName, String prefix) {
         S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
         String key = prefix + fileName;
 
         try {
-            DeleteObjectRequest request = DeleteObjectRequest.builder()
-                    .bucket(config.getBucket())
-                    .key(key)
-                    .build();
-
-            client.deleteObject(request);
+            // 删除前先取得对象大小，用于桶统计；删除不存在的键同样成功，因此无法从删除结果得知
+            Long deletedSize = existingSize(client, config.getBucket(), keyLayout.candidateKeys(key));
+            // 删除不存在的键同样成功，因此新旧布局的键都删除
+            for (String storageKey : keyLayout.candidateKeys(key)) {
+                DeleteObjectRequest request = DeleteObjectRequest.builder()
+                        .bucket(config.getBucket())
+                        .key(storageKey)
+                        .build();
+
+                client.deleteObject(request);
+            }
+            invalidateCaches(key);
+            if (deletedSize != null) {
+                bucketStatistics.recordDelete(serviceName, key, deletedSize);
+            }
             return new ServiceDeleteResult(serviceName, true, "删除成功");
 
         } catch (Exception e) {
@@ -848,24 +1573,27 @@ public class ImageUploadService {
         S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
         String key = prefix + fileName;
 
-        try {
-            HeadObjectRequest request = HeadObjectRequest.builder()
-                    .bucket(config.getBucket())
-                    .key(key)
-                    .build();
+        for (String storageKey : keyLayout.candidateKeys(key)) {
+            try {
+                HeadObjectRequest request = HeadObjectRequest.builder()
+                        .bucket(config.getBucket())
+                        .key(storageKey)
+                        .build();
 
-            HeadObjectResponse response = client.headObject(request);
+                HeadObjectResponse response = client.headObject(request);
 
-            String url = generateAccessUrl(serviceName, config, key, client);
+                String url = generateAccessUrl(serviceName, config, storageKey, client);
 
-            return new ServiceFileInfoResult(
-                    serviceName, true, url, response.contentLength(),
-                    response.lastModified(), response.contentType(), response.eTag()
-            );
+                return new ServiceFileInfoResult(
+                        serviceName, true, url, response.contentLength(),
+                        response.lastModified(), response.contentType(), response.eTag()
+                );
 
-        } catch (NoSuchKeyException e) {
-            return new ServiceFileInfoResult(serviceName, false, null, null, null, null, null);
+            } catch (NoSuchKeyException e) {
+                log.debug("对象不在该存储键下: {} - {}", serviceName, storageKey);
+            }
         }
+        return new ServiceFileInfoResult(serviceName, false, null, null, null, null, null);
     }
 
 
@@ -874,27 +1602,23 @@ public class ImageUploadService {
         S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
         String oldKey = prefix + oldFileName;
         String newKey = prefix + newFileName;
+        String newStorageKey = keyLayout.storageKey(newKey);
 
         try {
-            // 复制对象到新键
-            CopyObjectRequest copyRequest = CopyObjectRequest.builder()
-                    .sourceBucket(config.getBucket())
-                    .sourceKey(oldKey)
-                    .destinationBucket(config.getBucket())
-                    .destinationKey(newKey)
-                    .build();
-
-            client.copyObject(copyRequest);
+            // 复制对象到新键，原对象可能仍在旧布局的键下
+            String oldStorageKey = copyFromFirstExisting(client, config.getBucket(), keyLayout.candidateKeys(oldKey), newStorageKey);
+            invalidateCaches(newKey);
 
             // 删除原对象
             DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
                     .bucket(config.getBucket())
-                    .key(oldKey)
+                    .key(oldStorageKey)
                     .build();
 
             client.deleteObject(deleteRequest);
+            invalidateCaches(oldKey);
 
-            String newUrl = generateAccessUrl(serviceName, config, newKey, client);
+            String newUrl = generateAccessUrl(serviceName, config, newStorageKey, client);
 
             return new ServiceRenameResult(serviceName, true, newUrl, "重命名成功");
 
@@ -905,6 +1629,44 @@ public class ImageUploadService {
     }
 
 
+    /**
+     * 第一个存在的候选键的对象大小，都不存在时返回 null
+     */
+    private Long existingSize(S3Client client, String bucketName, List<String> storageKeys) {
+        for (String storageKey : storageKeys) {
+            try {
+                return client.headObject(HeadObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(storageKey)
+                        .build()).contentLength();
+            } catch (NoSuchKeyException e) {
+                // 尝试下一个候选键
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 依次尝试从候选键复制，返回实际复制的源键；都不存在时抛出最后一个 NoSuchKeyException
+     */
+    private String copyFromFirstExisting(S3Client client, String bucketName, List<String> sourceKeys, String destinationKey) {
+        NoSuchKeyException notFound = null;
+        for (String sourceKey : sourceKeys) {
+            try {
+                client.copyObject(CopyObjectRequest.builder()
+                        .sourceBucket(bucketName)
+                        .sourceKey(sourceKey)
+                        .destinationBucket(bucketName)
+                        .destinationKey(destinationKey)
+                        .build());
+                return sourceKey;
+            } catch (NoSuchKeyException e) {
+                notFound = e;
+            }
+        }
+        throw notFound;
+    }
+
     // 转换方法
     private DeleteResponse convertToDeleteResponse(DeleteResult result) {
         List<DeleteResponse.ServiceDeleteResult> details = result.results().stream()
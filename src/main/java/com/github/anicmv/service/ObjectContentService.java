@@ -0,0 +1,605 @@
+package com.github.anicmv.service;
+
+import com.github.anicmv.cache.CachedObject;
+import com.github.anicmv.cache.ConditionalRequests;
+import com.github.anicmv.cache.ObjectCache;
+import com.github.anicmv.cache.ValidatorCache;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.StorageConfigurationException;
+import com.github.anicmv.exception.StorageServiceException;
+import com.github.anicmv.layout.KeyLayoutStrategy;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * @author anicmv
+ * 对象内容读取服务：从当前最优副本 getObject，并以固定大小的缓冲区直接写入 Servlet 输出流，
+ * 不在 JVM 中缓存整个对象。支持单区间（透传给S3）和多区间（multipart/byteranges）请求。
+ * 多区间按起点排序并合并重叠或相邻的区间后，只读取一次覆盖它们的连续范围；
+ * 区间数超过上限或区间总长超过对象长度时忽略 Range，返回完整内容。
+ * 启用本地缓存时，完整读取的对象会同时写入 {@link ObjectCache}，之后的读取（含区间读取）直接从本地文件零拷贝发送。
+ * If-None-Match / If-Modified-Since 优先由 {@link ValidatorCache} 和本地缓存判断，否则透传给S3，命中时返回 304。
+ */
+@Slf4j
+@Service
+public class ObjectContentService {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // 多区间请求的区间数上限，超过时按完整内容响应
+    private static final int MAX_RANGES = 16;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Resource
+    private S3ClientManager clientManager;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private HedgedReadService hedgedReadService;
+
+    @Resource
+    private ObjectCache objectCache;
+
+    @Resource
+    private ValidatorCache validatorCache;
+
+    @Resource
+    private KeyLayoutStrategy keyLayout;
+
+    /**
+     * 单个副本的读取结果，stream 为空时 status 表示原因（404、416 或 304），304 时 eTag 为后端返回的当前 ETag
+     */
+    private record ObjectContent(String serviceName, ResponseInputStream<GetObjectResponse> stream,
+                                 int status, String eTag) {
+        boolean readable() {
+            return stream != null;
+        }
+
+        boolean usable() {
+            return stream != null || status == HttpServletResponse.SC_NOT_MODIFIED;
+        }
+    }
+
+    /**
+     * 多区间请求先通过 HEAD 确定对象长度和版本，storageKey 为对象实际所在的存储键
+     */
+    private record ObjectHead(String serviceName, String storageKey, HeadObjectResponse response) {
+        boolean exists() {
+            return response != null;
+        }
+    }
+
+    public void streamContent(String fileName, String prefix,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Map<String, S3Client> clients = clientManager.getAllEnabledClients();
+        if (clients.isEmpty()) {
+            throw new StorageConfigurationException("没有可用的存储服务");
+        }
+
+        String key = prefix + fileName;
+        ValidatorCache.Validator validator = validatorCache.get(key);
+        if (validator != null && ConditionalRequests.isNotModified(request, validator.eTag(), validator.lastModified())) {
+            writeNotModified(response, validator.eTag(), validator.lastModified());
+            return;
+        }
+
+        List<HttpRange> ranges = parseRanges(request.getHeader(HttpHeaders.RANGE));
+        if (ranges.size() > MAX_RANGES) {
+            log.debug("区间数 {} 超过上限，返回完整内容 - 文件: {}", ranges.size(), key);
+            ranges = List.of();
+        }
+        if (objectCache.isEnabled()) {
+            CachedObject cached = lookupCached(clients, key);
+            if (cached != null) {
+                serveCached(cached, ranges, request, response);
+                return;
+            }
+        }
+        if (ranges.size() > 1) {
+            streamMultipleRanges(clients, key, ranges, request, response);
+            return;
+        }
+        streamObject(clients, key, ranges.isEmpty() ? null : request.getHeader(HttpHeaders.RANGE), request, response);
+    }
+
+    /**
+     * 完整或单区间读取，range 原样透传给S3
+     */
+    private void streamObject(Map<String, S3Client> clients, String key, String range,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        ObjectContent content = hedgedReadService.read("get", clients.keySet(),
+                serviceName -> getObject(serviceName, clients.get(serviceName), keyLayout.candidateKeys(key), range, null, ifNoneMatch),
+                ObjectContent::usable, ObjectContentService::abort);
+
+        if (!content.readable()) {
+            if (content.status() == HttpServletResponse.SC_NOT_MODIFIED) {
+                writeNotModified(response, content.eTag(), null);
+            } else {
+                response.setStatus(content.status());
+            }
+            return;
+        }
+
+        log.debug("读取文件内容 - 文件: {}, 服务: {}, Range: {}", key, content.serviceName(), range);
+        ResponseInputStream<GetObjectResponse> stream = content.stream();
+        GetObjectResponse object = stream.response();
+        validatorCache.put(key, object.eTag(), object.lastModified());
+        if (ConditionalRequests.isNotModified(request, object.eTag(), object.lastModified())) {
+            abort(content);
+            writeNotModified(response, object.eTag(), object.lastModified());
+            return;
+        }
+        response.setStatus(object.contentRange() != null
+                ? HttpServletResponse.SC_PARTIAL_CONTENT : HttpServletResponse.SC_OK);
+        writeObjectHeaders(response, object.eTag(), object.lastModified() == null ? null : object.lastModified().toEpochMilli());
+        if (object.contentType() != null) {
+            response.setContentType(object.contentType());
+        }
+        if (object.contentRange() != null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, object.contentRange());
+        }
+        if (object.contentLength() != null) {
+            response.setContentLengthLong(object.contentLength());
+        }
+
+        if ("HEAD".equals(request.getMethod())) {
+            abort(content);
+            return;
+        }
+        if (range == null && objectCache.isCacheable(object.contentLength())) {
+            copyAndCache(key, stream, response.getOutputStream());
+        } else {
+            copy(stream, response.getOutputStream());
+        }
+    }
+
+    /**
+     * 命中缓存后超过核对间隔时，先向后端核对ETag；ETag变化或对象已不存在时使缓存失效。
+     * 所有后端都不可用时继续使用缓存内容。
+     */
+    private CachedObject lookupCached(Map<String, S3Client> clients, String key) {
+        CachedObject cached = objectCache.get(key);
+        if (cached == null || !objectCache.needsRevalidation(cached)) {
+            return cached;
+        }
+        ObjectHead head;
+        try {
+            head = hedgedReadService.read("head", clients.keySet(),
+                    serviceName -> headObject(serviceName, clients.get(serviceName), key),
+                    ObjectHead::exists, null);
+        } catch (StorageServiceException e) {
+            log.warn("缓存核对失败，继续使用本地缓存 - 文件: {}, 原因: {}", key, e.getMessage());
+            return cached;
+        }
+        if (head.exists() && Objects.equals(head.response().eTag(), cached.eTag())) {
+            objectCache.markValidated(cached);
+            return cached;
+        }
+        log.debug("缓存已过期 - 文件: {}", key);
+        objectCache.invalidate(key);
+        return null;
+    }
+
+    private void serveCached(CachedObject cached, List<HttpRange> ranges,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (ConditionalRequests.isNotModified(request, cached.eTag(), cached.lastModified())) {
+            writeNotModified(response, cached.eTag(), cached.lastModified());
+            return;
+        }
+        long length = cached.length();
+        writeObjectHeaders(response, cached.eTag(), cached.lastModified() == null ? null : cached.lastModified().toEpochMilli());
+        List<long[]> spans = resolveRanges(ranges, length);
+        if (spans != null && spans.isEmpty()) {
+            writeRangeNotSatisfiable(response, length);
+            return;
+        }
+        if (spans != null && spans.size() > 1) {
+            Multipart multipart = Multipart.of(spans, cached.contentType(), length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(multipart.contentType());
+            response.setContentLengthLong(multipart.contentLength());
+            if ("HEAD".equals(request.getMethod())) {
+                return;
+            }
+            OutputStream out = response.getOutputStream();
+            try (FileChannel channel = FileChannel.open(cached.path(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                for (int i = 0; i < spans.size(); i++) {
+                    out.write(multipart.partHeaders()[i]);
+                    transfer(channel, spans.get(i)[0], spans.get(i)[1] - spans.get(i)[0] + 1, target, cached.path());
+                }
+            }
+            out.write(multipart.closing());
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        if (cached.contentType() != null) {
+            response.setContentType(cached.contentType());
+        }
+        if (spans != null) {
+            start = spans.get(0)[0];
+            end = spans.get(0)[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        // Tomcat 支持时交给 sendfile 在请求结束后由内核直接发送
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, cached.path().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(cached.path(), StandardOpenOption.READ)) {
+            transfer(channel, start, end - start + 1, Channels.newChannel(response.getOutputStream()), cached.path());
+        }
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel out,
+                                 Path path) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, out);
+            if (transferred <= 0) {
+                throw new IOException("缓存文件长度不足: " + path);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    /**
+     * 在向客户端拷贝的同时写入缓存临时文件，完整读取后再尝试准入；写缓存失败不影响响应
+     */
+    private void copyAndCache(String key, ResponseInputStream<GetObjectResponse> stream, OutputStream out) throws IOException {
+        GetObjectResponse object = stream.response();
+        Path tempFile = objectCache.createTempFile();
+        OutputStream file;
+        try {
+            file = Files.newOutputStream(tempFile);
+        } catch (IOException e) {
+            log.warn("创建缓存临时文件失败: {}", e.getMessage());
+            copy(stream, out);
+            return;
+        }
+        long written = 0;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                if (file != null) {
+                    try {
+                        file.write(buffer, 0, read);
+                        written += read;
+                    } catch (IOException e) {
+                        log.warn("写入缓存临时文件失败: {}", e.getMessage());
+                        closeQuietly(file);
+                        file = null;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            stream.abort();
+            closeQuietly(file);
+            objectCache.discard(tempFile);
+            throw e;
+        }
+        stream.close();
+
+        if (file == null) {
+            objectCache.discard(tempFile);
+            return;
+        }
+        file.close();
+        if (written == object.contentLength()) {
+            objectCache.admit(key, tempFile, written, object.eTag(), object.contentType(), object.lastModified());
+        } else {
+            objectCache.discard(tempFile);
+        }
+    }
+
+    private static void closeQuietly(OutputStream stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("关闭缓存临时文件失败: {}", e.getMessage());
+        }
+    }
+
+    private void streamMultipleRanges(Map<String, S3Client> clients, String key, List<HttpRange> ranges,
+                                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ObjectHead head = hedgedReadService.read("head", clients.keySet(),
+                serviceName -> headObject(serviceName, clients.get(serviceName), key),
+                ObjectHead::exists, null);
+        if (!head.exists()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        HeadObjectResponse object = head.response();
+        validatorCache.put(key, object.eTag(), object.lastModified());
+        if (ConditionalRequests.isNotModified(request, object.eTag(), object.lastModified())) {
+            writeNotModified(response, object.eTag(), object.lastModified());
+            return;
+        }
+        long length = object.contentLength();
+        List<long[]> spans = resolveRanges(ranges, length);
+        if (spans == null) {
+            streamObject(clients, key, null, request, response);
+            return;
+        }
+        if (spans.isEmpty()) {
+            writeObjectHeaders(response, object.eTag(), object.lastModified() == null ? null : object.lastModified().toEpochMilli());
+            writeRangeNotSatisfiable(response, length);
+            return;
+        }
+        if (spans.size() == 1) {
+            streamObject(clients, key, "bytes=" + spans.get(0)[0] + "-" + spans.get(0)[1], request, response);
+            return;
+        }
+
+        Multipart multipart = Multipart.of(spans, object.contentType(), length);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        writeObjectHeaders(response, object.eTag(), object.lastModified() == null ? null : object.lastModified().toEpochMilli());
+        response.setContentType(multipart.contentType());
+        response.setContentLengthLong(multipart.contentLength());
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        // 从 HEAD 的副本一次读取覆盖所有区间的连续范围，并用 If-Match 保证读取的是同一版本；区间之间的空隙读取后丢弃
+        long first = spans.get(0)[0];
+        long last = spans.get(spans.size() - 1)[1];
+        ObjectContent content = getObject(head.serviceName(), clients.get(head.serviceName()), List.of(head.storageKey()),
+                "bytes=" + first + "-" + last, object.eTag(), null);
+        if (!content.readable()) {
+            throw new IOException("读取区间失败: " + key + " " + first + "-" + last);
+        }
+        ResponseInputStream<GetObjectResponse> stream = content.stream();
+        OutputStream out = response.getOutputStream();
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = first;
+            for (int i = 0; i < spans.size(); i++) {
+                long[] span = spans.get(i);
+                copy(stream, OutputStream.nullOutputStream(), span[0] - position, buffer);
+                out.write(multipart.partHeaders()[i]);
+                copy(stream, out, span[1] - span[0] + 1, buffer);
+                position = span[1] + 1;
+            }
+        } catch (IOException | RuntimeException e) {
+            stream.abort();
+            throw e;
+        }
+        stream.close();
+        out.write(multipart.closing());
+    }
+
+    /**
+     * 把请求的区间换算为 [start, end]，按起点排序并合并重叠或相邻的区间。
+     * 没有请求区间、区间数超过上限或区间总长超过对象长度时返回 null，表示忽略 Range 返回完整内容；
+     * 所有区间都不可满足时返回空列表
+     */
+    static List<long[]> resolveRanges(List<HttpRange> ranges, long length) {
+        if (ranges.isEmpty() || ranges.size() > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> satisfiable = new ArrayList<>();
+        long requested = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            if (start >= length) {
+                continue;
+            }
+            long end = range.getRangeEnd(length);
+            satisfiable.add(new long[]{start, end});
+            requested += end - start + 1;
+        }
+        if (requested > length) {
+            log.debug("区间总长 {} 超过对象长度 {}，返回完整内容", requested, length);
+            return null;
+        }
+        satisfiable.sort(Comparator.comparingLong(span -> span[0]));
+        List<long[]> coalesced = new ArrayList<>();
+        for (long[] span : satisfiable) {
+            long[] previous = coalesced.isEmpty() ? null : coalesced.get(coalesced.size() - 1);
+            if (previous != null && span[0] <= previous[1] + 1) {
+                previous[1] = Math.max(previous[1], span[1]);
+            } else {
+                coalesced.add(span);
+            }
+        }
+        return coalesced;
+    }
+
+    /**
+     * multipart/byteranges 响应的分隔行与各部分的头
+     */
+    private record Multipart(String contentType, byte[][] partHeaders, byte[] closing, long contentLength) {
+
+        static Multipart of(List<long[]> spans, String objectContentType, long length) {
+            String boundary = UUID.randomUUID().toString().replace("-", "");
+            String partType = objectContentType != null ? objectContentType : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+            byte[][] partHeaders = new byte[spans.size()][];
+            long contentLength = 0;
+            for (int i = 0; i < spans.size(); i++) {
+                long[] span = spans.get(i);
+                partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + partType + "\r\n"
+                        + HttpHeaders.CONTENT_RANGE + ": bytes " + span[0] + "-" + span[1] + "/" + length + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                contentLength += partHeaders[i].length + span[1] - span[0] + 1;
+            }
+            byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+            contentLength += closing.length;
+            return new Multipart("multipart/byteranges; boundary=" + boundary, partHeaders, closing, contentLength);
+        }
+    }
+
+    /**
+     * 依次尝试各候选存储键，只有对象不存在时才尝试下一个
+     */
+    private ObjectContent getObject(String serviceName, S3Client client, List<String> storageKeys, String range,
+                                    String ifMatch, String ifNoneMatch) {
+        S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
+        for (String storageKey : storageKeys) {
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(config.getBucket())
+                    .key(storageKey)
+                    .range(range)
+                    .ifMatch(ifMatch)
+                    .ifNoneMatch(ifNoneMatch)
+                    .build();
+            try {
+                return new ObjectContent(serviceName, client.getObject(request), HttpServletResponse.SC_OK, null);
+            } catch (NoSuchKeyException e) {
+                log.debug("对象不在该存储键下: {} - {}", serviceName, storageKey);
+            } catch (S3Exception e) {
+                if (e.statusCode() == HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    return new ObjectContent(serviceName, null, e.statusCode(), null);
+                }
+                if (e.statusCode() == HttpServletResponse.SC_NOT_MODIFIED) {
+                    String eTag = e.awsErrorDetails() == null ? null
+                            : e.awsErrorDetails().sdkHttpResponse().firstMatchingHeader(HttpHeaders.ETAG).orElse(null);
+                    return new ObjectContent(serviceName, null, e.statusCode(), eTag);
+                }
+                throw e;
+            }
+        }
+        return new ObjectContent(serviceName, null, HttpServletResponse.SC_NOT_FOUND, null);
+    }
+
+    private ObjectHead headObject(String serviceName, S3Client client, String key) {
+        S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
+        for (String storageKey : keyLayout.candidateKeys(key)) {
+            try {
+                return new ObjectHead(serviceName, storageKey, client.headObject(HeadObjectRequest.builder()
+                        .bucket(config.getBucket())
+                        .key(storageKey)
+                        .build()));
+            } catch (NoSuchKeyException e) {
+                log.debug("对象不在该存储键下: {} - {}", serviceName, storageKey);
+            }
+        }
+        return new ObjectHead(serviceName, null, null);
+    }
+
+    private static void writeRangeNotSatisfiable(HttpServletResponse response, long length) {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    private static void writeNotModified(HttpServletResponse response, String eTag, Instant lastModified) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        writeObjectHeaders(response, eTag, lastModified == null ? null : lastModified.toEpochMilli());
+    }
+
+    private static void writeObjectHeaders(HttpServletResponse response, String eTag, Long lastModifiedMillis) {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (eTag != null) {
+            response.setHeader(HttpHeaders.ETAG, eTag);
+        }
+        if (lastModifiedMillis != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModifiedMillis);
+        }
+    }
+
+    /**
+     * 以固定缓冲区拷贝；读完则正常关闭以复用连接，中途失败（例如客户端断开）则中止S3连接，避免排空剩余内容
+     */
+    private static void copy(ResponseInputStream<GetObjectResponse> stream, OutputStream out) throws IOException {
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException | RuntimeException e) {
+            stream.abort();
+            throw e;
+        }
+        stream.close();
+    }
+
+    /**
+     * 从流中拷贝恰好 count 个字节，流提前结束时抛出异常
+     */
+    private static void copy(ResponseInputStream<GetObjectResponse> stream, OutputStream out, long count,
+                             byte[] buffer) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            int read = stream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new IOException("区间内容长度不足");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static void abort(ObjectContent content) {
+        if (content != null && content.stream() != null) {
+            content.stream().abort();
+        }
+    }
+
+    /**
+     * 无法解析的 Range 按 RFC 9110 忽略，返回完整内容
+     */
+    private static List<HttpRange> parseRanges(String header) {
+        if (header == null || header.isBlank()) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            log.debug("忽略无效的Range请求头: {}", header);
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.github.anicmv.service;
+
+import com.github.anicmv.checksum.PayloadDigest;
+import com.github.anicmv.concurrency.AdaptiveConcurrencyLimiter;
+import com.github.anicmv.concurrency.ConcurrencyLimiters;
+import com.github.anicmv.config.ExecutorConfig;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.dto.response.R;
+import com.github.anicmv.dto.result.ServiceUploadResult;
+import com.github.anicmv.dto.upload.UploadResponse;
+import com.github.anicmv.dto.upload.UploadResult;
+import com.github.anicmv.dto.upload.UploadSessionResponse;
+import com.github.anicmv.enums.PayloadChecksumType;
+import com.github.anicmv.exception.FileValidationException;
+import com.github.anicmv.exception.ServiceOverloadedException;
+import com.github.anicmv.exception.StorageConfigurationException;
+import com.github.anicmv.exception.StorageServiceException;
+import com.github.anicmv.exception.UploadSessionException;
+import com.github.anicmv.layout.KeyLayoutStrategy;
+import com.github.anicmv.memory.BufferChain;
+import com.github.anicmv.memory.BufferPool;
+import com.github.anicmv.memory.UploadMemoryBudget;
+import com.github.anicmv.reconcile.AntiEntropyReconciler;
+import com.github.anicmv.resumable.UploadSession;
+import com.github.anicmv.resumable.UploadSessionStore;
+import com.github.anicmv.stats.BucketStatistics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * @author anicmv
+ * 断点续传（tus 风格）：POST 创建会话并在每个目标后端发起分段上传，PATCH 按 Upload-Offset 写入一个分块，
+ * 该分块直接作为各后端分段上传的一段；HEAD 返回已接收的 offset，连接中断后客户端从该位置继续；
+ * 全部接收后 complete 在各后端合并分段。
+ * 分块写入任一后端失败时 offset 不前进，客户端重传同一分块，以相同段号覆盖。
+ * 会话超过 ttl 没有写入时中止各后端的分段上传并删除会话。
+ */
+@Slf4j
+@Service
+public class ResumableUploadService {
+
+    public static final String UPLOAD_OFFSET = "Upload-Offset";
+    public static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+    private static final int FILE_HEADER_BYTES = 16;
+
+    @Resource
+    private ImageUploadService imageUploadService;
+
+    @Resource
+    private UploadSessionStore sessionStore;
+
+    @Resource
+    private S3ClientManager clientManager;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private FileValidationService fileValidationService;
+
+    @Resource
+    private KeyLayoutStrategy keyLayout;
+
+    @Resource
+    private ConcurrencyLimiters concurrencyLimiters;
+
+    @Resource
+    private UploadMemoryBudget uploadMemoryBudget;
+
+    @Resource
+    private BufferPool bufferPool;
+
+    @Resource
+    private BucketStatistics bucketStatistics;
+
+    @Resource
+    private AntiEntropyReconciler antiEntropyReconciler;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource(name = ExecutorConfig.STORAGE_EXECUTOR)
+    private Executor executorService;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("storage.resumable.sessions", sessionStore, UploadSessionStore::size)
+                .description("未完成的断点续传会话数")
+                .register(meterRegistry);
+    }
+
+    public ResponseEntity<R<UploadSessionResponse>> create(String originalFilename, String contentType,
+                                                           HttpServletRequest request) {
+        S3StorageProperties.ResumableUpload config = storageProperties.getResumableUpload();
+        long length = parseLength(request.getHeader(UPLOAD_LENGTH));
+        log.info("创建断点续传会话 - 文件名: {}, 大小: {} bytes, 客户端IP: {}",
+                originalFilename, length, fileValidationService.getClientIp(request));
+        fileValidationService.validateResumableUpload(originalFilename, contentType, length, config.getMaxLength().toBytes());
+
+        Map<String, S3Client> targetClients = imageUploadService.getTargetClients();
+        if (targetClients.isEmpty()) {
+            throw new StorageConfigurationException("没有可用的存储服务");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString().replace("-", ""));
+        session.setOriginalFilename(originalFilename);
+        session.setFileName(imageUploadService.generateFileName(originalFilename));
+        // 日期前缀在创建时确定，跨天续传仍写入同一个键
+        session.setLogicalKey(imageUploadService.generateDatePathPrefix() + session.getFileName());
+        session.setStorageKey(keyLayout.storageKey(session.getLogicalKey()));
+        session.setContentType(contentType);
+        session.setLength(length);
+        session.setChunkSize(chunkSize(length, config.getChunkSize().toBytes()));
+        session.setCreatedAt(Instant.now());
+        session.setExpiresAt(session.getCreatedAt().plus(config.getTtl()));
+
+        for (Map.Entry<String, S3Client> entry : targetClients.entrySet()) {
+            String serviceName = entry.getKey();
+            String bucketName = storageProperties.getServices().get(serviceName).getBucket();
+            try {
+                imageUploadService.ensureBucketExists(serviceName, entry.getValue(), bucketName);
+                CreateMultipartUploadResponse response = entry.getValue().createMultipartUpload(
+                        CreateMultipartUploadRequest.builder()
+                                .bucket(bucketName)
+                                .key(session.getStorageKey())
+                                .contentType(contentType)
+                                .build());
+                UploadSession.BackendUpload backend = new UploadSession.BackendUpload();
+                backend.setUploadId(response.uploadId());
+                session.getBackends().put(serviceName, backend);
+            } catch (Exception e) {
+                log.error("发起分段上传失败 - 服务: {}, key: {}", serviceName, session.getStorageKey(), e);
+                abort(session);
+                record("create", "failure");
+                throw new StorageServiceException("在 " + serviceName + " 发起分段上传失败", e);
+            }
+        }
+        sessionStore.save(session);
+        record("create", "success");
+
+        return ResponseEntity.created(URI.create("/uploads/" + session.getId()))
+                .header(UPLOAD_OFFSET, "0")
+                .body(R.success("上传会话已创建", toResponse(session)));
+    }
+
+    public ResponseEntity<R<UploadSessionResponse>> status(String id) {
+        UploadSession session = requireSession(id);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header(UPLOAD_OFFSET, String.valueOf(session.getOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(session.getLength()))
+                .body(R.success(toResponse(session)));
+    }
+
+    /**
+     * 写入一个分块：Upload-Offset 必须等于已接收的字节数，Content-Length 必须等于 chunkSize（最后一块为剩余字节数）
+     */
+    public ResponseEntity<R<UploadSessionResponse>> patch(String id, HttpServletRequest request) throws IOException {
+        UploadSession session = requireSession(id);
+        lock(session);
+        try {
+            long offset = parseOffset(request.getHeader(UPLOAD_OFFSET));
+            if (offset != session.getOffset() || session.isComplete()) {
+                record("patch", "offset_mismatch");
+                throw new UploadSessionException("Upload-Offset 与已接收的字节数 " + session.getOffset() + " 不符",
+                        UploadSessionException.OFFSET_MISMATCH);
+            }
+            long chunkLength = session.nextChunkLength();
+            if (request.getContentLengthLong() != chunkLength) {
+                throw new FileValidationException("分块长度应为 " + chunkLength + " 字节");
+            }
+
+            PayloadDigest digest = new PayloadDigest(List.of(PayloadChecksumType.MD5));
+            try (UploadMemoryBudget.Reservation ignored = uploadMemoryBudget.reserve(chunkLength);
+                 BufferChain content = readChunk(request, chunkLength, digest)) {
+                if (offset == 0) {
+                    try (InputStream in = content.newInputStream()) {
+                        fileValidationService.validateHeader(in.readNBytes(FILE_HEADER_BYTES), session.getContentType());
+                    }
+                }
+                uploadPart(session, content, digest.finish().md5());
+            }
+
+            session.setOffset(offset + chunkLength);
+            session.setExpiresAt(Instant.now().plus(storageProperties.getResumableUpload().getTtl()));
+            sessionStore.save(session);
+            record("patch", "success");
+            log.debug("断点续传分块写入成功 - id: {}, offset: {}/{}", id, session.getOffset(), session.getLength());
+
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(session.getOffset()))
+                    .body(R.success(toResponse(session)));
+        } finally {
+            session.getLock().unlock();
+        }
+    }
+
+    /**
+     * 在各后端合并分段。部分后端失败时保留会话，可以再次调用 complete 重试尚未完成的后端
+     */
+    public ResponseEntity<R<UploadResponse>> complete(String id) {
+        UploadSession session = requireSession(id);
+        lock(session);
+        try {
+            if (!session.isComplete()) {
+                throw new UploadSessionException("文件尚未全部上传，已接收 " + session.getOffset() + "/" + session.getLength(),
+                        UploadSessionException.INCOMPLETE);
+            }
+            long startTime = System.currentTimeMillis();
+            Map<String, S3Client> clients = clientManager.getAllEnabledClients();
+            List<CompletableFuture<ServiceUploadResult>> futures = new ArrayList<>();
+            for (Map.Entry<String, UploadSession.BackendUpload> entry : session.getBackends().entrySet()) {
+                String serviceName = entry.getKey();
+                try {
+                    futures.add(CompletableFuture.supplyAsync(
+                            () -> completeOnService(session, serviceName, clients.get(serviceName), entry.getValue()),
+                            executorService));
+                } catch (ServiceOverloadedException e) {
+                    // 扇出队列已满：该后端本次记为失败，会话保留，再次调用 complete 时重试
+                    futures.add(CompletableFuture.completedFuture(
+                            new ServiceUploadResult(serviceName, false, null, e.getMessage())));
+                }
+            }
+            List<ServiceUploadResult> results = futures.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+
+            UploadResult uploadResult = new UploadResult(session.getFileName(), results,
+                    System.currentTimeMillis() - startTime, 0);
+            if (uploadResult.allSuccessfulUpload()) {
+                sessionStore.remove(session);
+                record("complete", "success");
+            } else {
+                sessionStore.save(session);
+                record("complete", "failure");
+            }
+            return imageUploadService.uploadResponse(session.getOriginalFilename(), uploadResult);
+        } finally {
+            session.getLock().unlock();
+        }
+    }
+
+    public ResponseEntity<R<Void>> cancel(String id) {
+        UploadSession session = requireSession(id);
+        lock(session);
+        try {
+            abort(session);
+            sessionStore.remove(session);
+            record("cancel", "success");
+            log.info("断点续传会话已取消 - id: {}, 文件名: {}", id, session.getFileName());
+            return ResponseEntity.ok(R.success("上传已取消", null));
+        } finally {
+            session.getLock().unlock();
+        }
+    }
+
+    /**
+     * 中止过期会话的分段上传，正在写入的会话跳过
+     */
+    @Scheduled(initialDelayString = "${storage.s3.resumable-upload.sweep-interval:10m}",
+            fixedDelayString = "${storage.s3.resumable-upload.sweep-interval:10m}")
+    public void sweepExpired() {
+        Instant now = Instant.now();
+        for (UploadSession session : sessionStore.all()) {
+            if (!session.expired(now) || !session.getLock().tryLock()) {
+                continue;
+            }
+            try {
+                log.info("断点续传会话已过期，中止分段上传 - id: {}, 文件名: {}, 已接收: {}/{}",
+                        session.getId(), session.getFileName(), session.getOffset(), session.getLength());
+                // 部分后端已合并的对象没有完整副本，交给反熵修复
+                if (session.getBackends().values().stream().anyMatch(UploadSession.BackendUpload::isCompleted)) {
+                    antiEntropyReconciler.markDirty(session.getLogicalKey());
+                }
+                abort(session);
+                sessionStore.remove(session);
+                record("expire", "success");
+            } finally {
+                session.getLock().unlock();
+            }
+        }
+    }
+
+    private BufferChain readChunk(HttpServletRequest request, long chunkLength, PayloadDigest digest) {
+        try (InputStream in = request.getInputStream()) {
+            return BufferChain.readFrom(in, chunkLength, bufferPool, digest::update);
+        } catch (IOException e) {
+            record("patch", "read_error");
+            log.warn("读取断点续传分块失败 - 原因: {}", e.getMessage());
+            throw new FileValidationException("请求体读取失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把分块作为同一段号写入所有后端，任一后端失败时整个分块失败
+     */
+    private void uploadPart(UploadSession session, BufferChain content, String md5) {
+        int partNumber = session.nextPartNumber();
+        Map<String, S3Client> clients = clientManager.getAllEnabledClients();
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiters.acquireUpload();
+        Map<String, AdaptiveConcurrencyLimiter.Permit> permits;
+        try {
+            permits = concurrencyLimiters.acquireBackends(session.getBackends().keySet());
+        } catch (RuntimeException e) {
+            ConcurrencyLimiters.release(permit, e);
+            throw e;
+        }
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        ServiceOverloadedException rejected = null;
+        for (Map.Entry<String, UploadSession.BackendUpload> entry : session.getBackends().entrySet()) {
+            String serviceName = entry.getKey();
+            S3Client client = clients.get(serviceName);
+            try {
+                futures.put(serviceName, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        String eTag = uploadPartToService(session, serviceName, client, entry.getValue(),
+                                partNumber, content, md5);
+                        ConcurrencyLimiters.release(permits.get(serviceName), true);
+                        return eTag;
+                    } catch (RuntimeException e) {
+                        ConcurrencyLimiters.release(permits.get(serviceName), false);
+                        log.error("分块写入失败 - 服务: {}, key: {}, 段号: {}", serviceName, session.getStorageKey(), partNumber, e);
+                        return null;
+                    }
+                }, executorService));
+            } catch (ServiceOverloadedException e) {
+                // 扇出队列已满：该后端不再提交，已提交的后端结束后才能释放分块内容
+                ConcurrencyLimiters.release(permits.get(serviceName), e);
+                futures.put(serviceName, CompletableFuture.completedFuture(null));
+                rejected = e;
+            }
+        }
+
+        Map<String, String> eTags = new LinkedHashMap<>();
+        futures.forEach((serviceName, future) -> eTags.put(serviceName, future.join()));
+        if (rejected != null) {
+            ConcurrencyLimiters.release(permit, rejected);
+            record("patch", "rejected");
+            throw rejected;
+        }
+        boolean success = !eTags.containsValue(null);
+        ConcurrencyLimiters.release(permit, success);
+        if (!success) {
+            record("patch", "failure");
+            throw new StorageServiceException("分块写入存储服务失败，请重传该分块");
+        }
+        eTags.forEach((serviceName, eTag) -> {
+            List<String> partETags = session.getBackends().get(serviceName).getEtags();
+            // 重传的分块覆盖同一段号
+            if (partETags.size() >= partNumber) {
+                partETags.set(partNumber - 1, eTag);
+            } else {
+                partETags.add(eTag);
+            }
+        });
+    }
+
+    private String uploadPartToService(UploadSession session, String serviceName, S3Client client,
+                                       UploadSession.BackendUpload backend, int partNumber,
+                                       BufferChain content, String md5) {
+        if (client == null) {
+            throw new StorageConfigurationException("存储服务不可用: " + serviceName);
+        }
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(storageProperties.getServices().get(serviceName).getBucket())
+                .key(session.getStorageKey())
+                .uploadId(backend.getUploadId())
+                .partNumber(partNumber)
+                .contentLength(content.length())
+                .contentMD5(md5)
+                .build();
+        // 每次重试都从头读取共享的缓冲区
+        UploadPartResponse response = client.uploadPart(request,
+                RequestBody.fromContentProvider(content::newInputStream, content.length(), session.getContentType()));
+        return response.eTag();
+    }
+
+    private ServiceUploadResult completeOnService(UploadSession session, String serviceName, S3Client client,
+                                                  UploadSession.BackendUpload backend) {
+        S3StorageProperties.S3ServiceConfig config = storageProperties.getServices().get(serviceName);
+        try {
+            if (client == null) {
+                throw new StorageConfigurationException("存储服务不可用: " + serviceName);
+            }
+            if (!backend.isCompleted()) {
+                List<CompletedPart> parts = new ArrayList<>();
+                for (int i = 0; i < backend.getEtags().size(); i++) {
+                    parts.add(CompletedPart.builder().partNumber(i + 1).eTag(backend.getEtags().get(i)).build());
+                }
+                client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(config.getBucket())
+                        .key(session.getStorageKey())
+                        .uploadId(backend.getUploadId())
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build());
+                backend.setCompleted(true);
+                imageUploadService.invalidateCaches(session.getLogicalKey());
+                bucketStatistics.recordPut(serviceName, session.getLogicalKey(), session.getLength());
+                log.info("断点续传合并成功 - 服务: {}, key: {}, 段数: {}", serviceName, session.getStorageKey(), parts.size());
+            }
+            String url = imageUploadService.generateAccessUrl(serviceName, config, session.getStorageKey(), client);
+            return new ServiceUploadResult(serviceName, true, url, "上传成功");
+        } catch (Exception e) {
+            log.error("断点续传合并失败 - 服务: {}, key: {}", serviceName, session.getStorageKey(), e);
+            return new ServiceUploadResult(serviceName, false, null, e.getMessage());
+        }
+    }
+
+    /**
+     * 中止所有尚未合并的分段上传，失败只记录日志，遗留的分段由桶的生命周期规则兜底清理
+     */
+    private void abort(UploadSession session) {
+        Map<String, S3Client> clients = clientManager.getAllEnabledClients();
+        session.getBackends().forEach((serviceName, backend) -> {
+            S3Client client = clients.get(serviceName);
+            if (backend.isCompleted() || client == null) {
+                return;
+            }
+            try {
+                client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(storageProperties.getServices().get(serviceName).getBucket())
+                        .key(session.getStorageKey())
+                        .uploadId(backend.getUploadId())
+                        .build());
+            } catch (NoSuchUploadException e) {
+                log.debug("分段上传已不存在 - 服务: {}, uploadId: {}", serviceName, backend.getUploadId());
+            } catch (Exception e) {
+                log.warn("中止分段上传失败 - 服务: {}, key: {}", serviceName, session.getStorageKey(), e);
+            }
+        });
+    }
+
+    private UploadSession requireSession(String id) {
+        UploadSession session = sessionStore.get(id);
+        if (session == null || session.expired(Instant.now())) {
+            throw new UploadSessionException("上传会话不存在或已过期", UploadSessionException.NOT_FOUND);
+        }
+        return session;
+    }
+
+    private void lock(UploadSession session) {
+        if (!session.getLock().tryLock()) {
+            record("lock", "conflict");
+            throw new UploadSessionException("该上传会话正在被其他请求写入", UploadSessionException.LOCKED);
+        }
+        // 等锁期间会话可能已被完成、取消或清理
+        if (sessionStore.get(session.getId()) != session) {
+            session.getLock().unlock();
+            throw new UploadSessionException("上传会话不存在或已过期", UploadSessionException.NOT_FOUND);
+        }
+    }
+
+    /**
+     * 分块大小至少为 S3 的最小段大小，且保证总段数不超过 10000
+     */
+    private static long chunkSize(long length, long configured) {
+        long chunkSize = Math.max(configured, MIN_PART_SIZE);
+        long minForLength = (length + MAX_PARTS - 1) / MAX_PARTS;
+        if (chunkSize < minForLength) {
+            // 向上取整到 1MB
+            chunkSize = (minForLength + (1 << 20) - 1) >> 20 << 20;
+        }
+        return chunkSize;
+    }
+
+    private static long parseLength(String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new FileValidationException("Upload-Length 格式错误");
+        }
+    }
+
+    private static long parseOffset(String value) {
+        try {
+            if (value == null) {
+                throw new FileValidationException("缺少 Upload-Offset");
+            }
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new FileValidationException("Upload-Offset 格式错误");
+        }
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session) {
+        return UploadSessionResponse.builder()
+                .uploadId(session.getId())
+                .fileName(session.getFileName())
+                .length(session.getLength())
+                .offset(session.getOffset())
+                .chunkSize(session.getChunkSize())
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+
+    private void record(String operation, String result) {
+        meterRegistry.counter("storage.resumable", "operation", operation, "result", result).increment();
+    }
+}
@@ -0,0 +1,278 @@
+package com.github.anicmv.stats;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.config.ExecutorConfig;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.ServiceOverloadedException;
+import com.github.anicmv.layout.KeyLayoutStrategy;
+import com.github.anicmv.scan.BucketScanner;
+import com.github.anicmv.scan.ScanStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author anicmv
+ * 按后端和日期前缀增量维护的对象数与字节数。上传、删除、反熵修复成功后立即计入，读取时只需汇总计数器。
+ * 定期写入检查点文件，重启后从检查点恢复；后台全量扫描修正增量统计无法覆盖的偏差（覆盖写入、带外修改等），
+ * 修正时保留扫描期间发生的增量。
+ */
+@Slf4j
+@Component
+public class BucketStatistics {
+
+    private static final String UNDATED = "undated";
+    private static final int DATE_PREFIX_LENGTH = 8;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private S3ClientManager clientManager;
+
+    @Resource
+    private KeyLayoutStrategy keyLayout;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private BucketScanner bucketScanner;
+
+    @Resource(name = ExecutorConfig.BACKGROUND_EXECUTOR)
+    private Executor executorService;
+
+    /**
+     * 一组对象数与字节数，LongAdder 按线程分散计数，并发写入时不争用同一个变量
+     */
+    private static final class Counters {
+        private final LongAdder objects = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        private void add(long objectDelta, long byteDelta) {
+            objects.add(objectDelta);
+            bytes.add(byteDelta);
+        }
+
+        private Snapshot snapshot() {
+            return new Snapshot(objects.sum(), bytes.sum());
+        }
+    }
+
+    public record Snapshot(long objects, long bytes) {
+    }
+
+    private record Checkpoint(Instant savedAt, Map<String, Map<String, Snapshot>> services) {
+    }
+
+    private final Map<String, Map<String, Counters>> byPrefix = new ConcurrentHashMap<>();
+    private final Map<String, Counters> totals = new ConcurrentHashMap<>();
+    private volatile Instant lastScan;
+    private volatile boolean restored;
+    private final AtomicBoolean scanning = new AtomicBoolean();
+
+    @PostConstruct
+    public void restore() {
+        Path file = checkpointFile();
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try {
+            Checkpoint checkpoint = objectMapper.readValue(file.toFile(), new TypeReference<>() {
+            });
+            checkpoint.services().forEach((serviceName, prefixes) -> prefixes.forEach((prefix, snapshot) ->
+                    add(serviceName, prefix, snapshot.objects(), snapshot.bytes())));
+            restored = true;
+            log.info("已从检查点恢复桶统计 - 文件: {}, 保存时间: {}", file, checkpoint.savedAt());
+        } catch (IOException e) {
+            log.warn("读取桶统计检查点失败，等待后台扫描重建 - 文件: {}", file, e);
+        }
+    }
+
+    public void recordPut(String serviceName, String logicalKey, long bytes) {
+        add(serviceName, datePrefix(logicalKey), 1, bytes);
+    }
+
+    public void recordDelete(String serviceName, String logicalKey, long bytes) {
+        add(serviceName, datePrefix(logicalKey), -1, -bytes);
+    }
+
+    public Snapshot total(String serviceName) {
+        Counters counters = totals.get(serviceName);
+        return counters == null ? new Snapshot(0, 0) : counters.snapshot();
+    }
+
+    /**
+     * 各后端在某个日期前缀下的统计
+     */
+    public Map<String, Snapshot> byService(String datePrefix) {
+        Map<String, Snapshot> result = new TreeMap<>();
+        byPrefix.forEach((serviceName, prefixes) -> {
+            Counters counters = prefixes.get(datePrefix);
+            if (counters != null) {
+                result.put(serviceName, counters.snapshot());
+            }
+        });
+        return result;
+    }
+
+    public Map<String, Snapshot> totals() {
+        Map<String, Snapshot> result = new TreeMap<>();
+        totals.forEach((serviceName, counters) -> result.put(serviceName, counters.snapshot()));
+        return result;
+    }
+
+    public Instant lastScan() {
+        return lastScan;
+    }
+
+    @Scheduled(initialDelayString = "${storage.s3.bucket-stats.checkpoint-interval:1m}",
+            fixedDelayString = "${storage.s3.bucket-stats.checkpoint-interval:1m}")
+    @PreDestroy
+    public void checkpoint() {
+        Path file = checkpointFile();
+        if (file == null) {
+            return;
+        }
+        Map<String, Map<String, Snapshot>> services = new LinkedHashMap<>();
+        byPrefix.forEach((serviceName, prefixes) -> {
+            Map<String, Snapshot> snapshots = new TreeMap<>();
+            prefixes.forEach((prefix, counters) -> snapshots.put(prefix, counters.snapshot()));
+            services.put(serviceName, snapshots);
+        });
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "bucket-stats", ".tmp");
+            objectMapper.writeValue(temp.toFile(), new Checkpoint(Instant.now(), services));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入桶统计检查点失败 - 文件: {}", file, e);
+        }
+    }
+
+    /**
+     * 全量列出各后端的桶，按扫描结果修正计数。没有检查点时启动后很快执行一次以建立初始值
+     */
+    @Scheduled(initialDelayString = "${storage.s3.bucket-stats.initial-scan-delay:30s}",
+            fixedDelayString = "${storage.s3.bucket-stats.scan-interval:24h}")
+    public void scheduledScan() {
+        S3StorageProperties.BucketStats config = storageProperties.getBucketStats();
+        if (!config.isScanEnabled()) {
+            return;
+        }
+        if (lastScan == null && restored && !config.isScanOnStartup()) {
+            // 已从检查点恢复，首次扫描推迟到下一个周期
+            lastScan = Instant.now();
+            return;
+        }
+        if (!scanning.compareAndSet(false, true)) {
+            return;
+        }
+        // 在后台线程池中运行，避免长时间占用调度线程（检查点等其他定时任务共用它）；同一时间只有一次扫描
+        try {
+            executorService.execute(() -> {
+                try {
+                    scanAll();
+                } finally {
+                    scanning.set(false);
+                }
+            });
+        } catch (ServiceOverloadedException e) {
+            scanning.set(false);
+            log.warn("后台任务队列已满，本次统计扫描跳过");
+        } catch (RuntimeException e) {
+            scanning.set(false);
+            throw e;
+        }
+    }
+
+    private void scanAll() {
+        clientManager.getAllEnabledClients().keySet().forEach(serviceName -> {
+            try {
+                Map<String, Snapshot> before = snapshot(serviceName);
+                correct(serviceName, before, scan(serviceName));
+            } catch (RuntimeException e) {
+                log.warn("桶统计扫描失败 - 服务: {}", serviceName, e);
+            }
+        });
+        lastScan = Instant.now();
+    }
+
+    private Map<String, Snapshot> scan(String serviceName) {
+        Map<String, long[]> counts = new HashMap<>();
+        // 修正需要同一时刻的完整结果，因此不使用检查点续扫
+        try (ScanStream stream = bucketScanner.scan(serviceName, null)) {
+            stream.objects().forEach(object -> {
+                long[] count = counts.computeIfAbsent(datePrefix(keyLayout.logicalKey(object.key())), k -> new long[2]);
+                count[0]++;
+                count[1] += object.size();
+            });
+        }
+        Map<String, Snapshot> result = new HashMap<>();
+        counts.forEach((prefix, count) -> result.put(prefix, new Snapshot(count[0], count[1])));
+        return result;
+    }
+
+    private Map<String, Snapshot> snapshot(String serviceName) {
+        Map<String, Snapshot> snapshot = new HashMap<>();
+        byPrefix.getOrDefault(serviceName, Map.of()).forEach((prefix, counters) -> snapshot.put(prefix, counters.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * 把计数修正为扫描结果，同时保留扫描期间的增量：修正量 = 扫描值 - 扫描开始前的计数。
+     * 误差限于扫描期间写入或删除、且恰好已被列出或跳过的对象，下一次扫描会再次修正。
+     */
+    private void correct(String serviceName, Map<String, Snapshot> before, Map<String, Snapshot> scanned) {
+        scanned.keySet().forEach(prefix -> before.putIfAbsent(prefix, new Snapshot(0, 0)));
+        before.forEach((prefix, counted) -> {
+            Snapshot actual = scanned.getOrDefault(prefix, new Snapshot(0, 0));
+            long objectDelta = actual.objects() - counted.objects();
+            long byteDelta = actual.bytes() - counted.bytes();
+            if (objectDelta != 0 || byteDelta != 0) {
+                log.info("修正桶统计 - 服务: {}, 前缀: {}, 对象数: {}, 字节数: {}", serviceName, prefix, objectDelta, byteDelta);
+                add(serviceName, prefix, objectDelta, byteDelta);
+            }
+        });
+    }
+
+    private void add(String serviceName, String prefix, long objectDelta, long byteDelta) {
+        byPrefix.computeIfAbsent(serviceName, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(prefix, k -> new Counters())
+                .add(objectDelta, byteDelta);
+        totals.computeIfAbsent(serviceName, k -> new Counters()).add(objectDelta, byteDelta);
+    }
+
+    private Path checkpointFile() {
+        String file = storageProperties.getBucketStats().getCheckpointFile();
+        return file == null || file.isBlank() ? null : Path.of(file);
+    }
+
+    private static String datePrefix(String logicalKey) {
+        if (logicalKey == null || logicalKey.length() < DATE_PREFIX_LENGTH) {
+            return UNDATED;
+        }
+        String prefix = logicalKey.substring(0, DATE_PREFIX_LENGTH);
+        return prefix.chars().allMatch(Character::isDigit) ? prefix : UNDATED;
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.anicmv.streaming;
+
+import com.github.anicmv.memory.PooledBuffer;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.NonRetryableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author anicmv
+ * 请求线程（生产者）向单个后端上传（消费者）传递数据块的有界管道。
+ * 同一个池化数据块会被放入每个后端的管道，每个管道持有一次引用，读完或丢弃时归还；队列有界，最慢的后端决定读取请求体的速度。
+ * 后端超过 stallTimeout 不读取时视为该后端失败，不影响其他后端；客户端中断或停止发送时读取端抛出的异常以
+ * {@link AbortedException} 为原因，不计入后端健康状态。
+ * 数据只能读取一次，SDK重试时再次打开会失败，因此流式上传不会被重试。
+ */
+public class ChunkPipe {
+
+    private static final PooledBuffer END = PooledBuffer.unpooled(ByteBuffer.allocate(0));
+    private static final PooledBuffer ABORTED = PooledBuffer.unpooled(ByteBuffer.allocate(0));
+
+    private final BlockingQueue<PooledBuffer> queue;
+    private final long stallTimeoutNanos;
+    private final AtomicBoolean opened = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private volatile boolean aborted;
+
+    public ChunkPipe(int capacity, long stallTimeoutNanos) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.stallTimeoutNanos = stallTimeoutNanos;
+    }
+
+    /**
+     * 放入一个数据块，管道自行持有一次引用，调用方仍需归还自己的引用
+     *
+     * @return false 表示该后端已失败或长时间没有读取，之后不必再向它发送
+     */
+    public boolean offer(PooledBuffer chunk) throws InterruptedException {
+        if (cancelled) {
+            return false;
+        }
+        chunk.retain();
+        if (!queue.offer(chunk, stallTimeoutNanos, TimeUnit.NANOSECONDS)) {
+            chunk.release();
+            cancel();
+            return false;
+        }
+        if (cancelled) {
+            // 放入的同时消费者已放弃，队列中的数据块不会再被读取
+            drain();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 生产者已写完全部数据
+     */
+    public void complete() throws InterruptedException {
+        offer(END);
+    }
+
+    /**
+     * 生产者读取请求体失败，消费者读到此处时抛出以 {@link AbortedException} 为原因的 IOException
+     */
+    public void abort() {
+        aborted = true;
+        cancelled = true;
+        drain();
+        queue.offer(ABORTED);
+    }
+
+    /**
+     * 消费者放弃读取（上传失败），归还队列中的数据块并让生产者跳过该后端
+     */
+    public void cancel() {
+        cancelled = true;
+        drain();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 打开读取端，只能打开一次；SDK 重试时再次打开会失败，该异常不会被重试
+     */
+    public InputStream open() {
+        if (!opened.compareAndSet(false, true)) {
+            throw NonRetryableException.builder().message("流式上传的数据只能读取一次").build();
+        }
+        return new PipeInputStream();
+    }
+
+    private void drain() {
+        PooledBuffer chunk;
+        while ((chunk = queue.poll()) != null) {
+            chunk.release();
+        }
+    }
+
+    private class PipeInputStream extends InputStream {
+
+        private PooledBuffer current;
+        private ByteBuffer view;
+        private boolean finished;
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureChunk()) {
+                return -1;
+            }
+            return view.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!ensureChunk()) {
+                return -1;
+            }
+            int n = Math.min(length, view.remaining());
+            view.get(buffer, offset, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return view == null ? 0 : view.remaining();
+        }
+
+        @Override
+        public void close() {
+            releaseCurrent();
+            if (!finished) {
+                cancel();
+            }
+        }
+
+        private boolean ensureChunk() throws IOException {
+            while (view == null || !view.hasRemaining()) {
+                releaseCurrent();
+                if (finished) {
+                    return false;
+                }
+                PooledBuffer next;
+                try {
+                    next = queue.poll(stallTimeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    throw new IOException("读取上传数据被中断", e);
+                }
+                if (next == null || next == ABORTED || (cancelled && next != END)) {
+                    if (next != null) {
+                        next.release();
+                    }
+                    // 请求体读取失败或客户端停止发送，不是后端的问题，不计入后端健康状态；
+                    // 生产者因该后端长时间不读取而放弃时按后端失败计
+                    boolean producerStalled = next == null && !cancelled;
+                    cancel();
+                    if (aborted || producerStalled) {
+                        throw clientAborted(aborted ? "客户端上传中断" : "等待上传数据超时");
+                    }
+                    throw new IOException("上传数据读取失败");
+                }
+                if (next == END) {
+                    finished = true;
+                    return false;
+                }
+                current = next;
+                view = next.view();
+            }
+            return true;
+        }
+
+        private IOException clientAborted(String message) {
+            return new IOException(message, AbortedException.builder().message(message).build());
+        }
+
+        private void releaseCurrent() {
+            if (current != null) {
+                current.release();
+                current = null;
+                view = null;
+            }
+        }
+    }
+}
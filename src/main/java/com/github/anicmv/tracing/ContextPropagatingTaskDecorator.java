@@ -0,0 +1,39 @@
+package com.github.anicmv.tracing;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Map;
+
+/**
+ * @author anicmv
+ * 将提交任务线程的 MDC 与 OpenTelemetry 上下文带入线程池任务，
+ * 使扇出到各存储服务的日志和Span仍然归属于发起它们的请求。
+ */
+public class ContextPropagatingTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Map<String, String> callerMdc = MDC.getCopyOfContextMap();
+        Context callerContext = Context.current();
+        return () -> {
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            restore(callerMdc);
+            try (Scope ignored = callerContext.makeCurrent()) {
+                runnable.run();
+            } finally {
+                restore(previousMdc);
+            }
+        };
+    }
+
+    private static void restore(Map<String, String> mdc) {
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        } else {
+            MDC.clear();
+        }
+    }
+}
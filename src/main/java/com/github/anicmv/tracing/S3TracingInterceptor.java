@@ -0,0 +1,64 @@
+package com.github.anicmv.tracing;
+
+import com.github.anicmv.metrics.StorageMetrics;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+/**
+ * @author anicmv
+ * 为每个存储服务上的每次S3调用创建一个CLIENT类型的Span，父Span取自调用线程的当前上下文。
+ */
+public class S3TracingInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Span> SPAN = new ExecutionAttribute<>("AniboxTracingSpan");
+
+    private final String serviceName;
+    private final Tracer tracer;
+
+    public S3TracingInterceptor(String serviceName, Tracer tracer) {
+        this.serviceName = serviceName;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        String operation = StorageMetrics.operationTag(
+                executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME));
+        SdkRequest request = context.request();
+        SpanBuilder builder = tracer.spanBuilder("s3." + operation)
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute("storage.service", serviceName)
+                .setAttribute("rpc.method", operation);
+        request.getValueForField("Bucket", String.class).ifPresent(bucket -> builder.setAttribute("aws.s3.bucket", bucket));
+        request.getValueForField("Key", String.class).ifPresent(key -> builder.setAttribute("aws.s3.key", key));
+        executionAttributes.putAttribute(SPAN, builder.startSpan());
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        Span span = executionAttributes.getAttribute(SPAN);
+        if (span != null) {
+            span.setAttribute("http.response.status_code", context.httpResponse().statusCode());
+            span.end();
+        }
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Span span = executionAttributes.getAttribute(SPAN);
+        if (span != null) {
+            span.recordException(context.exception());
+            span.setStatus(StatusCode.ERROR, StorageMetrics.outcomeOf(context.exception()));
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.anicmv.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author anicmv
+ * 在业务代码中创建子Span的辅助类，用于把一次请求拆分为验证、落盘、各后端PUT等阶段。
+ */
+@Component
+public class StorageTracer {
+
+    @Resource
+    private Tracer tracer;
+
+    /**
+     * 可抛出受检异常的操作
+     */
+    @FunctionalInterface
+    public interface SpanAction<T, E extends Exception> {
+        T execute() throws E;
+    }
+
+    public <T, E extends Exception> T inSpan(String spanName, SpanAction<T, E> action) throws E {
+        Span span = tracer.spanBuilder(spanName).startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return action.execute();
+        } catch (Exception e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    public void inSpan(String spanName, Runnable action) {
+        inSpan(spanName, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,281 @@
+package com.github.anicmv;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.dto.response.R;
+import com.github.anicmv.dto.upload.UploadResponse;
+import com.github.anicmv.enums.UploadStrategy;
+import com.github.anicmv.memory.BufferPool;
+import com.github.anicmv.service.ImageUploadService;
+import com.github.anicmv.service.ObjectContentService;
+import com.github.anicmv.support.FakeS3Server;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author anicmv
+ * 针对 {@link FakeS3Server} 的端到端压测，依次以 FIRST/ALL/SPECIFIC 策略并发上传，
+ * 输出上传延迟的 p50/p99/p999 以及吞吐量；随后对已上传文件做元数据查询（对比对冲读取与全部扇出的延迟）以及内容读取（包括命中本地缓存的热点读取）。
+ * 迭代次数和并发度可通过系统属性 loadtest.requests / loadtest.concurrency 调整。
+ * 默认的 mvn test 不运行，使用 mvn test -Pload 执行，报告通过日志输出。
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.profiles.active=loadtest")
+class UploadLoadTest {
+
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 300);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 16);
+    private static final int PAYLOAD_SIZE = Integer.getInteger("loadtest.payload-size", 64 * 1024);
+
+    private static final Map<String, FakeS3Server> SERVERS = new LinkedHashMap<>();
+    private static final Path CACHE_DIR = Path.of(System.getProperty("java.io.tmpdir"), "anibox-loadtest-cache");
+
+    private final Queue<String> uploadedFileNames = new ConcurrentLinkedQueue<>();
+
+    @Resource
+    private ImageUploadService uploadService;
+
+    @Resource
+    private S3StorageProperties storageProperties;
+
+    @Resource
+    private ObjectContentService contentService;
+
+    @Resource
+    private BufferPool bufferPool;
+
+    @DynamicPropertySource
+    static void storageServices(DynamicPropertyRegistry registry) throws IOException {
+        register(registry, "sim-fast", FakeS3Server.Simulation.builder().latencyMs(2).build());
+        register(registry, "sim-slow", FakeS3Server.Simulation.builder()
+                .latencyMs(8).jitterMs(12).bytesPerSecond(64L * 1024 * 1024).build());
+        register(registry, "sim-flaky", FakeS3Server.Simulation.builder()
+                .latencyMs(4).jitterMs(4).errorRate(0.01).build());
+        registry.add("storage.s3.upload-strategy", () -> "ALL");
+        registry.add("storage.s3.specific-targets", () -> "sim-fast,sim-slow");
+        registry.add("storage.s3.local-cache.enabled", () -> "true");
+        registry.add("storage.s3.local-cache.directory", () -> CACHE_DIR.toString());
+        registry.add("storage.s3.local-cache.max-size", () -> "8MB");
+        registry.add("storage.s3.key-layout.type", () -> "HASH_SHARDED");
+        // 固定并发的压测不应被并发限制拒绝，只观察上限的调整
+        registry.add("storage.s3.concurrency.min-limit", () -> String.valueOf(CONCURRENCY));
+        registry.add("storage.s3.buffer-pool.leak-detection", () -> "true");
+        registry.add("storage.s3.bucket-stats.checkpoint-file", () -> Path.of(System.getProperty("java.io.tmpdir"), "anibox-loadtest-bucket-stats.json").toString());
+    }
+
+    private static void register(DynamicPropertyRegistry registry, String name,
+                                 FakeS3Server.Simulation simulation) throws IOException {
+        FakeS3Server server = SERVERS.computeIfAbsent(name, n -> {
+            try {
+                return new FakeS3Server(simulation).start();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        String prefix = "storage.s3.services." + name + ".";
+        registry.add(prefix + "enabled", () -> "true");
+        registry.add(prefix + "endpoint", server::endpoint);
+        registry.add(prefix + "region", () -> "us-east-1");
+        registry.add(prefix + "access-key", () -> "loadtest");
+        registry.add(prefix + "secret-key", () -> "loadtest");
+        registry.add(prefix + "bucket", () -> "anibox");
+    }
+
+    @AfterAll
+    static void stopServers() {
+        SERVERS.values().forEach(FakeS3Server::close);
+        SERVERS.clear();
+    }
+
+    @Test
+    void uploadLatencyPerStrategy() throws Exception {
+        byte[] payload = pngPayload(PAYLOAD_SIZE);
+        // 预热，完成建桶和连接池建立
+        storageProperties.setUploadStrategy(UploadStrategy.ALL);
+        runLoad(payload, 20, 4);
+
+        log.info(String.format("%-10s %8s %8s %10s %10s %10s %12s",
+                "strategy", "ok", "failed", "p50(ms)", "p99(ms)", "p999(ms)", "req/s"));
+        for (UploadStrategy strategy : UploadStrategy.values()) {
+            storageProperties.setUploadStrategy(strategy);
+            LoadReport report = runLoad(payload, REQUESTS, CONCURRENCY);
+            logReport(strategy.name(), report);
+            assertTrue(report.succeeded() >= REQUESTS * 0.9,
+                    () -> strategy + " succeeded only " + report.succeeded() + "/" + REQUESTS);
+        }
+
+        // 元数据读取：对冲读取与全部后端扇出对比；内容读取：完整流式读取与多区间读取
+        List<String> fileNames = new ArrayList<>(uploadedFileNames);
+        String prefix = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        Map<String, ReadCall> reads = new LinkedHashMap<>();
+        reads.put("head-any", fileName -> uploadService.getFileInfo(fileName, prefix, "any", new MockHttpServletRequest("GET", "/"))
+                .getStatusCode().is2xxSuccessful());
+        reads.put("head-all", fileName -> uploadService.getFileInfo(fileName, prefix, "all", new MockHttpServletRequest("GET", "/"))
+                .getStatusCode().is2xxSuccessful());
+        // 携带上一次响应的 ETag 再次查询，应由校验值缓存直接返回 304
+        reads.put("head-304", fileName -> {
+            String eTag = uploadService.getFileInfo(fileName, prefix, "any", new MockHttpServletRequest("GET", "/"))
+                    .getHeaders().getETag();
+            MockHttpServletRequest conditional = new MockHttpServletRequest("GET", "/");
+            conditional.addHeader("If-None-Match", eTag);
+            return uploadService.getFileInfo(fileName, prefix, "any", conditional).getStatusCode().value() == 304;
+        });
+        reads.put("content", fileName -> {
+            MockHttpServletResponse response = readContent(fileName, prefix, null);
+            return response.getStatus() == 200 && response.getContentAsByteArray().length == PAYLOAD_SIZE;
+        });
+        reads.put("ranges", fileName -> {
+            MockHttpServletResponse response = readContent(fileName, prefix, "bytes=0-1023,-512");
+            return response.getStatus() == 206
+                    && response.getContentType().startsWith("multipart/byteranges")
+                    && response.getContentAsByteArray().length == response.getContentLengthLong();
+        });
+        // 分片布局下按日期列表，并行列出各分片后归并
+        reads.put("list", fileName -> uploadService.listFiles(prefix, 20, null, new MockHttpServletRequest("GET", "/"))
+                .getStatusCode().is2xxSuccessful());
+        // 少量热点文件反复读取，命中本地缓存
+        List<String> hotFileNames = fileNames.subList(0, Math.min(16, fileNames.size()));
+        reads.put("content-hot", reads.get("content"));
+        for (Map.Entry<String, ReadCall> read : reads.entrySet()) {
+            List<String> targets = read.getKey().endsWith("-hot") ? hotFileNames : fileNames;
+            LoadReport report = runReads(targets, read.getValue(), REQUESTS, CONCURRENCY);
+            logReport(read.getKey(), report);
+            assertTrue(report.succeeded() >= REQUESTS * 0.9,
+                    () -> read.getKey() + " succeeded only " + report.succeeded() + "/" + REQUESTS);
+        }
+        SERVERS.forEach((name, server) -> log.info("{}: requests={}, injectedFaults={}",
+                name, server.getRequestCount().get(), server.getInjectedFaults().get()));
+        // 所有上传结束后借出的缓冲区都应已归还
+        assertEquals(0, bufferPool.outstanding(), () -> "leaked buffers: " + bufferPool.leakReport());
+    }
+
+    private static void logReport(String name, LoadReport report) {
+        log.info(String.format("%-10s %8d %8d %10.2f %10.2f %10.2f %12.1f", name,
+                report.succeeded(), report.failed(),
+                report.percentileMs(0.50), report.percentileMs(0.99), report.percentileMs(0.999),
+                report.throughput()));
+    }
+
+    private LoadReport runLoad(byte[] payload, int requests, int concurrency) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(requests);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            clients.execute(() -> {
+                MockMultipartFile file = new MockMultipartFile("file", "load-" + index + ".png", "image/png", payload);
+                MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+                long begin = System.nanoTime();
+                try {
+                    R<UploadResponse> body = uploadService.uploadImage(file, request).getBody();
+                    if (body != null && body.getData() != null) {
+                        uploadedFileNames.add(body.getData().getFileName());
+                    }
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                } finally {
+                    latencies[index] = System.nanoTime() - begin;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+
+        Arrays.sort(latencies);
+        return new LoadReport(latencies, requests - failed.get(), failed.get(), elapsed);
+    }
+
+    private MockHttpServletResponse readContent(String fileName, String prefix, String range) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/" + fileName + "/content");
+        if (range != null) {
+            request.addHeader("Range", range);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        contentService.streamContent(fileName, prefix, request, response);
+        return response;
+    }
+
+    @FunctionalInterface
+    private interface ReadCall {
+        boolean read(String fileName) throws Exception;
+    }
+
+    private LoadReport runReads(List<String> fileNames, ReadCall call, int requests, int concurrency) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(requests);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            clients.execute(() -> {
+                String fileName = fileNames.get(index % fileNames.size());
+                long begin = System.nanoTime();
+                try {
+                    if (!call.read(fileName)) {
+                        failed.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                } finally {
+                    latencies[index] = System.nanoTime() - begin;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+
+        Arrays.sort(latencies);
+        return new LoadReport(latencies, requests - failed.get(), failed.get(), elapsed);
+    }
+
+    private static byte[] pngPayload(int size) {
+        byte[] payload = new byte[size];
+        new Random(42).nextBytes(payload);
+        byte[] signature = {(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+        System.arraycopy(signature, 0, payload, 0, signature.length);
+        return payload;
+    }
+
+    private record LoadReport(long[] sortedLatencies, int succeeded, int failed, long elapsedNanos) {
+
+        double percentileMs(double percentile) {
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            index = Math.max(0, Math.min(sortedLatencies.length - 1, index));
+            return sortedLatencies[index] / 1_000_000.0;
+        }
+
+        double throughput() {
+            return (succeeded + failed) / (elapsedNanos / 1_000_000_000.0);
+        }
+    }
+}
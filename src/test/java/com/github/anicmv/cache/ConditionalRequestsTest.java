@@ -0,0 +1,111 @@
+package com.github.anicmv.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link ConditionalRequests} 的 If-None-Match / If-Modified-Since 判断
+ */
+class ConditionalRequestsTest {
+
+    private static final Instant LAST_MODIFIED = Instant.parse("2026-01-01T10:00:00.750Z");
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/api/file");
+    }
+
+    @Test
+    void ifNoneMatchUsesWeakComparison() {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", W/\"abc\"");
+
+        assertTrue(ConditionalRequests.isNotModified(request, "\"abc\"", LAST_MODIFIED));
+        assertTrue(ConditionalRequests.isNotModified(request, "abc", LAST_MODIFIED));
+        assertFalse(ConditionalRequests.isNotModified(request, "\"abd\"", LAST_MODIFIED));
+        assertFalse(ConditionalRequests.isNotModified(request, null, LAST_MODIFIED));
+    }
+
+    @Test
+    void wildcardMatchesAnyExistingRepresentation() {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "*");
+
+        assertTrue(ConditionalRequests.isNotModified(request, "\"abc\"", null));
+    }
+
+    @Test
+    void ifModifiedSinceIsIgnoredWhenIfNoneMatchIsPresent() {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED.plusSeconds(60).toEpochMilli());
+
+        assertFalse(ConditionalRequests.isNotModified(request, "\"abc\"", LAST_MODIFIED));
+    }
+
+    @Test
+    void ifModifiedSinceComparesWholeSeconds() {
+        MockHttpServletRequest same = get();
+        // HTTP 日期只有秒级精度，毫秒部分不能导致 200
+        same.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED.getEpochSecond() * 1000);
+        assertTrue(ConditionalRequests.isNotModified(same, "\"abc\"", LAST_MODIFIED));
+
+        MockHttpServletRequest earlier = get();
+        earlier.addHeader(HttpHeaders.IF_MODIFIED_SINCE, (LAST_MODIFIED.getEpochSecond() - 1) * 1000);
+        assertFalse(ConditionalRequests.isNotModified(earlier, "\"abc\"", LAST_MODIFIED));
+
+        assertFalse(ConditionalRequests.isNotModified(same, "\"abc\"", null));
+    }
+
+    @Test
+    void invalidDateIsIgnored() {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, "yesterday");
+
+        assertFalse(ConditionalRequests.isNotModified(request, "\"abc\"", LAST_MODIFIED));
+    }
+
+    @Test
+    void onlySafeMethodsAreConditional() {
+        MockHttpServletRequest request = new MockHttpServletRequest("DELETE", "/api/file");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "*");
+
+        assertFalse(ConditionalRequests.isNotModified(request, "\"abc\"", LAST_MODIFIED));
+
+        MockHttpServletRequest head = new MockHttpServletRequest("HEAD", "/api/file");
+        head.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc\"");
+        assertTrue(ConditionalRequests.isNotModified(head, "\"abc\"", LAST_MODIFIED));
+    }
+
+    @Test
+    void notModifiedCarriesValidators() {
+        ResponseEntity<Void> response = ConditionalRequests.notModified("\"abc\"", LAST_MODIFIED);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"abc\"", response.getHeaders().getETag());
+        assertEquals(LAST_MODIFIED.getEpochSecond() * 1000, response.getHeaders().getLastModified());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void weakTagsAreStableAndOrderSensitive() {
+        assertEquals("W/\"abc\"", ConditionalRequests.weak("\"abc\""));
+        assertEquals("W/\"abc\"", ConditionalRequests.weak("W/\"abc\""));
+        assertNull(ConditionalRequests.weak(null));
+
+        String tag = ConditionalRequests.weakOf(List.of("a", "b"));
+        assertTrue(tag.matches("W/\"[0-9a-f]{32}\""));
+        assertEquals(tag, ConditionalRequests.weakOf(List.of("a", "b")));
+        assertNotEquals(tag, ConditionalRequests.weakOf(List.of("b", "a")));
+        // 分隔符避免拼接歧义
+        assertNotEquals(tag, ConditionalRequests.weakOf(List.of("ab")));
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.anicmv.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author anicmv
+ * {@link FrequencySketch} 计数、封顶与采样窗口满后的衰减
+ */
+class FrequencySketchTest {
+
+    @Test
+    void countsAccessesUpToCap() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        assertEquals(0, sketch.frequency("a"));
+
+        for (int i = 0; i < 3; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(3, sketch.frequency("a"));
+
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    void historyDecaysAfterSampleWindow() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+
+        // 其他键的访问累计到采样窗口后，所有计数减半
+        int i = 0;
+        while (sketch.frequency("hot") == 15 && i < 10_000) {
+            sketch.increment("key-" + i++);
+        }
+
+        assertEquals(7, sketch.frequency("hot"));
+        assertTrue(i < 10_000);
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.anicmv.cache;
+
+import com.github.anicmv.config.S3StorageProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link ObjectCache} 的容量限制、TinyLFU 准入与 LRU 淘汰，以及淘汰文件的延迟删除
+ */
+class ObjectCacheTest {
+
+    private static final int OBJECT_SIZE = 100;
+
+    @TempDir
+    Path directory;
+
+    private final S3StorageProperties storageProperties = new S3StorageProperties();
+    private ObjectCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        S3StorageProperties.LocalCache config = storageProperties.getLocalCache();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setMaxSize(DataSize.ofBytes(3 * OBJECT_SIZE));
+        config.setRetireGrace(Duration.ZERO);
+
+        cache = new ObjectCache();
+        ReflectionTestUtils.setField(cache, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.init();
+    }
+
+    private boolean admit(String key, int length) throws Exception {
+        Path temp = cache.createTempFile();
+        Files.write(temp, new byte[length]);
+        boolean admitted = cache.admit(key, temp, length, "\"" + key + "\"", "image/png", null);
+        assertFalse(Files.exists(temp));
+        return admitted;
+    }
+
+    private void access(String key, int times) {
+        for (int i = 0; i < times; i++) {
+            cache.get(key);
+        }
+    }
+
+    private void fill() throws Exception {
+        for (String key : new String[]{"a", "b", "c"}) {
+            assertTrue(admit(key, OBJECT_SIZE));
+        }
+        assertEquals(3 * OBJECT_SIZE, cache.currentBytes());
+    }
+
+    @Test
+    void admitsWhileCapacityRemains() throws Exception {
+        fill();
+
+        CachedObject cached = cache.get("b");
+        assertNotNull(cached);
+        assertEquals(OBJECT_SIZE, Files.size(cached.path()));
+        assertEquals("\"b\"", cached.eTag());
+    }
+
+    @Test
+    void oneOffReadDoesNotDisplaceHotObjects() throws Exception {
+        fill();
+        access("a", 2);
+        access("b", 2);
+        access("c", 2);
+
+        assertFalse(admit("d", OBJECT_SIZE));
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("d"));
+    }
+
+    @Test
+    void frequentCandidateEvictsLeastRecentlyUsed() throws Exception {
+        fill();
+        // b、c 最近被访问过，a 在 LRU 末尾
+        access("b", 1);
+        access("c", 1);
+        access("d", 3);
+        Path evicted = cache.get("a").path();
+        access("b", 1);
+        access("c", 1);
+
+        assertTrue(admit("d", OBJECT_SIZE));
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("d"));
+        assertEquals(3 * OBJECT_SIZE, cache.currentBytes());
+        // 被淘汰的文件在宽限期后才删除
+        assertTrue(Files.exists(evicted));
+        cache.purgeRetired();
+        assertFalse(Files.exists(evicted));
+    }
+
+    @Test
+    void replacingKeyAccountsForPreviousCopy() throws Exception {
+        fill();
+
+        assertTrue(admit("b", 50));
+
+        assertEquals(3, cache.size());
+        assertEquals(2 * OBJECT_SIZE + 50, cache.currentBytes());
+    }
+
+    @Test
+    void objectLargerThanCacheIsRejected() throws Exception {
+        assertFalse(admit("huge", 4 * OBJECT_SIZE));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidateRemovesEntry() throws Exception {
+        fill();
+
+        cache.invalidate("a");
+
+        assertNull(cache.get("a"));
+        assertEquals(2 * OBJECT_SIZE, cache.currentBytes());
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.anicmv.cache;
+
+import com.github.anicmv.config.S3StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link ValidatorCache} 写入对象后使对象及包含它的列表页失效
+ */
+class ValidatorCacheTest {
+
+    private static final String KEY = "20250101/0ABCDEFGHJKMN.png";
+
+    private final ValidatorCache cache = new ValidatorCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "storageProperties", new S3StorageProperties());
+    }
+
+    @Test
+    void invalidateDropsObjectAndMatchingListPages() {
+        Instant now = Instant.now();
+        cache.put(KEY, "\"e1\"", now);
+        cache.putList("20250101/", 50, null, "W/\"l1\"", now);
+        cache.putList("20250102/", 50, null, "W/\"l2\"", now);
+
+        cache.invalidate(KEY);
+
+        assertNull(cache.get(KEY));
+        assertNull(cache.getList("20250101/", 50, null));
+        assertNotNull(cache.getList("20250102/", 50, null));
+    }
+
+    @Test
+    void listWithoutPrefixIsInvalidatedByAnyKey() {
+        cache.putList(null, 50, null, "W/\"all\"", Instant.now());
+        assertNotNull(cache.getList(null, 50, null));
+
+        assertDoesNotThrow(() -> cache.invalidate(KEY));
+
+        assertNull(cache.getList(null, 50, null));
+    }
+}
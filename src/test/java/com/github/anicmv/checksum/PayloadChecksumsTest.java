@@ -0,0 +1,72 @@
+package com.github.anicmv.checksum;
+
+import com.github.anicmv.enums.PayloadChecksumType;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.util.Base64;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author anicmv
+ * {@link PayloadChecksums#verify} 对后端返回值的判定
+ */
+class PayloadChecksumsTest {
+
+    private static final String MD5_HEX = "5d41402abc4b2a76b9719d911017c592";
+    private static final String MD5 = Base64.getEncoder().encodeToString(HexFormat.of().parseHex(MD5_HEX));
+    private static final String OTHER_HEX = "00000000000000000000000000000000";
+
+    private final PayloadChecksums checksums = new PayloadChecksums("crc==", "sha==", MD5);
+
+    @Test
+    void matchingChecksumIsVerified() {
+        PutObjectResponse response = PutObjectResponse.builder().checksumCRC32C("crc==").build();
+        assertEquals(PayloadChecksums.VERIFIED, checksums.verify(response, PayloadChecksumType.CRC32C));
+
+        response = PutObjectResponse.builder().checksumSHA256("sha==").build();
+        assertEquals(PayloadChecksums.VERIFIED, checksums.verify(response, PayloadChecksumType.SHA256));
+    }
+
+    @Test
+    void differingChecksumIsMismatch() {
+        PutObjectResponse response = PutObjectResponse.builder().checksumCRC32C("other==").build();
+        assertEquals(PayloadChecksums.MISMATCH, checksums.verify(response, PayloadChecksumType.CRC32C));
+
+        response = PutObjectResponse.builder().checksumCRC32C("crc==").checksumSHA256("other==").build();
+        assertEquals(PayloadChecksums.MISMATCH, checksums.verify(response, PayloadChecksumType.SHA256));
+    }
+
+    @Test
+    void nothingComparableIsUnverified() {
+        assertEquals(PayloadChecksums.UNVERIFIED,
+                checksums.verify(PutObjectResponse.builder().build(), PayloadChecksumType.NONE));
+        // 非 MD5 后端的 ETag 不一定是内容的 MD5
+        PutObjectResponse response = PutObjectResponse.builder().eTag("\"" + OTHER_HEX + "\"").build();
+        assertEquals(PayloadChecksums.UNVERIFIED, checksums.verify(response, PayloadChecksumType.CRC32C));
+    }
+
+    @Test
+    void md5BackendComparesETag() {
+        PutObjectResponse matching = PutObjectResponse.builder().eTag("\"" + MD5_HEX.toUpperCase() + "\"").build();
+        assertEquals(PayloadChecksums.VERIFIED, checksums.verify(matching, PayloadChecksumType.MD5));
+
+        PutObjectResponse differing = PutObjectResponse.builder().eTag("\"" + OTHER_HEX + "\"").build();
+        assertEquals(PayloadChecksums.ETAG_MISMATCH, checksums.verify(differing, PayloadChecksumType.MD5));
+
+        // 分段上传的 ETag 不可比较
+        PutObjectResponse multipart = PutObjectResponse.builder().eTag("\"" + OTHER_HEX + "-2\"").build();
+        assertEquals(PayloadChecksums.UNVERIFIED, checksums.verify(multipart, PayloadChecksumType.MD5));
+    }
+
+    @Test
+    void eTagDoesNotOverrideVerifiedChecksum() {
+        PutObjectResponse response = PutObjectResponse.builder()
+                .checksumCRC32C("crc==")
+                .eTag("\"" + OTHER_HEX + "\"")
+                .build();
+        assertEquals(PayloadChecksums.VERIFIED, checksums.verify(response, PayloadChecksumType.MD5));
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.anicmv.concurrency;
+
+import com.github.anicmv.config.S3StorageProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link AdaptiveConcurrencyLimiter} 的许可计数与失败收缩
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static AdaptiveConcurrencyLimiter limiter(int initial, int min, double backoff) {
+        S3StorageProperties.Concurrency config = new S3StorageProperties.Concurrency();
+        config.setInitialLimit(initial);
+        config.setMinLimit(min);
+        config.setMaxLimit(100);
+        config.setBackoffRatio(backoff);
+        return new AdaptiveConcurrencyLimiter(config);
+    }
+
+    @Test
+    void rejectsAtLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(3, 1, 0.5);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(limiter.tryAcquire());
+        assertNotNull(limiter.tryAcquire());
+        assertNull(limiter.tryAcquire());
+        assertEquals(3, limiter.getInFlight());
+
+        first.cancel();
+        assertNotNull(limiter.tryAcquire());
+    }
+
+    @Test
+    void cancelReturnsPermitWithoutChangingLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 2, 0.5);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+
+        permit.cancel();
+        permit.cancel();
+        permit.release(false);
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void failureShrinksLimitDownToMinimum() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 2, 0.5);
+
+        limiter.tryAcquire().release(false);
+        assertEquals(4, limiter.getLimit());
+        limiter.tryAcquire().release(false);
+        assertEquals(2, limiter.getLimit());
+        limiter.tryAcquire().release(false);
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void releaseIsCountedOnce() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 2, 0.5);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+
+        permit.release(false);
+        permit.release(false);
+        permit.cancel();
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void successDoesNotGrowLimitWhileMostlyIdle() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 2, 0.5);
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire().release(true);
+        }
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
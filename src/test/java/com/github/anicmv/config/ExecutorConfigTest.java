@@ -0,0 +1,92 @@
+package com.github.anicmv.config;
+
+import com.github.anicmv.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * 有界线程池排满后以 {@link ServiceOverloadedException} 拒绝，而不是无限排队
+ */
+class ExecutorConfigTest {
+
+    private final S3StorageProperties storageProperties = new S3StorageProperties();
+    private final ExecutorConfig config = new ExecutorConfig();
+    private final List<ThreadPoolTaskExecutor> executors = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executors.forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+
+    private ThreadPoolTaskExecutor started(ThreadPoolTaskExecutor executor) {
+        executor.initialize();
+        executors.add(executor);
+        return executor;
+    }
+
+    private void block() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void fanOutRejectsOnceQueueIsFull() {
+        S3StorageProperties.Executor properties = storageProperties.getExecutor();
+        properties.setCoreSize(1);
+        properties.setMaxSize(1);
+        properties.setQueueCapacity(1);
+        ThreadPoolTaskExecutor executor = started(config.storageTaskExecutor(storageProperties, new SimpleMeterRegistry()));
+
+        executor.execute(this::block);
+        executor.execute(this::block);
+
+        assertThrows(ServiceOverloadedException.class, () -> executor.execute(this::block));
+        // CompletableFuture 不包装拒绝异常，调用方可以按过载处理
+        assertThrows(ServiceOverloadedException.class, () -> CompletableFuture.runAsync(this::block, executor));
+    }
+
+    @Test
+    void readExecutorNeverQueues() {
+        storageProperties.getExecutor().setReadThreads(1);
+        ThreadPoolTaskExecutor executor = started(config.hedgedReadExecutor(storageProperties, new SimpleMeterRegistry()));
+
+        executor.execute(this::block);
+
+        assertThrows(ServiceOverloadedException.class, () -> executor.execute(this::block));
+    }
+
+    @Test
+    void backgroundExecutorIsSeparateFromFanOut() {
+        S3StorageProperties.Executor properties = storageProperties.getExecutor();
+        properties.setCoreSize(1);
+        properties.setMaxSize(1);
+        properties.setQueueCapacity(1);
+        properties.setBackgroundThreads(1);
+        properties.setBackgroundQueueCapacity(1);
+        ThreadPoolTaskExecutor fanOut = started(config.storageTaskExecutor(storageProperties, new SimpleMeterRegistry()));
+        ThreadPoolTaskExecutor background = started(config.backgroundTaskExecutor(storageProperties, new SimpleMeterRegistry()));
+
+        // 后台任务占满自己的线程池后，上传扇出仍有空位
+        background.execute(this::block);
+        background.execute(this::block);
+        assertThrows(ServiceOverloadedException.class, () -> background.execute(this::block));
+
+        assertDoesNotThrow(() -> fanOut.execute(this::block));
+        assertEquals(0, fanOut.getThreadPoolExecutor().getQueue().size());
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.anicmv.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.config.RateLimitProperties;
+import com.github.anicmv.ratelimit.ClientRateLimiter;
+import com.github.anicmv.service.FileValidationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockPart;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link RateLimitFilter} 按 Content-Length 预先计费，没有 Content-Length 的请求体按实际读取量事后计费
+ */
+class RateLimitFilterTest {
+
+    private static final int KB = 1024;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRequestsPerSecond(1);
+        properties.setRequestBurst(10);
+        properties.setBytesPerSecond(DataSize.ofKilobytes(1));
+        properties.setByteBurst(DataSize.ofKilobytes(4));
+        ClientRateLimiter rateLimiter = new ClientRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "properties", properties);
+        ReflectionTestUtils.setField(rateLimiter, "fileValidationService", new FileValidationService());
+        rateLimiter.init();
+
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "properties", properties);
+        ReflectionTestUtils.setField(filter, "rateLimiter", rateLimiter);
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+    }
+
+    /**
+     * chunked 请求体：有内容但没有 Content-Length
+     */
+    private static MockHttpServletRequest chunked(byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/objects/a.png") {
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader(HttpHeaders.TRANSFER_ENCODING, "chunked");
+        request.setContent(body);
+        return request;
+    }
+
+    private static MockHttpServletRequest small() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/upload");
+        request.setRemoteAddr("10.0.0.1");
+        request.setContent(new byte[16]);
+        return request;
+    }
+
+    private MockHttpServletResponse filter(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private double rejected() {
+        return meterRegistry.counter("storage.ratelimit.rejected", "bucket", "bytes").count();
+    }
+
+    @Test
+    void chunkedBodyIsChargedByBytesRead() throws Exception {
+        MockHttpServletResponse first = filter(chunked(new byte[8 * KB]),
+                (request, response) -> request.getInputStream().readAllBytes());
+        assertEquals(200, first.getStatus());
+
+        // 读取的 8KB 超过突发容量，之后的请求要等欠账还清
+        MockHttpServletResponse second = filter(small(), (request, response) -> fail("不应放行"));
+        assertEquals(429, second.getStatus());
+        assertNotNull(second.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, rejected());
+    }
+
+    @Test
+    void unreadChunkedBodyIsNotCharged() throws Exception {
+        filter(chunked(new byte[8 * KB]), (request, response) -> { });
+
+        assertEquals(200, filter(small(), (request, response) -> { }).getStatus());
+    }
+
+    @Test
+    void chunkedMultipartIsChargedByPartSizes() throws Exception {
+        MockHttpServletRequest multipart = chunked(new byte[0]);
+        multipart.setMethod("POST");
+        multipart.addPart(new MockPart("file", "a.png", new byte[8 * KB]));
+        filter(multipart, (request, response) -> ((HttpServletRequest) request).getParts());
+
+        assertEquals(429, filter(small(), (request, response) -> { }).getStatus());
+    }
+
+    @Test
+    void requestWithContentLengthIsChargedUpFront() throws Exception {
+        MockHttpServletRequest large = new MockHttpServletRequest("POST", "/api/upload");
+        large.setRemoteAddr("10.0.0.1");
+        large.setContent(new byte[8 * KB]);
+        AtomicReference<Object> passed = new AtomicReference<>();
+        filter(large, (request, response) -> passed.set(request));
+
+        // 有 Content-Length 的请求不包装
+        assertSame(large, passed.get());
+        assertEquals(429, filter(small(), (request, response) -> { }).getStatus());
+    }
+}
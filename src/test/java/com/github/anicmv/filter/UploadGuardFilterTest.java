@@ -0,0 +1,146 @@
+package com.github.anicmv.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.service.FileValidationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link UploadGuardFilter} 在读取请求体之前按 Content-Length、Content-Type 与 boundary 拒绝上传
+ */
+class UploadGuardFilterTest {
+
+    private static final int MAX_FILE_SIZE = 1024;
+    private static final int MULTIPART_OVERHEAD = 256;
+    private static final String MULTIPART = "multipart/form-data; boundary=----abc";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UploadGuardFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        FileValidationService fileValidationService = new FileValidationService();
+        ReflectionTestUtils.setField(fileValidationService, "maxFileSize", (long) MAX_FILE_SIZE);
+        ReflectionTestUtils.setField(fileValidationService, "multipartOverhead", (long) MULTIPART_OVERHEAD);
+        ReflectionTestUtils.setField(fileValidationService, "allowedContentTypes", new String[]{"image/png", "image/jpeg"});
+        ReflectionTestUtils.setField(fileValidationService, "allowedExtensions", new String[]{".png", ".jpg"});
+        fileValidationService.init();
+
+        filter = new UploadGuardFilter();
+        ReflectionTestUtils.setField(filter, "fileValidationService", fileValidationService);
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+    }
+
+    private static MockHttpServletRequest multipart(int length) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/upload");
+        request.setServletPath("/upload");
+        request.setContentType(MULTIPART);
+        request.setContent(new byte[length]);
+        return request;
+    }
+
+    private static MockHttpServletRequest raw(String contentType, byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/objects/a.png");
+        request.setServletPath("/objects/a.png");
+        request.setContentType(contentType);
+        request.setContent(body);
+        return request;
+    }
+
+    private MockHttpServletResponse filter(MockHttpServletRequest request, MockFilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private void assertRejected(MockHttpServletResponse response, MockFilterChain chain, int status, String errorCode)
+            throws Exception {
+        assertEquals(status, response.getStatus());
+        assertEquals("close", response.getHeader(HttpHeaders.CONNECTION));
+        assertTrue(response.getContentAsString().contains(errorCode), response.getContentAsString());
+        assertNull(chain.getRequest(), "被拒绝的请求不应继续处理");
+        assertEquals(1, meterRegistry.counter("storage.upload.rejected", "status", String.valueOf(status)).count());
+    }
+
+    @Test
+    void multipartWithinLimitIncludingOverheadPasses() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletRequest request = multipart(MAX_FILE_SIZE + MULTIPART_OVERHEAD);
+
+        filter(request, chain);
+
+        assertSame(request, chain.getRequest());
+    }
+
+    @Test
+    void oversizedMultipartIsRejectedWith413() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(multipart(MAX_FILE_SIZE + MULTIPART_OVERHEAD + 1), chain);
+
+        assertRejected(response, chain, 413, "FILE_SIZE_EXCEEDED");
+    }
+
+    @Test
+    void oversizedRawUploadIsRejectedWith413() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(raw("image/png", new byte[MAX_FILE_SIZE + 1]), chain);
+
+        assertRejected(response, chain, 413, "FILE_SIZE_EXCEEDED");
+    }
+
+    @Test
+    void multipartWithoutBoundaryIsRejectedWith400() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletRequest request = multipart(16);
+        request.setContentType("multipart/form-data");
+
+        MockHttpServletResponse response = filter(request, chain);
+
+        assertRejected(response, chain, 400, "MULTIPART_ERROR");
+    }
+
+    @Test
+    void rawUploadWithoutContentLengthIsRejectedWith411() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(raw("image/png", null), chain);
+
+        assertRejected(response, chain, 411, "FILE_VALIDATION_ERROR");
+    }
+
+    @Test
+    void rawUploadWithDisallowedTypeIsRejectedWith415() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(raw("application/pdf", new byte[16]), chain);
+
+        assertRejected(response, chain, 415, "FILE_VALIDATION_ERROR");
+    }
+
+    @Test
+    void allowedRawUploadAndOtherRequestsPass() throws Exception {
+        MockFilterChain raw = new MockFilterChain();
+        filter(raw("image/png", new byte[16]), raw);
+        assertNotNull(raw.getRequest());
+
+        // 非上传接口的 PUT 不检查类型和长度
+        MockFilterChain rename = new MockFilterChain();
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/rename");
+        request.setServletPath("/rename");
+        request.setContentType("application/json");
+        filter(request, rename);
+        assertNotNull(rename.getRequest());
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.anicmv.health;
+
+import com.github.anicmv.config.S3StorageProperties;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author anicmv
+ * {@link BackendHealthInterceptor} 把后端错误计为失败，客户端中断的上传不计入
+ */
+class BackendHealthInterceptorTest {
+
+    private final BackendHealth health = new BackendHealth("r2", new S3StorageProperties.HealthCheck());
+    private final BackendHealthTracker healthTracker = mock(BackendHealthTracker.class);
+    private final BackendHealthInterceptor interceptor = new BackendHealthInterceptor("r2", healthTracker);
+
+    private void failWith(Throwable exception) {
+        when(healthTracker.get("r2")).thenReturn(health);
+        ExecutionAttributes attributes = new ExecutionAttributes();
+        interceptor.beforeExecution(mock(Context.BeforeExecution.class), attributes);
+        Context.FailedExecution context = mock(Context.FailedExecution.class);
+        when(context.exception()).thenReturn(exception);
+        interceptor.onExecutionFailure(context, attributes);
+    }
+
+    @Test
+    void clientAbortedUploadIsNotRecorded() {
+        IOException aborted = new IOException("客户端上传中断", AbortedException.builder().message("客户端上传中断").build());
+
+        failWith(SdkClientException.create("Unable to execute HTTP request", aborted));
+
+        verify(healthTracker, never()).get(anyString());
+    }
+
+    @Test
+    void backendErrorIsRecordedAsFailure() {
+        failWith(SdkClientException.create("Unable to execute HTTP request", new IOException("上传数据读取失败")));
+
+        assertEquals("Unable to execute HTTP request", health.snapshot().lastError());
+    }
+}
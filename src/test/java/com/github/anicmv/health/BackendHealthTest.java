@@ -0,0 +1,121 @@
+package com.github.anicmv.health;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.enums.BackendState;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link BackendHealth} 连续失败摘除、摘除期满半开、半开成功恢复与失败重新摘除
+ */
+class BackendHealthTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final S3StorageProperties.HealthCheck config = new S3StorageProperties.HealthCheck();
+
+    private BackendHealth health() {
+        config.setFailureThreshold(3);
+        config.setHalfOpenSuccesses(2);
+        return new BackendHealth("r2", config);
+    }
+
+    private static BackendState state(BackendHealth health) {
+        return health.snapshot().state();
+    }
+
+    @Test
+    void ejectedAfterConsecutiveFailures() {
+        BackendHealth health = health();
+
+        health.recordFailure(MILLIS, "timeout");
+        health.recordFailure(MILLIS, "timeout");
+        assertTrue(health.isRoutable());
+
+        health.recordFailure(MILLIS, "timeout");
+        assertFalse(health.isRoutable());
+        assertEquals(BackendState.EJECTED, state(health));
+        assertEquals("timeout", health.snapshot().lastError());
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        BackendHealth health = health();
+
+        health.recordFailure(MILLIS, "timeout");
+        health.recordFailure(MILLIS, "timeout");
+        health.recordSuccess(MILLIS);
+        health.recordFailure(MILLIS, "timeout");
+        health.recordFailure(MILLIS, "timeout");
+
+        assertEquals(BackendState.HEALTHY, state(health));
+    }
+
+    @Test
+    void probeWaitsForEjectDuration() {
+        config.setEjectDuration(Duration.ofHours(1));
+        BackendHealth health = health();
+        for (int i = 0; i < 3; i++) {
+            health.recordFailure(MILLIS, "timeout");
+        }
+
+        assertFalse(health.prepareProbe());
+        assertEquals(BackendState.EJECTED, state(health));
+    }
+
+    @Test
+    void halfOpenRecoversAfterConsecutiveSuccesses() {
+        config.setEjectDuration(Duration.ZERO);
+        BackendHealth health = health();
+        for (int i = 0; i < 3; i++) {
+            health.recordFailure(MILLIS, "timeout");
+        }
+
+        assertTrue(health.prepareProbe());
+        assertEquals(BackendState.HALF_OPEN, state(health));
+        // 半开期间仍不参与路由，只接受探测
+        assertFalse(health.isRoutable());
+
+        health.recordSuccess(MILLIS);
+        assertEquals(BackendState.HALF_OPEN, state(health));
+        health.recordSuccess(MILLIS);
+        assertEquals(BackendState.HEALTHY, state(health));
+        assertTrue(health.isRoutable());
+    }
+
+    @Test
+    void failureWhileHalfOpenEjectsAgain() {
+        config.setEjectDuration(Duration.ZERO);
+        BackendHealth health = health();
+        for (int i = 0; i < 3; i++) {
+            health.recordFailure(MILLIS, "timeout");
+        }
+        health.prepareProbe();
+        health.recordSuccess(MILLIS);
+
+        health.recordFailure(MILLIS, "503");
+
+        assertEquals(BackendState.EJECTED, state(health));
+        // 重新进入半开后要重新累计成功次数
+        health.prepareProbe();
+        health.recordSuccess(MILLIS);
+        assertEquals(BackendState.HALF_OPEN, state(health));
+    }
+
+    @Test
+    void errorsPenaliseScore() {
+        BackendHealth fast = health();
+        BackendHealth flaky = health();
+        fast.recordSuccess(10 * MILLIS);
+        flaky.recordSuccess(10 * MILLIS);
+        flaky.recordFailure(10 * MILLIS, "timeout");
+
+        assertTrue(flaky.score() > fast.score());
+        assertEquals(0, new BackendHealth("new", config).score());
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.anicmv.id;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.StorageConfigurationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link FileIdGenerator} 的单调性、编码与节点号校验
+ */
+class FileIdGeneratorTest {
+
+    private static FileIdGenerator generator(int nodeId) {
+        S3StorageProperties properties = new S3StorageProperties();
+        properties.getIdGenerator().setNodeId(nodeId);
+        FileIdGenerator generator = new FileIdGenerator();
+        ReflectionTestUtils.setField(generator, "storageProperties", properties);
+        generator.init();
+        return generator;
+    }
+
+    @Test
+    void idsAreStrictlyIncreasing() {
+        FileIdGenerator generator = generator(7);
+        long previous = generator.nextId();
+        // 超过单毫秒 4096 个序号，覆盖借用下一毫秒的情况
+        for (int i = 0; i < 20_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertEquals(7, (id >>> 12) & 1023);
+            previous = id;
+        }
+    }
+
+    @Test
+    void fileNamesSortInGenerationOrder() {
+        FileIdGenerator generator = generator(1023);
+        String previous = generator.nextFileName(".png");
+        for (int i = 0; i < 10_000; i++) {
+            String name = generator.nextFileName(".png");
+            assertEquals(13 + 4, name.length());
+            assertTrue(name.endsWith(".png"));
+            assertTrue(name.substring(0, 13).matches("[0-9A-HJKMNP-TV-Z]{13}"));
+            assertTrue(name.compareTo(previous) > 0);
+            previous = name;
+        }
+        assertEquals(13, generator.nextFileName("").length());
+    }
+
+    @Test
+    void concurrentCallersNeverShareAnId() throws Exception {
+        FileIdGenerator generator = generator(0);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ids.add(generator.nextId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(80_000, ids.size());
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThrows(StorageConfigurationException.class, () -> generator(-1));
+        assertThrows(StorageConfigurationException.class, () -> generator(1024));
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.anicmv.idempotency;
+
+import com.github.anicmv.config.RateLimitProperties;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.dto.response.R;
+import com.github.anicmv.exception.IdempotencyConflictException;
+import com.github.anicmv.ratelimit.ClientRateLimiter;
+import com.github.anicmv.service.FileValidationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link IdempotencyStore} 的重放、键范围与失败处理
+ */
+class IdempotencyStoreTest {
+
+    private S3StorageProperties storageProperties;
+    private IdempotencyStore store;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties rateLimitProperties = new RateLimitProperties();
+        rateLimitProperties.setApiKeys(Map.of("alice", "key-a", "bob", "key-b"));
+        ClientRateLimiter clientRateLimiter = new ClientRateLimiter();
+        ReflectionTestUtils.setField(clientRateLimiter, "properties", rateLimitProperties);
+        ReflectionTestUtils.setField(clientRateLimiter, "fileValidationService", new FileValidationService());
+        clientRateLimiter.init();
+
+        storageProperties = new S3StorageProperties();
+        store = new IdempotencyStore();
+        ReflectionTestUtils.setField(store, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(store, "clientRateLimiter", clientRateLimiter);
+        ReflectionTestUtils.setField(store, "meterRegistry", new SimpleMeterRegistry());
+        store.init();
+    }
+
+    private static MockHttpServletRequest request(String idempotencyKey, String apiKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/upload");
+        request.setRemoteAddr("10.0.0.1");
+        if (idempotencyKey != null) {
+            request.addHeader("Idempotency-Key", idempotencyKey);
+        }
+        if (apiKey != null) {
+            request.addHeader("X-Api-Key", apiKey);
+        }
+        return request;
+    }
+
+    private ResponseEntity<R<String>> upload(MockHttpServletRequest request, String fingerprint) {
+        return store.execute(request, fingerprint, () -> ResponseEntity.ok(R.success("id-" + executions.incrementAndGet())));
+    }
+
+    @Test
+    void replaysStoredResponseForSameKeyAndContent() {
+        ResponseEntity<R<String>> first = upload(request("k1", null), "sha:1");
+        ResponseEntity<R<String>> second = upload(request("k1", null), "sha:1");
+
+        assertEquals(1, executions.get());
+        assertEquals("id-1", second.getBody().getData());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void requestsWithoutKeyAreNotRecorded() {
+        upload(request(null, null), "sha:1");
+        upload(request(" ", null), "sha:1");
+
+        assertEquals(2, executions.get());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void fingerprintIsComputedOnlyWhenKeyIsPresent() {
+        AtomicInteger digests = new AtomicInteger();
+        Supplier<String> fingerprint = () -> "sha:" + digests.incrementAndGet();
+
+        store.execute(request(null, null), fingerprint, () -> ResponseEntity.ok(R.success("id")));
+        assertEquals(0, digests.get());
+
+        store.execute(request("k1", null), fingerprint, () -> ResponseEntity.ok(R.success("id")));
+        assertEquals(1, digests.get());
+    }
+
+    @Test
+    void anonymousKeysAreScopedByContent() {
+        // 未认证的客户端无法证明身份，相同的键用于不同内容时各自执行，不会拿到他人的响应
+        upload(request("k1", null), "sha:1");
+        ResponseEntity<R<String>> other = upload(request("k1", null), "sha:2");
+
+        assertEquals(2, executions.get());
+        assertEquals("id-2", other.getBody().getData());
+    }
+
+    @Test
+    void authenticatedClientsHaveSeparateKeySpaces() {
+        upload(request("k1", "key-a"), "sha:1");
+        ResponseEntity<R<String>> bob = upload(request("k1", "key-b"), "sha:1");
+
+        assertEquals(2, executions.get());
+        assertNull(bob.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+
+        IdempotencyConflictException conflict = assertThrows(IdempotencyConflictException.class,
+                () -> upload(request("k1", "key-a"), "sha:2"));
+        assertEquals(IdempotencyConflictException.KEY_REUSED, conflict.getErrorCode());
+    }
+
+    @Test
+    void failedRequestsAreNotStored() {
+        assertThrows(IOException.class, () -> store.execute(request("k1", null), "sha:1", () -> {
+            executions.incrementAndGet();
+            throw new IOException("后端不可用");
+        }));
+        store.execute(request("k1", null), "sha:1",
+                () -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(R.<String>error("过载", "OVERLOADED")));
+        ResponseEntity<R<String>> retried = upload(request("k1", null), "sha:1");
+
+        assertEquals(2, executions.get());
+        assertEquals("id-2", retried.getBody().getData());
+        assertNull(retried.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    void untrackedWhenFull() {
+        storageProperties.getIdempotency().setMaxEntries(1);
+        upload(request("k1", null), "sha:1");
+        upload(request("k2", null), "sha:1");
+        upload(request("k2", null), "sha:1");
+
+        assertEquals(3, executions.get());
+        assertEquals(1, store.size());
+    }
+}
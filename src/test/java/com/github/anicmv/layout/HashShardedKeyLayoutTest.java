@@ -0,0 +1,80 @@
+package com.github.anicmv.layout;
+
+import com.github.anicmv.exception.StorageConfigurationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link HashShardedKeyLayout} 的键映射
+ */
+class HashShardedKeyLayoutTest {
+
+    @Test
+    void storageKeyRoundTrips() {
+        HashShardedKeyLayout layout = new HashShardedKeyLayout(256, false);
+        String logicalKey = "20260101/0123456789ABC.png";
+
+        String storageKey = layout.storageKey(logicalKey);
+
+        assertEquals("_s/" + layout.shardOf(logicalKey) + "/" + logicalKey, storageKey);
+        assertEquals(2, layout.shardOf(logicalKey).length());
+        assertEquals(logicalKey, layout.logicalKey(storageKey));
+        assertEquals(storageKey, layout.storageKey(logicalKey));
+    }
+
+    @Test
+    void legacyKeysAreNotMistakenForShardKeys() {
+        HashShardedKeyLayout layout = new HashShardedKeyLayout(16, true);
+
+        // 首段恰好是十六进制的旧键
+        assertEquals("a/foo.png", layout.logicalKey("a/foo.png"));
+        assertEquals("20260101/foo.png", layout.logicalKey("20260101/foo.png"));
+        // 分片段不是十六进制、宽度不对或超出分片数
+        assertEquals("_s/zz/foo.png", layout.logicalKey("_s/zz/foo.png"));
+        assertEquals("_s/0a/foo.png", layout.logicalKey("_s/0a/foo.png"));
+        assertEquals("_s/", layout.logicalKey("_s/"));
+
+        HashShardedKeyLayout ten = new HashShardedKeyLayout(10, false);
+        assertEquals("_s/a/foo.png", ten.logicalKey("_s/a/foo.png"));
+        assertEquals("foo.png", ten.logicalKey("_s/9/foo.png"));
+    }
+
+    @Test
+    void candidatesAndPrefixesIncludeLegacyLayoutOnlyWithFallback() {
+        HashShardedKeyLayout fallback = new HashShardedKeyLayout(4, true);
+        HashShardedKeyLayout strict = new HashShardedKeyLayout(4, false);
+        String logicalKey = "20260101/foo.png";
+
+        assertEquals(List.of(fallback.storageKey(logicalKey), logicalKey), fallback.candidateKeys(logicalKey));
+        assertEquals(List.of(strict.storageKey(logicalKey)), strict.candidateKeys(logicalKey));
+
+        assertEquals(List.of("_s/0/2026", "_s/1/2026", "_s/2/2026", "_s/3/2026", "2026"),
+                fallback.listPrefixes("2026"));
+        assertEquals(List.of("_s/0/2026", "_s/1/2026", "_s/2/2026", "_s/3/2026"), strict.listPrefixes("2026"));
+        assertEquals("_s/", strict.reservedPrefix());
+        assertNull(new DateKeyLayout().reservedPrefix());
+    }
+
+    @Test
+    void keysSpreadOverAllShards() {
+        HashShardedKeyLayout layout = new HashShardedKeyLayout(16, false);
+        Set<String> shards = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            shards.add(layout.shardOf("20260101/" + i + ".png"));
+        }
+        assertEquals(16, shards.size());
+    }
+
+    @Test
+    void rejectsShardCountOutOfRange() {
+        assertThrows(StorageConfigurationException.class, () -> new HashShardedKeyLayout(1, false));
+        assertThrows(StorageConfigurationException.class, () -> new HashShardedKeyLayout(4097, false));
+        assertEquals(3, new HashShardedKeyLayout(4096, false).shardOf("x").length());
+    }
+}
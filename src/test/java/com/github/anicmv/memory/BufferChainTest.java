@@ -0,0 +1,118 @@
+package com.github.anicmv.memory;
+
+import com.github.anicmv.config.S3StorageProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link BufferChain} 与 {@link BufferPool} 在正常归还、读取失败与重复归还后没有未归还的缓冲区
+ */
+class BufferChainTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    private BufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        S3StorageProperties properties = new S3StorageProperties();
+        S3StorageProperties.BufferPool config = properties.getBufferPool();
+        // 小分级让一个文件分布在多个缓冲区
+        config.setSizeClasses(List.of(DataSize.ofBytes(4), DataSize.ofBytes(8)));
+        config.setLeakDetection(true);
+        pool = new BufferPool();
+        ReflectionTestUtils.setField(pool, "storageProperties", properties);
+        ReflectionTestUtils.setField(pool, "meterRegistry", new SimpleMeterRegistry());
+        pool.init();
+    }
+
+    @AfterEach
+    void noLeaks() {
+        assertEquals(0, pool.outstanding(), () -> "未归还的缓冲区: " + pool.leakReport());
+    }
+
+    private BufferChain read(InputStream in, long length) throws Exception {
+        return BufferChain.readFrom(in, length, pool, view -> { });
+    }
+
+    @Test
+    void closeReturnsEveryBuffer() throws Exception {
+        try (BufferChain chain = read(new ByteArrayInputStream(CONTENT), CONTENT.length)) {
+            assertEquals(3, pool.outstanding());
+            assertEquals(CONTENT.length, chain.length());
+            // 每个流都从头读取，SDK 重试时可以重新读取
+            for (int i = 0; i < 2; i++) {
+                try (InputStream in = chain.newInputStream()) {
+                    assertArrayEquals(CONTENT, in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    void shortInputReleasesBuffersAlreadyFilled() {
+        assertThrows(EOFException.class, () -> read(new ByteArrayInputStream(CONTENT), CONTENT.length + 1));
+    }
+
+    @Test
+    void failingObserverReleasesBuffersAlreadyFilled() {
+        int[] calls = new int[1];
+        assertThrows(IllegalStateException.class, () -> BufferChain.readFrom(new ByteArrayInputStream(CONTENT),
+                CONTENT.length, pool, view -> {
+                    if (++calls[0] == 2) {
+                        throw new IllegalStateException("digest failed");
+                    }
+                }));
+    }
+
+    @Test
+    void closingTwiceDoesNotReleaseTwice() throws Exception {
+        BufferChain chain = read(new ByteArrayInputStream(CONTENT), CONTENT.length);
+        chain.close();
+        chain.close();
+
+        // 缓冲区只回到空闲列表一次，之后借出的缓冲区互不相同
+        PooledBuffer first = pool.acquire(8);
+        PooledBuffer second = pool.acquire(8);
+        PooledBuffer third = pool.acquire(8);
+        assertNotSame(first.buffer(), second.buffer());
+        assertNotSame(second.buffer(), third.buffer());
+        assertNotSame(first.buffer(), third.buffer());
+        first.release();
+        second.release();
+        third.release();
+    }
+
+    @Test
+    void releasingPooledBufferTwiceIsRejected() {
+        PooledBuffer buffer = pool.acquire(4);
+        buffer.release();
+
+        assertThrows(IllegalStateException.class, buffer::release);
+        assertThrows(IllegalStateException.class, buffer::retain);
+    }
+
+    @Test
+    void wrappedDataDoesNotUsePool() throws Exception {
+        try (BufferChain chain = BufferChain.wrap(CONTENT)) {
+            assertEquals(0, pool.outstanding());
+            assertArrayEquals(CONTENT, chain.newInputStream().readAllBytes());
+        }
+        // 未池化的缓冲区重复归还没有效果
+        PooledBuffer.unpooled(ByteBuffer.allocate(1)).release();
+    }
+}
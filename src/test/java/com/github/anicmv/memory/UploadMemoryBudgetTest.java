@@ -0,0 +1,114 @@
+package com.github.anicmv.memory;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link UploadMemoryBudget} 的预留与归还、等待超时拒绝、峰值记录
+ */
+class UploadMemoryBudgetTest {
+
+    private static final long KB = 1024;
+
+    private final S3StorageProperties storageProperties = new S3StorageProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UploadMemoryBudget budget;
+
+    @BeforeEach
+    void setUp() {
+        S3StorageProperties.UploadMemory config = storageProperties.getUploadMemory();
+        config.setMaxBytes(DataSize.ofKilobytes(8));
+        config.setAcquireTimeout(Duration.ofMillis(50));
+
+        budget = new UploadMemoryBudget();
+        ReflectionTestUtils.setField(budget, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(budget, "meterRegistry", meterRegistry);
+        budget.init();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    @Test
+    void reservationIsRoundedToUnitsAndReturnedOnce() {
+        UploadMemoryBudget.Reservation reservation = budget.reserve(KB + 1);
+        assertEquals(2 * KB, gauge("storage.upload.memory.used"));
+
+        reservation.close();
+        reservation.close();
+
+        assertEquals(0, gauge("storage.upload.memory.used"));
+        // 重复归还不会多出预算
+        try (UploadMemoryBudget.Reservation all = budget.reserve(8 * KB)) {
+            assertNull(budget.tryReserve(1));
+        }
+    }
+
+    @Test
+    void exhaustedBudgetTimesOutWith503() {
+        try (UploadMemoryBudget.Reservation held = budget.reserve(6 * KB)) {
+            assertThrows(ServiceOverloadedException.class, () -> budget.reserve(4 * KB));
+            assertEquals(1, meterRegistry.counter("storage.upload.memory.rejected").count());
+        }
+        assertEquals(0, gauge("storage.upload.memory.used"));
+    }
+
+    @Test
+    void waitingReservationProceedsOnRelease() throws Exception {
+        storageProperties.getUploadMemory().setAcquireTimeout(Duration.ofSeconds(5));
+        UploadMemoryBudget.Reservation held = budget.reserve(6 * KB);
+
+        CompletableFuture<UploadMemoryBudget.Reservation> waiting = CompletableFuture.supplyAsync(() -> budget.reserve(4 * KB));
+        Thread.sleep(20);
+        assertFalse(waiting.isDone());
+        held.close();
+
+        waiting.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    void oversizedRequestReservesWholeBudget() {
+        try (UploadMemoryBudget.Reservation reservation = budget.reserve(64 * KB)) {
+            assertEquals(8 * KB, gauge("storage.upload.memory.used"));
+            // 可以放弃的工作在预算不足时不等待
+            assertNull(budget.tryReserve(KB));
+        }
+        assertNull(budget.tryReserve(64 * KB));
+    }
+
+    @Test
+    void peakKeepsHighestUsage() {
+        UploadMemoryBudget.Reservation first = budget.reserve(3 * KB);
+        UploadMemoryBudget.Reservation second = budget.tryReserve(2 * KB);
+        assertNotNull(second);
+        first.close();
+        second.close();
+        budget.reserve(KB).close();
+
+        assertEquals(5 * KB, gauge("storage.upload.memory.peak"));
+        assertEquals(0, gauge("storage.upload.memory.used"));
+        assertEquals(8 * KB, gauge("storage.upload.memory.capacity"));
+    }
+
+    @Test
+    void disabledBudgetDoesNotReserve() {
+        storageProperties.getUploadMemory().setEnabled(false);
+
+        try (UploadMemoryBudget.Reservation reservation = budget.reserve(64 * KB)) {
+            assertEquals(0, gauge("storage.upload.memory.used"));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.anicmv.optimize;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link PngRecompressor} 与 {@link JpegMetadataStripper} 只去掉元数据，解码后的像素与压缩数据保持不变
+ */
+class LosslessOptimizerTest {
+
+    private static final int PNG_SIGNATURE_LENGTH = 8;
+    private static final int IHDR_CHUNK_LENGTH = 25;
+
+    private static BufferedImage image(int type) {
+        BufferedImage image = new BufferedImage(64, 48, type);
+        Random random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                // 渐变加噪声，压缩后仍有足够的数据
+                image.setRGB(x, y, (x * 4 << 16) | (y * 5 << 8) | random.nextInt(256) | 0xFF000000);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] data) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(data));
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "(" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] pngChunk(String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.ISO_8859_1);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        return concat(ByteBuffer.allocate(4).putInt(data.length).array(), typeBytes, data,
+                ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    private static byte[] jpegSegment(int marker, byte[] payload) {
+        return concat(new byte[]{(byte) 0xFF, (byte) marker, (byte) ((payload.length + 2) >> 8), (byte) (payload.length + 2)},
+                payload);
+    }
+
+    /**
+     * 大端 EXIF，IFD0 只有方向标签
+     */
+    private static byte[] exif(int orientation) {
+        ByteBuffer tiff = ByteBuffer.allocate(6 + 8 + 2 + 12 + 4);
+        tiff.put("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        tiff.put(new byte[]{'M', 'M', 0, 42}).putInt(8);
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        tiff.putInt(0);
+        return jpegSegment(0xE1, tiff.array());
+    }
+
+    private static boolean contains(byte[] data, String text) {
+        byte[] needle = text.getBytes(StandardCharsets.ISO_8859_1);
+        for (int i = 0; i + needle.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + needle.length, needle, 0, needle.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void pngRecompressionKeepsPixelsAndRenderingChunks() throws IOException {
+        BufferedImage image = image(BufferedImage.TYPE_INT_ARGB);
+        byte[] encoded = encode(image, "png");
+        int afterIhdr = PNG_SIGNATURE_LENGTH + IHDR_CHUNK_LENGTH;
+        byte[] original = concat(Arrays.copyOfRange(encoded, 0, afterIhdr),
+                pngChunk("gAMA", ByteBuffer.allocate(4).putInt(45455).array()),
+                pngChunk("tEXt", "Comment\0taken by a camera".getBytes(StandardCharsets.ISO_8859_1)),
+                Arrays.copyOfRange(encoded, afterIhdr, encoded.length));
+
+        byte[] optimized = PngRecompressor.optimize(original, false, 9, Long.MAX_VALUE);
+
+        assertNotNull(optimized);
+        assertFalse(contains(optimized, "tEXt"));
+        assertTrue(contains(optimized, "gAMA"));
+        assertSamePixels(decode(original), decode(optimized));
+    }
+
+    @Test
+    void pngOverDecodedLimitIsLeftAlone() throws IOException {
+        byte[] encoded = encode(image(BufferedImage.TYPE_INT_RGB), "png");
+
+        assertNull(PngRecompressor.optimize(encoded, false, 9, 1024));
+    }
+
+    @Test
+    void jpegStrippingKeepsCompressedDataByteForByte() throws IOException {
+        byte[] encoded = encode(image(BufferedImage.TYPE_INT_RGB), "jpg");
+        byte[] original = concat(Arrays.copyOfRange(encoded, 0, 2),
+                jpegSegment(0xFE, "taken by a camera".getBytes(StandardCharsets.ISO_8859_1)),
+                exif(1),
+                jpegSegment(0xED, "Photoshop 3.0\0".getBytes(StandardCharsets.ISO_8859_1)),
+                Arrays.copyOfRange(encoded, 2, encoded.length),
+                "trailing".getBytes(StandardCharsets.ISO_8859_1));
+
+        byte[] stripped = JpegMetadataStripper.strip(original, false);
+
+        // 去掉的只有插入的元数据段与 EOI 之后的数据，其余字节（含压缩数据）与编码结果完全相同
+        assertArrayEquals(encoded, stripped);
+        assertSamePixels(decode(original), decode(stripped));
+    }
+
+    @Test
+    void jpegKeepsExifWithOrientation() throws IOException {
+        byte[] encoded = encode(image(BufferedImage.TYPE_INT_RGB), "jpg");
+        byte[] rotated = exif(6);
+        byte[] original = concat(Arrays.copyOfRange(encoded, 0, 2), rotated, Arrays.copyOfRange(encoded, 2, encoded.length));
+
+        byte[] stripped = JpegMetadataStripper.strip(original, false);
+
+        assertArrayEquals(original, stripped);
+    }
+
+    @Test
+    void truncatedJpegIsLeftAlone() throws IOException {
+        byte[] encoded = encode(image(BufferedImage.TYPE_INT_RGB), "jpg");
+
+        assertNull(JpegMetadataStripper.strip(Arrays.copyOf(encoded, encoded.length / 2), false));
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.anicmv.ratelimit;
+
+import com.github.anicmv.config.RateLimitProperties;
+import com.github.anicmv.service.FileValidationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link ClientRateLimiter} 的客户端识别、按客户端限流、事后计费与淘汰
+ */
+class ClientRateLimiterTest {
+
+    private RateLimitProperties properties;
+    private ClientRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.setRequestsPerSecond(1);
+        properties.setRequestBurst(2);
+        properties.setBytesPerSecond(DataSize.ofKilobytes(1));
+        properties.setByteBurst(DataSize.ofKilobytes(4));
+        properties.setApiKeys(Map.of("gallery", "secret-1"));
+        limiter = new ClientRateLimiter();
+        ReflectionTestUtils.setField(limiter, "properties", properties);
+        ReflectionTestUtils.setField(limiter, "fileValidationService", new FileValidationService());
+        limiter.init();
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String apiKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/upload");
+        request.setRemoteAddr(remoteAddr);
+        if (apiKey != null) {
+            request.addHeader("X-Api-Key", apiKey);
+        }
+        return request;
+    }
+
+    @Test
+    void identifiesClientsByRegisteredKeyOrRemoteAddress() {
+        assertEquals("key:gallery", limiter.clientKey(request("10.0.0.1", "secret-1")));
+        assertEquals("key:gallery", limiter.clientKey(request("10.0.0.2", " secret-1 ")));
+        assertEquals("gallery", limiter.apiKeyName(request("10.0.0.1", "secret-1")));
+        // 未登记的 Key 可以伪造，不能用来换取新的限流桶
+        assertEquals("ip:10.0.0.1", limiter.clientKey(request("10.0.0.1", "forged")));
+        assertNull(limiter.apiKeyName(request("10.0.0.1", "forged")));
+        assertEquals("ip:10.0.0.1", limiter.clientKey(request("10.0.0.1", null)));
+    }
+
+    @Test
+    void limitsRequestsPerClient() {
+        assertTrue(limiter.tryAcquire("ip:a", 0).allowed());
+        assertTrue(limiter.tryAcquire("ip:a", 0).allowed());
+        ClientRateLimiter.Decision rejected = limiter.tryAcquire("ip:a", 0);
+        assertFalse(rejected.allowed());
+        assertEquals("requests", rejected.bucket());
+        assertTrue(rejected.retryAfterNanos() > 0);
+
+        assertTrue(limiter.tryAcquire("ip:b", 0).allowed());
+    }
+
+    @Test
+    void limitsBytesPerClient() {
+        assertTrue(limiter.tryAcquire("ip:a", DataSize.ofKilobytes(4).toBytes()).allowed());
+        ClientRateLimiter.Decision rejected = limiter.tryAcquire("ip:a", DataSize.ofKilobytes(1).toBytes());
+        assertFalse(rejected.allowed());
+        assertEquals("bytes", rejected.bucket());
+    }
+
+    @Test
+    void byteRejectionRefundsRequestToken() {
+        assertTrue(limiter.tryAcquire("ip:a", DataSize.ofKilobytes(4).toBytes()).allowed());
+        assertEquals("bytes", limiter.tryAcquire("ip:a", DataSize.ofKilobytes(1).toBytes()).bucket());
+        assertEquals("bytes", limiter.tryAcquire("ip:a", DataSize.ofKilobytes(1).toBytes()).bucket());
+
+        // 被字节桶拒绝的请求没有占用请求令牌，突发容量里还剩一个
+        assertTrue(limiter.tryAcquire("ip:a", 0).allowed());
+        assertEquals("requests", limiter.tryAcquire("ip:a", 0).bucket());
+    }
+
+    @Test
+    void chargedBytesDelayLaterRequests() {
+        assertTrue(limiter.tryAcquire("ip:a", 0).allowed());
+        limiter.charge("ip:a", DataSize.ofKilobytes(8).toBytes());
+
+        ClientRateLimiter.Decision rejected = limiter.tryAcquire("ip:a", 1);
+        assertFalse(rejected.allowed());
+        assertEquals("bytes", rejected.bucket());
+        assertTrue(limiter.tryAcquire("ip:b", 1).allowed());
+    }
+
+    @Test
+    void evictsLeastRecentlySeenClientWhenFull() {
+        properties.setMaxClients(2);
+        limiter.tryAcquire("ip:a", 0);
+        limiter.tryAcquire("ip:b", 0);
+        limiter.tryAcquire("ip:a", 0);
+        limiter.tryAcquire("ip:c", 0);
+
+        assertEquals(2, limiter.size());
+        // a 最近出现过，被淘汰的是 b；a 的桶仍在，第三个请求被拒绝
+        assertFalse(limiter.tryAcquire("ip:a", 0).allowed());
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void evictIdleKeepsClientsWhoseBucketsAreNotFull() {
+        limiter.tryAcquire("ip:a", 0);
+        limiter.evictIdle();
+        assertEquals(1, limiter.size());
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.anicmv.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link TokenBucket} 的放行与等待时间，时间由测试传入
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long T0 = 1_000 * SECOND;
+
+    @Test
+    void allowsBurstThenReportsWait() {
+        TokenBucket bucket = new TokenBucket(1, 2, T0);
+
+        assertEquals(0, bucket.tryAcquire(1, T0));
+        assertEquals(0, bucket.tryAcquire(1, T0));
+        assertEquals(SECOND, bucket.tryAcquire(1, T0));
+        // 被拒绝的请求不消耗令牌
+        assertEquals(SECOND / 2, bucket.tryAcquire(1, T0 + SECOND / 2));
+        assertEquals(0, bucket.tryAcquire(1, T0 + SECOND));
+        assertFalse(bucket.isFull(T0 + SECOND));
+        assertTrue(bucket.isFull(T0 + 3 * SECOND));
+    }
+
+    @Test
+    void refillsAtConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(10, 10, T0);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, bucket.tryAcquire(1, T0));
+        }
+        assertTrue(bucket.tryAcquire(1, T0) > 0);
+
+        long later = T0 + SECOND / 2;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(1, later));
+        }
+        assertTrue(bucket.tryAcquire(1, later) > 0);
+    }
+
+    @Test
+    void oversizedRequestPassesWhenFullAndIsRepaidLater() {
+        TokenBucket bucket = new TokenBucket(1, 2, T0);
+
+        assertEquals(0, bucket.tryAcquire(5, T0));
+        // 超出容量的 3 个令牌作为欠账，之后的请求要等到只差容量为止
+        assertEquals(4 * SECOND, bucket.tryAcquire(1, T0));
+        // 桶未满时，超过容量的请求要等到桶满
+        assertEquals(4 * SECOND, bucket.tryAcquire(5, T0 + SECOND));
+        assertEquals(0, bucket.tryAcquire(5, T0 + 5 * SECOND));
+    }
+
+    @Test
+    void chargeRecordsDebtEvenWithoutTokens() {
+        TokenBucket bucket = new TokenBucket(1, 2, T0);
+
+        assertEquals(0, bucket.tryAcquire(2, T0));
+        bucket.charge(3, T0);
+
+        // 欠账 3 个令牌，要等到只差容量为止
+        assertEquals(4 * SECOND, bucket.tryAcquire(1, T0));
+        assertTrue(bucket.isFull(T0 + 5 * SECOND));
+    }
+
+    @Test
+    void refundReturnsAcquiredTokens() {
+        TokenBucket bucket = new TokenBucket(1, 2, T0);
+
+        assertEquals(0, bucket.tryAcquire(1, T0));
+        assertEquals(0, bucket.tryAcquire(1, T0));
+        bucket.refund(1);
+
+        assertEquals(0, bucket.tryAcquire(1, T0));
+        assertTrue(bucket.tryAcquire(1, T0) > 0);
+    }
+}
@@ -0,0 +1,260 @@
+package com.github.anicmv.reconcile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.cache.ObjectCache;
+import com.github.anicmv.cache.ValidatorCache;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.enums.UploadStrategy;
+import com.github.anicmv.health.BackendHealthTracker;
+import com.github.anicmv.layout.DateKeyLayout;
+import com.github.anicmv.stats.BucketStatistics;
+import com.github.anicmv.support.InMemoryListing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author anicmv
+ * {@link AntiEntropyReconciler} 的修复规则：缺失复制、以最新副本为准、墓碑删除，以及修复写入的条件请求
+ */
+class AntiEntropyReconcilerTest {
+
+    private static final String KEY = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + "0ABCDEFGHJKMN.png";
+    private static final Instant HOUR_AGO = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+
+    @TempDir
+    Path stateDirectory;
+
+    private final S3StorageProperties storageProperties = new S3StorageProperties();
+    private final Map<String, NavigableMap<String, S3Object>> listings = new HashMap<>();
+    private final Map<String, S3Client> clients = new LinkedHashMap<>();
+    private final S3ClientManager clientManager = mock(S3ClientManager.class);
+    private final BucketStatistics bucketStatistics = mock(BucketStatistics.class);
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, S3StorageProperties.S3ServiceConfig> services = new LinkedHashMap<>();
+        for (String name : List.of("r2", "b2")) {
+            S3StorageProperties.S3ServiceConfig service = new S3StorageProperties.S3ServiceConfig();
+            service.setBucket("images-" + name);
+            services.put(name, service);
+            listings.put(name, new TreeMap<>());
+            clients.put(name, client(name));
+            when(clientManager.getClient(name)).thenReturn(clients.get(name));
+        }
+        when(clientManager.getAllEnabledClients()).thenReturn(clients);
+        storageProperties.setServices(services);
+        storageProperties.setUploadStrategy(UploadStrategy.ALL);
+        S3StorageProperties.Reconcile config = storageProperties.getReconcile();
+        config.setEnabled(true);
+        config.setLookbackDays(1);
+        config.setTreeFanout(4);
+        config.setTreeDepth(2);
+        config.setStateFile(stateDirectory.resolve("reconcile-state.json").toString());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private S3Client client(String name) {
+        S3Client client = mock(S3Client.class);
+        when(client.listObjectsV2(any(ListObjectsV2Request.class)))
+                .thenAnswer(invocation -> InMemoryListing.list(listings.get(name), invocation.getArgument(0)));
+        when(client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenAnswer(invocation -> new ListObjectsV2Iterable(client, invocation.getArgument(0)));
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(
+                GetObjectResponse.builder().contentType("image/png").contentLength(3L).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(new byte[3]))));
+        return client;
+    }
+
+    private AntiEntropyReconciler reconciler() {
+        BackendHealthTracker healthTracker = mock(BackendHealthTracker.class);
+        when(healthTracker.isRoutable(anyString())).thenReturn(true);
+
+        AntiEntropyReconciler reconciler = new AntiEntropyReconciler();
+        ReflectionTestUtils.setField(reconciler, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(reconciler, "clientManager", clientManager);
+        ReflectionTestUtils.setField(reconciler, "healthTracker", healthTracker);
+        ReflectionTestUtils.setField(reconciler, "keyLayout", new DateKeyLayout());
+        ReflectionTestUtils.setField(reconciler, "objectCache", mock(ObjectCache.class));
+        ReflectionTestUtils.setField(reconciler, "validatorCache", mock(ValidatorCache.class));
+        ReflectionTestUtils.setField(reconciler, "bucketStatistics", bucketStatistics);
+        ReflectionTestUtils.setField(reconciler, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(reconciler, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(reconciler, "executorService", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(reconciler, "listExecutor", (Executor) Runnable::run);
+        reconciler.restore();
+        return reconciler;
+    }
+
+    private void store(String service, String eTag, long size, Instant lastModified) {
+        listings.get(service).put(KEY, S3Object.builder()
+                .key(KEY)
+                .eTag("\"" + eTag + "\"")
+                .size(size)
+                .lastModified(lastModified)
+                .build());
+    }
+
+    private PutObjectRequest capturePut(String service) {
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(clients.get(service)).putObject(put.capture(), any(RequestBody.class));
+        return put.getValue();
+    }
+
+    private double repairs(String action, String result) {
+        return meterRegistry.counter("storage.reconcile.repairs", "action", action, "result", result).count();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> dirtyPrefixes(AntiEntropyReconciler reconciler) {
+        return (Set<String>) ReflectionTestUtils.getField(reconciler, "dirtyPrefixes");
+    }
+
+    @Test
+    void consistentReplicasAreLeftAlone() {
+        store("r2", "e1", 3, HOUR_AGO);
+        store("b2", "e1", 3, HOUR_AGO.plusSeconds(5));
+
+        reconciler().scheduledRun();
+
+        verify(clients.get("r2"), never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(clients.get("b2"), never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void missingCopyIsCreatedOnlyIfStillAbsent() {
+        store("r2", "e1", 3, HOUR_AGO);
+
+        AntiEntropyReconciler reconciler = reconciler();
+        reconciler.scheduledRun();
+
+        ArgumentCaptor<GetObjectRequest> get = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(clients.get("r2")).getObject(get.capture());
+        assertEquals("\"e1\"", get.getValue().ifMatch());
+        assertEquals("images-r2", get.getValue().bucket());
+
+        PutObjectRequest put = capturePut("b2");
+        assertEquals("images-b2", put.bucket());
+        assertEquals(KEY, put.key());
+        assertEquals("*", put.ifNoneMatch());
+        assertNull(put.ifMatch());
+        verify(bucketStatistics).recordPut("b2", KEY, 3);
+        assertEquals(1, repairs("copy", "success"));
+        assertTrue(dirtyPrefixes(reconciler).isEmpty());
+    }
+
+    @Test
+    void staleCopyIsReplacedOnlyIfUnchanged() {
+        store("r2", "e1", 3, HOUR_AGO.plusSeconds(60));
+        store("b2", "e0", 2, HOUR_AGO);
+
+        reconciler().scheduledRun();
+
+        PutObjectRequest put = capturePut("b2");
+        assertEquals("\"e0\"", put.ifMatch());
+        assertNull(put.ifNoneMatch());
+        verify(clients.get("r2"), never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(bucketStatistics).recordDelete("b2", KEY, 2);
+        verify(bucketStatistics).recordPut("b2", KEY, 3);
+    }
+
+    @Test
+    void concurrentWriteDuringRepairIsAConflict() {
+        store("r2", "e1", 3, HOUR_AGO);
+        when(clients.get("b2").putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(412).message("Precondition Failed").build());
+
+        AntiEntropyReconciler reconciler = reconciler();
+        reconciler.scheduledRun();
+
+        assertEquals(1, repairs("copy", "conflict"));
+        assertEquals(0, repairs("copy", "failure"));
+        assertEquals(Set.of(KEY.substring(0, 8)), dirtyPrefixes(reconciler));
+    }
+
+    @Test
+    void tombstoneDeletesOlderRemainingCopyInsteadOfCopyingItBack() {
+        store("r2", "e1", 3, HOUR_AGO);
+        when(clients.get("r2").headObject(any(HeadObjectRequest.class)))
+                .thenReturn(HeadObjectResponse.builder().lastModified(HOUR_AGO).build());
+
+        reconciler().recordPartialDelete(KEY);
+        assertTrue(Files.exists(stateDirectory.resolve("reconcile-state.json")));
+
+        // 墓碑在重启后仍然有效
+        reconciler().scheduledRun();
+
+        ArgumentCaptor<DeleteObjectRequest> delete = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+        verify(clients.get("r2")).deleteObject(delete.capture());
+        assertEquals(KEY, delete.getValue().key());
+        assertEquals("images-r2", delete.getValue().bucket());
+        verify(clients.get("b2"), never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(bucketStatistics).recordDelete("r2", KEY, 3);
+    }
+
+    @Test
+    void copyWrittenAfterTombstoneIsKept() {
+        AntiEntropyReconciler reconciler = reconciler();
+        reconciler.recordPartialDelete(KEY);
+        store("r2", "e2", 3, Instant.now().plusSeconds(60));
+
+        reconciler.scheduledRun();
+
+        verify(clients.get("r2"), never()).deleteObject(any(DeleteObjectRequest.class));
+        assertEquals("*", capturePut("b2").ifNoneMatch());
+    }
+
+    @Test
+    void copyRewrittenBetweenListingAndDeleteIsKept() {
+        store("r2", "e1", 3, HOUR_AGO);
+        when(clients.get("r2").headObject(any(HeadObjectRequest.class)))
+                .thenReturn(HeadObjectResponse.builder().lastModified(Instant.now().plusSeconds(60)).build());
+
+        AntiEntropyReconciler reconciler = reconciler();
+        reconciler.recordPartialDelete(KEY);
+        reconciler.scheduledRun();
+
+        verify(clients.get("r2"), never()).deleteObject(any(DeleteObjectRequest.class));
+        assertEquals(1, repairs("delete", "conflict"));
+        assertEquals(Set.of(KEY.substring(0, 8)), dirtyPrefixes(reconciler));
+    }
+
+    @Test
+    void dryRunOnlyReports() {
+        storageProperties.getReconcile().setDryRun(true);
+        store("r2", "e1", 3, HOUR_AGO);
+
+        AntiEntropyReconciler reconciler = reconciler();
+        reconciler.scheduledRun();
+
+        verify(clients.get("r2"), never()).getObject(any(GetObjectRequest.class));
+        verify(clients.get("b2"), never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        assertEquals(Set.of(KEY.substring(0, 8)), dirtyPrefixes(reconciler));
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.anicmv.reconcile;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link MerkleTree} 的结构与差异定位
+ */
+class MerkleTreeTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static List<MerkleTree.Entry> entries(int count) {
+        List<MerkleTree.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String key = "20260101/" + i + ".png";
+            entries.add(new MerkleTree.Entry(key, key, "etag" + i, 100 + i, NOW));
+        }
+        return entries;
+    }
+
+    private static int leafOf(MerkleTree tree, String logicalKey, int leafCount) {
+        for (int i = 0; i < leafCount; i++) {
+            if (tree.leaf(i).containsKey(logicalKey)) {
+                return i;
+            }
+        }
+        throw new AssertionError("键不在任何叶子中: " + logicalKey);
+    }
+
+    @Test
+    void identicalListingsHaveNoDifferingLeaves() {
+        MerkleTree a = MerkleTree.build(entries(200), 4, 2, true);
+        MerkleTree b = MerkleTree.build(entries(200), 4, 2, true);
+
+        assertArrayEquals(a.root(), b.root());
+        assertTrue(MerkleTree.differingLeaves(List.of(a, b)).isEmpty());
+    }
+
+    @Test
+    void changedETagIsLocatedToItsLeaf() {
+        List<MerkleTree.Entry> changed = entries(200);
+        MerkleTree.Entry original = changed.get(37);
+        changed.set(37, new MerkleTree.Entry(original.logicalKey(), original.storageKey(), "other",
+                original.size(), original.lastModified()));
+
+        MerkleTree a = MerkleTree.build(entries(200), 4, 2, true);
+        MerkleTree b = MerkleTree.build(changed, 4, 2, true);
+
+        assertEquals(List.of(leafOf(a, original.logicalKey(), 16)), MerkleTree.differingLeaves(List.of(a, b)));
+    }
+
+    @Test
+    void missingKeyIsLocatedInAnyOfSeveralTrees() {
+        List<MerkleTree.Entry> missing = entries(200);
+        MerkleTree.Entry removed = missing.remove(120);
+
+        MerkleTree a = MerkleTree.build(entries(200), 4, 2, true);
+        MerkleTree b = MerkleTree.build(entries(200), 4, 2, true);
+        MerkleTree c = MerkleTree.build(missing, 4, 2, true);
+
+        int leaf = leafOf(a, removed.logicalKey(), 16);
+        assertEquals(List.of(leaf), MerkleTree.differingLeaves(List.of(a, b, c)));
+        assertFalse(c.leaf(leaf).containsKey(removed.logicalKey()));
+    }
+
+    @Test
+    void eTagIsIgnoredWhenNotCompared() {
+        List<MerkleTree.Entry> changed = entries(50);
+        MerkleTree.Entry original = changed.get(3);
+        changed.set(3, new MerkleTree.Entry(original.logicalKey(), original.storageKey(), "other",
+                original.size(), original.lastModified()));
+
+        MerkleTree a = MerkleTree.build(entries(50), 4, 2, false);
+        MerkleTree b = MerkleTree.build(changed, 4, 2, false);
+
+        assertTrue(MerkleTree.differingLeaves(List.of(a, b)).isEmpty());
+    }
+
+    @Test
+    void storageKeyAndLastModifiedDoNotAffectDigest() {
+        // 同一逻辑键在不同后端可能位于不同布局的键下，修改时间也各不相同
+        List<MerkleTree.Entry> moved = new ArrayList<>();
+        for (MerkleTree.Entry entry : entries(50)) {
+            moved.add(new MerkleTree.Entry(entry.logicalKey(), "_s/0/" + entry.storageKey(), entry.eTag(),
+                    entry.size(), NOW.plusSeconds(60)));
+        }
+
+        assertArrayEquals(MerkleTree.build(entries(50), 4, 2, true).root(), MerkleTree.build(moved, 4, 2, true).root());
+    }
+}
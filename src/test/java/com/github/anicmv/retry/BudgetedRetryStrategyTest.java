@@ -0,0 +1,116 @@
+package com.github.anicmv.retry;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.metrics.StorageMetrics;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.retries.api.*;
+
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author anicmv
+ * {@link BudgetedRetryStrategy} 重试消耗预算、成功返还、预算耗尽后不再重试，以及未真正重试时返还令牌
+ */
+class BudgetedRetryStrategyTest {
+
+    private static final SdkServiceException SERVER_ERROR = SdkServiceException.builder().statusCode(500).build();
+
+    private final S3StorageProperties.RetryPolicy policy = new S3StorageProperties.RetryPolicy();
+    private final StorageMetrics storageMetrics = mock(StorageMetrics.class);
+
+    private BudgetedRetryStrategy strategy(RetryBudget budget) {
+        policy.setRetryCost(5);
+        policy.setTimeoutCost(10);
+        policy.setSuccessRefund(1);
+        return new BudgetedRetryStrategy("r2", policy, budget, storageMetrics);
+    }
+
+    private static RetryToken initialToken(RetryStrategy strategy) {
+        return strategy.acquireInitialToken(AcquireInitialTokenRequest.create("r2")).token();
+    }
+
+    private static RefreshRetryTokenResponse refresh(RetryStrategy strategy, RetryToken token, Throwable failure) {
+        return strategy.refreshRetryToken(RefreshRetryTokenRequest.builder().token(token).failure(failure).build());
+    }
+
+    @Test
+    void retryConsumesBudgetAndSuccessRefunds() {
+        RetryBudget budget = new RetryBudget(20);
+        BudgetedRetryStrategy strategy = strategy(budget);
+
+        RetryToken token = refresh(strategy, initialToken(strategy), SERVER_ERROR).token();
+        assertEquals(15, budget.available());
+
+        strategy.recordSuccess(RecordSuccessRequest.create(token));
+        assertEquals(16, budget.available());
+        verify(storageMetrics).recordRetry("r2", "server_error", StorageMetrics.RETRY_ATTEMPTED);
+    }
+
+    @Test
+    void attemptTimeoutCostsMore() {
+        RetryBudget budget = new RetryBudget(20);
+        BudgetedRetryStrategy strategy = strategy(budget);
+
+        refresh(strategy, initialToken(strategy), ApiCallAttemptTimeoutException.create(1000));
+
+        assertEquals(10, budget.available());
+        verify(storageMetrics).recordTimeout("r2", StorageMetrics.TIMEOUT_ATTEMPT);
+        verify(storageMetrics).recordRetry("r2", "timeout", StorageMetrics.RETRY_ATTEMPTED);
+    }
+
+    @Test
+    void exhaustedBudgetStopsRetrying() {
+        RetryBudget budget = new RetryBudget(7);
+        BudgetedRetryStrategy strategy = strategy(budget);
+        refresh(strategy, initialToken(strategy), SERVER_ERROR);
+        assertEquals(2, budget.available());
+
+        RetryToken token = initialToken(strategy);
+        assertThrows(TokenAcquisitionFailedException.class, () -> refresh(strategy, token, SERVER_ERROR));
+
+        assertEquals(2, budget.available());
+        verify(storageMetrics).recordRetry("r2", "server_error", StorageMetrics.RETRY_BUDGET_EXHAUSTED);
+
+        // 成功返还令牌后恢复重试
+        for (int i = 0; i < 3; i++) {
+            strategy.recordSuccess(RecordSuccessRequest.create(initialToken(strategy)));
+        }
+        assertDoesNotThrow(() -> refresh(strategy, initialToken(strategy), SERVER_ERROR));
+    }
+
+    @Test
+    void lastAttemptReturnsItsTokens() {
+        policy.setMaxAttempts(2);
+        RetryBudget budget = new RetryBudget(20);
+        BudgetedRetryStrategy strategy = strategy(budget);
+
+        RetryToken token = refresh(strategy, initialToken(strategy), SERVER_ERROR).token();
+        assertEquals(15, budget.available());
+
+        // 已达到最大尝试次数，没有真正重试
+        assertThrows(TokenAcquisitionFailedException.class, () -> refresh(strategy, token, SERVER_ERROR));
+        assertEquals(15, budget.available());
+    }
+
+    @Test
+    void cancelledOrClientErrorsAreNotRetriedAndCostNothing() {
+        RetryBudget budget = new RetryBudget(20);
+        BudgetedRetryStrategy strategy = strategy(budget);
+
+        assertThrows(TokenAcquisitionFailedException.class,
+                () -> refresh(strategy, initialToken(strategy), AbortedException.create("cancelled")));
+        assertThrows(TokenAcquisitionFailedException.class,
+                () -> refresh(strategy, initialToken(strategy), SdkServiceException.builder().statusCode(404).build()));
+
+        assertEquals(20, budget.available());
+        assertFalse(BudgetedRetryStrategy.isRetryable(new RuntimeException(new InterruptedException())));
+        assertTrue(BudgetedRetryStrategy.isRetryable(new SocketTimeoutException("read timed out")));
+    }
+}
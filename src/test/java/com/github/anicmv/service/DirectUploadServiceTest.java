@@ -0,0 +1,288 @@
+package com.github.anicmv.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.direct.DirectUploadStore;
+import com.github.anicmv.direct.PendingDirectUpload;
+import com.github.anicmv.dto.upload.UploadResult;
+import com.github.anicmv.exception.FileValidationException;
+import com.github.anicmv.exception.UploadSessionException;
+import com.github.anicmv.health.BackendHealthTracker;
+import com.github.anicmv.layout.DateKeyLayout;
+import com.github.anicmv.reconcile.AntiEntropyReconciler;
+import com.github.anicmv.stats.BucketStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author anicmv
+ * {@link DirectUploadService} 的副本登记、完成回调的校验、以 ETag 为条件的转正、暂存对象删除与复制
+ */
+class DirectUploadServiceTest {
+
+    private static final String ID = "0123456789abcdef0123456789abcdef";
+    private static final String KEY = "20250101/0ABCDEFGHJKMN.png";
+    private static final String STAGING_KEY = "_staging/direct/" + ID;
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+    private static final String STAGED_ETAG = "\"staged\"";
+    private static final String PROMOTED_ETAG = "\"promoted\"";
+
+    @TempDir
+    Path directory;
+
+    private final S3StorageProperties storageProperties = new S3StorageProperties();
+    private final S3Client r2 = mock(S3Client.class);
+    private final S3Client b2 = mock(S3Client.class);
+    private final ImageUploadService imageUploadService = mock(ImageUploadService.class);
+    private final FileValidationService fileValidationService = mock(FileValidationService.class);
+    private final BackendHealthTracker healthTracker = mock(BackendHealthTracker.class);
+    private final BucketStatistics bucketStatistics = mock(BucketStatistics.class);
+    private final AntiEntropyReconciler antiEntropyReconciler = mock(AntiEntropyReconciler.class);
+    private final S3ClientManager clientManager = mock(S3ClientManager.class);
+    private DirectUploadStore pending;
+    private DirectUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, S3StorageProperties.S3ServiceConfig> services = new LinkedHashMap<>();
+        for (String serviceName : List.of("r2", "b2")) {
+            S3StorageProperties.S3ServiceConfig config = new S3StorageProperties.S3ServiceConfig();
+            config.setBucket(serviceName + "-images");
+            services.put(serviceName, config);
+        }
+        storageProperties.setServices(services);
+        storageProperties.getDirectUpload().setEnabled(true);
+        storageProperties.getDirectUpload().setPendingDirectory(directory.toString());
+
+        pending = new DirectUploadStore();
+        ReflectionTestUtils.setField(pending, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(pending, "objectMapper", new ObjectMapper().findAndRegisterModules());
+
+        when(clientManager.getClient("r2")).thenReturn(r2);
+        when(clientManager.getClient("b2")).thenReturn(b2);
+        when(healthTracker.isRoutable(anyString())).thenReturn(true);
+
+        when(r2.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentLength((long) CONTENT.length)
+                .contentType("image/png")
+                .eTag(STAGED_ETAG)
+                .build());
+        when(r2.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(
+                ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), new byte[16]));
+        when(r2.copyObject(any(CopyObjectRequest.class))).thenReturn(CopyObjectResponse.builder()
+                .copyObjectResult(CopyObjectResult.builder().eTag(PROMOTED_ETAG).build())
+                .build());
+        when(r2.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) CONTENT.length).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(CONTENT))));
+
+        service = new DirectUploadService();
+        ReflectionTestUtils.setField(service, "imageUploadService", imageUploadService);
+        ReflectionTestUtils.setField(service, "clientManager", clientManager);
+        ReflectionTestUtils.setField(service, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(service, "fileValidationService", fileValidationService);
+        ReflectionTestUtils.setField(service, "healthTracker", healthTracker);
+        ReflectionTestUtils.setField(service, "keyLayout", new DateKeyLayout());
+        ReflectionTestUtils.setField(service, "bucketStatistics", bucketStatistics);
+        ReflectionTestUtils.setField(service, "antiEntropyReconciler", antiEntropyReconciler);
+        ReflectionTestUtils.setField(service, "pending", pending);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        // 后台复制在调用线程中执行
+        ReflectionTestUtils.setField(service, "executorService", (Executor) Runnable::run);
+    }
+
+    private PendingDirectUpload stage() {
+        PendingDirectUpload upload = new PendingDirectUpload(ID, "photo.png", "0ABCDEFGHJKMN.png", KEY, KEY,
+                STAGING_KEY, "image/png", CONTENT.length, "r2", List.of("b2"), Instant.now().plusSeconds(3600));
+        pending.save(upload);
+        return upload;
+    }
+
+    private void verifyStagingDeleted() {
+        ArgumentCaptor<DeleteObjectRequest> delete = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+        verify(r2).deleteObject(delete.capture());
+        assertEquals("r2-images", delete.getValue().bucket());
+        assertEquals(STAGING_KEY, delete.getValue().key());
+    }
+
+    @Test
+    void createRecordsEjectedTargetsAsReplicas() throws Exception {
+        Map<String, S3Client> targets = new LinkedHashMap<>();
+        targets.put("b2", b2);
+        targets.put("r2", r2);
+        when(imageUploadService.getTargetClients()).thenReturn(targets);
+        // b2 当前被摘除，只有 r2 可以签发
+        when(healthTracker.rankHealthy(anyCollection())).thenReturn(List.of("r2"));
+        when(imageUploadService.generateFileName("photo.png")).thenReturn("0ABCDEFGHJKMN.png");
+        when(imageUploadService.generateDatePathPrefix()).thenReturn("20250101/");
+
+        SdkHttpRequest httpRequest = mock(SdkHttpRequest.class);
+        when(httpRequest.method()).thenReturn(SdkHttpMethod.PUT);
+        PresignedPutObjectRequest presigned = mock(PresignedPutObjectRequest.class);
+        when(presigned.expiration()).thenReturn(Instant.now().plusSeconds(900));
+        when(presigned.signedHeaders()).thenReturn(Map.of("host", List.of("r2.example.com")));
+        when(presigned.httpRequest()).thenReturn(httpRequest);
+        when(presigned.url()).thenReturn(new URL("https://r2.example.com/r2-images/upload"));
+        S3Presigner preSigner = mock(S3Presigner.class);
+        when(preSigner.presignPutObject(any(PutObjectPresignRequest.class))).thenReturn(presigned);
+        when(clientManager.getPreSigner("r2")).thenReturn(preSigner);
+
+        service.create("photo.png", "image/png", CONTENT.length, new MockHttpServletRequest());
+
+        PendingDirectUpload upload = pending.all().iterator().next();
+        assertEquals("r2", upload.serviceName());
+        assertEquals(List.of("b2"), upload.replicas());
+        assertEquals(KEY, upload.logicalKey());
+    }
+
+    @Test
+    void completePromotesVerifiedObjectAndReplicates() {
+        stage();
+
+        service.complete(ID);
+
+        ArgumentCaptor<GetObjectRequest> header = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(r2).getObjectAsBytes(header.capture());
+        assertEquals(STAGED_ETAG, header.getValue().ifMatch());
+        assertEquals("bytes=0-15", header.getValue().range());
+        verify(fileValidationService).validateHeader(any(byte[].class), eq("image/png"));
+
+        ArgumentCaptor<CopyObjectRequest> copy = ArgumentCaptor.forClass(CopyObjectRequest.class);
+        verify(r2).copyObject(copy.capture());
+        assertEquals(STAGING_KEY, copy.getValue().sourceKey());
+        assertEquals(KEY, copy.getValue().destinationKey());
+        assertEquals(STAGED_ETAG, copy.getValue().copySourceIfMatch());
+        verifyStagingDeleted();
+
+        // 复制到其余后端时以转正后的 ETag 为条件读取
+        ArgumentCaptor<GetObjectRequest> source = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(r2).getObject(source.capture());
+        assertEquals(PROMOTED_ETAG, source.getValue().ifMatch());
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(b2).putObject(put.capture(), any(RequestBody.class));
+        assertEquals("b2-images", put.getValue().bucket());
+        assertEquals(KEY, put.getValue().key());
+
+        verify(bucketStatistics).recordPut("r2", KEY, CONTENT.length);
+        verify(bucketStatistics).recordPut("b2", KEY, CONTENT.length);
+        verify(antiEntropyReconciler, never()).markDirty(anyString());
+        ArgumentCaptor<UploadResult> result = ArgumentCaptor.forClass(UploadResult.class);
+        verify(imageUploadService).uploadResponse(eq("photo.png"), result.capture());
+        assertTrue(result.getValue().allSuccessfulUpload());
+        assertNull(pending.get(ID));
+    }
+
+    @Test
+    void sizeMismatchDeletesStagingObject() {
+        stage();
+        when(r2.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentLength((long) CONTENT.length + 1)
+                .contentType("image/png")
+                .eTag(STAGED_ETAG)
+                .build());
+
+        assertThrows(FileValidationException.class, () -> service.complete(ID));
+
+        verify(r2, never()).copyObject(any(CopyObjectRequest.class));
+        verifyStagingDeleted();
+        assertNull(pending.get(ID));
+    }
+
+    @Test
+    void invalidHeaderDeletesStagingObject() {
+        stage();
+        doThrow(new FileValidationException("文件内容与类型不符"))
+                .when(fileValidationService).validateHeader(any(byte[].class), anyString());
+
+        assertThrows(FileValidationException.class, () -> service.complete(ID));
+
+        verify(r2, never()).copyObject(any(CopyObjectRequest.class));
+        verifyStagingDeleted();
+        verifyNoInteractions(b2);
+    }
+
+    @Test
+    void objectNotYetUploadedKeepsPending() {
+        stage();
+        when(r2.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+
+        UploadSessionException e = assertThrows(UploadSessionException.class, () -> service.complete(ID));
+
+        assertEquals(UploadSessionException.INCOMPLETE, e.getErrorCode());
+        assertNotNull(pending.get(ID));
+        verify(r2, never()).deleteObject(any(DeleteObjectRequest.class));
+    }
+
+    @Test
+    void objectReplacedDuringVerificationKeepsPending() {
+        stage();
+        when(r2.copyObject(any(CopyObjectRequest.class)))
+                .thenThrow(S3Exception.builder().statusCode(412).message("PreconditionFailed").build());
+
+        UploadSessionException e = assertThrows(UploadSessionException.class, () -> service.complete(ID));
+
+        assertEquals(UploadSessionException.INCOMPLETE, e.getErrorCode());
+        assertNotNull(pending.get(ID));
+        verify(r2, never()).deleteObject(any(DeleteObjectRequest.class));
+        verifyNoInteractions(b2);
+    }
+
+    @Test
+    void unavailableReplicaIsMarkedDirty() {
+        stage();
+        when(healthTracker.isRoutable("b2")).thenReturn(false);
+
+        service.complete(ID);
+
+        verifyNoInteractions(b2);
+        verify(antiEntropyReconciler).markDirty(KEY);
+        verify(bucketStatistics).recordPut("r2", KEY, CONTENT.length);
+    }
+
+    @Test
+    void failedReplicationIsMarkedDirty() {
+        stage();
+        when(b2.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(503).message("SlowDown").build());
+
+        service.complete(ID);
+
+        verify(antiEntropyReconciler).markDirty(KEY);
+        verify(bucketStatistics, never()).recordPut(eq("b2"), anyString(), anyLong());
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.anicmv.service;
+
+import com.github.anicmv.config.ExecutorConfig;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.exception.StorageServiceException;
+import com.github.anicmv.health.BackendHealth;
+import com.github.anicmv.health.BackendHealthTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author anicmv
+ * {@link HedgedReadService} 超过阈值才对冲、采用最先可用的结果并释放其余结果，读取线程用尽时不再对冲
+ */
+class HedgedReadServiceTest {
+
+    private static final List<String> REPLICAS = List.of("r2", "b2");
+
+    private final S3StorageProperties storageProperties = new S3StorageProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Queue<String> calls = new ConcurrentLinkedQueue<>();
+    private final Queue<String> discarded = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean slowReleased = new AtomicBoolean();
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        S3StorageProperties.HedgedRead config = storageProperties.getHedgedRead();
+        config.setMinDelay(Duration.ofMillis(1));
+        config.setDefaultDelay(Duration.ofMillis(20));
+        storageProperties.getExecutor().setReadThreads(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        slowReleased.set(true);
+        executor.shutdown();
+    }
+
+    private HedgedReadService service() {
+        BackendHealthTracker healthTracker = mock(BackendHealthTracker.class);
+        when(healthTracker.rankHealthy(anyCollection())).thenReturn(REPLICAS);
+        when(healthTracker.get(anyString())).thenAnswer(invocation ->
+                new BackendHealth(invocation.getArgument(0), storageProperties.getHealth()));
+
+        executor = new ExecutorConfig().hedgedReadExecutor(storageProperties, meterRegistry);
+        executor.initialize();
+        HedgedReadService service = new HedgedReadService();
+        ReflectionTestUtils.setField(service, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(service, "healthTracker", healthTracker);
+        ReflectionTestUtils.setField(service, "executor", executor);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        return service;
+    }
+
+    /**
+     * r2 在放行前不返回，且不响应中断，模拟已经在传输中的慢响应
+     */
+    private String slowPrimary(String serviceName) {
+        calls.add(serviceName);
+        if ("r2".equals(serviceName)) {
+            while (!slowReleased.get()) {
+                Thread.onSpinWait();
+            }
+        }
+        return serviceName;
+    }
+
+    private double hedged() {
+        return meterRegistry.counter("storage.read.hedged", "operation", "get").count();
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() {
+        String result = service().read("get", REPLICAS, serviceName -> {
+            calls.add(serviceName);
+            return serviceName;
+        }, Objects::nonNull, discarded::add);
+
+        assertEquals("r2", result);
+        assertEquals(List.of("r2"), List.copyOf(calls));
+        assertEquals(0, hedged());
+        assertTrue(discarded.isEmpty());
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndLateResultDiscarded() throws Exception {
+        String result = service().read("get", REPLICAS, this::slowPrimary, Objects::nonNull, discarded::add);
+
+        assertEquals("b2", result);
+        assertEquals(1, hedged());
+
+        // 慢副本在采用结果之后才返回，它的结果由读取线程自己释放
+        slowReleased.set(true);
+        executor.getThreadPoolExecutor().shutdown();
+        assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of("r2"), List.copyOf(discarded));
+    }
+
+    @Test
+    void unacceptableResultTriesNextReplicaWithoutWaiting() {
+        String result = service().read("get", REPLICAS, serviceName -> {
+            calls.add(serviceName);
+            return "r2".equals(serviceName) ? "missing" : serviceName;
+        }, value -> !"missing".equals(value), discarded::add);
+
+        assertEquals("b2", result);
+        assertEquals(List.of("missing"), List.copyOf(discarded));
+    }
+
+    @Test
+    void failureOnEveryReplicaIsReported() {
+        HedgedReadService service = service();
+        StorageServiceException e = assertThrows(StorageServiceException.class,
+                () -> service.read("get", REPLICAS, serviceName -> {
+                    throw new IllegalStateException(serviceName + " down");
+                }, Objects::nonNull, discarded::add));
+
+        assertEquals("b2 down", e.getCause().getMessage());
+    }
+
+    @Test
+    void exhaustedReadPoolWaitsInsteadOfHedging() throws Exception {
+        storageProperties.getExecutor().setReadThreads(1);
+        HedgedReadService service = service();
+        // 对冲被拒绝之后才放行慢副本
+        Thread releaser = new Thread(() -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (rejected() == 0 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            slowReleased.set(true);
+        });
+        releaser.start();
+
+        String result = service.read("get", REPLICAS, this::slowPrimary, Objects::nonNull, discarded::add);
+
+        assertEquals("r2", result);
+        assertEquals(List.of("r2"), List.copyOf(calls));
+        assertEquals(0, hedged());
+        assertEquals(1, rejected());
+        releaser.join();
+    }
+
+    private double rejected() {
+        return meterRegistry.counter("storage.read.hedge.rejected", "operation", "get").count();
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.anicmv.service;
+
+import com.github.anicmv.cache.CachedObject;
+import com.github.anicmv.cache.ObjectCache;
+import com.github.anicmv.cache.ValidatorCache;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.layout.DateKeyLayout;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author anicmv
+ * {@link ObjectContentService} 的单区间透传、多区间合并后一次读取、完整内容回退与 416
+ */
+class ObjectContentServiceTest {
+
+    private static final String KEY = "20250101/0ABCDEFGHJKMN.png";
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+    private static final String ETAG = "\"e1\"";
+
+    @TempDir
+    Path cacheDirectory;
+
+    private final S3Client client = mock(S3Client.class);
+    private final ObjectCache objectCache = mock(ObjectCache.class);
+    private ObjectContentService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentLength((long) CONTENT.length)
+                .contentType("image/png")
+                .eTag(ETAG)
+                .build());
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> get(invocation.getArgument(0)));
+
+        S3ClientManager clientManager = mock(S3ClientManager.class);
+        when(clientManager.getAllEnabledClients()).thenReturn(Map.of("r2", client));
+        S3StorageProperties storageProperties = new S3StorageProperties();
+        S3StorageProperties.S3ServiceConfig config = new S3StorageProperties.S3ServiceConfig();
+        config.setBucket("images");
+        storageProperties.setServices(Map.of("r2", config));
+
+        // 只有一个副本，对冲读取直接在它上面执行
+        HedgedReadService hedgedReadService = mock(HedgedReadService.class);
+        when(hedgedReadService.read(anyString(), anyCollection(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<HedgedReadService.ReadCall<?>>getArgument(2).call("r2"));
+
+        service = new ObjectContentService();
+        ReflectionTestUtils.setField(service, "clientManager", clientManager);
+        ReflectionTestUtils.setField(service, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(service, "hedgedReadService", hedgedReadService);
+        ReflectionTestUtils.setField(service, "objectCache", objectCache);
+        ReflectionTestUtils.setField(service, "validatorCache", mock(ValidatorCache.class));
+        ReflectionTestUtils.setField(service, "keyLayout", new DateKeyLayout());
+    }
+
+    private static ResponseInputStream<GetObjectResponse> get(GetObjectRequest request) {
+        int start = 0;
+        int end = CONTENT.length - 1;
+        String contentRange = null;
+        if (request.range() != null) {
+            String[] bounds = request.range().substring("bytes=".length()).split("-");
+            start = Integer.parseInt(bounds[0]);
+            if (start >= CONTENT.length) {
+                throw S3Exception.builder().statusCode(416).message("InvalidRange").build();
+            }
+            end = Math.min(Integer.parseInt(bounds[1]), CONTENT.length - 1);
+            contentRange = "bytes " + start + "-" + end + "/" + CONTENT.length;
+        }
+        byte[] body = Arrays.copyOfRange(CONTENT, start, end + 1);
+        return new ResponseInputStream<>(GetObjectResponse.builder()
+                .contentType("image/png")
+                .contentLength((long) body.length)
+                .contentRange(contentRange)
+                .eTag(ETAG)
+                .build(), AbortableInputStream.create(new ByteArrayInputStream(body)));
+    }
+
+    private MockHttpServletResponse stream(String range) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.streamContent(KEY.substring(9), KEY.substring(0, 9), request, response);
+        return response;
+    }
+
+    private static String body(MockHttpServletResponse response) {
+        return new String(response.getContentAsByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private GetObjectRequest onlyGet() {
+        ArgumentCaptor<GetObjectRequest> get = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client).getObject(get.capture());
+        return get.getValue();
+    }
+
+    @Test
+    void singleRangeIsPassedThrough() throws Exception {
+        MockHttpServletResponse response = stream("bytes=2-5");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("2345", body(response));
+        assertEquals("bytes=2-5", onlyGet().range());
+        verify(client, never()).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    void multipleRangesAreCoalescedAndReadOnce() throws Exception {
+        MockHttpServletResponse response = stream("bytes=10-12, 0-1, 3-4, 11-14");
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = body(response);
+        assertEquals(response.getContentLengthLong(), response.getContentAsByteArray().length);
+        // 10-12 与 11-14 重叠，合并为一个部分；各部分按起点排序
+        assertEquals(3, body.split("Content-Range: ").length - 1);
+        int first = body.indexOf("Content-Range: bytes 0-1/20\r\n\r\n01\r\n");
+        int second = body.indexOf("Content-Range: bytes 3-4/20\r\n\r\n34\r\n");
+        int third = body.indexOf("Content-Range: bytes 10-14/20\r\n\r\nabcde\r\n");
+        assertTrue(first >= 0 && first < second && second < third, body);
+
+        GetObjectRequest get = onlyGet();
+        assertEquals("bytes=0-14", get.range());
+        assertEquals(ETAG, get.ifMatch());
+    }
+
+    @Test
+    void adjacentRangesBecomeSingleRange() throws Exception {
+        MockHttpServletResponse response = stream("bytes=5-9, 0-4");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-9/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("0123456789", body(response));
+        assertEquals("bytes=0-9", onlyGet().range());
+    }
+
+    @Test
+    void rangesLongerThanObjectServeFullContent() throws Exception {
+        MockHttpServletResponse response = stream("bytes=0-15, 5-19");
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(new String(CONTENT, StandardCharsets.US_ASCII), body(response));
+        assertNull(onlyGet().range());
+    }
+
+    @Test
+    void tooManyRangesServeFullContent() throws Exception {
+        String ranges = IntStream.range(0, 17).mapToObj(i -> i + "-" + i).collect(Collectors.joining(","));
+
+        MockHttpServletResponse response = stream("bytes=" + ranges);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(new String(CONTENT, StandardCharsets.US_ASCII), body(response));
+        verify(client, never()).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    void unsatisfiableRangesReturn416() throws Exception {
+        MockHttpServletResponse response = stream("bytes=30-40, 50-60");
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        verify(client, never()).getObject(any(GetObjectRequest.class));
+
+        assertEquals(416, stream("bytes=30-40").getStatus());
+    }
+
+    @Test
+    void cachedObjectServesMultipleRangesWithoutBackend() throws Exception {
+        Path file = Files.write(cacheDirectory.resolve("cached"), CONTENT);
+        CachedObject cached = mock(CachedObject.class);
+        when(cached.path()).thenReturn(file);
+        when(cached.length()).thenReturn((long) CONTENT.length);
+        when(cached.eTag()).thenReturn(ETAG);
+        when(cached.contentType()).thenReturn("image/png");
+        when(objectCache.isEnabled()).thenReturn(true);
+        when(objectCache.get(KEY)).thenReturn(cached);
+
+        MockHttpServletResponse response = stream("bytes=0-1, 18-19");
+
+        assertEquals(206, response.getStatus());
+        String body = body(response);
+        assertTrue(body.contains("Content-Range: bytes 0-1/20\r\n\r\n01\r\n"), body);
+        assertTrue(body.contains("Content-Range: bytes 18-19/20\r\n\r\nij\r\n"), body);
+        assertEquals(response.getContentLengthLong(), response.getContentAsByteArray().length);
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    void resolveRangesKeepsDisjointRangesApart() {
+        List<long[]> spans = ObjectContentService.resolveRanges(HttpRange.parseRanges("bytes=8-9,0-1,-2"), 20);
+
+        assertNotNull(spans);
+        assertEquals(3, spans.size());
+        assertArrayEquals(new long[]{0, 1}, spans.get(0));
+        assertArrayEquals(new long[]{8, 9}, spans.get(1));
+        assertArrayEquals(new long[]{18, 19}, spans.get(2));
+    }
+}
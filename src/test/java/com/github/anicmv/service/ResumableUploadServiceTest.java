@@ -0,0 +1,279 @@
+package com.github.anicmv.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.anicmv.concurrency.ConcurrencyLimiters;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.dto.upload.UploadResult;
+import com.github.anicmv.exception.FileValidationException;
+import com.github.anicmv.exception.StorageServiceException;
+import com.github.anicmv.exception.UploadSessionException;
+import com.github.anicmv.layout.DateKeyLayout;
+import com.github.anicmv.memory.BufferPool;
+import com.github.anicmv.memory.UploadMemoryBudget;
+import com.github.anicmv.reconcile.AntiEntropyReconciler;
+import com.github.anicmv.resumable.UploadSession;
+import com.github.anicmv.resumable.UploadSessionStore;
+import com.github.anicmv.stats.BucketStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author anicmv
+ * {@link ResumableUploadService} 的 offset 校验、失败分块重传、重启后续传与各后端合并
+ */
+class ResumableUploadServiceTest {
+
+    private static final String SESSION_ID = "0123456789abcdef0123456789abcdef";
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final int CHUNK_SIZE = 4;
+
+    @TempDir
+    Path directory;
+
+    private final S3StorageProperties storageProperties = new S3StorageProperties();
+    private final S3Client r2 = mock(S3Client.class);
+    private final S3Client b2 = mock(S3Client.class);
+    private final ImageUploadService imageUploadService = mock(ImageUploadService.class);
+    private final BucketStatistics bucketStatistics = mock(BucketStatistics.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private BufferPool bufferPool;
+    private UploadSessionStore sessionStore;
+    private ResumableUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, S3StorageProperties.S3ServiceConfig> services = new LinkedHashMap<>();
+        for (String serviceName : List.of("r2", "b2")) {
+            S3StorageProperties.S3ServiceConfig config = new S3StorageProperties.S3ServiceConfig();
+            config.setBucket(serviceName + "-images");
+            services.put(serviceName, config);
+        }
+        storageProperties.setServices(services);
+        storageProperties.getResumableUpload().setSessionDirectory(directory.toString());
+
+        bufferPool = new BufferPool();
+        ReflectionTestUtils.setField(bufferPool, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(bufferPool, "meterRegistry", new SimpleMeterRegistry());
+        bufferPool.init();
+
+        for (S3Client client : List.of(r2, b2)) {
+            when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation ->
+                    UploadPartResponse.builder()
+                            .eTag("\"part-" + invocation.<UploadPartRequest>getArgument(0).partNumber() + "\"")
+                            .build());
+        }
+        restart();
+    }
+
+    @AfterEach
+    void noLeaks() {
+        assertEquals(0, bufferPool.outstanding());
+    }
+
+    /**
+     * 模拟重启：新的会话存储从目录恢复会话，新的服务实例使用它
+     */
+    private void restart() {
+        sessionStore = new UploadSessionStore();
+        ReflectionTestUtils.setField(sessionStore, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(sessionStore, "objectMapper", objectMapper);
+        sessionStore.init();
+
+        S3ClientManager clientManager = mock(S3ClientManager.class);
+        Map<String, S3Client> clients = new LinkedHashMap<>();
+        clients.put("r2", r2);
+        clients.put("b2", b2);
+        when(clientManager.getAllEnabledClients()).thenReturn(clients);
+
+        service = new ResumableUploadService();
+        ReflectionTestUtils.setField(service, "imageUploadService", imageUploadService);
+        ReflectionTestUtils.setField(service, "sessionStore", sessionStore);
+        ReflectionTestUtils.setField(service, "clientManager", clientManager);
+        ReflectionTestUtils.setField(service, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(service, "fileValidationService", mock(FileValidationService.class));
+        ReflectionTestUtils.setField(service, "keyLayout", new DateKeyLayout());
+        ReflectionTestUtils.setField(service, "concurrencyLimiters", mock(ConcurrencyLimiters.class));
+        ReflectionTestUtils.setField(service, "uploadMemoryBudget", mock(UploadMemoryBudget.class));
+        ReflectionTestUtils.setField(service, "bufferPool", bufferPool);
+        ReflectionTestUtils.setField(service, "bucketStatistics", bucketStatistics);
+        ReflectionTestUtils.setField(service, "antiEntropyReconciler", mock(AntiEntropyReconciler.class));
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        // 扇出在调用线程中执行
+        ReflectionTestUtils.setField(service, "executorService", (Executor) Runnable::run);
+    }
+
+    private void createSession() {
+        UploadSession session = new UploadSession();
+        session.setId(SESSION_ID);
+        session.setOriginalFilename("photo.png");
+        session.setFileName("0ABCDEFGHJKMN.png");
+        session.setLogicalKey("20250101/0ABCDEFGHJKMN.png");
+        session.setStorageKey("20250101/0ABCDEFGHJKMN.png");
+        session.setContentType("image/png");
+        session.setLength(CONTENT.length);
+        session.setChunkSize(CHUNK_SIZE);
+        session.setCreatedAt(Instant.now());
+        session.setExpiresAt(Instant.now().plusSeconds(3600));
+        for (String serviceName : List.of("r2", "b2")) {
+            UploadSession.BackendUpload backend = new UploadSession.BackendUpload();
+            backend.setUploadId("upload-" + serviceName);
+            session.getBackends().put(serviceName, backend);
+        }
+        sessionStore.save(session);
+    }
+
+    private void patch(long offset) throws Exception {
+        int end = (int) Math.min(offset + CHUNK_SIZE, CONTENT.length);
+        patch(offset, Arrays.copyOfRange(CONTENT, (int) offset, end));
+    }
+
+    private void patch(long offset, byte[] chunk) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", "/api/uploads/" + SESSION_ID);
+        request.addHeader(ResumableUploadService.UPLOAD_OFFSET, String.valueOf(offset));
+        request.setContent(chunk);
+        service.patch(SESSION_ID, request);
+    }
+
+    private UploadSession session() {
+        return sessionStore.get(SESSION_ID);
+    }
+
+    private UploadResult complete() {
+        ArgumentCaptor<UploadResult> result = ArgumentCaptor.forClass(UploadResult.class);
+        service.complete(SESSION_ID);
+        verify(imageUploadService, atLeastOnce()).uploadResponse(eq("photo.png"), result.capture());
+        return result.getValue();
+    }
+
+    @Test
+    void offsetMismatchIsRejectedWithoutWriting() {
+        createSession();
+
+        UploadSessionException e = assertThrows(UploadSessionException.class, () -> patch(CHUNK_SIZE));
+
+        assertEquals(UploadSessionException.OFFSET_MISMATCH, e.getErrorCode());
+        assertEquals(0, session().getOffset());
+        verify(r2, never()).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void chunkOfWrongLengthIsRejected() {
+        createSession();
+
+        assertThrows(FileValidationException.class, () -> patch(0, new byte[CHUNK_SIZE - 1]));
+        assertEquals(0, session().getOffset());
+    }
+
+    @Test
+    void failedPartKeepsOffsetAndRetryOverwritesSamePart() throws Exception {
+        createSession();
+        doThrow(S3Exception.builder().statusCode(503).message("SlowDown").build())
+                .doReturn(UploadPartResponse.builder().eTag("\"part-1-retry\"").build())
+                .when(b2).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+
+        assertThrows(StorageServiceException.class, () -> patch(0));
+        assertEquals(0, session().getOffset());
+
+        // 客户端重传同一分块，以相同段号写入
+        patch(0);
+
+        assertEquals(CHUNK_SIZE, session().getOffset());
+        assertEquals(List.of("\"part-1\""), session().getBackends().get("r2").getEtags());
+        assertEquals(List.of("\"part-1-retry\""), session().getBackends().get("b2").getEtags());
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(r2, times(2)).uploadPart(parts.capture(), any(RequestBody.class));
+        assertTrue(parts.getAllValues().stream().allMatch(part -> part.partNumber() == 1));
+    }
+
+    @Test
+    void resumesFromPersistedOffsetAfterRestart() throws Exception {
+        createSession();
+        patch(0);
+
+        restart();
+
+        assertEquals(CHUNK_SIZE, session().getOffset());
+        assertEquals(List.of("\"part-1\""), session().getBackends().get("r2").getEtags());
+        assertEquals(String.valueOf(CHUNK_SIZE),
+                service.status(SESSION_ID).getHeaders().getFirst(ResumableUploadService.UPLOAD_OFFSET));
+        patch(CHUNK_SIZE);
+        assertEquals(2 * CHUNK_SIZE, session().getOffset());
+    }
+
+    @Test
+    void completeBeforeAllBytesIsRejected() throws Exception {
+        createSession();
+        patch(0);
+
+        UploadSessionException e = assertThrows(UploadSessionException.class, () -> service.complete(SESSION_ID));
+
+        assertEquals(UploadSessionException.INCOMPLETE, e.getErrorCode());
+        verify(r2, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void completeMergesPartsOnEveryBackendAndRemovesSession() throws Exception {
+        createSession();
+        patch(0);
+        patch(CHUNK_SIZE);
+        patch(2 * CHUNK_SIZE);
+
+        UploadResult result = complete();
+
+        assertTrue(result.allSuccessfulUpload());
+        ArgumentCaptor<CompleteMultipartUploadRequest> request = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(r2).completeMultipartUpload(request.capture());
+        assertEquals("upload-r2", request.getValue().uploadId());
+        assertEquals(List.of(1, 2, 3), request.getValue().multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber).toList());
+        verify(b2).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(bucketStatistics).recordPut("r2", "20250101/0ABCDEFGHJKMN.png", CONTENT.length);
+        assertNull(session());
+        assertFalse(Files.exists(directory.resolve(SESSION_ID + ".json")));
+    }
+
+    @Test
+    void failedCompleteKeepsSessionAndRetriesOnlyUnfinishedBackends() throws Exception {
+        createSession();
+        patch(0);
+        patch(CHUNK_SIZE);
+        patch(2 * CHUNK_SIZE);
+        when(b2.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenThrow(S3Exception.builder().statusCode(500).message("InternalError").build())
+                .thenReturn(CompleteMultipartUploadResponse.builder().build());
+
+        assertFalse(complete().allSuccessfulUpload());
+        assertNotNull(session());
+        assertTrue(session().getBackends().get("r2").isCompleted());
+
+        assertTrue(complete().allSuccessfulUpload());
+        verify(r2, times(1)).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(b2, times(2)).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        assertNull(session());
+    }
+}
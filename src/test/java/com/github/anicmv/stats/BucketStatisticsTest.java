@@ -0,0 +1,139 @@
+package com.github.anicmv.stats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.anicmv.config.S3ClientManager;
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.layout.DateKeyLayout;
+import com.github.anicmv.scan.BucketScanner;
+import com.github.anicmv.scan.ScanStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author anicmv
+ * {@link BucketStatistics} 的增量计数、按扫描结果修正（保留扫描期间的增量）与检查点恢复
+ */
+class BucketStatisticsTest {
+
+    @TempDir
+    Path directory;
+
+    private final S3StorageProperties storageProperties = new S3StorageProperties();
+    private final BucketScanner bucketScanner = mock(BucketScanner.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @BeforeEach
+    void setUp() {
+        storageProperties.getBucketStats().setCheckpointFile(directory.resolve("bucket-stats.json").toString());
+    }
+
+    private BucketStatistics statistics() {
+        S3ClientManager clientManager = mock(S3ClientManager.class);
+        when(clientManager.getAllEnabledClients()).thenReturn(Map.of("r2", mock(S3Client.class)));
+
+        BucketStatistics statistics = new BucketStatistics();
+        ReflectionTestUtils.setField(statistics, "storageProperties", storageProperties);
+        ReflectionTestUtils.setField(statistics, "clientManager", clientManager);
+        ReflectionTestUtils.setField(statistics, "keyLayout", new DateKeyLayout());
+        ReflectionTestUtils.setField(statistics, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(statistics, "bucketScanner", bucketScanner);
+        // 扫描在调用线程中执行
+        ReflectionTestUtils.setField(statistics, "executorService", (Executor) Runnable::run);
+        statistics.restore();
+        return statistics;
+    }
+
+    private static S3Object object(String key, long size) {
+        return S3Object.builder().key(key).size(size).build();
+    }
+
+    /**
+     * 扫描列出给定对象；列出时先执行 duringScan，模拟扫描期间发生的写入
+     */
+    private void scanReturns(Runnable duringScan, S3Object... objects) {
+        ScanStream stream = mock(ScanStream.class);
+        when(stream.objects()).thenAnswer(invocation -> {
+            duringScan.run();
+            return Stream.of(objects);
+        });
+        when(bucketScanner.scan(any(), any())).thenReturn(stream);
+    }
+
+    private static BucketStatistics.Snapshot snapshot(long objects, long bytes) {
+        return new BucketStatistics.Snapshot(objects, bytes);
+    }
+
+    @Test
+    void putsAndDeletesAreCountedPerDate() {
+        BucketStatistics statistics = statistics();
+
+        statistics.recordPut("r2", "20250101/a.png", 100);
+        statistics.recordPut("r2", "20250101/b.png", 50);
+        statistics.recordPut("r2", "20250102/c.png", 10);
+        statistics.recordDelete("r2", "20250101/a.png", 100);
+        statistics.recordPut("r2", "legacy.png", 5);
+
+        assertEquals(snapshot(1, 50), statistics.byService("20250101").get("r2"));
+        assertEquals(snapshot(1, 5), statistics.byService("undated").get("r2"));
+        assertEquals(snapshot(3, 65), statistics.total("r2"));
+    }
+
+    @Test
+    void scanCorrectsDriftPerDate() {
+        BucketStatistics statistics = statistics();
+        statistics.recordPut("r2", "20250101/a.png", 100);
+        statistics.recordPut("r2", "20250102/b.png", 50);
+        // 20250101 被覆盖写入为更大的对象，20250102 已被带外删除，20250103 是带外写入
+        scanReturns(() -> { }, object("20250101/a.png", 300), object("20250103/c.png", 7));
+
+        statistics.scheduledScan();
+
+        assertEquals(snapshot(1, 300), statistics.byService("20250101").get("r2"));
+        assertEquals(snapshot(0, 0), statistics.byService("20250102").get("r2"));
+        assertEquals(snapshot(1, 7), statistics.byService("20250103").get("r2"));
+        assertEquals(snapshot(2, 307), statistics.total("r2"));
+        assertNotNull(statistics.lastScan());
+    }
+
+    @Test
+    void writesDuringScanAreKept() {
+        BucketStatistics statistics = statistics();
+        statistics.recordPut("r2", "20250101/a.png", 100);
+        // 扫描开始后写入的 b.png 没有被列出
+        scanReturns(() -> statistics.recordPut("r2", "20250101/b.png", 40), object("20250101/a.png", 100));
+
+        statistics.scheduledScan();
+
+        assertEquals(snapshot(2, 140), statistics.byService("20250101").get("r2"));
+        assertEquals(snapshot(2, 140), statistics.total("r2"));
+    }
+
+    @Test
+    void checkpointIsRestoredOnStartup() {
+        BucketStatistics statistics = statistics();
+        statistics.recordPut("r2", "20250101/a.png", 100);
+        statistics.checkpoint();
+
+        BucketStatistics restarted = statistics();
+
+        assertEquals(snapshot(1, 100), restarted.byService("20250101").get("r2"));
+        assertEquals(snapshot(1, 100), restarted.total("r2"));
+        // 已从检查点恢复，首次扫描推迟到下一个周期
+        restarted.scheduledScan();
+        verifyNoInteractions(bucketScanner);
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.anicmv.streaming;
+
+import com.github.anicmv.config.S3StorageProperties;
+import com.github.anicmv.memory.BufferPool;
+import com.github.anicmv.memory.PooledBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.NonRetryableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link ChunkPipe} 在完成、放弃、中止与停滞时归还数据块的引用，客户端中断与后端失败分别报告
+ */
+class ChunkPipeTest {
+
+    private static final long STALL_TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+    private BufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        S3StorageProperties properties = new S3StorageProperties();
+        properties.getBufferPool().setLeakDetection(true);
+        pool = new BufferPool();
+        ReflectionTestUtils.setField(pool, "storageProperties", properties);
+        ReflectionTestUtils.setField(pool, "meterRegistry", new SimpleMeterRegistry());
+        pool.init();
+    }
+
+    @AfterEach
+    void noLeaks() {
+        assertEquals(0, pool.outstanding(), () -> "未归还的缓冲区: " + pool.leakReport());
+    }
+
+    private PooledBuffer chunk(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        PooledBuffer chunk = pool.acquire(bytes.length);
+        chunk.buffer().put(bytes).flip();
+        return chunk;
+    }
+
+    @Test
+    void sharedChunkIsReturnedAfterAllReadersFinish() throws Exception {
+        ChunkPipe first = new ChunkPipe(4, STALL_TIMEOUT);
+        ChunkPipe second = new ChunkPipe(4, STALL_TIMEOUT);
+        PooledBuffer chunk = chunk("hello");
+
+        assertTrue(first.offer(chunk));
+        assertTrue(second.offer(chunk));
+        chunk.release();
+        first.complete();
+        second.complete();
+
+        try (InputStream in = first.open()) {
+            assertEquals("hello", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(1, pool.outstanding());
+        try (InputStream in = second.open()) {
+            assertEquals("hello", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void cancelReleasesQueuedChunksAndRejectsLaterOffers() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(4, STALL_TIMEOUT);
+        PooledBuffer queued = chunk("a");
+        assertTrue(pipe.offer(queued));
+        queued.release();
+
+        pipe.cancel();
+        assertTrue(pipe.isCancelled());
+
+        PooledBuffer later = chunk("b");
+        assertFalse(pipe.offer(later));
+        later.release();
+    }
+
+    @Test
+    void readerClosingEarlyCancelsPipe() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(4, STALL_TIMEOUT);
+        PooledBuffer first = chunk("ab");
+        PooledBuffer second = chunk("cd");
+        pipe.offer(first);
+        pipe.offer(second);
+        first.release();
+        second.release();
+
+        InputStream in = pipe.open();
+        assertEquals('a', in.read());
+        in.close();
+
+        assertTrue(pipe.isCancelled());
+    }
+
+    @Test
+    void abortFailsReaderAndReleasesQueuedChunks() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(4, STALL_TIMEOUT);
+        PooledBuffer queued = chunk("abc");
+        pipe.offer(queued);
+        queued.release();
+
+        pipe.abort();
+
+        try (InputStream in = pipe.open()) {
+            IOException e = assertThrows(IOException.class, in::read);
+            // 客户端中断不计入后端健康状态
+            assertInstanceOf(AbortedException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void silentProducerFailsReaderAsAborted() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(4, TimeUnit.MILLISECONDS.toNanos(50));
+
+        try (InputStream in = pipe.open()) {
+            IOException e = assertThrows(IOException.class, in::read);
+            assertInstanceOf(AbortedException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void readerLeftBehindFailsAsBackendError() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(1, TimeUnit.MILLISECONDS.toNanos(50));
+        PooledBuffer first = chunk("a");
+        PooledBuffer second = chunk("b");
+        pipe.offer(first);
+        // 后端不读取，生产者放弃该后端
+        assertFalse(pipe.offer(second));
+        first.release();
+        second.release();
+        PooledBuffer late = chunk("c");
+        pipe.offer(late);
+        late.release();
+
+        try (InputStream in = pipe.open()) {
+            IOException e = assertThrows(IOException.class, in::read);
+            assertNull(e.getCause());
+        }
+    }
+
+    @Test
+    void stalledReaderIsCancelled() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(1, TimeUnit.MILLISECONDS.toNanos(50));
+        PooledBuffer first = chunk("a");
+        PooledBuffer second = chunk("b");
+
+        assertTrue(pipe.offer(first));
+        assertFalse(pipe.offer(second));
+        first.release();
+        second.release();
+
+        assertTrue(pipe.isCancelled());
+    }
+
+    @Test
+    void pipeCanOnlyBeOpenedOnce() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(4, STALL_TIMEOUT);
+        pipe.complete();
+        try (InputStream in = pipe.open()) {
+            assertEquals(-1, in.read());
+        }
+        assertThrows(NonRetryableException.class, pipe::open);
+    }
+}
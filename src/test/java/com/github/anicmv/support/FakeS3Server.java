@@ -0,0 +1,611 @@
+package com.github.anicmv.support;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author anicmv
+ * 嵌入式S3替身，基于内嵌Tomcat监听回环地址，用于在CI中对多后端扇出进行压测。
+ * 支持 Put/Get/Head/List/Delete/Copy 以及分片上传，
+ * 并可按实例配置延迟、带宽和错误率，以模拟不同质量的存储服务。
+ * 每个实例代表一个独立的模拟服务，使用 path-style 访问。
+ */
+public class FakeS3Server implements AutoCloseable {
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+
+    private final Simulation simulation;
+    private final Tomcat tomcat;
+    private final Connector connector;
+
+    private final Map<String, ConcurrentSkipListMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong uploadIdSequence = new AtomicLong();
+
+    @Getter
+    private final AtomicLong requestCount = new AtomicLong();
+    @Getter
+    private final AtomicLong injectedFaults = new AtomicLong();
+
+    /**
+     * 模拟参数
+     *
+     * @param latencyMs        每个请求固定附加的延迟
+     * @param jitterMs         在固定延迟之上随机附加的抖动上限
+     * @param bytesPerSecond   请求体和响应体的带宽上限，0 表示不限
+     * @param errorRate        返回 503 SlowDown 的概率，取值 [0, 1]
+     */
+    @Builder
+    public record Simulation(long latencyMs, long jitterMs, long bytesPerSecond, double errorRate) {
+        public static Simulation none() {
+            return new Simulation(0, 0, 0, 0);
+        }
+    }
+
+    private record StoredObject(byte[] data, String contentType, String etag, Instant lastModified,
+                                Map<String, String> metadata) {
+    }
+
+    private record MultipartUpload(String bucket, String key, String contentType,
+                                   Map<Integer, byte[]> parts) {
+    }
+
+    public FakeS3Server(Simulation simulation) throws IOException {
+        this.simulation = simulation != null ? simulation : Simulation.none();
+        this.tomcat = new Tomcat();
+        this.tomcat.setBaseDir(Files.createTempDirectory("fake-s3").toString());
+        this.connector = new Connector();
+        this.connector.setPort(0);
+        this.connector.setProperty("address", "127.0.0.1");
+        this.connector.setProperty("maxThreads", "200");
+        this.connector.setProperty("maxKeepAliveRequests", "-1");
+        this.tomcat.getService().addConnector(connector);
+        this.tomcat.setConnector(connector);
+
+        Context context = tomcat.addContext("", null);
+        Tomcat.addServlet(context, "fake-s3", new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                handle(request, response);
+            }
+        });
+        context.addServletMappingDecoded("/", "fake-s3");
+    }
+
+    public FakeS3Server start() {
+        try {
+            tomcat.start();
+        } catch (LifecycleException e) {
+            throw new IllegalStateException("Fake S3 server failed to start", e);
+        }
+        return this;
+    }
+
+    public String endpoint() {
+        return "http://127.0.0.1:" + connector.getLocalPort();
+    }
+
+    public int objectCount(String bucket) {
+        Map<String, StoredObject> objects = buckets.get(bucket);
+        return objects == null ? 0 : objects.size();
+    }
+
+    public boolean exists(String bucket, String key) {
+        Map<String, StoredObject> objects = buckets.get(bucket);
+        return objects != null && objects.containsKey(key);
+    }
+
+    @Override
+    public void close() {
+        try {
+            tomcat.stop();
+            tomcat.destroy();
+        } catch (LifecycleException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void handle(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            simulateLatency();
+            if (shouldInjectFault()) {
+                drain(request.getInputStream());
+                sendError(request, response, 503, "SlowDown", "Please reduce your request rate.");
+                return;
+            }
+            route(request, response);
+        } catch (Exception e) {
+            if (!response.isCommitted()) {
+                sendError(request, response, 500, "InternalError", String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    private void route(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String method = request.getMethod();
+        String path = URLDecoder.decode(request.getRequestURI(), StandardCharsets.UTF_8);
+        Map<String, String> query = parseQuery(request.getQueryString());
+
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        if (trimmed.isEmpty()) {
+            listBuckets(response);
+            return;
+        }
+
+        int slash = trimmed.indexOf('/');
+        String bucket = slash < 0 ? trimmed : trimmed.substring(0, slash);
+        String key = slash < 0 ? "" : trimmed.substring(slash + 1);
+
+        if (key.isEmpty()) {
+            switch (method) {
+                case "HEAD" -> response.setStatus(buckets.containsKey(bucket) ? 200 : 404);
+                case "PUT" -> {
+                    drain(request.getInputStream());
+                    if (!query.containsKey("policy")) {
+                        buckets.putIfAbsent(bucket, new ConcurrentSkipListMap<>());
+                        response.setHeader("Location", "/" + bucket);
+                        response.setStatus(200);
+                    } else {
+                        response.setStatus(204);
+                    }
+                }
+                case "GET" -> listObjects(request, response, bucket, query);
+                case "DELETE" -> {
+                    buckets.remove(bucket);
+                    response.setStatus(204);
+                }
+                default -> sendError(request, response, 405, "MethodNotAllowed", method);
+            }
+            return;
+        }
+
+        ConcurrentSkipListMap<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            drain(request.getInputStream());
+            sendError(request, response, 404, "NoSuchBucket", bucket);
+            return;
+        }
+
+        switch (method) {
+            case "PUT" -> {
+                if (query.containsKey("uploadId")) {
+                    uploadPart(request, response, query);
+                } else if (request.getHeader("x-amz-copy-source") != null) {
+                    copyObject(request, response, objects, key);
+                } else {
+                    putObject(request, response, objects, key);
+                }
+            }
+            case "POST" -> {
+                if (query.containsKey("uploads")) {
+                    createMultipartUpload(request, response, bucket, key);
+                } else if (query.containsKey("uploadId")) {
+                    completeMultipartUpload(request, response, objects, query);
+                } else {
+                    sendError(request, response, 400, "InvalidRequest", "unsupported POST");
+                }
+            }
+            case "GET" -> getObject(request, response, objects.get(key), true);
+            case "HEAD" -> getObject(request, response, objects.get(key), false);
+            case "DELETE" -> {
+                if (query.containsKey("uploadId")) {
+                    uploads.remove(query.get("uploadId"));
+                } else {
+                    objects.remove(key);
+                }
+                response.setStatus(204);
+            }
+            default -> sendError(request, response, 405, "MethodNotAllowed", method);
+        }
+    }
+
+    private void putObject(HttpServletRequest request, HttpServletResponse response,
+                           Map<String, StoredObject> objects, String key) throws IOException {
+        byte[] data = readBody(request);
+        StoredObject object = new StoredObject(data, request.getContentType(), etag(data),
+                Instant.now(), userMetadata(request));
+        objects.put(key, object);
+        response.setHeader("ETag", object.etag());
+        response.setStatus(200);
+    }
+
+    private void copyObject(HttpServletRequest request, HttpServletResponse response,
+                            Map<String, StoredObject> objects, String key) throws IOException {
+        drain(request.getInputStream());
+        String source = URLDecoder.decode(request.getHeader("x-amz-copy-source"), StandardCharsets.UTF_8);
+        if (source.startsWith("/")) {
+            source = source.substring(1);
+        }
+        int slash = source.indexOf('/');
+        Map<String, StoredObject> sourceBucket = slash < 0 ? null : buckets.get(source.substring(0, slash));
+        StoredObject original = sourceBucket == null ? null : sourceBucket.get(source.substring(slash + 1));
+        if (original == null) {
+            sendError(request, response, 404, "NoSuchKey", source);
+            return;
+        }
+        StoredObject copy = new StoredObject(original.data(), original.contentType(), original.etag(),
+                Instant.now(), original.metadata());
+        objects.put(key, copy);
+        sendXml(response, 200, "<CopyObjectResult><LastModified>" + copy.lastModified()
+                + "</LastModified><ETag>" + escape(copy.etag()) + "</ETag></CopyObjectResult>");
+    }
+
+    private void getObject(HttpServletRequest request, HttpServletResponse response,
+                           StoredObject object, boolean withBody) throws IOException {
+        if (object == null) {
+            sendError(request, response, 404, "NoSuchKey", "The specified key does not exist.");
+            return;
+        }
+
+        response.setHeader("ETag", object.etag());
+        response.setHeader("Last-Modified", HTTP_DATE.format(object.lastModified()));
+        response.setHeader("Accept-Ranges", "bytes");
+        if (object.contentType() != null) {
+            response.setContentType(object.contentType());
+        }
+        object.metadata().forEach((name, value) -> response.setHeader("x-amz-meta-" + name, value));
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.equals(object.etag())) {
+            response.setStatus(304);
+            return;
+        }
+
+        byte[] data = object.data();
+        int start = 0;
+        int end = data.length - 1;
+        int status = 200;
+        String range = request.getHeader("Range");
+        if (range != null && range.startsWith("bytes=") && data.length > 0) {
+            String spec = range.substring("bytes=".length());
+            int dash = spec.indexOf('-');
+            String from = spec.substring(0, dash);
+            String to = spec.substring(dash + 1);
+            if (from.isEmpty()) {
+                start = Math.max(0, data.length - Integer.parseInt(to));
+            } else {
+                start = Integer.parseInt(from);
+                end = to.isEmpty() ? end : Math.min(end, Integer.parseInt(to));
+            }
+            if (start > end || start >= data.length) {
+                response.setHeader("Content-Range", "bytes */" + data.length);
+                sendError(request, response, 416, "InvalidRange", range);
+                return;
+            }
+            status = 206;
+            response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+        }
+
+        int length = end - start + 1;
+        response.setStatus(status);
+        response.setContentLengthLong(length);
+        if (withBody) {
+            writeThrottled(response.getOutputStream(), data, start, length);
+        }
+    }
+
+    private void listObjects(HttpServletRequest request, HttpServletResponse response, String bucket,
+                             Map<String, String> query) throws IOException {
+        ConcurrentSkipListMap<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            sendError(request, response, 404, "NoSuchBucket", bucket);
+            return;
+        }
+
+        String prefix = query.getOrDefault("prefix", "");
+        String delimiter = query.get("delimiter");
+        int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+        String startAfter = query.getOrDefault("continuation-token", query.get("start-after"));
+
+        NavigableMap<String, StoredObject> view = startAfter != null && !startAfter.isEmpty()
+                ? objects.tailMap(startAfter, false) : objects;
+
+        StringBuilder contents = new StringBuilder();
+        Set<String> commonPrefixes = new TreeSet<>();
+        int count = 0;
+        String lastKey = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : view.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                if (key.compareTo(prefix) > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (count >= maxKeys) {
+                truncated = true;
+                break;
+            }
+            lastKey = key;
+            count++;
+            if (delimiter != null && !delimiter.isEmpty()) {
+                int index = key.indexOf(delimiter, prefix.length());
+                if (index >= 0) {
+                    commonPrefixes.add(key.substring(0, index + delimiter.length()));
+                    continue;
+                }
+            }
+            StoredObject object = entry.getValue();
+            contents.append("<Contents><Key>").append(escape(key)).append("</Key>")
+                    .append("<LastModified>").append(object.lastModified()).append("</LastModified>")
+                    .append("<ETag>").append(escape(object.etag())).append("</ETag>")
+                    .append("<Size>").append(object.data().length).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+        }
+
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>").append(escape(bucket)).append("</Name>")
+                .append("<Prefix>").append(escape(prefix)).append("</Prefix>")
+                .append("<KeyCount>").append(count).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+                .append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated && lastKey != null) {
+            xml.append("<NextContinuationToken>").append(escape(lastKey)).append("</NextContinuationToken>");
+        }
+        xml.append(contents);
+        commonPrefixes.forEach(p -> xml.append("<CommonPrefixes><Prefix>").append(escape(p)).append("</Prefix></CommonPrefixes>"));
+        xml.append("</ListBucketResult>");
+        sendXml(response, 200, xml.toString());
+    }
+
+    private void listBuckets(HttpServletResponse response) throws IOException {
+        StringBuilder xml = new StringBuilder("<ListAllMyBucketsResult><Buckets>");
+        buckets.keySet().forEach(name -> xml.append("<Bucket><Name>").append(escape(name))
+                .append("</Name><CreationDate>").append(Instant.now()).append("</CreationDate></Bucket>"));
+        xml.append("</Buckets></ListAllMyBucketsResult>");
+        sendXml(response, 200, xml.toString());
+    }
+
+    private void createMultipartUpload(HttpServletRequest request, HttpServletResponse response,
+                                       String bucket, String key) throws IOException {
+        drain(request.getInputStream());
+        String uploadId = "upload-" + uploadIdSequence.incrementAndGet();
+        uploads.put(uploadId, new MultipartUpload(bucket, key, request.getContentType(), new ConcurrentSkipListMap<>()));
+        sendXml(response, 200, "<InitiateMultipartUploadResult><Bucket>" + escape(bucket) + "</Bucket><Key>"
+                + escape(key) + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+    }
+
+    private void uploadPart(HttpServletRequest request, HttpServletResponse response,
+                            Map<String, String> query) throws IOException {
+        MultipartUpload upload = uploads.get(query.get("uploadId"));
+        if (upload == null) {
+            drain(request.getInputStream());
+            sendError(request, response, 404, "NoSuchUpload", query.get("uploadId"));
+            return;
+        }
+        byte[] data = readBody(request);
+        upload.parts().put(Integer.parseInt(query.get("partNumber")), data);
+        response.setHeader("ETag", etag(data));
+        response.setStatus(200);
+    }
+
+    private void completeMultipartUpload(HttpServletRequest request, HttpServletResponse response,
+                                         Map<String, StoredObject> objects, Map<String, String> query) throws IOException {
+        String body = new String(readBody(request), StandardCharsets.UTF_8);
+        MultipartUpload upload = uploads.remove(query.get("uploadId"));
+        if (upload == null) {
+            sendError(request, response, 404, "NoSuchUpload", query.get("uploadId"));
+            return;
+        }
+
+        ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+        Matcher matcher = PART_NUMBER.matcher(body);
+        while (matcher.find()) {
+            byte[] part = upload.parts().get(Integer.parseInt(matcher.group(1)));
+            if (part == null) {
+                sendError(request, response, 400, "InvalidPart", matcher.group(1));
+                return;
+            }
+            assembled.write(part);
+        }
+
+        byte[] data = assembled.toByteArray();
+        String etag = "\"" + hex(md5(data)) + "-" + upload.parts().size() + "\"";
+        objects.put(upload.key(), new StoredObject(data, upload.contentType(), etag, Instant.now(), Map.of()));
+        sendXml(response, 200, "<CompleteMultipartUploadResult><Bucket>" + escape(upload.bucket())
+                + "</Bucket><Key>" + escape(upload.key()) + "</Key><ETag>" + escape(etag)
+                + "</ETag></CompleteMultipartUploadResult>");
+    }
+
+    /**
+     * 读取请求体，兼容 SDK 在明文 HTTP 下使用的 aws-chunked 签名分块编码
+     */
+    private byte[] readBody(HttpServletRequest request) throws IOException {
+        byte[] raw = readThrottled(request.getInputStream());
+        String sha = request.getHeader("x-amz-content-sha256");
+        String encoding = request.getHeader("Content-Encoding");
+        boolean chunked = (sha != null && sha.startsWith("STREAMING-"))
+                || (encoding != null && encoding.contains("aws-chunked"));
+        return chunked ? decodeAwsChunked(raw) : raw;
+    }
+
+    private static byte[] decodeAwsChunked(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length);
+        int position = 0;
+        while (position < raw.length) {
+            int lineEnd = indexOfCrlf(raw, position);
+            if (lineEnd < 0) {
+                break;
+            }
+            String header = new String(raw, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int semicolon = header.indexOf(';');
+            int size = Integer.parseInt((semicolon < 0 ? header : header.substring(0, semicolon)).trim(), 16);
+            position = lineEnd + 2;
+            if (size == 0) {
+                break;
+            }
+            out.write(raw, position, size);
+            position += size + 2;
+        }
+        return out.toByteArray();
+    }
+
+    private static int indexOfCrlf(byte[] data, int from) {
+        for (int i = from; i < data.length - 1; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] readThrottled(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            throttle(read);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeThrottled(OutputStream out, byte[] data, int offset, int length) throws IOException {
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            int chunk = Math.min(16 * 1024, end - position);
+            out.write(data, position, chunk);
+            position += chunk;
+            throttle(chunk);
+        }
+    }
+
+    private void throttle(int bytes) {
+        if (simulation.bytesPerSecond() > 0) {
+            sleep(bytes * 1000L / simulation.bytesPerSecond());
+        }
+    }
+
+    private void simulateLatency() {
+        long delay = simulation.latencyMs();
+        if (simulation.jitterMs() > 0) {
+            delay += ThreadLocalRandom.current().nextLong(simulation.jitterMs() + 1);
+        }
+        sleep(delay);
+    }
+
+    private boolean shouldInjectFault() {
+        if (simulation.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < simulation.errorRate()) {
+            injectedFaults.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        in.transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static Map<String, String> userMetadata(HttpServletRequest request) {
+        Map<String, String> metadata = new HashMap<>();
+        for (String name : Collections.list(request.getHeaderNames())) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("x-amz-meta-")) {
+                metadata.put(lower.substring("x-amz-meta-".length()), request.getHeader(name));
+            }
+        }
+        return metadata;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    private static void sendXml(HttpServletResponse response, int status, String xml) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+        response.setStatus(status);
+        response.setContentType("application/xml");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static void sendError(HttpServletRequest request, HttpServletResponse response,
+                                  int status, String code, String message) throws IOException {
+        if ("HEAD".equals(request.getMethod())) {
+            response.setStatus(status);
+            return;
+        }
+        sendXml(response, status, "<Error><Code>" + code + "</Code><Message>" + escape(message)
+                + "</Message><RequestId>fake</RequestId></Error>");
+    }
+
+    private static String etag(byte[] data) {
+        return "\"" + hex(md5(data)) + "\"";
+    }
+
+    private static byte[] md5(byte[] data) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("\"", "&quot;").replace("'", "&apos;");
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.anicmv.support;
+
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * @author anicmv
+ * 按 ListObjectsV2 语义（prefix / delimiter / start-after / max-keys / continuation-token）列出内存中的对象，
+ * 供 mock 的 S3Client 作为 listObjectsV2 的应答使用。continuation-token 为上一页最后处理的键。
+ */
+public final class InMemoryListing {
+
+    private InMemoryListing() {
+    }
+
+    public static ListObjectsV2Response list(NavigableMap<String, S3Object> objects, ListObjectsV2Request request) {
+        String prefix = request.prefix() == null ? "" : request.prefix();
+        String delimiter = request.delimiter() == null || request.delimiter().isEmpty() ? null : request.delimiter();
+        int maxKeys = request.maxKeys() == null ? 1000 : request.maxKeys();
+        String after = request.continuationToken() != null ? request.continuationToken() : request.startAfter();
+        NavigableMap<String, S3Object> view = after == null ? objects : objects.tailMap(after, false);
+
+        List<S3Object> contents = new ArrayList<>();
+        List<CommonPrefix> commonPrefixes = new ArrayList<>();
+        String lastCommonPrefix = null;
+        String lastKey = null;
+        boolean truncated = false;
+        for (S3Object object : view.values()) {
+            String key = object.key();
+            if (!key.startsWith(prefix)) {
+                if (key.compareTo(prefix) > 0) {
+                    break;
+                }
+                continue;
+            }
+            int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+            String commonPrefix = index < 0 ? null : key.substring(0, index + delimiter.length());
+            if (commonPrefix != null && commonPrefix.equals(lastCommonPrefix)) {
+                lastKey = key;
+                continue;
+            }
+            if (contents.size() + commonPrefixes.size() >= maxKeys) {
+                truncated = true;
+                break;
+            }
+            if (commonPrefix != null) {
+                commonPrefixes.add(CommonPrefix.builder().prefix(commonPrefix).build());
+                lastCommonPrefix = commonPrefix;
+            } else {
+                contents.add(object);
+            }
+            lastKey = key;
+        }
+        return ListObjectsV2Response.builder()
+                .prefix(prefix)
+                .contents(contents)
+                .commonPrefixes(commonPrefixes)
+                .keyCount(contents.size() + commonPrefixes.size())
+                .isTruncated(truncated)
+                .nextContinuationToken(truncated ? lastKey : null)
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.anicmv.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author anicmv
+ * {@link ContextPropagatingTaskDecorator} 把提交线程的 MDC 与追踪上下文带入任务，任务结束后恢复工作线程原有的上下文
+ */
+class ContextPropagatingTaskDecoratorTest {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+    private static final String SPAN_ID = "b7ad6b7169203331";
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final ContextPropagatingTaskDecorator decorator = new ContextPropagatingTaskDecorator();
+
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+        worker.shutdownNow();
+    }
+
+    @Test
+    void taskSeesCallerMdcAndSpan() throws Exception {
+        AtomicReference<String> traceIdInMdc = new AtomicReference<>();
+        AtomicReference<String> traceIdInSpan = new AtomicReference<>();
+        Span span = Span.wrap(SpanContext.create(TRACE_ID, SPAN_ID, TraceFlags.getSampled(), TraceState.getDefault()));
+
+        Runnable task;
+        MDC.put("traceId", TRACE_ID);
+        try (Scope ignored = Context.current().with(span).makeCurrent()) {
+            task = decorator.decorate(() -> {
+                traceIdInMdc.set(MDC.get("traceId"));
+                traceIdInSpan.set(Span.current().getSpanContext().getTraceId());
+            });
+        }
+        MDC.clear();
+
+        worker.submit(task).get();
+
+        assertEquals(TRACE_ID, traceIdInMdc.get());
+        assertEquals(TRACE_ID, traceIdInSpan.get());
+    }
+
+    @Test
+    void workerContextIsRestoredAfterTask() throws Exception {
+        worker.submit(() -> MDC.put("worker", "w1")).get();
+
+        MDC.put("traceId", TRACE_ID);
+        Runnable task = decorator.decorate(() -> assertNull(MDC.get("worker")));
+        worker.submit(task).get();
+
+        AtomicReference<String> afterTraceId = new AtomicReference<>();
+        AtomicReference<String> afterWorker = new AtomicReference<>();
+        worker.submit(() -> {
+            afterTraceId.set(MDC.get("traceId"));
+            afterWorker.set(MDC.get("worker"));
+            assertFalse(Span.current().getSpanContext().isValid());
+        }).get();
+
+        assertNull(afterTraceId.get());
+        assertEquals("w1", afterWorker.get());
+    }
+}